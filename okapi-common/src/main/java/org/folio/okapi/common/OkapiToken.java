@@ -1,7 +1,9 @@
 package org.folio.okapi.common;
 
-import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonObject;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
 import java.util.Base64;
 
 /**
@@ -10,10 +12,18 @@ import java.util.Base64;
  * of the security token. In theory the token is private to the auth subsystem,
  * but occasionally a module or even Okapi itself may need to extract the current
  * tenant-id, or some other piece of information.
+ *
+ * <p>The fields are read from the payload with a streaming parser when the
+ * object is constructed; no JsonObject is built. Objects are immutable, so
+ * they may be shared, see {@link OkapiTokenCache}.
  */
 public class OkapiToken {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
   private final String token;
-  private final JsonObject payloadWithoutValidation;
+  private String tenant;
+  private String username;
+  private String userId;
 
   /**
    * Construct from token string.
@@ -21,13 +31,12 @@ public class OkapiToken {
    */
   public OkapiToken(String token) {
     this.token = token;
-    payloadWithoutValidation = this.getPayloadWithoutValidation();
+    if (token != null) {
+      parsePayloadWithoutValidation();
+    }
   }
 
-  private JsonObject getPayloadWithoutValidation() {
-    if (token == null) {
-      return null;
-    }
+  private void parsePayloadWithoutValidation() {
     int idx1 = token.indexOf('.');
     if (idx1 == -1) {
       throw new IllegalArgumentException("Missing . separator for token");
@@ -37,20 +46,50 @@ public class OkapiToken {
     if (idx2 == -1) {
       throw new IllegalArgumentException("Missing . separator for token");
     }
-    String encodedJson = token.substring(idx1, idx2);
-    String decodedJson = new String(Base64.getDecoder().decode(encodedJson));
-    try {
-      return new JsonObject(decodedJson);
-    } catch (DecodeException e) {
-      throw new IllegalArgumentException(e.getMessage());
+    byte[] payload = Base64.getDecoder().decode(token.substring(idx1, idx2));
+    try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Failed to decode:Payload is not a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (value == JsonToken.VALUE_STRING) {
+          setField(field, parser.getText());
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (parser.nextToken() != null) {
+        throw new IllegalArgumentException("Failed to decode:Unexpected trailing content");
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Failed to decode:" + e.getMessage());
     }
   }
 
-  private String getFieldFromTokenWithoutValidation(String field) {
-    if (payloadWithoutValidation == null) {
-      return null;
+  private void setField(String field, String value) {
+    switch (field) {
+      case "tenant":
+        tenant = value;
+        break;
+      case "sub":
+        username = value;
+        break;
+      case "user_id":
+        userId = value;
+        break;
+      default:
+        break;
     }
-    return payloadWithoutValidation.getString(field);
+  }
+
+  /**
+   * Get the token string.
+   * @return token as given to constructor
+   */
+  public String getToken() {
+    return token;
   }
 
   /**
@@ -59,7 +98,7 @@ public class OkapiToken {
    * @return null if no token, or no tenant there
    */
   public String getTenantWithoutValidation() {
-    return getFieldFromTokenWithoutValidation("tenant");
+    return tenant;
   }
 
   /**
@@ -68,7 +107,7 @@ public class OkapiToken {
    * @return null if no token, or no tenant there
    */
   public String getUsernameWithoutValidation() {
-    return getFieldFromTokenWithoutValidation("sub");
+    return username;
   }
 
   /**
@@ -77,6 +116,6 @@ public class OkapiToken {
    * @return null if no token, or no tenant there
    */
   public String getUserIdWithoutValidation() {
-    return getFieldFromTokenWithoutValidation("user_id");
+    return userId;
   }
 }
@@ -0,0 +1,64 @@
+package org.folio.okapi.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed tokens.
+ *
+ * <p>Tokens are long-lived and the same token is sent with many requests, so
+ * the fields of the payload are kept per token string. Tokens that can not be
+ * parsed are not kept. The least recently used tokens are removed when the
+ * cache is full. Methods may be called from any thread.
+ */
+public class OkapiTokenCache {
+
+  private final Map<String, OkapiToken> tokens;
+
+  /**
+   * Create cache.
+   * @param maxSize maximum number of tokens kept; 0 disables caching
+   */
+  public OkapiTokenCache(int maxSize) {
+    tokens = new LinkedHashMap<String, OkapiToken>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, OkapiToken> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get parsed token.
+   * Note that there is no JWT validation taking place.
+   * @param token token string; null allowed
+   * @return token with fields of payload; fields are null for null token
+   * @throws IllegalArgumentException if token can not be parsed
+   */
+  public OkapiToken get(String token) {
+    if (token == null) {
+      return new OkapiToken(null);
+    }
+    synchronized (tokens) {
+      OkapiToken t = tokens.get(token);
+      if (t != null) {
+        return t;
+      }
+    }
+    OkapiToken t = new OkapiToken(token);
+    synchronized (tokens) {
+      tokens.put(token, t);
+    }
+    return t;
+  }
+
+  /**
+   * Return number of tokens kept.
+   * @return number of tokens
+   */
+  public int size() {
+    synchronized (tokens) {
+      return tokens.size();
+    }
+  }
+}
@@ -127,6 +127,12 @@ public class XOkapiHeaders {
   public static final String REQUEST_TIMESTAMP = "X-Okapi-request-timestamp";
   public static final String REQUEST_METHOD = "X-Okapi-request-method";
 
+  /**
+   * X-Okapi-Deadline. Time, in milliseconds since the epoch, after which
+   * Okapi gives up on the request. Modules may give up early as well.
+   */
+  public static final String DEADLINE = "X-Okapi-Deadline";
+
   /**
    * X-Okapi-Match-Path-Pattern. Path pattern that has matched when invoking a handler
    */
@@ -0,0 +1,47 @@
+package org.folio.okapi.common;
+
+import java.util.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OkapiTokenCacheTest {
+
+  private static String token(String tenant) {
+    String payload = "{\"tenant\":\"" + tenant + "\"}";
+    return "a." + Base64.getEncoder().encodeToString(payload.getBytes()) + ".c";
+  }
+
+  @Test
+  public void testGet() {
+    OkapiTokenCache cache = new OkapiTokenCache(2);
+    OkapiToken t1 = cache.get(token("t1"));
+    Assert.assertEquals("t1", t1.getTenantWithoutValidation());
+    Assert.assertSame(t1, cache.get(token("t1")));
+    Assert.assertEquals(1, cache.size());
+
+    Assert.assertNull(cache.get(null).getTenantWithoutValidation());
+    Assert.assertEquals(1, cache.size());
+
+    Assert.assertThrows(IllegalArgumentException.class, () -> cache.get("a.b"));
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEviction() {
+    OkapiTokenCache cache = new OkapiTokenCache(2);
+    OkapiToken t1 = cache.get(token("t1"));
+    OkapiToken t2 = cache.get(token("t2"));
+    Assert.assertSame(t1, cache.get(token("t1"))); // t2 is now least recently used
+    cache.get(token("t3"));
+    Assert.assertEquals(2, cache.size());
+    Assert.assertSame(t1, cache.get(token("t1")));
+    Assert.assertNotSame(t2, cache.get(token("t2")));
+  }
+
+  @Test
+  public void testDisabled() {
+    OkapiTokenCache cache = new OkapiTokenCache(0);
+    Assert.assertEquals("t1", cache.get(token("t1")).getTenantWithoutValidation());
+    Assert.assertEquals(0, cache.size());
+  }
+}
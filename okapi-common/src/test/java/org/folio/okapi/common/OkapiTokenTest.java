@@ -30,6 +30,28 @@ public class OkapiTokenTest {
     Assert.assertEquals(TENANT, tok.getTenantWithoutValidation());
     Assert.assertEquals(USERNAME, tok.getUsernameWithoutValidation());
     Assert.assertEquals(USERID, tok.getUserIdWithoutValidation());
+    Assert.assertEquals(tokenStr, tok.getToken());
+  }
+
+  private static String token(String payload) {
+    return "a." + Base64.getEncoder().encodeToString(payload.getBytes()) + ".c";
+  }
+
+  @Test
+  public void testOtherFields() {
+    OkapiToken tok = new OkapiToken(token("{\"x\":{\"tenant\":\"t1\",\"y\":[1,{}]},"
+        + "\"user_id\":1,\"tenant\":\"t2\",\"sub\":null}"));
+    Assert.assertEquals("t2", tok.getTenantWithoutValidation());
+    Assert.assertNull(tok.getUserIdWithoutValidation());
+    Assert.assertNull(tok.getUsernameWithoutValidation());
+  }
+
+  @Test
+  public void notObjectException() {
+    Assert.assertEquals("Failed to decode:Payload is not a JSON object",
+        exceptionMessage(token("[1]")));
+    Assert.assertEquals("Failed to decode:Unexpected trailing content",
+        exceptionMessage(token("{}{}")));
   }
 
   @Test
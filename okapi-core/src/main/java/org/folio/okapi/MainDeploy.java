@@ -50,7 +50,6 @@ public class MainDeploy {
   // suppress "Catch Exception instead of Throwable" to also log Throwable
   @SuppressWarnings({"squid:S1181"})
   void init(String[] args, Handler<AsyncResult<Vertx>> fut) {
-    vopt.setPreferNativeTransport(true);
     try {
       final Logger logger = OkapiLogger.get();
       Messages.setLanguage(System.getProperty("lang", "en"));
@@ -63,6 +62,9 @@ public class MainDeploy {
       if (parseOptions(args, fut)) {
         return;
       }
+      // epoll on Linux; Vert.x falls back to NIO if it is not available
+      vopt.setPreferNativeTransport(org.folio.okapi.common.Config.getSysConfBoolean(
+          "preferNativeTransport", true, conf));
       final String mode = conf.getString("mode", "dev");
       switch (mode) {
         case "dev":
@@ -101,12 +103,24 @@ public class MainDeploy {
     return false;
   }
 
-  private void enableMetrics() {
+  private boolean enableMetrics(Handler<AsyncResult<Vertx>> fut) {
+    String backend = System.getProperty("metricsBackend", "influx");
+    if ("prometheus".equals(backend)) {
+      String prometheusPort = System.getProperty("prometheusPort");
+      MetricsHelper.configPrometheus(vopt, prometheusPort == null || prometheusPort.isEmpty()
+          ? null : Integer.valueOf(prometheusPort));
+      return false;
+    }
+    if (!"influx".equals(backend)) {
+      fut.handle(Future.failedFuture(messages.getMessage("10603", backend)));
+      return true;
+    }
     String influxUrl = System.getProperty("influxUrl");
     String influxDbName = System.getProperty("influxDbName");
     String influxUserName = System.getProperty("influxUserName");
     String influxPassword = System.getProperty("influxPassword");
     MetricsHelper.config(vopt, influxUrl, influxDbName, influxUserName, influxPassword);
+    return false;
   }
 
   private boolean parseOptions(String[] args, Handler<AsyncResult<Vertx>> fut) {
@@ -149,7 +163,9 @@ public class MainDeploy {
       } else if ("-cluster-port".equals(args[i]) && i < args.length - 1) {
         clusterPort = Integer.parseInt(args[++i]);
       } else if ("-enable-metrics".equals(args[i])) {
-        enableMetrics();
+        if (enableMetrics(fut)) {
+          return true;
+        }
       } else if ("-conf".equals(args[i]) && i < args.length - 1) {
         if (readConf(args[++i], fut)) {
           return true;
@@ -2,6 +2,7 @@ package org.folio.okapi;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -9,7 +10,6 @@ import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.cluster.ClusterManager;
-import io.vertx.ext.web.Router;
 import java.lang.management.ManagementFactory;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -38,7 +38,7 @@ import org.folio.okapi.service.TenantStore;
 import org.folio.okapi.service.impl.Storage;
 import org.folio.okapi.service.impl.Storage.InitMode;
 import org.folio.okapi.service.impl.TenantStoreNull;
-import org.folio.okapi.util.CorsHelper;
+import org.folio.okapi.util.CircuitBreaker;
 import org.folio.okapi.util.LogHelper;
 import org.folio.okapi.util.OkapiError;
 
@@ -57,6 +57,8 @@ public class MainVerticle extends AbstractVerticle {
   private Storage storage;
   private Storage.InitMode initMode = InitMode.NORMAL;
   private int port;
+  private int proxyInstances;
+  private HttpServerOptions serverOptions;
   private String okapiVersion = null;
   private final Messages messages = Messages.getInstance();
   boolean enableProxy = false;
@@ -79,6 +81,11 @@ public class MainVerticle extends AbstractVerticle {
 
     JsonObject config = context.config();
     port = Integer.parseInt(Config.getSysConf("port", "9130", config));
+    proxyInstances = Integer.parseInt(Config.getSysConf("proxyInstances", "1", config));
+    if (proxyInstances <= 0) {
+      proxyInstances = Runtime.getRuntime().availableProcessors();
+    }
+    serverOptions = ProxyVerticle.serverOptions(config);
     String okapiVersion2 = Config.getSysConf("okapiVersion", null, config);
     if (okapiVersion2 != null) {
       okapiVersion = okapiVersion2;
@@ -129,6 +136,7 @@ public class MainVerticle extends AbstractVerticle {
 
     envManager = new EnvManager(storage.getEnvStore());
     discoveryManager = new DiscoveryManager(storage.getDeploymentStore());
+    discoveryManager.setCircuitBreaker(new CircuitBreaker(config));
     if (clusterManager != null) {
       discoveryManager.setClusterManager(clusterManager);
     }
@@ -183,6 +191,7 @@ public class MainVerticle extends AbstractVerticle {
           moduleManager, tenantManager, discoveryManager,
           internalModule, okapiUrl, config);
     }
+    proxyService.setInternalContext(context);
   }
 
   @Override
@@ -337,36 +346,22 @@ public class MainVerticle extends AbstractVerticle {
   }
 
   private Future<Void> startListening() {
-    Router router = Router.router(vertx);
-    logger.debug("Setting up routes");
-
-    //handle CORS
-    CorsHelper.addCorsHandler(router);
-
-    if (proxyService != null) {
-      router.routeWithRegex("^/_/invoke/tenant/[^/ ]+/.*")
-          .handler(proxyService::redirectProxy);
-      // Note: This can not go into the InternalModule, it reads the req body,
-      // and then we can not ctx.reroute(). Unless we do something trickier,
-      // like a new HTTP request.
-    }
-
-    // everything else gets proxified to modules
-    // Even internal functions, they are in the InternalModule
-    if (proxyService != null) {
-      router.route("/*").handler(proxyService::proxy);
-    }
-
     logger.debug("About to start HTTP server");
-    HttpServerOptions so = new HttpServerOptions()
-        .setHandle100ContinueAutomatically(true);
-    return vertx.createHttpServer(so)
-        .requestHandler(router)
-        .listen(port)
+    return ProxyVerticle.listen(vertx, proxyService, port, serverOptions)
+        .compose(x -> {
+          if (proxyInstances <= 1) {
+            return Future.succeededFuture();
+          }
+          DeploymentOptions opt = new DeploymentOptions().setInstances(proxyInstances - 1);
+          return vertx.deployVerticle(() -> new ProxyVerticle(proxyService, port, serverOptions),
+              opt);
+        })
         .onComplete(result -> {
           if (result.succeeded()) {
-            logger.info("API Gateway started PID {}. Listening on port {}",
-                ManagementFactory.getRuntimeMXBean().getName(), port);
+            logger.info("API Gateway started PID {}. Listening on port {} ({}) with {} event loops",
+                ManagementFactory.getRuntimeMXBean().getName(), port,
+                serverOptions.isSsl() ? "https" : "http", proxyInstances);
+            logTransport();
           } else {
             logger.fatal("createHttpServer failed for port {}", port, result.cause());
           }
@@ -374,6 +369,17 @@ public class MainVerticle extends AbstractVerticle {
         .mapEmpty();
   }
 
+  private void logTransport() {
+    boolean nativeTransport = vertx.isNativeTransportEnabled();
+    logger.info("Transport {}: tcpNoDelay={} tcpFastOpen={} reusePort={} receiveBufferSize={}"
+            + " sendBufferSize={}", nativeTransport ? "native" : "NIO",
+        serverOptions.isTcpNoDelay(), serverOptions.isTcpFastOpen(), serverOptions.isReusePort(),
+        serverOptions.getReceiveBufferSize(), serverOptions.getSendBufferSize());
+    if (!nativeTransport && (serverOptions.isTcpFastOpen() || serverOptions.isReusePort())) {
+      logger.warn("tcpFastOpen and reusePort are ignored without native transport");
+    }
+  }
+
   private Future<Void> startRedeploy() {
     return discoveryManager.restartModules().compose(res -> {
       if (!enableProxy) {
@@ -0,0 +1,154 @@
+package org.folio.okapi;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.PemKeyCertOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.Config;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.managers.ProxyService;
+import org.folio.okapi.util.CorsHelper;
+import org.folio.okapi.util.MetricsHelper;
+
+/**
+ * HTTP server of the proxy on an event loop of its own.
+ *
+ * <p>MainVerticle listens on the Okapi port itself. With {@code proxyInstances}
+ * greater than one it deploys more instances of this verticle on the same
+ * port; Vert.x then spreads incoming connections over the event loops of all
+ * of them. All instances share the ProxyService and the managers of
+ * MainVerticle, so everything they use on the request path must be safe for
+ * use by several threads. Requests to the internal module are served on the
+ * context of MainVerticle, as the managers are not.
+ *
+ * <p>Clients may use HTTP/2: over TLS, negotiated with ALPN, and in clear
+ * text, with prior knowledge or by upgrade from HTTP/1.1 (h2c). Requests to
+ * modules are made with the HTTP version of the module's client pool
+ * regardless.
+ */
+public class ProxyVerticle extends AbstractVerticle {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  private final ProxyService proxyService;
+  private final int port;
+  private final HttpServerOptions serverOptions;
+
+  /**
+   * Create proxy verticle.
+   * @param proxyService shared proxy service
+   * @param port port to listen on
+   * @param serverOptions HTTP server options
+   */
+  public ProxyVerticle(ProxyService proxyService, int port, HttpServerOptions serverOptions) {
+    this.proxyService = proxyService;
+    this.port = port;
+    this.serverOptions = serverOptions;
+  }
+
+  /**
+   * Make HTTP server options for the proxy from configuration.
+   * @param config Okapi configuration
+   * @return server options
+   * @throws IllegalArgumentException if only one of tlsCertFile and tlsKeyFile is given,
+   *     or a buffer size is not positive
+   */
+  static HttpServerOptions serverOptions(JsonObject config) {
+    HttpServerOptions so = new HttpServerOptions()
+        .setHandle100ContinueAutomatically(true)
+        .setTcpNoDelay(config.getBoolean("tcpNoDelay", HttpServerOptions.DEFAULT_TCP_NO_DELAY))
+        .setTcpFastOpen(config.getBoolean("tcpFastOpen",
+            HttpServerOptions.DEFAULT_TCP_FAST_OPEN))
+        .setReusePort(config.getBoolean("reusePort", HttpServerOptions.DEFAULT_REUSE_PORT))
+        .setReceiveBufferSize(config.getInteger("receiveBufferSize",
+            HttpServerOptions.DEFAULT_RECEIVE_BUFFER_SIZE))
+        .setSendBufferSize(config.getInteger("sendBufferSize",
+            HttpServerOptions.DEFAULT_SEND_BUFFER_SIZE));
+    Http2Settings settings = so.getInitialSettings()
+        .setMaxConcurrentStreams(config.getLong("http2MaxConcurrentStreams",
+            HttpServerOptions.DEFAULT_INITIAL_SETTINGS_MAX_CONCURRENT_STREAMS))
+        .setInitialWindowSize(config.getInteger("http2InitialWindowSize",
+            Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE));
+    so.setInitialSettings(settings)
+        .setHttp2ConnectionWindowSize(config.getInteger("http2ConnectionWindowSize",
+            HttpServerOptions.DEFAULT_HTTP2_CONNECTION_WINDOW_SIZE));
+    String certFile = Config.getSysConf("tlsCertFile", null, config);
+    String keyFile = Config.getSysConf("tlsKeyFile", null, config);
+    if (certFile != null || keyFile != null) {
+      if (certFile == null || keyFile == null) {
+        throw new IllegalArgumentException("tlsCertFile and tlsKeyFile must both be given");
+      }
+      so.setSsl(true)
+          .setUseAlpn(true)
+          .setPemKeyCertOptions(new PemKeyCertOptions()
+              .setCertPath(certFile)
+              .setKeyPath(keyFile));
+    }
+    return so;
+  }
+
+  /**
+   * Make router for the proxy.
+   * @param vertx Vert.x handle
+   * @param proxyService proxy service
+   * @return router
+   */
+  static Router router(Vertx vertx, ProxyService proxyService) {
+    Router router = Router.router(vertx);
+
+    //handle CORS
+    CorsHelper.addCorsHandler(router);
+
+    Handler<RoutingContext> scrapingHandler = MetricsHelper.scrapingHandler();
+    if (scrapingHandler != null) {
+      router.get("/_/metrics").handler(scrapingHandler);
+    }
+
+    if (proxyService != null) {
+      router.routeWithRegex("^/_/invoke/tenant/[^/ ]+/.*")
+          .handler(proxyService::redirectProxy);
+      // Note: This can not go into the InternalModule, it reads the req body,
+      // and then we can not ctx.reroute(). Unless we do something trickier,
+      // like a new HTTP request.
+
+      // everything else gets proxified to modules
+      // Even internal functions, they are in the InternalModule
+      router.route("/*").handler(proxyService::proxy);
+    }
+    return router;
+  }
+
+  /**
+   * Listen on port.
+   * @param vertx Vert.x handle
+   * @param proxyService proxy service
+   * @param port port
+   * @param serverOptions HTTP server options
+   * @return future result
+   */
+  static Future<Void> listen(Vertx vertx, ProxyService proxyService, int port,
+                             HttpServerOptions serverOptions) {
+    return vertx.createHttpServer(serverOptions)
+        .requestHandler(router(vertx, proxyService))
+        .listen(port)
+        .mapEmpty();
+  }
+
+  @Override
+  public void start(Promise<Void> promise) {
+    listen(vertx, proxyService, port, serverOptions).onComplete(res -> {
+      if (res.succeeded()) {
+        logger.debug("Proxy instance listening on port {}", port);
+      }
+      promise.handle(res);
+    });
+  }
+}
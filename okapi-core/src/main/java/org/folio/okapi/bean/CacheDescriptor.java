@@ -0,0 +1,33 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Cache policy of a handler routing entry. Successful GET responses of the
+ * handler are kept by Okapi for at most ttl seconds and served to later
+ * requests of the same tenant for the same URI and the same values of the
+ * vary headers.
+ */
+@JsonInclude(Include.NON_NULL)
+public class CacheDescriptor {
+
+  private Integer ttl;
+  private String[] vary;
+
+  public Integer getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(Integer ttl) {
+    this.ttl = ttl;
+  }
+
+  public String[] getVary() {
+    return vary;
+  }
+
+  public void setVary(String[] vary) {
+    this.vary = vary;
+  }
+}
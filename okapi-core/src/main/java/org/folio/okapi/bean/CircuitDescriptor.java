@@ -0,0 +1,63 @@
+package org.folio.okapi.bean;
+
+/**
+ * Circuit breaker state for one deployed instance of a module, as seen
+ * from the proxy on this node.
+ */
+public class CircuitDescriptor {
+
+  private String instId;
+  private String srvcId;
+  private String url;
+  private String state;
+  private int failures;
+  private long retryAfter;
+
+  public String getInstId() {
+    return instId;
+  }
+
+  public void setInstId(String instId) {
+    this.instId = instId;
+  }
+
+  public String getSrvcId() {
+    return srvcId;
+  }
+
+  public void setSrvcId(String srvcId) {
+    this.srvcId = srvcId;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public void setState(String state) {
+    this.state = state;
+  }
+
+  public int getFailures() {
+    return failures;
+  }
+
+  public void setFailures(int failures) {
+    this.failures = failures;
+  }
+
+  public long getRetryAfter() {
+    return retryAfter;
+  }
+
+  public void setRetryAfter(long retryAfter) {
+    this.retryAfter = retryAfter;
+  }
+}
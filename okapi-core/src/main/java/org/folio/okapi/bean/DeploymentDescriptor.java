@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import io.vertx.core.json.DecodeException;
 import org.folio.okapi.service.ModuleHandle;
+import org.folio.okapi.util.LoadBalancer;
 
 /**
  * Description of one deployed module. Refers to one running instance of a
@@ -18,6 +19,7 @@ public class DeploymentDescriptor {
   private String nodeId;
   private String url;
   private LaunchDescriptor descriptor;
+  private String loadBalancing;
 
   @JsonIgnore
   private ModuleHandle moduleHandle;
@@ -108,6 +110,26 @@ public class DeploymentDescriptor {
     this.descriptor = descriptor;
   }
 
+  public String getLoadBalancing() {
+    return loadBalancing;
+  }
+
+  /**
+   * Set load balancing strategy for the instances of the module.
+   * Throws DecodeException if unknown
+   * @param loadBalancing strategy name; null for Okapi default
+   */
+  public void setLoadBalancing(String loadBalancing) {
+    if (loadBalancing != null) {
+      try {
+        LoadBalancer.create(loadBalancing);
+      } catch (IllegalArgumentException e) {
+        throw new DecodeException(e.getMessage());
+      }
+    }
+    this.loadBalancing = loadBalancing;
+  }
+
   public ModuleHandle getModuleHandle() {
     return moduleHandle;
   }
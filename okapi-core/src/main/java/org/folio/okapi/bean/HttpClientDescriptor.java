@@ -0,0 +1,199 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Connection pool settings for the HTTP client that the proxy uses for a
+ * module. Properties that are not set are taken from the Okapi configuration
+ * or the Vert.x defaults.
+ */
+@JsonInclude(Include.NON_NULL)
+public class HttpClientDescriptor {
+
+  private Integer maxPoolSize;
+  private Boolean keepAlive;
+  private Integer keepAliveTimeout;
+  private Integer idleTimeout;
+  private Integer connectTimeout;
+  private Boolean pipelining;
+  private Integer pipeliningLimit;
+  private Integer maxWaitQueueSize;
+  private Boolean http2;
+  private Boolean http2ClearTextUpgrade;
+  private Integer http2MaxPoolSize;
+  private Integer http2MultiplexingLimit;
+  private Boolean tcpNoDelay;
+  private Boolean tcpFastOpen;
+  private Integer receiveBufferSize;
+  private Integer sendBufferSize;
+  private Integer warmUp;
+
+  public Integer getMaxPoolSize() {
+    return maxPoolSize;
+  }
+
+  public void setMaxPoolSize(Integer maxPoolSize) {
+    this.maxPoolSize = maxPoolSize;
+  }
+
+  public Boolean getKeepAlive() {
+    return keepAlive;
+  }
+
+  public void setKeepAlive(Boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  public Integer getKeepAliveTimeout() {
+    return keepAliveTimeout;
+  }
+
+  public void setKeepAliveTimeout(Integer keepAliveTimeout) {
+    this.keepAliveTimeout = keepAliveTimeout;
+  }
+
+  public Integer getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(Integer idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public Integer getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Integer connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public Boolean getPipelining() {
+    return pipelining;
+  }
+
+  public void setPipelining(Boolean pipelining) {
+    this.pipelining = pipelining;
+  }
+
+  public Integer getPipeliningLimit() {
+    return pipeliningLimit;
+  }
+
+  public void setPipeliningLimit(Integer pipeliningLimit) {
+    this.pipeliningLimit = pipeliningLimit;
+  }
+
+  public Integer getMaxWaitQueueSize() {
+    return maxWaitQueueSize;
+  }
+
+  public void setMaxWaitQueueSize(Integer maxWaitQueueSize) {
+    this.maxWaitQueueSize = maxWaitQueueSize;
+  }
+
+  public Boolean getHttp2() {
+    return http2;
+  }
+
+  public void setHttp2(Boolean http2) {
+    this.http2 = http2;
+  }
+
+  public Boolean getHttp2ClearTextUpgrade() {
+    return http2ClearTextUpgrade;
+  }
+
+  public void setHttp2ClearTextUpgrade(Boolean http2ClearTextUpgrade) {
+    this.http2ClearTextUpgrade = http2ClearTextUpgrade;
+  }
+
+  public Integer getHttp2MaxPoolSize() {
+    return http2MaxPoolSize;
+  }
+
+  public void setHttp2MaxPoolSize(Integer http2MaxPoolSize) {
+    this.http2MaxPoolSize = http2MaxPoolSize;
+  }
+
+  public Integer getHttp2MultiplexingLimit() {
+    return http2MultiplexingLimit;
+  }
+
+  public void setHttp2MultiplexingLimit(Integer http2MultiplexingLimit) {
+    this.http2MultiplexingLimit = http2MultiplexingLimit;
+  }
+
+  public Boolean getTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public void setTcpNoDelay(Boolean tcpNoDelay) {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  public Boolean getTcpFastOpen() {
+    return tcpFastOpen;
+  }
+
+  public void setTcpFastOpen(Boolean tcpFastOpen) {
+    this.tcpFastOpen = tcpFastOpen;
+  }
+
+  public Integer getReceiveBufferSize() {
+    return receiveBufferSize;
+  }
+
+  public void setReceiveBufferSize(Integer receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  public Integer getSendBufferSize() {
+    return sendBufferSize;
+  }
+
+  public void setSendBufferSize(Integer sendBufferSize) {
+    this.sendBufferSize = sendBufferSize;
+  }
+
+  public Integer getWarmUp() {
+    return warmUp;
+  }
+
+  public void setWarmUp(Integer warmUp) {
+    this.warmUp = warmUp;
+  }
+
+  /**
+   * Return settings where properties set in other take precedence.
+   * @param other overriding settings; may be null
+   * @return new settings
+   */
+  public HttpClientDescriptor merge(HttpClientDescriptor other) {
+    HttpClientDescriptor o = other == null ? new HttpClientDescriptor() : other;
+    HttpClientDescriptor d = new HttpClientDescriptor();
+    d.maxPoolSize = pick(o.maxPoolSize, maxPoolSize);
+    d.keepAlive = pick(o.keepAlive, keepAlive);
+    d.keepAliveTimeout = pick(o.keepAliveTimeout, keepAliveTimeout);
+    d.idleTimeout = pick(o.idleTimeout, idleTimeout);
+    d.connectTimeout = pick(o.connectTimeout, connectTimeout);
+    d.pipelining = pick(o.pipelining, pipelining);
+    d.pipeliningLimit = pick(o.pipeliningLimit, pipeliningLimit);
+    d.maxWaitQueueSize = pick(o.maxWaitQueueSize, maxWaitQueueSize);
+    d.http2 = pick(o.http2, http2);
+    d.http2ClearTextUpgrade = pick(o.http2ClearTextUpgrade, http2ClearTextUpgrade);
+    d.http2MaxPoolSize = pick(o.http2MaxPoolSize, http2MaxPoolSize);
+    d.http2MultiplexingLimit = pick(o.http2MultiplexingLimit, http2MultiplexingLimit);
+    d.tcpNoDelay = pick(o.tcpNoDelay, tcpNoDelay);
+    d.tcpFastOpen = pick(o.tcpFastOpen, tcpFastOpen);
+    d.receiveBufferSize = pick(o.receiveBufferSize, receiveBufferSize);
+    d.sendBufferSize = pick(o.sendBufferSize, sendBufferSize);
+    d.warmUp = pick(o.warmUp, warmUp);
+    return d;
+  }
+
+  private static <T> T pick(T value, T def) {
+    return value != null ? value : def;
+  }
+}
@@ -22,6 +22,7 @@ public class LaunchDescriptor {
   private EnvEntry[] env;
   private AnyDescriptor dockerArgs;
   private Integer waitIterations;
+  private HttpClientDescriptor httpClient;
 
   public String getCmdlineStart() {
     return cmdlineStart;
@@ -95,4 +96,12 @@ public class LaunchDescriptor {
     this.waitIterations = waitIterations;
   }
 
+  public HttpClientDescriptor getHttpClient() {
+    return httpClient;
+  }
+
+  public void setHttpClient(HttpClientDescriptor httpClient) {
+    this.httpClient = httpClient;
+  }
+
 }
@@ -1,6 +1,8 @@
 package org.folio.okapi.bean;
 
+import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpMethod;
+import org.folio.okapi.util.HeaderPlan;
 
 /**
  * An Instance of a Module that has been enabled for a given tenant.
@@ -16,6 +18,8 @@ public class ModuleInstance {
   private final HttpMethod method;
   private final boolean handler;  // is true if handler; false otherwise (filter)
   private boolean withRetry;
+  private HeaderPlan headerPlan;
+  private final MultiMap hopHeaders = MultiMap.caseInsensitiveMultiMap();
 
   /**
    * Create module instance.
@@ -86,4 +90,28 @@ public class ModuleInstance {
     this.withRetry = true;
     return this;
   }
+
+  /**
+   * Return header plan for the routing entry.
+   * @return plan; made from routing entry if not set
+   */
+  public HeaderPlan getHeaderPlan() {
+    if (headerPlan == null) {
+      headerPlan = new HeaderPlan(re);
+    }
+    return headerPlan;
+  }
+
+  public void setHeaderPlan(HeaderPlan headerPlan) {
+    this.headerPlan = headerPlan;
+  }
+
+  /**
+   * Return headers computed for the request to this instance; these replace
+   * incoming request headers of the same name.
+   * @return headers
+   */
+  public MultiMap getHopHeaders() {
+    return hopHeaders;
+  }
 }
@@ -0,0 +1,63 @@
+package org.folio.okapi.bean;
+
+/**
+ * Time spent in one phase of proxied requests for one module, as seen
+ * from the proxy on this node since it was started.
+ */
+public class PhaseTimingDescriptor {
+
+  private String phase;
+  private String module;
+  private long count;
+  private long totalUs;
+  private long meanUs;
+  private long maxUs;
+
+  public String getPhase() {
+    return phase;
+  }
+
+  public void setPhase(String phase) {
+    this.phase = phase;
+  }
+
+  public String getModule() {
+    return module;
+  }
+
+  public void setModule(String module) {
+    this.module = module;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public void setCount(long count) {
+    this.count = count;
+  }
+
+  public long getTotalUs() {
+    return totalUs;
+  }
+
+  public void setTotalUs(long totalUs) {
+    this.totalUs = totalUs;
+  }
+
+  public long getMeanUs() {
+    return meanUs;
+  }
+
+  public void setMeanUs(long meanUs) {
+    this.meanUs = meanUs;
+  }
+
+  public long getMaxUs() {
+    return maxUs;
+  }
+
+  public void setMaxUs(long maxUs) {
+    this.maxUs = maxUs;
+  }
+}
@@ -0,0 +1,60 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Limits for the requests of a tenant, enforced by the proxy on each node.
+ * Requests are admitted at a sustained rate of at most rate per second, with
+ * bursts of up to burst requests, and at most maxInFlight requests of the
+ * tenant may be in progress at the same time. Limits that are not set are
+ * not enforced.
+ */
+@JsonInclude(Include.NON_NULL)
+public class RateLimitDescriptor {
+
+  private Double rate;
+  private Integer burst;
+  private Integer maxInFlight;
+
+  public Double getRate() {
+    return rate;
+  }
+
+  public void setRate(Double rate) {
+    this.rate = rate;
+  }
+
+  public Integer getBurst() {
+    return burst;
+  }
+
+  public void setBurst(Integer burst) {
+    this.burst = burst;
+  }
+
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(Integer maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Validate limits.
+   * @return null if OK; message describing the problem otherwise
+   */
+  public String validate() {
+    if (rate != null && !(rate > 0.0)) {
+      return "rate must be positive";
+    }
+    if (burst != null && (burst < 1 || rate == null)) {
+      return "burst must be positive and requires rate";
+    }
+    if (maxInFlight != null && maxInFlight < 1) {
+      return "maxInFlight must be positive";
+    }
+    return null;
+  }
+}
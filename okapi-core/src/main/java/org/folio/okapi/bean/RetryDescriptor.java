@@ -0,0 +1,62 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Retry policy of a handler, for GET and HEAD requests without body only.
+ * attempts is the number of times a request is sent again, preferably to
+ * another instance, when no connection can be made. With hedgePercentile or
+ * hedgeDelay, a second request is sent to another instance when the first
+ * takes longer than that percentile of recent response times, or that many
+ * milliseconds, whichever is more; the first response is used. Retries and
+ * hedged requests are subject to the retry budget of Okapi.
+ */
+@JsonInclude(Include.NON_NULL)
+public class RetryDescriptor {
+
+  private Integer attempts;
+  private Double hedgePercentile;
+  private Integer hedgeDelay;
+
+  public Integer getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(Integer attempts) {
+    this.attempts = attempts;
+  }
+
+  public Double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  public void setHedgePercentile(Double hedgePercentile) {
+    this.hedgePercentile = hedgePercentile;
+  }
+
+  public Integer getHedgeDelay() {
+    return hedgeDelay;
+  }
+
+  public void setHedgeDelay(Integer hedgeDelay) {
+    this.hedgeDelay = hedgeDelay;
+  }
+
+  @JsonIgnore
+  public boolean isHedged() {
+    return hedgePercentile != null || hedgeDelay != null;
+  }
+
+  /**
+   * Check that values are in range.
+   * @return true if valid
+   */
+  @JsonIgnore
+  public boolean isValid() {
+    return (attempts == null || attempts >= 0)
+        && (hedgePercentile == null || (hedgePercentile > 0.0 && hedgePercentile < 100.0))
+        && (hedgeDelay == null || hedgeDelay > 0);
+  }
+}
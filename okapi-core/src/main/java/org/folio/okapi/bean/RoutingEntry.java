@@ -35,6 +35,9 @@ public class RoutingEntry {
   private String[] modulePermissions;
   @JsonInclude(JsonInclude.Include.NON_DEFAULT)
   private boolean delegateCors;
+  private CacheDescriptor cache;
+  private TimeoutDescriptor timeout;
+  private RetryDescriptor retry;
   private static final String INVALID_PATH_CHARS = "\\%+{}()[].;:=?@#^$\"' ";
   @JsonIgnore
   private String phaseLevel = "50"; // default for regular handler
@@ -299,7 +302,12 @@ public class RoutingEntry {
     }
   }
 
-  static int cutUri(String uri) {
+  /**
+   * Return length of the path part of a URI; that is without query and fragment.
+   * @param uri request URI
+   * @return length of path
+   */
+  public static int cutUri(String uri) {
     int len = uri.indexOf('?');
     if (len == -1) {
       len = uri.length();
@@ -433,6 +441,30 @@ public class RoutingEntry {
     this.delegateCors = delegateCors;
   }
 
+  public CacheDescriptor getCache() {
+    return cache;
+  }
+
+  public void setCache(CacheDescriptor cache) {
+    this.cache = cache;
+  }
+
+  public TimeoutDescriptor getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(TimeoutDescriptor timeout) {
+    this.timeout = timeout;
+  }
+
+  public RetryDescriptor getRetry() {
+    return retry;
+  }
+
+  public void setRetry(RetryDescriptor retry) {
+    this.retry = retry;
+  }
+
   /**
    * Validate handler of routing entry.
    * May log warnings via ProxyContext.warn.
@@ -467,7 +499,11 @@ public class RoutingEntry {
    * @return empty string if OK; non-empty string with message otherwise
    */
   public String validateFilters(ProxyContext pc, String mod) {
-    return validateCommon(pc, "filters", mod);
+    String err = validateCommon(pc, "filters", mod);
+    if (err.isEmpty() && cache != null) {
+      pc.warn("Module '" + mod + "' filters uses cache. Only handlers are cached");
+    }
+    return err;
   }
 
   private String validateCommon(ProxyContext pc, String section, String mod) {
@@ -485,6 +521,15 @@ public class RoutingEntry {
       return "Bad routing entry, needs a pathPattern or at least a path";
     }
 
+    if (cache != null && (cache.getTtl() == null || cache.getTtl() <= 0)) {
+      return "Bad routing entry, cache needs a positive ttl";
+    }
+    if (timeout != null && !timeout.isValid()) {
+      return "Bad routing entry, timeouts must be positive";
+    }
+    if (retry != null && !retry.isValid()) {
+      return "Bad routing entry, retry values out of range";
+    }
     if ("redirect".equals(type)) {
       if (redirectPath == null || redirectPath.isEmpty()) {
         return "Redirect entry without redirectPath";
@@ -16,6 +16,7 @@ public class TenantDescriptor {
   private String id;
   private String name;
   private String description;
+  private RateLimitDescriptor limits;
 
   public void setName(String name) {
     this.name = name;
@@ -33,6 +34,14 @@ public class TenantDescriptor {
     return description;
   }
 
+  public RateLimitDescriptor getLimits() {
+    return limits;
+  }
+
+  public void setLimits(RateLimitDescriptor limits) {
+    this.limits = limits;
+  }
+
   public String getId() {
     return id;
   }
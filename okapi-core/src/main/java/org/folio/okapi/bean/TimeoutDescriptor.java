@@ -0,0 +1,39 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Timeouts of a routing entry, in milliseconds. firstByte bounds the wait
+ * for data of the module: for the response to start and between parts of
+ * it. total of the handler is the deadline for the whole request, including
+ * filters. Timeouts that are not set are taken from the Okapi configuration.
+ */
+@JsonInclude(Include.NON_NULL)
+public class TimeoutDescriptor {
+
+  private Integer firstByte;
+  private Integer total;
+
+  public Integer getFirstByte() {
+    return firstByte;
+  }
+
+  public void setFirstByte(Integer firstByte) {
+    this.firstByte = firstByte;
+  }
+
+  public Integer getTotal() {
+    return total;
+  }
+
+  public void setTotal(Integer total) {
+    this.total = total;
+  }
+
+  @JsonIgnore
+  public boolean isValid() {
+    return (firstByte == null || firstByte > 0) && (total == null || total > 0);
+  }
+}
@@ -10,14 +10,21 @@ import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.RequestOptions;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.core.spi.cluster.NodeListener;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.CircuitDescriptor;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.HealthDescriptor;
 import org.folio.okapi.bean.LaunchDescriptor;
@@ -28,6 +35,7 @@ import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.service.DeploymentStore;
+import org.folio.okapi.util.CircuitBreaker;
 import org.folio.okapi.util.LockedTypedMap1;
 import org.folio.okapi.util.LockedTypedMap2;
 import org.folio.okapi.util.OkapiError;
@@ -42,6 +50,9 @@ import org.folio.okapi.util.OkapiError;
 @java.lang.SuppressWarnings({"squid:S1192"})
 public class DiscoveryManager implements NodeListener {
   private final Logger logger = OkapiLogger.get();
+  private static final String EVENT_NAME = "discoveryUpdate";
+  // published on this node with the URL of an instance that left the snapshot
+  static final String EVENT_INSTANCE_REMOVED = "discoveryInstanceRemoved";
 
   private final LockedTypedMap2<DeploymentDescriptor> deployments
       = new LockedTypedMap2<>(DeploymentDescriptor.class);
@@ -53,6 +64,11 @@ public class DiscoveryManager implements NodeListener {
   private final DeploymentStore deploymentStore;
   private final Messages messages = Messages.getInstance();
   private DeliveryOptions deliveryOptions;
+  // immutable copy of running instances (alive nodes only) for the proxy
+  private volatile Map<String, List<DeploymentDescriptor>> snapshot = Collections.emptyMap();
+  private final AtomicLong snapshotSeq = new AtomicLong();
+  private final Map<String, Long> snapshotPending = new ConcurrentHashMap<>();
+  private CircuitBreaker circuitBreaker = new CircuitBreaker(new JsonObject());
 
   /**
    * Initialize discovery manager.
@@ -64,7 +80,114 @@ public class DiscoveryManager implements NodeListener {
     this.httpClient = vertx.createHttpClient();
     deliveryOptions = new DeliveryOptions().setSendTimeout(300000); // 5 minutes
     return deployments.init(vertx, "discoveryList").compose(x ->
-        nodes.init(vertx, "discoveryNodes"));
+        nodes.init(vertx, "discoveryNodes"))
+        .compose(x -> {
+          consumeDiscoveryUpdated();
+          return refreshSnapshot();
+        });
+  }
+
+  private void consumeDiscoveryUpdated() {
+    vertx.eventBus().consumer(EVENT_NAME, res -> {
+      String srvcId = (String) res.body();
+      Future<Void> future = srvcId == null ? refreshSnapshot() : refreshSnapshot(srvcId);
+      future.onFailure(e -> logger.warn("discovery refresh failed: {}", e.getMessage(), e));
+    });
+  }
+
+  /**
+   * Update own snapshot and tell other nodes to update theirs.
+   * @param srvcId service that changed; null for all services
+   * @return async result, completed when own snapshot is updated
+   */
+  private Future<Void> publishUpdate(String srvcId) {
+    Future<Void> future = srvcId == null ? refreshSnapshot() : refreshSnapshot(srvcId);
+    return future.recover(e -> {
+      logger.warn("discovery refresh failed: {}", e.getMessage(), e);
+      return Future.succeededFuture();
+    }).onComplete(x -> vertx.eventBus().publish(EVENT_NAME, srvcId));
+  }
+
+  private Future<Void> refreshSnapshot() {
+    return deployments.getKeys().compose(keys -> {
+      List<Future> futures = new LinkedList<>();
+      for (String srvcId : keys) {
+        futures.add(refreshSnapshot(srvcId));
+      }
+      for (String srvcId : snapshot.keySet()) {
+        if (!keys.contains(srvcId)) {
+          futures.add(refreshSnapshot(srvcId));
+        }
+      }
+      return CompositeFuture.all(futures).mapEmpty();
+    });
+  }
+
+  private Future<Void> refreshSnapshot(String srvcId) {
+    long seq = snapshotSeq.incrementAndGet();
+    snapshotPending.put(srvcId, seq);
+    return get(srvcId).map(list -> {
+      // a later refresh for the same service wins, whatever the completion order
+      if (snapshotPending.remove(srvcId, seq)) {
+        setSnapshot(srvcId, list);
+      }
+      return null;
+    });
+  }
+
+  private synchronized void setSnapshot(String srvcId, List<DeploymentDescriptor> list) {
+    Map<String, List<DeploymentDescriptor>> m = new HashMap<>(snapshot);
+    List<DeploymentDescriptor> old;
+    if (list.isEmpty()) {
+      old = m.remove(srvcId);
+    } else {
+      old = m.put(srvcId, Collections.unmodifiableList(list));
+    }
+    snapshot = Collections.unmodifiableMap(m);
+    if (old != null) {
+      for (DeploymentDescriptor dd : old) {
+        if (!isListed(dd, list)) {
+          instanceRemoved(dd);
+        }
+      }
+    }
+  }
+
+  private static boolean isListed(DeploymentDescriptor dd, List<DeploymentDescriptor> list) {
+    for (DeploymentDescriptor dd1 : list) {
+      if (Objects.equals(dd.getInstId(), dd1.getInstId())
+          && Objects.equals(dd.getUrl(), dd1.getUrl())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Forget state kept for an instance that is gone. A later instance may be
+   * deployed on the same URL, as ports are handed out again.
+   */
+  private void instanceRemoved(DeploymentDescriptor dd) {
+    String url = dd.getUrl();
+    if (url == null) {
+      return;
+    }
+    logger.debug("instance {} of {} at {} removed", dd.getInstId(), dd.getSrvcId(), url);
+    circuitBreaker.remove(url);
+    vertx.eventBus().publish(EVENT_INSTANCE_REMOVED, url);
+  }
+
+  /**
+   * Get running instances of a service from the local snapshot.
+   *
+   * <p>The snapshot is updated when deployments or nodes change, so this is
+   * a cheap map lookup without a shared map access or JSON decoding. It may
+   * lag behind changes made on other nodes for a short while.
+   * @param srvcId service ID (module ID)
+   * @return instances; empty list if none are known
+   */
+  List<DeploymentDescriptor> getSnapshot(String srvcId) {
+    return snapshot.getOrDefault(srvcId, Collections.emptyList());
   }
 
   /**
@@ -94,6 +217,14 @@ public class DiscoveryManager implements NodeListener {
     this.moduleManager = mgr;
   }
 
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
   Future<Void> add(DeploymentDescriptor md) {
     return deployments.getKeys().compose(res -> {
       Future<Void> future = Future.succeededFuture();
@@ -108,7 +239,7 @@ public class DiscoveryManager implements NodeListener {
       }
       return future.compose(res2 -> {
         return deployments.add(md.getSrvcId(), md.getInstId(), md);
-      }).mapEmpty();
+      }).compose(res2 -> publishUpdate(md.getSrvcId()));
     });
   }
 
@@ -238,7 +369,8 @@ public class DiscoveryManager implements NodeListener {
   }
 
   Future<Boolean> remove(String srvcId, String instId) {
-    return deployments.remove(srvcId, instId);
+    return deployments.remove(srvcId, instId)
+        .compose(res -> publishUpdate(srvcId).map(res));
   }
 
   private boolean isAlive(DeploymentDescriptor md, Collection<NodeDescriptor> nodes) {
@@ -452,11 +584,31 @@ public class DiscoveryManager implements NodeListener {
     return getNonEmpty(srvcId).compose(res -> healthList(res));
   }
 
+  Future<List<CircuitDescriptor>> circuits() {
+    return get().map(list -> {
+      List<CircuitDescriptor> all = new LinkedList<>();
+      for (DeploymentDescriptor dd : list) {
+        CircuitDescriptor cd = new CircuitDescriptor();
+        cd.setSrvcId(dd.getSrvcId());
+        cd.setInstId(dd.getInstId());
+        String url = dd.getUrl();
+        cd.setUrl(url);
+        cd.setState(url == null ? CircuitBreaker.CLOSED : circuitBreaker.getState(url));
+        if (url != null) {
+          cd.setFailures(circuitBreaker.getFailures(url));
+          cd.setRetryAfter(circuitBreaker.getRetryAfterMs(url));
+        }
+        all.add(cd);
+      }
+      return all;
+    });
+  }
+
   Future<Void> addNode(NodeDescriptor nd) {
     if (clusterManager != null) {
       nd.setNodeId(clusterManager.getNodeId());
     }
-    return nodes.put(nd.getNodeId(), nd);
+    return nodes.put(nd.getNodeId(), nd).compose(x -> publishUpdate(null));
   }
 
   /**
@@ -541,8 +693,10 @@ public class DiscoveryManager implements NodeListener {
 
   @Override
   public void nodeLeft(String nodeID) {
-    nodes.remove(nodeID).onComplete(res ->
-        logger.info("node.remove {} result={}", nodeID, res.result()));
+    nodes.remove(nodeID).onComplete(res -> {
+      logger.info("node.remove {} result={}", nodeID, res.result());
+      publishUpdate(null);
+    });
   }
 
   /**
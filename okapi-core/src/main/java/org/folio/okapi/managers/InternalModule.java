@@ -20,6 +20,7 @@ import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.EnvEntry;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.NodeDescriptor;
+import org.folio.okapi.bean.PhaseTimingDescriptor;
 import org.folio.okapi.bean.PullDescriptor;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
@@ -32,12 +33,13 @@ import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.util.GraphDot;
 import org.folio.okapi.util.ModuleUtil;
 import org.folio.okapi.util.OkapiError;
+import org.folio.okapi.util.PhaseTimings;
 import org.folio.okapi.util.ProxyContext;
 import org.folio.okapi.util.TenantInstallOptions;
 
 /**
  * Okapi's built-in module. Managing /_/ endpoints.
- * /_/proxy/modules /_/proxy/tenants /_/proxy/health /_/proxy/pull
+ * /_/proxy/modules /_/proxy/tenants /_/proxy/health /_/proxy/timings /_/proxy/pull
  * /_/deployment /_/discovery /_/env /_/version etc
  * Note that the endpoint /_/invoke/ can not be handled here, as the proxy must
  * read the request body before invoking this built-in module, and /_/invoke
@@ -55,6 +57,7 @@ public class InternalModule {
   private final EnvManager envManager;
   private final PullManager pullManager;
   private final String okapiVersion;
+  private PhaseTimings phaseTimings;
   private static final String INTERFACE_VERSION = "1.9";
   private final Messages messages = Messages.getInstance();
 
@@ -81,6 +84,10 @@ public class InternalModule {
     logger.info("InternalModule starting okapiversion={}", okapiVersion);
   }
 
+  public void setPhaseTimings(PhaseTimings phaseTimings) {
+    this.phaseTimings = phaseTimings;
+  }
+
   /**
    * Return module descriptor for okapi itself.
    * @param okapiVersion Okapi version; null and "0.0.0" will be assumed
@@ -185,6 +192,12 @@ public class InternalModule {
         + "    \"permissionsRequired\" : [ \"okapi.discovery.health.get\" ], "
         + "    \"type\" : \"internal\" "
         + "   }, "
+        + "   {" // discovery, circuits
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/discovery/circuits\","
+        + "    \"permissionsRequired\" : [ \"okapi.discovery.health.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, "
         + "   {" // discovery, nodes
         + "    \"methods\" :  [ \"GET\" ],"
         + "    \"pathPattern\" : \"/_/discovery/nodes\","
@@ -315,6 +328,12 @@ public class InternalModule {
         + "    \"permissionsRequired\" : [  \"okapi.proxy.health.get\" ], "
         + "    \"type\" : \"internal\" "
         + "   },"
+        + "   {" // proxy, timings
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/proxy/timings\","
+        + "    \"permissionsRequired\" : [  \"okapi.proxy.health.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   },"
         + "   {" // proxy, pull
         + "    \"methods\" :  [ \"POST\" ],"
         + "    \"pathPattern\" : \"/_/proxy/pull/modules\","
@@ -663,6 +682,10 @@ public class InternalModule {
         return Future.failedFuture(
             new OkapiError(ErrorType.USER, messages.getMessage("11601", tenantId)));
       }
+      Future<Void> limits = validateLimits(td);
+      if (limits.failed()) {
+        return limits.mapEmpty();
+      }
       Tenant t = new Tenant(td);
       return tenantManager.insert(t).compose(res ->
         location(pc, tenantId, null, Json.encodePrettily(t.getDescriptor())));
@@ -678,6 +701,10 @@ public class InternalModule {
         return Future.failedFuture(new OkapiError(ErrorType.USER,
             messages.getMessage("11602", td.getId(), tenantId)));
       }
+      Future<Void> limits = validateLimits(td);
+      if (limits.failed()) {
+        return limits.mapEmpty();
+      }
       Tenant t = new Tenant(td);
       return tenantManager.updateDescriptor(td).compose(res ->
           Future.succeededFuture(Json.encodePrettily(t.getDescriptor())));
@@ -686,6 +713,17 @@ public class InternalModule {
     }
   }
 
+  private Future<Void> validateLimits(TenantDescriptor td) {
+    if (td.getLimits() != null) {
+      String msg = td.getLimits().validate();
+      if (msg != null) {
+        return Future.failedFuture(new OkapiError(ErrorType.USER,
+            messages.getMessage("11609", td.getId(), msg)));
+      }
+    }
+    return Future.succeededFuture();
+  }
+
   private Future<String> listTenants() {
     return tenantManager.list().compose(res ->
         Future.succeededFuture(Json.encodePrettily(res)));
@@ -1021,6 +1059,11 @@ public class InternalModule {
         .compose(res -> Future.succeededFuture(Json.encodePrettily(res)));
   }
 
+  private Future<String> discoveryCircuits() {
+    return discoveryManager.circuits()
+        .compose(res -> Future.succeededFuture(Json.encodePrettily(res)));
+  }
+
   private Future<String> listEnv() {
     return envManager.get().compose(res -> Future.succeededFuture(Json.encodePrettily(res)));
   }
@@ -1063,6 +1106,12 @@ public class InternalModule {
     return Future.succeededFuture("[ ]");
   }
 
+  private Future<String> getTimings() {
+    List<PhaseTimingDescriptor> list = phaseTimings == null
+        ? Collections.emptyList() : phaseTimings.list();
+    return Future.succeededFuture(Json.encodePrettily(list));
+  }
+
   private Future<String> getVersion(ProxyContext pc) {
     String v = okapiVersion;
     if (v == null) {
@@ -1197,6 +1246,10 @@ public class InternalModule {
       if (n == 4 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
         return getHealth();
       }
+      // /_/proxy/timings
+      if (n == 4 && segments[3].equals("timings") && m.equals(HttpMethod.GET)) {
+        return getTimings();
+      }
 
     } // _/proxy
 
@@ -1271,6 +1324,10 @@ public class InternalModule {
       if (n == 6 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
         return discoveryHealthOne(decodedSegs[4], decodedSegs[5]);
       }
+      // /_/discovery/circuits
+      if (n == 4 && segments[3].equals("circuits") && m.equals(HttpMethod.GET)) {
+        return discoveryCircuits();
+      }
     } // discovery
 
     if (n >= 2 && p.startsWith("/_/env")
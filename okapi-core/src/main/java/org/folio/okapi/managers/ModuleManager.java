@@ -36,10 +36,11 @@ public class ModuleManager {
   private final Logger logger = OkapiLogger.get();
   private TenantManager tenantManager = null;
   private String mapName = "modules";
-  private static final String EVENT_NAME = "moduleUpdate";
+  static final String EVENT_NAME = "moduleUpdate";
   private final LockedTypedMap1<ModuleDescriptor> modules
       = new LockedTypedMap1<>(ModuleDescriptor.class);
-  private final Map<String,ModuleDescriptor> enabledModulesCache = new HashMap<>();
+  // shared by the proxy event loops
+  private final Map<String,ModuleDescriptor> enabledModulesCache = new ConcurrentHashMap<>();
   private final ModuleStore moduleStore;
   private Vertx vertx;
   private final Messages messages = Messages.getInstance();
@@ -1,19 +1,19 @@
 package org.folio.okapi.managers;
 
 import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.HttpClient;
-import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.RequestOptions;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
@@ -22,6 +22,7 @@ import io.vertx.core.streams.WriteStream;
 import io.vertx.ext.web.RoutingContext;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -29,26 +30,51 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.CacheDescriptor;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RetryDescriptor;
 import org.folio.okapi.bean.RoutingEntry;
 import org.folio.okapi.bean.RoutingEntry.ProxyType;
 import org.folio.okapi.bean.Tenant;
+import org.folio.okapi.bean.TimeoutDescriptor;
+import org.folio.okapi.common.Config;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.OkapiClient;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.OkapiToken;
+import org.folio.okapi.common.OkapiTokenCache;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.common.logging.FolioLoggingContext;
+import org.folio.okapi.util.AuthCache;
+import org.folio.okapi.util.BodyBuffer;
+import org.folio.okapi.util.CircuitBreaker;
 import org.folio.okapi.util.CorsHelper;
+import org.folio.okapi.util.HttpClientPools;
+import org.folio.okapi.util.InstanceTracker;
+import org.folio.okapi.util.LatencyTracker;
+import org.folio.okapi.util.LoadBalancer;
 import org.folio.okapi.util.MetricsHelper;
 import org.folio.okapi.util.OkapiError;
+import org.folio.okapi.util.PhaseTimings;
+import org.folio.okapi.util.PipelineCache;
 import org.folio.okapi.util.ProxyContext;
+import org.folio.okapi.util.RequestLogStream;
+import org.folio.okapi.util.ResponseCache;
+import org.folio.okapi.util.ResponseCompressor;
+import org.folio.okapi.util.RetryBudget;
+import org.folio.okapi.util.RoutingIndex;
+import org.folio.okapi.util.SingleFlight;
+import org.folio.okapi.util.Span;
+import org.folio.okapi.util.TenantLimiter;
+import org.folio.okapi.util.TraceContext;
+import org.folio.okapi.util.Tracer;
 
 
 /**
@@ -57,8 +83,7 @@ import org.folio.okapi.util.ProxyContext;
  */
 // S1168: Empty arrays and collections should be returned instead of null
 // S1192: String literals should not be duplicated
-// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
-@java.lang.SuppressWarnings({"squid:S1168", "squid:S1192", "squid:S2245"})
+@java.lang.SuppressWarnings({"squid:S1168", "squid:S1192"})
 public class ProxyService {
 
   private static final Logger logger = OkapiLogger.get();
@@ -67,14 +92,44 @@ public class ProxyService {
   private final TenantManager tenantManager;
   private final DiscoveryManager discoveryManager;
   private final InternalModule internalModule;
+  private Context internalContext;
   private final String okapiUrl;
   private final Vertx vertx;
-  private final HttpClient httpClient;
-  // for load balancing, so security is not an issue
-  private static final Random random = new Random();
+  private final HttpClientPools httpClients;
+  private final InstanceTracker instanceTracker = new InstanceTracker();
+  private final LatencyTracker latencyTracker = new LatencyTracker();
+  private final RetryBudget retryBudget;
+  private static final String RETRY = "retry";
+  private static final String HEDGE = "hedge";
+  private final Map<String, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+  private final String loadBalancing;
   private final int waitMs;
+  private final int bufferSize;
+  private final long maxBodySize; // 0 for no limit
+  private final int proxyTimeout; // total; 0 for none
+  private final int proxyFirstByteTimeout; // 0 for none
+  private final int requestLogBufferSize;
+  private final long requestLogSpillSize;
+  private final int requestLogTimeout;
+  private final String requestLogOverflow;
   private static final String REDIRECTQUERY = "redirect-query"; // See redirectProxy below
+  // headers of a connection, rather than of a request, that can not cross HTTP versions
+  private static final String[] CONNECTION_HEADERS = {
+      "Connection", "HTTP2-Settings", "Keep-Alive", "Proxy-Connection", "Upgrade"
+  };
   private final Messages messages = Messages.getInstance();
+  private final Map<String, RoutingIndex> routingIndexes = new ConcurrentHashMap<>();
+  private final PipelineCache pipelineCache = new PipelineCache();
+  private final AuthCache authCache;
+  private final ResponseCache responseCache;
+  private final ResponseCompressor compressor; // null if disabled
+  private final SingleFlight singleFlight;
+  private final TenantLimiter tenantLimiter = new TenantLimiter();
+  private final int coalesceWaitMs;
+  private static final String COALESCE_NAME = "coalesce";
+  private final OkapiTokenCache tokenCache;
+  private final PhaseTimings phaseTimings = new PhaseTimings();
+  private final Tracer tracer;
 
   /**
    * Construct Proxy service.
@@ -92,12 +147,50 @@ public class ProxyService {
     this.moduleManager = modules;
     this.tenantManager = tm;
     this.internalModule = im;
+    im.setPhaseTimings(phaseTimings);
     this.discoveryManager = dm;
     this.okapiUrl = okapiUrl;
     this.waitMs = config.getInteger("logWaitMs", 0);
-    HttpClientOptions opt = new HttpClientOptions();
-    opt.setMaxPoolSize(1000);
-    httpClient = vertx.createHttpClient(opt);
+    this.bufferSize = config.getInteger("proxyBufferSize", 1048576);
+    this.maxBodySize = config.getLong("proxyMaxBodySize", 1073741824L);
+    this.proxyTimeout = config.getInteger("proxyTimeout", 0);
+    this.proxyFirstByteTimeout = config.getInteger("proxyFirstByteTimeout", 0);
+    this.requestLogBufferSize = config.getInteger("requestLogBufferSize", 1048576);
+    this.requestLogSpillSize = config.getLong("requestLogSpillSize", 104857600L);
+    this.requestLogTimeout = config.getInteger("requestLogTimeout", 30000);
+    this.requestLogOverflow = Config.getSysConf("requestLogOverflow", RequestLogStream.SPILL,
+        config);
+    if (!RequestLogStream.isPolicy(requestLogOverflow)) {
+      throw new IllegalArgumentException("Unknown requestLogOverflow: " + requestLogOverflow);
+    }
+    this.authCache = new AuthCache(config.getInteger("authCacheTtl", 0),
+        config.getInteger("authCacheSize", 10000));
+    this.responseCache = new ResponseCache(config.getLong("responseCacheSize", 67108864L),
+        config.getInteger("responseCacheEntrySize", 1048576),
+        config.getBoolean("responseCacheOffHeap", false));
+    this.compressor = config.getBoolean("responseCompression", false)
+        ? new ResponseCompressor(config.getInteger("responseCompressionLevel", 6),
+        config.getLong("responseCompressionMinSize", 1024L)) : null;
+    this.singleFlight = new SingleFlight(config.getInteger("coalesceMaxWaiters", 0),
+        config.getInteger("coalesceMaxBodySize", 1048576));
+    this.coalesceWaitMs = config.getInteger("coalesceWaitMs", 5000);
+    this.tokenCache = new OkapiTokenCache(config.getInteger("tokenCacheSize", 10000));
+    this.loadBalancing = Config.getSysConf("loadBalancing", LoadBalancer.RANDOM, config);
+    this.retryBudget = new RetryBudget(config.getDouble("retryBudgetRatio", 0.1),
+        config.getInteger("retryBudgetBurst", 10));
+    getLoadBalancer(loadBalancing); // fail early on bad configuration
+    httpClients = new HttpClientPools(vertx, config);
+    tracer = new Tracer(vertx, config);
+    vertx.eventBus().consumer(ModuleManager.EVENT_NAME, res -> {
+      invalidateRouting(null);
+      String moduleId = (String) res.body(); // published when a module is removed
+      httpClients.close(moduleId);
+      latencyTracker.removePrefix(moduleId + " ");
+    });
+    vertx.eventBus().localConsumer(DiscoveryManager.EVENT_INSTANCE_REMOVED,
+        res -> instanceTracker.remove((String) res.body()));
+    vertx.eventBus().consumer(TenantManager.EVENT_MODULES_UPDATE,
+        res -> invalidateRouting((String) res.body()));
   }
 
   /**
@@ -117,53 +210,87 @@ public class ProxyService {
         + url.replaceFirst("[?#].*$", "..") // remove params
         + " : " + statusCode + " " + pc.timeDiff());
     pc.logResponse(mi.getModuleDescriptor().getId(), url, statusCode);
+    pc.hopDone(mi, phaseTimings);
+    endHopSpan(pc, statusCode, null);
+  }
+
+  /**
+   * Start span for request to module if the request is traced. The
+   * traceparent header for the module is added to the hop headers.
+   * @param pc proxy context
+   * @param mi module instance
+   */
+  private void startHopSpan(ProxyContext pc, ModuleInstance mi) {
+    endHopSpan(pc, 0, null); // request log modules do not report back
+    String phase = PhaseTimings.phase(mi);
+    String module = mi.getModuleDescriptor().getId();
+    Span span = tracer.startChild(pc.getSpan(), phase + " " + module);
+    if (span == null) {
+      return;
+    }
+    span.setRemoteService(module)
+        .tag("okapi.phase", phase)
+        .tag("okapi.module", module)
+        .tag("http.url", mi.getUrl());
+    pc.setHopSpan(span);
+    mi.getHopHeaders().set(TraceContext.TRACEPARENT, span.traceparent());
   }
 
-  private boolean match(RoutingEntry e, HttpServerRequest req) {
-    return e.match(req.uri(), req.method().name());
+  private void endHopSpan(ProxyContext pc, int statusCode, String error) {
+    Span span = pc.getHopSpan();
+    if (span == null) {
+      return;
+    }
+    pc.setHopSpan(null);
+    if (statusCode != 0) {
+      span.tag("http.status_code", statusCode);
+    }
+    tracer.finish(span.tag("error", error));
   }
 
-  private boolean resolveRedirects(ProxyContext pc,
-                                   List<ModuleInstance> mods, RoutingEntry re,
-                                   List<ModuleDescriptor> enabledModules,
-                                   final String loop, final String uri) {
+  private void endSpans(ProxyContext pc) {
+    endHopSpan(pc, 0, null);
+    Span span = pc.getSpan();
+    int statusCode = pc.getCtx().response().getStatusCode();
+    span.tag("okapi.tenant", pc.getTenant())
+        .tag("http.status_code", statusCode);
+    if (statusCode >= 500) {
+      span.tag("error", Integer.toString(statusCode));
+    }
+    tracer.finish(span);
+  }
+
+  private boolean resolveRedirects(ProxyContext pc, List<PipelineCache.Step> steps,
+                                   PipelineCache.Step step, RoutingIndex routingIndex,
+                                   final String loop) {
 
     RoutingContext ctx = pc.getCtx();
+    RoutingEntry re = step.getRoutingEntry();
     if (re.getProxyType() == ProxyType.REDIRECT) { // resolve redirects
       boolean found = false;
+      final String uri = step.getUri(ctx.request().uri());
       final String redirectPath = re.getRedirectPath();
-      for (ModuleDescriptor trymod : enabledModules) {
-        for (RoutingEntry tryre : trymod.getFilterRoutingEntries()) {
-          if (tryre.match(redirectPath, ctx.request().method().name())) {
-            final String newUri = re.getRedirectUri(uri);
-            found = true;
-            pc.debug("resolveRedirects: "
-                + ctx.request().method() + " " + uri
-                + " => " + trymod + " " + newUri);
-            if (loop.contains(redirectPath + " ")) {
-              pc.responseError(500, messages.getMessage("10100", loop, redirectPath));
-              return false;
-            }
-            ModuleInstance mi = new ModuleInstance(trymod, tryre, newUri,
-                ctx.request().method(), false);
-            mods.add(mi);
-            if (!resolveRedirects(pc, mods, tryre, enabledModules,
-                loop + " -> " + redirectPath, newUri)) {
-              return false;
-            }
-          }
+      for (RoutingIndex.Match m : routingIndex.lookup(redirectPath,
+          ctx.request().method().name(), null, RoutingIndex.FILTERS_FIRST)) {
+        ModuleDescriptor trymod = m.getModuleDescriptor();
+        PipelineCache.Step tryStep = step.redirect(trymod, m.getRoutingEntry(), m.isHandler());
+        found = true;
+        if (pc.isDebugEnabled()) {
+          pc.debug("resolveRedirects: "
+              + ctx.request().method() + " " + uri
+              + " => " + trymod + " " + re.getRedirectUri(uri));
         }
-        for (RoutingEntry tryre : trymod.getProxyRoutingEntries()) {
-          if (tryre.match(redirectPath, ctx.request().method().name())) {
-            final String newUri = re.getRedirectUri(uri);
-            found = true;
-            pc.debug("resolveRedirects: "
-                + ctx.request().method() + " " + uri
-                + " => " + trymod + " " + newUri);
-            ModuleInstance mi = new ModuleInstance(trymod, tryre,
-                newUri, ctx.request().method(), true);
-            mods.add(mi);
-          }
+        if (m.isHandler()) {
+          steps.add(tryStep);
+          continue;
+        }
+        if (loop.contains(redirectPath + " ")) {
+          pc.responseError(500, messages.getMessage("10100", loop, redirectPath));
+          return false;
+        }
+        steps.add(tryStep);
+        if (!resolveRedirects(pc, steps, tryStep, routingIndex, loop + " -> " + redirectPath)) {
+          return false;
         }
       }
       if (!found) {
@@ -175,73 +302,80 @@ public class ProxyService {
   }
 
   /**
-   * Builds the pipeline of modules to be invoked for a request. Sets the
-   * default authToken for each ModuleInstance. Later, these can be overwritten
-   * by the ModuleTokens from the auth, if needed.
+   * Return routing index for the modules enabled for a tenant.
+   * The index is rebuilt when the set of enabled modules changes.
+   * @param tenantId tenant
+   * @param enabledModules modules enabled for tenant
+   * @return routing index
+   */
+  private RoutingIndex getRoutingIndex(String tenantId, List<ModuleDescriptor> enabledModules) {
+    RoutingIndex routingIndex = routingIndexes.get(tenantId);
+    if (routingIndex == null || !routingIndex.isFor(enabledModules)) {
+      routingIndex = new RoutingIndex(enabledModules);
+      routingIndexes.put(tenantId, routingIndex);
+      pipelineCache.invalidate(tenantId);
+    }
+    return routingIndex;
+  }
+
+  private void invalidateRouting(String tenantId) {
+    if (tenantId == null) {
+      routingIndexes.clear();
+      pipelineCache.invalidateAll();
+      authCache.invalidateAll();
+      responseCache.invalidateAll();
+    } else {
+      routingIndexes.remove(tenantId);
+      pipelineCache.invalidate(tenantId);
+      authCache.invalidate(tenantId);
+      responseCache.invalidate(tenantId);
+    }
+  }
+
+  /**
+   * Resolve pipeline for the routing entries matching a request: sorts by
+   * phase and level, resolves redirects and checks that there is a handler.
    *
    * @param pc ProxyContext
-   * @param enabledModules modules enabled for the current tenant
-   * @return a list of ModuleInstances. In case of error, sets up ctx and returns null.
+   * @param routingIndex routing index for tenant
+   * @param matches matching routing entries
+   * @return pipeline template; null on error with response set up in ctx
    */
-  private List<ModuleInstance> getModulesForRequest(ProxyContext pc,
-                                                    List<ModuleDescriptor> enabledModules) {
+  private PipelineCache.Template resolvePipeline(ProxyContext pc, RoutingIndex routingIndex,
+                                                 List<RoutingIndex.Match> matches) {
 
-    List<ModuleInstance> mods = new ArrayList<>();
     HttpServerRequest req = pc.getCtx().request();
-    final String id = req.getHeader(XOkapiHeaders.MODULE_ID);
-    pc.debug("getMods: Matching " + req.method() + " " + req.uri());
-
-    for (ModuleDescriptor md : enabledModules) {
-      pc.debug("getMods:  looking at " + md.getId());
-      List<RoutingEntry> rr = null;
-      if (id == null) {
-        rr = md.getProxyRoutingEntries();
-      } else if (id.equals(md.getId())) {
-        rr = md.getMultiRoutingEntries();
-      }
-      if (rr != null) {
-        for (RoutingEntry re : rr) {
-          if (match(re, req)) {
-            ModuleInstance mi = new ModuleInstance(md, re, req.uri(), req.method(), true);
-            mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
-            mods.add(mi);
-            pc.setHandlerModuleInstance(mi);
-            pc.debug("getMods:   Added " + md.getId() + " "
-                + re.getPathPattern() + " " + re.getPath() + " "
-                + re.getPhase() + "/" + re.getLevel());
-            break;
-          }
-        }
+    List<PipelineCache.Step> steps = new ArrayList<>();
+    PipelineCache.Step handler = null;
+    for (RoutingIndex.Match m : matches) {
+      ModuleDescriptor md = m.getModuleDescriptor();
+      RoutingEntry re = m.getRoutingEntry();
+      PipelineCache.Step step = new PipelineCache.Step(md, re, m.isHandler(),
+          Collections.emptyList());
+      steps.add(step);
+      if (m.isHandler()) {
+        handler = step;
+      } else if (!resolveRedirects(pc, steps, step, routingIndex, "")) {
+        return null;
       }
-      rr = md.getFilterRoutingEntries();
-      for (RoutingEntry re : rr) {
-        if (match(re, req)) {
-          ModuleInstance mi = new ModuleInstance(md, re, req.uri(), req.method(), false);
-          mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
-          mods.add(mi);
-          if (!resolveRedirects(pc, mods, re, enabledModules, "", req.uri())) {
-            return null;
-          }
-          pc.debug("getMods:   Added " + md.getId() + " "
-              + re.getPathPattern() + " " + re.getPath() + " "
-              + re.getPhase() + "/" + re.getLevel());
-        }
+      if (pc.isDebugEnabled()) {
+        pc.debug("getMods:   Added " + md.getId() + " "
+            + re.getPathPattern() + " " + re.getPath() + " "
+            + re.getPhase() + "/" + re.getLevel());
       }
     }
-    Comparator<ModuleInstance> cmp = (ModuleInstance a, ModuleInstance b)
+    Comparator<PipelineCache.Step> cmp = (PipelineCache.Step a, PipelineCache.Step b)
         -> a.getRoutingEntry().getPhaseLevel().compareTo(b.getRoutingEntry().getPhaseLevel());
-    mods.sort(cmp);
+    steps.sort(cmp);
 
     // Check that our pipeline has a real module in it, not just filters,
     // so that we can return a proper 404 for requests that only hit auth
-    pc.debug("Checking filters for " + req.uri());
+    pc.debug("Checking filters for {}", req.uri());
     boolean found = false;
-    for (ModuleInstance inst : mods) {
-      pc.debug("getMods: Checking " + inst.getRoutingEntry().getPathPattern() + " "
-          + "'" + inst.getRoutingEntry().getPhase() + "' "
-          + "'" + inst.getRoutingEntry().getLevel() + "' "
-      );
-      if (inst.isHandler()) {
+    for (PipelineCache.Step step : steps) {
+      pc.debug("getMods: Checking {} '{}' '{}'", step.getRoutingEntry().getPathPattern(),
+          step.getRoutingEntry().getPhase(), step.getRoutingEntry().getLevel());
+      if (step.isHandler()) {
         found = true;
       }
     }
@@ -249,6 +383,60 @@ public class ProxyService {
       pc.responseError(404, messages.getMessage("10103", req.path(), pc.getTenant()));
       return null;
     }
+    return new PipelineCache.Template(steps, handler);
+  }
+
+  /**
+   * Builds the pipeline of modules to be invoked for a request. Sets the
+   * default authToken for each ModuleInstance. Later, these can be overwritten
+   * by the ModuleTokens from the auth, if needed.
+   *
+   * @param pc ProxyContext
+   * @param enabledModules modules enabled for the current tenant
+   * @return a list of ModuleInstances. In case of error, sets up ctx and returns null.
+   */
+  private List<ModuleInstance> getModulesForRequest(ProxyContext pc,
+                                                    List<ModuleDescriptor> enabledModules) {
+
+    HttpServerRequest req = pc.getCtx().request();
+    final String id = req.getHeader(XOkapiHeaders.MODULE_ID);
+    pc.debug("getMods: Matching {} {}", req.method(), req.uri());
+
+    RoutingIndex routingIndex = getRoutingIndex(pc.getTenant(), enabledModules);
+    List<RoutingIndex.Match> matches = new ArrayList<>();
+    ModuleDescriptor handlerModule = null;
+    for (RoutingIndex.Match m : routingIndex.lookup(req.uri(), req.method().name(), id,
+        RoutingIndex.HANDLERS_FIRST)) {
+      if (m.isHandler()) {
+        if (m.getModuleDescriptor() == handlerModule) {
+          continue; // only first matching handler of a module
+        }
+        handlerModule = m.getModuleDescriptor();
+      }
+      matches.add(m);
+    }
+    List<Object> key = PipelineCache.key(req.method().name(), matches);
+    PipelineCache.Template template = pipelineCache.get(pc.getTenant(), key);
+    if (template == null) {
+      template = resolvePipeline(pc, routingIndex, matches);
+      if (template == null) {
+        return null;
+      }
+      pipelineCache.put(pc.getTenant(), key, template);
+    }
+    List<ModuleInstance> mods = new ArrayList<>(template.getSteps().size());
+    for (PipelineCache.Step step : template.getSteps()) {
+      ModuleInstance mi = new ModuleInstance(step.getModuleDescriptor(), step.getRoutingEntry(),
+          step.getUri(req.uri()), req.method(), step.isHandler());
+      mi.setHeaderPlan(step.getHeaderPlan());
+      if (!step.isRedirected()) {
+        mi.setAuthToken(req.headers().get(XOkapiHeaders.TOKEN));
+      }
+      if (step == template.getHandler()) {
+        pc.setHandlerModuleInstance(mi);
+      }
+      mods.add(mi);
+    }
     return mods;
   }
 
@@ -286,34 +474,27 @@ public class ProxyService {
 
     OkapiToken okapiToken = null;
 
-    if (tenantId == null) {
+    if (tenantId == null || userId == null) {
       try {
-        okapiToken = new OkapiToken(ctx.request().getHeader(XOkapiHeaders.TOKEN));
+        okapiToken = tokenCache.get(ctx.request().getHeader(XOkapiHeaders.TOKEN));
       } catch (IllegalArgumentException e) {
-        pc.responseError(400, messages.getMessage("10105", e.getMessage()));
-        throw new IllegalArgumentException(e);
+        if (tenantId == null) {
+          pc.responseError(400, messages.getMessage("10105", e.getMessage()));
+          throw new IllegalArgumentException(e);
+        }
       }
     }
 
     // userId does not exist all the time
-    if (userId == null) {
-      if (okapiToken == null) {
-        try {
-          okapiToken = new OkapiToken(ctx.request().getHeader(XOkapiHeaders.TOKEN));
-        } catch (IllegalArgumentException e) {
-          okapiToken = null;
-        }
-      }
-      if (okapiToken != null) {
-        pc.setUserId(okapiToken.getUserIdWithoutValidation());
-      }
+    if (userId == null && okapiToken != null) {
+      pc.setUserId(okapiToken.getUserIdWithoutValidation());
     }
 
     if (tenantId == null) {
       tenantId = okapiToken.getTenantWithoutValidation();
       if (tenantId != null) {
         ctx.request().headers().add(XOkapiHeaders.TENANT, tenantId);
-        pc.debug("Okapi: Recovered tenant from token: '" + tenantId + "'");
+        pc.debug("Okapi: Recovered tenant from token: '{}'", tenantId);
       }
       if (tenantId == null) {
         logger.debug("No tenantId, defaulting to " + XOkapiHeaders.SUPERTENANT_ID);
@@ -332,8 +513,7 @@ public class ProxyService {
    */
   private void authHeaders(List<ModuleInstance> modlist,
                            MultiMap requestHeaders, ProxyContext pc) {
-    // Sanitize important headers from the incoming request
-    sanitizeAuthHeaders(requestHeaders);
+    // Auth headers of the incoming request are stripped by the header plan
     Set<String> req = new HashSet<>();
     Set<String> want = new HashSet<>();
     Set<String> extraperms = new HashSet<>();
@@ -364,22 +544,24 @@ public class ProxyService {
       }
     } // mod loop
     if (!req.isEmpty()) {
-      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_REQUIRED + " " + String.join(",", req));
-      requestHeaders.add(XOkapiHeaders.PERMISSIONS_REQUIRED, String.join(",", req));
+      String v = String.join(",", req);
+      pc.debug("authHeaders: {} {}", XOkapiHeaders.PERMISSIONS_REQUIRED, v);
+      requestHeaders.add(XOkapiHeaders.PERMISSIONS_REQUIRED, v);
     }
     if (!want.isEmpty()) {
-      pc.debug("authHeaders: " + XOkapiHeaders.PERMISSIONS_DESIRED + " " + String.join(",", want));
-      requestHeaders.add(XOkapiHeaders.PERMISSIONS_DESIRED, String.join(",", want));
+      String v = String.join(",", want);
+      pc.debug("authHeaders: {} {}", XOkapiHeaders.PERMISSIONS_DESIRED, v);
+      requestHeaders.add(XOkapiHeaders.PERMISSIONS_DESIRED, v);
     }
     // Add the X-Okapi-Module-Permissions even if empty. That causes auth to return
     // an empty X-Okapi-Module-Token, which will tell us that we have done the mod
     // perms, and no other module should be allowed to do the same.
     String mpj = Json.encode(modperms);
-    pc.debug("authHeaders: " + XOkapiHeaders.MODULE_PERMISSIONS + " " + mpj);
+    pc.debug("authHeaders: {} {}", XOkapiHeaders.MODULE_PERMISSIONS, mpj);
     requestHeaders.add(XOkapiHeaders.MODULE_PERMISSIONS, mpj);
     if (!extraperms.isEmpty()) {
       String epj = Json.encode(extraperms);
-      pc.debug("authHeaders: " + XOkapiHeaders.EXTRA_PERMISSIONS + " " + epj);
+      pc.debug("authHeaders: {} {}", XOkapiHeaders.EXTRA_PERMISSIONS, epj);
       requestHeaders.add(XOkapiHeaders.EXTRA_PERMISSIONS, epj);
     }
   }
@@ -389,19 +571,32 @@ public class ProxyService {
     for (ModuleInstance instance : instances) {
       if (instance.getRoutingEntry().getProxyType() == ProxyType.INTERNAL) {
         instance.setUrl("");
-      } else {
-        future = future.compose(x -> discoveryManager.get(instance.getModuleDescriptor().getId())
-            .compose(res -> {
-              DeploymentDescriptor dd = pickInstance(res);
-              if (dd == null) {
-                return Future.failedFuture(new OkapiError(ErrorType.NOT_FOUND,
-                    "No running module instance found for "
-                        + instance.getModuleDescriptor().getId()));
-              }
-              instance.setUrl(dd.getUrl());
-              return Future.succeededFuture();
-            }));
+        continue;
       }
+      final String srvcId = instance.getModuleDescriptor().getId();
+      List<DeploymentDescriptor> running = discoveryManager.getSnapshot(srvcId);
+      if (!running.isEmpty()) {
+        DeploymentDescriptor dd = pickAvailable(running);
+        if (dd == null) {
+          return Future.failedFuture(circuitOpen(srvcId, running));
+        }
+        instance.setUrl(dd.getUrl());
+        continue;
+      }
+      // not in snapshot (yet); ask the shared map
+      future = future.compose(x -> discoveryManager.get(srvcId)
+          .compose(res -> {
+            if (res.isEmpty()) {
+              return Future.failedFuture(new OkapiError(ErrorType.NOT_FOUND,
+                  "No running module instance found for " + srvcId));
+            }
+            DeploymentDescriptor dd1 = pickAvailable(res);
+            if (dd1 == null) {
+              return Future.failedFuture(circuitOpen(srvcId, res));
+            }
+            instance.setUrl(dd1.getUrl());
+            return Future.succeededFuture();
+          }));
     }
     return future;
   }
@@ -421,19 +616,91 @@ public class ProxyService {
       }
     }
     sanitizeAuthHeaders(hres.headers());
+    compressResponse(hres, pc);
     hres.headers().remove("Content-Length");
     hres.headers().remove("Transfer-Encoding");
+    removeConnectionHeaders(pc, hres.headers());
     if (hres.getStatusCode() != 204) {
       hres.setChunked(true);
     }
   }
 
+  /**
+   * Remove connection headers when the client uses HTTP/2: those of the
+   * upgrade from HTTP/1.1 in the request, and those of the HTTP/1.1
+   * connection to a module in the response, which HTTP/2 forbids.
+   */
+  private static void removeConnectionHeaders(ProxyContext pc, MultiMap headers) {
+    if (pc.getCtx().request().version() != HttpVersion.HTTP_2) {
+      return;
+    }
+    for (String name : CONNECTION_HEADERS) {
+      headers.remove(name);
+    }
+  }
+
+  /**
+   * Negotiate compression of response with the client. The body must then
+   * be written to {@link #responseStream(ProxyContext)}. A strong ETag of
+   * the module is made weak, as the compressed body differs.
+   */
+  private void compressResponse(HttpServerResponse hres, ProxyContext pc) {
+    HttpServerRequest req = pc.getCtx().request();
+    if (compressor == null || req.method() == HttpMethod.HEAD) {
+      return;
+    }
+    String encoding = compressor.encoding(req.getHeader("Accept-Encoding"),
+        hres.getStatusCode(), hres.headers());
+    if (encoding == null) {
+      return;
+    }
+    pc.setContentEncoding(encoding);
+    hres.putHeader("Content-Encoding", encoding);
+    hres.headers().add("Vary", "Accept-Encoding");
+    String etag = hres.headers().get("ETag");
+    if (etag != null && etag.startsWith("\"")) {
+      hres.putHeader("ETag", "W/" + etag);
+    }
+  }
+
+  /**
+   * Return stream for the body of the response to the client.
+   * @return compressing stream if negotiated; the response itself otherwise
+   */
+  private WriteStream<Buffer> responseStream(ProxyContext pc) {
+    RoutingContext ctx = pc.getCtx();
+    if (pc.getContentEncoding() == null) {
+      return ctx.response();
+    }
+    ResponseCompressor.Stream stream = compressor.stream(pc.getContentEncoding(),
+        ctx.response());
+    ctx.addEndHandler(x -> stream.release());
+    return stream;
+  }
+
+  /**
+   * End response with a body that is known in full, such as a cached one;
+   * compressed if negotiated.
+   */
+  private void endResponse(ProxyContext pc, Buffer body) {
+    HttpServerResponse hres = pc.getCtx().response();
+    hres.putHeader("Content-Length", Integer.toString(body.length()));
+    compressResponse(hres, pc);
+    if (pc.getContentEncoding() == null) {
+      hres.end(body);
+      return;
+    }
+    hres.headers().remove("Content-Length");
+    hres.setChunked(true);
+    responseStream(pc).end(body);
+  }
+
   /**
    * Process the auth module response. Set tokens for those modules that
    * received one.
    */
-  private void authResponse(HttpClientResponse res, ProxyContext pc) {
-    String modTok = res.headers().get(XOkapiHeaders.MODULE_TOKENS);
+  private void authResponse(MultiMap headers, ProxyContext pc) {
+    String modTok = headers.get(XOkapiHeaders.MODULE_TOKENS);
     if (modTok != null && !modTok.isEmpty()) {
       JsonObject jo = new JsonObject(modTok);
       for (ModuleInstance mi : pc.getModList()) {
@@ -441,11 +708,11 @@ public class ProxyService {
         if (jo.containsKey(id)) {
           String tok = jo.getString(id);
           mi.setAuthToken(tok);
-          pc.debug("authResponse: token for " + id + ": " + tok);
+          pc.debug("authResponse: token for {}: {}", id, tok);
         } else if (jo.containsKey("_")) {
           String tok = jo.getString("_");
           mi.setAuthToken(tok);
-          pc.debug("authResponse: Default (_) token for " + id + ": " + tok);
+          pc.debug("authResponse: Default (_) token for {}: {}", id, tok);
         }
       }
     }
@@ -469,28 +736,31 @@ public class ProxyService {
    * Pass the X-headers from a response to the next request. Catches the auth
    * response headers too.
    */
-  private void relayToRequest(HttpClientResponse res, ProxyContext pc,
+  private void relayToRequest(MultiMap headers, ProxyContext pc,
                               ModuleInstance mi) {
     if (XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase())
-        && res.headers().contains(XOkapiHeaders.MODULE_TOKENS)) {
-      authResponse(res, pc);
+        && headers.contains(XOkapiHeaders.MODULE_TOKENS)) {
+      authResponse(headers, pc);
     }
     // Sanitize both request headers (to remove the auth stuff we may have added)
     // and response headers (to remove stuff the auth module may have added)
-    sanitizeAuthHeaders(res.headers());
+    sanitizeAuthHeaders(headers);
     sanitizeAuthHeaders(pc.getCtx().request().headers());
-    for (String s : res.headers().names()) {
+    for (String s : headers.names()) {
       if (s.startsWith("X-") || s.startsWith("x-")) {
-        final String v = res.headers().get(s);
+        final String v = headers.get(s);
         pc.getCtx().request().headers().set(s, v);
       }
     }
   }
 
   private void log(ProxyContext pc, HttpClientRequest creq) {
-    pc.debug(creq.getMethod().name() + " " + creq.getURI());
+    if (!pc.isDebugEnabled()) {
+      return;
+    }
+    pc.debug("{} {}", creq.getMethod().name(), creq.getURI());
     for (Map.Entry<String, String> next : creq.headers()) {
-      pc.debug(" " + next.getKey() + ":" + next.getValue());
+      pc.debug(" {}:{}", next.getKey(), next.getValue());
     }
   }
 
@@ -519,6 +789,14 @@ public class ProxyService {
     // it will get read into a buffer somewhere.
 
     ProxyContext pc = new ProxyContext(ctx, waitMs);
+    Span span = tracer.startServer(ctx.request().headers(), ctx.request().method().name());
+    if (span != null) {
+      span.tag("http.method", ctx.request().method().name())
+          .tag("http.path", ctx.request().path())
+          .tag("okapi.request_id", ctx.request().getHeader(XOkapiHeaders.REQUEST_ID));
+      pc.setSpan(span);
+      ctx.addBodyEndHandler(x -> endSpans(pc));
+    }
 
     // It would be nice to pass the request-id to the client, so it knows what
     // to look for in Okapi logs. But that breaks the schemas, and RMB-based
@@ -543,6 +821,7 @@ public class ProxyService {
         pc.getUserId());
 
     sanitizeAuthHeaders(headers);
+    removeConnectionHeaders(pc, headers);
     tenantManager.get(tenantId).onComplete(gres -> {
       if (gres.failed()) {
         stream.resume();
@@ -550,6 +829,10 @@ public class ProxyService {
         return;
       }
       Tenant tenant = gres.result();
+      if (!admit(pc, tenant)) {
+        stream.resume();
+        return;
+      }
       moduleManager.getEnabledModules(tenant).onComplete(mres -> {
         if (mres.failed()) {
           stream.resume();
@@ -577,49 +860,246 @@ public class ProxyService {
         pc.setModList(l);
 
         pc.logRequest(ctx, tenantId);
+        ctx.addBodyEndHandler(x -> pc.requestDone(phaseTimings));
 
         headers.set(XOkapiHeaders.URL, okapiUrl);
         headers.remove(XOkapiHeaders.MODULE_ID);
         headers.set(XOkapiHeaders.REQUEST_IP, ctx.request().remoteAddress().host());
         headers.set(XOkapiHeaders.REQUEST_TIMESTAMP, "" + System.currentTimeMillis());
         headers.set(XOkapiHeaders.REQUEST_METHOD, ctx.request().method().name());
+        if (!setDeadline(pc, headers)) {
+          stream.resume();
+          return;
+        }
 
-        resolveUrls(l).onComplete(res -> {
-          if (res.failed()) {
-            stream.resume();
-            pc.responseError(OkapiError.getType(res.cause()), res.cause());
-          } else {
-            List<HttpClientRequest> clientRequest = new LinkedList<>();
-            proxyR(l.iterator(), pc, stream, null, clientRequest);
-          }
-        });
+        String flightKey = coalesceKey(pc, l);
+        if (flightKey == null) {
+          proxyPipeline(pc, l, stream);
+        } else {
+          proxyCoalesce(pc, l, stream, flightKey);
+        }
       });
 
     });
   }
 
-  private static void clientsEnd(Buffer bcontent, List<HttpClientRequest> clientRequestList) {
+  /**
+   * Admit request within the limits of the tenant.
+   * @return true if admitted; false if rejected with status 429
+   */
+  private boolean admit(ProxyContext pc, Tenant tenant) {
+    TenantLimiter.Rejection rejection = tenantLimiter.acquire(tenant.getId(),
+        tenant.getDescriptor().getLimits());
+    if (rejection == null) {
+      if (tenant.getDescriptor().getLimits() != null) {
+        pc.getCtx().addEndHandler(x -> tenantLimiter.release(tenant.getId()));
+      }
+      return true;
+    }
+    MetricsHelper.recordTenantRejection(tenant.getId(), rejection.getReason());
+    long ms = rejection.getRetryAfterMs();
+    pc.getCtx().response().putHeader("Retry-After", Long.toString((ms + 999) / 1000));
+    pc.responseError(429, messages.getMessage(
+        TenantLimiter.RATE.equals(rejection.getReason()) ? "10112" : "10113", tenant.getId()));
+    return false;
+  }
+
+  private void proxyPipeline(ProxyContext pc, List<ModuleInstance> l, ReadStream<Buffer> stream) {
+    RoutingContext ctx = pc.getCtx();
+    resolveUrls(l).onComplete(res -> {
+      if (res.failed()) {
+        stream.resume();
+        if (res.cause() instanceof CircuitBreaker.OpenException) {
+          long ms = ((CircuitBreaker.OpenException) res.cause()).getRetryAfterMs();
+          ctx.response().putHeader("Retry-After", Long.toString((ms + 999) / 1000));
+          pc.responseError(503, res.cause().getMessage());
+          return;
+        }
+        pc.responseError(OkapiError.getType(res.cause()), res.cause());
+      } else {
+        List<HttpClientRequest> clientRequest = new LinkedList<>();
+        proxyR(l.iterator(), pc, stream, null, clientRequest);
+      }
+    });
+  }
+
+  /**
+   * Set deadline of request from the total timeout of the handler or the
+   * Okapi configuration, and the deadline of the caller, if any. The deadline
+   * is passed to modules in X-Okapi-Deadline. When it passes, outstanding
+   * requests to modules are reset and the client gets status 504.
+   * @return false if the deadline of the caller has passed already; the
+   *     client gets status 504 and no module is called
+   */
+  private boolean setDeadline(ProxyContext pc, MultiMap headers) {
+    long now = System.currentTimeMillis();
+    long deadline = 0;
+    ModuleInstance handler = pc.getHandlerModuleInstance();
+    if (handler != null && handler.getRoutingEntry().getProxyType() != ProxyType.INTERNAL) {
+      TimeoutDescriptor timeout = handler.getRoutingEntry().getTimeout();
+      long total = timeout != null && timeout.getTotal() != null
+          ? timeout.getTotal() : proxyTimeout;
+      if (total > 0) {
+        deadline = now + total;
+      }
+    }
+    String caller = headers.get(XOkapiHeaders.DEADLINE);
+    if (caller != null) {
+      try {
+        long d = Long.parseLong(caller);
+        if (d > 0 && d <= now) {
+          pc.responseError(504, messages.getMessage("10116", caller));
+          return false;
+        }
+        if (d > 0 && (deadline == 0 || d < deadline)) {
+          deadline = d;
+        }
+      } catch (NumberFormatException e) {
+        pc.debug("Ignoring bad {}: {}", XOkapiHeaders.DEADLINE, caller);
+      }
+    }
+    if (deadline == 0) {
+      headers.remove(XOkapiHeaders.DEADLINE);
+      return true;
+    }
+    headers.set(XOkapiHeaders.DEADLINE, Long.toString(deadline));
+    pc.setDeadline(deadline);
+    long ms = Math.max(1, deadline - now);
+    long timer = vertx.setTimer(ms, x -> deadlineExpired(pc, ms));
+    pc.getCtx().addEndHandler(x -> vertx.cancelTimer(timer));
+    return true;
+  }
+
+  private void deadlineExpired(ProxyContext pc, long ms) {
+    pc.expire();
+    HttpServerResponse res = pc.getCtx().response();
+    if (res.ended() || res.closed()) {
+      return;
+    }
+    if (res.headWritten()) {
+      pc.warn("Deadline of " + ms + " ms passed while sending response");
+      res.reset();
+      return;
+    }
+    if (pc.getContentEncoding() != null) {
+      res.headers().remove("Content-Encoding");
+    }
+    pc.responseError(504, messages.getMessage("10115", ms));
+  }
+
+  /**
+   * Return key for coalescing the request with identical ones in flight.
+   * Only GET requests whose pipeline is auth filters followed by a handler
+   * are coalesced; the response of those depends on nothing but the request.
+   * @return key; null if the request is not to be coalesced
+   */
+  private String coalesceKey(ProxyContext pc, List<ModuleInstance> l) {
+    HttpServerRequest req = pc.getCtx().request();
+    ModuleInstance handler = pc.getHandlerModuleInstance();
+    if (!singleFlight.isEnabled() || req.method() != HttpMethod.GET || handler == null
+        || l.get(l.size() - 1) != handler) {
+      return null;
+    }
+    ProxyType proxyType = handler.getRoutingEntry().getProxyType();
+    if (proxyType != ProxyType.REQUEST_RESPONSE && proxyType != ProxyType.REQUEST_RESPONSE_1_0) {
+      return null;
+    }
+    for (ModuleInstance mi : l) {
+      if (mi != handler && !XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase())) {
+        return null;
+      }
+    }
+    return SingleFlight.key(pc.getTenant(), req.uri(), req.headers());
+  }
+
+  /**
+   * Proxy request, or wait for the response of an identical request in
+   * flight. Waiting ends after coalesceWaitMs; then, and if the response of
+   * the other request can not be shared, the request is proxied after all.
+   */
+  private void proxyCoalesce(ProxyContext pc, List<ModuleInstance> l, ReadStream<Buffer> stream,
+                             String flightKey) {
+    Promise<SingleFlight.Response> shared = Promise.promise();
+    SingleFlight.Flight flight = singleFlight.join(flightKey, res -> {
+      if (res.succeeded()) {
+        shared.tryComplete(res.result());
+      } else {
+        shared.tryFail(res.cause());
+      }
+    });
+    if (flight != null) {
+      MetricsHelper.recordCacheLookup(COALESCE_NAME, false);
+      pc.setFlight(flight);
+      // on end and on close; the response may not have been shared then
+      pc.getCtx().addEndHandler(x -> flight.abandon());
+      proxyPipeline(pc, l, stream);
+      return;
+    }
+    long timer = vertx.setTimer(coalesceWaitMs, x -> shared.tryFail("timeout"));
+    shared.future().onComplete(res -> {
+      vertx.cancelTimer(timer);
+      if (pc.isExpired()) {
+        return;
+      }
+      MetricsHelper.recordCacheLookup(COALESCE_NAME, res.succeeded());
+      if (res.failed()) {
+        pc.debug("proxyCoalesce: {}", res.cause().getMessage());
+        proxyPipeline(pc, l, stream);
+        return;
+      }
+      stream.resume();
+      SingleFlight.Response response = res.result();
+      HttpServerResponse hres = pc.getCtx().response();
+      pc.logResponse(pc.getHandlerModuleInstance().getModuleDescriptor().getId(), "coalesced",
+          response.getStatus());
+      if (pc.getSpan() != null) {
+        pc.getSpan().tag("okapi.coalesced", "true");
+      }
+      response.copyHeaders(hres.headers());
+      hres.setStatusCode(response.getStatus());
+      endResponse(pc, response.getBody());
+      MetricsHelper.recordHttpServerProcessingTime(pc.getSample(), pc.getTenant(),
+          response.getStatus(), HttpMethod.GET.name(), pc.getHandlerModuleInstance());
+    });
+  }
+
+  private static void clientsEnd(BodyBuffer bcontent,
+                                 List<HttpClientRequest> clientRequestList) {
     for (HttpClientRequest r : clientRequestList) {
-      r.end(bcontent);
+      clientEnd(bcontent, r);
     }
   }
 
+  /**
+   * Send body and end request to module. The request is reset if the body
+   * can not be sent, so that it does not hang.
+   */
+  private static void clientEnd(BodyBuffer bcontent, HttpClientRequest r) {
+    bcontent.end(r).onFailure(e -> r.reset(0, e));
+  }
+
   private void proxyResponseImmediate(ProxyContext pc, ReadStream<Buffer> readStream,
-                                      Buffer bcontent, List<HttpClientRequest> clientRequestList) {
+                                      BodyBuffer bcontent,
+                                      List<HttpClientRequest> clientRequestList) {
 
     RoutingContext ctx = pc.getCtx();
     if (pc.getAuthRes() != 0 && (pc.getAuthRes() < 200 || pc.getAuthRes() >= 300)) {
       if (bcontent == null) {
         readStream.resume();
       }
-      bcontent = pc.getAuthResBody();
+      Buffer authBody = pc.getAuthResBody();
+      bcontent = authBody == null ? null : BodyBuffer.of(authBody);
     }
     if (bcontent != null) {
       pc.closeTimer();
       clientsEnd(bcontent, clientRequestList);
-      ctx.response().end(bcontent);
+      if (pc.getContentEncoding() == null) {
+        bcontent.end(ctx.response());
+      } else {
+        bcontent.end(responseStream(pc));
+      }
     } else {
-      streamHandle(pc, readStream, ctx.response(), clientRequestList);
+      streamHandle(pc, readStream, responseStream(pc), clientRequestList);
     }
     MetricsHelper.recordHttpServerProcessingTime(pc.getSample(), pc.getTenant(),
         ctx.response().getStatusCode(), ctx.request().method().name(),
@@ -628,31 +1108,45 @@ public class ProxyService {
 
   private void proxyClientFailure(ProxyContext pc, ModuleInstance mi, Throwable res) {
     String e = res.getMessage();
+    endHopSpan(pc, 0, e);
+    if (pc.isExpired()) {
+      return; // response already sent
+    }
     pc.warn("proxyRequest failure: " + mi.getUrl() + ": " + e);
     MetricsHelper.recordHttpClientError(pc.getTenant(), mi.getMethod().name(),
         mi.getRoutingEntry().getStaticPath());
+    if (res instanceof TimeoutException) {
+      pc.responseError(504, messages.getMessage("10114",
+          mi.getModuleDescriptor().getId(), firstByteTimeout(mi)));
+      return;
+    }
     pc.responseError(500, messages.getMessage("10107",
         mi.getModuleDescriptor().getId(), mi.getUrl(), e));
   }
 
+  private long firstByteTimeout(ModuleInstance mi) {
+    TimeoutDescriptor timeout = mi.getRoutingEntry().getTimeout();
+    if (timeout != null && timeout.getFirstByte() != null) {
+      return timeout.getFirstByte();
+    }
+    return proxyFirstByteTimeout;
+  }
+
   private void proxyRequestHttpClient(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, Buffer bcontent, List<HttpClientRequest> clientRequestList,
+      ProxyContext pc, BodyBuffer bcontent, List<HttpClientRequest> clientRequestList,
       ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
-    String url = makeUrl(mi, ctx);
     HttpMethod meth = ctx.request().method();
-    Future<HttpClientRequest> fut = httpClient.request(
-        new RequestOptions().setMethod(meth).setAbsoluteURI(url));
+    Future<HttpClientRequest> fut = requestInstance(pc, mi);
     fut.onFailure(res -> proxyClientFailure(pc, mi, res));
     fut.onSuccess(clientRequest -> {
       final Timer.Sample sample = MetricsHelper.getTimerSample();
       copyHeaders(clientRequest, ctx, mi);
-      pc.trace("ProxyRequestHttpClient request buf '"
-          + bcontent + "'");
+      pc.trace("ProxyRequestHttpClient request buf '{}'", bcontent);
       clientsEnd(bcontent, clientRequestList);
-      clientRequest.end(bcontent);
+      clientEnd(bcontent, clientRequest);
       log(pc, clientRequest);
       clientRequest.onFailure(res -> proxyClientFailure(pc, mi, res));
       clientRequest.onSuccess(res -> {
@@ -662,7 +1156,7 @@ public class ProxyService {
         if (newIt.hasNext()) {
           makeTraceHeader(mi, res.statusCode(), pc);
           pc.closeTimer();
-          relayToRequest(res, pc, mi);
+          relayToRequest(res.headers(), pc, mi);
           proxyR(newIt, pc, null, bcontent, new LinkedList<>());
         } else {
           relayToResponse(ctx.response(), res, pc);
@@ -676,12 +1170,12 @@ public class ProxyService {
   }
 
   private void proxyRequestLog(Iterator<ModuleInstance> it,
-                               ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                               ProxyContext pc, ReadStream<Buffer> stream,
+                               BodyBuffer bcontent,
                                List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
-    Future<HttpClientRequest> fut = httpClient.request(
-        new RequestOptions().setMethod(ctx.request().method()).setAbsoluteURI(makeUrl(mi, ctx)));
+    Future<HttpClientRequest> fut = requestInstance(pc, mi);
     fut.onSuccess(clientRequest -> {
       clientRequestList.add(clientRequest);
       clientRequest.setChunked(true);
@@ -704,68 +1198,62 @@ public class ProxyService {
     });
   }
 
-  private void proxyStreamToBuffer(ReadStream<Buffer> stream, Buffer bcontent,
-                                   Handler<Buffer> handle) {
+  private void proxyStreamToBuffer(ProxyContext pc, ReadStream<Buffer> stream,
+                                   BodyBuffer bcontent, Handler<BodyBuffer> handle) {
     if (bcontent != null) {
       handle.handle(bcontent);
-    } else {
-      final Buffer incoming = Buffer.buffer();
-      stream.handler(incoming::appendBuffer);
-      stream.endHandler(v -> handle.handle(incoming));
-      stream.resume();
+      return;
     }
+    BodyBuffer.fill(vertx, stream, bufferSize, maxBodySize).onComplete(res -> {
+      if (res.cause() instanceof BodyBuffer.TooLargeException) {
+        pc.responseError(413, messages.getMessage("10117", Long.toString(maxBodySize)));
+        return;
+      }
+      if (res.failed()) {
+        pc.warn("proxyStreamToBuffer failure", res.cause());
+        pc.responseError(500, res.cause().getMessage());
+        return;
+      }
+      BodyBuffer body = res.result();
+      if (body.isSpilled()) {
+        pc.getCtx().addEndHandler(x -> body.close());
+      }
+      handle.handle(body);
+    });
   }
 
   private void proxyRequestOnly(Iterator<ModuleInstance> it,
-                                ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                                ProxyContext pc, ReadStream<Buffer> stream,
+                                BodyBuffer bcontent,
                                 List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
+    proxyStreamToBuffer(pc, stream, bcontent, res
         -> proxyRequestHttpClient(it, pc, res, clientRequestList, mi)
     );
   }
 
   private void proxyRequestResponse10(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+      ProxyContext pc, ReadStream<Buffer> stream,
+      BodyBuffer bcontent,
       List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
-        -> proxyRequestResponse(it, pc, null, res, clientRequestList, mi)
+    // an HTTP/1.0 module needs the length in advance; use the one of the client if known
+    final HttpServerRequest req = pc.getCtx().request();
+    final String length = req.getHeader("Content-Length");
+    if (bcontent == null && stream == req && length != null
+        && req.getHeader("Transfer-Encoding") == null) {
+      proxyRequestResponse(it, pc, stream, null, clientRequestList, mi, length);
+      return;
+    }
+    proxyStreamToBuffer(pc, stream, bcontent, res
+        -> proxyRequestResponse(it, pc, null, res, clientRequestList, mi, null)
     );
   }
 
   private void copyHeaders(HttpClientRequest clientRequest, RoutingContext ctx, ModuleInstance mi) {
-    int sz = 0;
-    int limit = 2000; // all headers dumped
-    for (String name : ctx.request().headers().names()) {
-      List<String> values = ctx.request().headers().getAll(name);
-      if (values.size() > 1) {
-        logger.warn("dup HTTP header {}: {}", name, values);
-      }
-      for (String value : values) {
-        sz += name.length() + 4 + value.length(); // 4 for colon blank cr lf
-      }
-    }
-    if (sz > limit && logger.isDebugEnabled()) {
-      logger.debug("Request headers size={}", sz);
-      dumpHeaders(ctx.request().headers());
-    }
-    clientRequest.headers().setAll(ctx.request().headers());
-    clientRequest.headers().remove("Content-Length");
-    final String phase = mi.getRoutingEntry().getPhase();
-    if (!XOkapiHeaders.FILTER_AUTH.equals(phase)) {
-      clientRequest.headers().remove(XOkapiHeaders.ADDITIONAL_TOKEN);
-    }
-  }
-
-  private static void dumpHeaders(MultiMap headers) {
-    for (String name : headers.names()) {
-      List<String> values = headers.getAll(name);
-      for (String value : values) {
-        logger.debug("{}: {}", name, value);
-      }
-    }
+    mi.getHeaderPlan().apply(ctx.request().headers(), mi.getHopHeaders(),
+        clientRequest.headers());
   }
 
   private void fixupXOkapiToken(ModuleDescriptor md, MultiMap reqHeaders, MultiMap resHeaders) {
@@ -781,14 +1269,34 @@ public class ProxyService {
     }
   }
 
-  private static void streamHandle(ProxyContext pc, ReadStream<Buffer> readStream,
-                                   WriteStream<Buffer> mainWriteStream,
-                                   List<HttpClientRequest> logWriteStreams) {
+  /**
+   * Stream content to main stream and copies. Requests to log modules do not
+   * push back on the content, so that only the main stream sets the pace.
+   * Copies are given up when the client goes away, or when they are not
+   * complete within requestLogTimeout after the response has ended.
+   */
+  private void streamHandle(ProxyContext pc, ReadStream<Buffer> readStream,
+                            WriteStream<Buffer> mainWriteStream,
+                            List<? extends WriteStream<Buffer>> logWriteStreams) {
+    // main stream last, so that copies are complete when the response ends
     List<WriteStream<Buffer>> writeStreams = new LinkedList<>();
-    writeStreams.add(mainWriteStream);
     for (WriteStream<Buffer> w : logWriteStreams) {
-      writeStreams.add(w);
+      if (!(w instanceof HttpClientRequest)) {
+        writeStreams.add(w);
+        continue;
+      }
+      RequestLogStream copy = new RequestLogStream(vertx, w, requestLogBufferSize,
+          requestLogSpillSize, requestLogOverflow);
+      pc.getCtx().addEndHandler(res -> {
+        if (res.failed()) {
+          copy.close();
+        } else if (!copy.isDone()) {
+          vertx.setTimer(requestLogTimeout, x -> copy.close());
+        }
+      });
+      writeStreams.add(copy);
     }
+    writeStreams.add(mainWriteStream);
     pumpOneToMany(readStream, writeStreams);
     readStream.exceptionHandler(e
         -> pc.warn("streamHandle: content exception ", e));
@@ -830,22 +1338,42 @@ public class ProxyService {
   }
 
   private void proxyRequestResponse(Iterator<ModuleInstance> it,
-                                    ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                                    ProxyContext pc, ReadStream<Buffer> stream,
+                                    BodyBuffer bcontent,
                                     List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
+    proxyRequestResponse(it, pc, stream, bcontent, clientRequestList, mi, null);
+  }
+
+  /**
+   * Proxy request with request and response body.
+   * @param contentLength length of stream; null to send stream chunked
+   */
+  private void proxyRequestResponse(Iterator<ModuleInstance> it,
+                                    ProxyContext pc, ReadStream<Buffer> stream,
+                                    BodyBuffer bcontent,
+                                    List<HttpClientRequest> clientRequestList, ModuleInstance mi,
+                                    String contentLength) {
 
     RoutingContext ctx = pc.getCtx();
-    Future<HttpClientRequest> fut = httpClient.request(
-        new RequestOptions().setMethod(ctx.request().method()).setAbsoluteURI(makeUrl(mi, ctx)));
+    if (retryPolicy(pc, mi, stream, bcontent, clientRequestList) != null) {
+      proxyReplayable(it, pc, stream, mi);
+      return;
+    }
+    Future<HttpClientRequest> fut = requestInstance(pc, mi);
     fut.onFailure(res -> proxyClientFailure(pc, mi, res));
     fut.onSuccess(clientRequest -> {
       final Timer.Sample sample = MetricsHelper.getTimerSample();
       copyHeaders(clientRequest, ctx, mi);
       if (bcontent != null) {
-        pc.trace("proxyRequestResponse request buf '" + bcontent + "'");
+        pc.trace("proxyRequestResponse request buf '{}'", bcontent);
         clientsEnd(bcontent, clientRequestList);
-        clientRequest.end(bcontent);
+        clientEnd(bcontent, clientRequest);
       } else {
-        clientRequest.setChunked(true);
+        if (contentLength != null) {
+          clientRequest.putHeader("Content-Length", contentLength);
+        } else {
+          clientRequest.setChunked(true);
+        }
         for (HttpClientRequest r : clientRequestList) {
           r.setChunked(true);
         }
@@ -853,37 +1381,408 @@ public class ProxyService {
       }
       log(pc, clientRequest);
       clientRequest.onFailure(res -> proxyClientFailure(pc, mi, res));
-      clientRequest.onSuccess(res -> {
-        MetricsHelper.recordHttpClientResponse(sample, pc.getTenant(), res.statusCode(),
-            ctx.request().method().name(), mi);
-        fixupXOkapiToken(mi.getModuleDescriptor(), ctx.request().headers(), res.headers());
-        Iterator<ModuleInstance> newIt = getNewIterator(it, mi, res.statusCode());
-        if (res.getHeader(XOkapiHeaders.STOP) == null && newIt.hasNext()) {
-          makeTraceHeader(mi, res.statusCode(), pc);
-          relayToRequest(res, pc, mi);
-          final String ct = res.getHeader("Content-Type");
-          if (ct != null) {
-            ctx.request().headers().set("Content-Type", ct);
+      clientRequest.onSuccess(res -> proxyResponse(it, pc, mi, clientRequest, res, sample));
+    });
+  }
+
+  /**
+   * Pass response of module to the next module of the pipeline, or to the
+   * client.
+   */
+  private void proxyResponse(Iterator<ModuleInstance> it, ProxyContext pc, ModuleInstance mi,
+                             HttpClientRequest clientRequest, HttpClientResponse res,
+                             Timer.Sample sample) {
+    RoutingContext ctx = pc.getCtx();
+    MetricsHelper.recordHttpClientResponse(sample, pc.getTenant(), res.statusCode(),
+        ctx.request().method().name(), mi);
+    fixupXOkapiToken(mi.getModuleDescriptor(), clientRequest.headers(), res.headers());
+    Iterator<ModuleInstance> newIt = getNewIterator(it, mi, res.statusCode());
+    if (res.getHeader(XOkapiHeaders.STOP) == null && newIt.hasNext()) {
+      makeTraceHeader(mi, res.statusCode(), pc);
+      relayToRequest(res.headers(), pc, mi);
+      final String ct = res.getHeader("Content-Type");
+      if (ct != null) {
+        ctx.request().headers().set("Content-Type", ct);
+      }
+      storeResponseInfo(pc, mi, res);
+      res.pause();
+      proxyR(newIt, pc, res, null, new LinkedList<>());
+    } else if (res.statusCode() == 304 && pc.getCacheEntry() != null) {
+      makeTraceHeader(mi, res.statusCode(), pc);
+      proxyCached(pc, responseCache.refresh(pc.getCacheKey(), pc.getCacheEntry(),
+          res.headers(), cacheTtlMs(mi)));
+    } else {
+      relayToResponse(ctx.response(), res, pc);
+      makeTraceHeader(mi, res.statusCode(), pc);
+      List<WriteStream<Buffer>> copies = responseCopies(pc, mi, res);
+      if (copies.isEmpty()) {
+        proxyResponseImmediate(pc, res, null, new LinkedList<>());
+      } else {
+        streamHandle(pc, res, responseStream(pc), copies);
+        MetricsHelper.recordHttpServerProcessingTime(pc.getSample(), pc.getTenant(),
+            res.statusCode(), ctx.request().method().name(), mi);
+      }
+    }
+  }
+
+  /**
+   * Return retry policy that applies to the request to a handler. Only GET
+   * and HEAD requests without body, that are not copied to request-log
+   * modules, can be sent more than once.
+   * @return policy; null if the request is sent once
+   */
+  private static RetryDescriptor retryPolicy(ProxyContext pc, ModuleInstance mi,
+                                             ReadStream<Buffer> stream, BodyBuffer bcontent,
+                                             List<HttpClientRequest> clientRequestList) {
+    RetryDescriptor policy = mi.getRoutingEntry().getRetry();
+    HttpServerRequest req = pc.getCtx().request();
+    if (policy == null || !mi.isHandler() || bcontent != null || stream != req
+        || !clientRequestList.isEmpty()
+        || (req.method() != HttpMethod.GET && req.method() != HttpMethod.HEAD)
+        || req.getHeader("Transfer-Encoding") != null) {
+      return null;
+    }
+    String length = req.getHeader("Content-Length");
+    return length == null || "0".equals(length) ? policy : null;
+  }
+
+  /**
+   * Requests made for one request to a handler that can be sent more than
+   * once. The first response is used; the other requests are reset.
+   */
+  private static final class Attempts {
+    final RetryDescriptor policy;
+    final Timer.Sample sample;
+    final Promise<HttpClientResponse> winner = Promise.promise();
+    final Set<String> tried = new HashSet<>();
+    final List<HttpClientRequest> sent = new LinkedList<>();
+    final Set<HttpClientRequest> cancelled = new HashSet<>();
+    HttpClientRequest request; // of the winner
+    String url; // of the winner
+    int retries;
+    int pending; // requests that have not completed
+    boolean hedged;
+    long timer = -1;
+
+    Attempts(RetryDescriptor policy, Timer.Sample sample) {
+      this.policy = policy;
+      this.sample = sample;
+    }
+
+    boolean isDone() {
+      return winner.future().isComplete();
+    }
+
+    void cancel(HttpClientRequest r) {
+      cancelled.add(r);
+      r.reset();
+    }
+  }
+
+  /**
+   * Proxy request that can be sent more than once: retry when no connection
+   * can be made, and hedge with a request to another instance when the
+   * response is slow, within the retry budget.
+   */
+  private void proxyReplayable(Iterator<ModuleInstance> it, ProxyContext pc,
+                               ReadStream<Buffer> stream, ModuleInstance mi) {
+    stream.resume();
+    retryBudget.deposit();
+    Attempts a = new Attempts(mi.getRoutingEntry().getRetry(), MetricsHelper.getTimerSample());
+    attempt(pc, mi, a, mi.getUrl(), false);
+    a.winner.future()
+        .onFailure(e -> proxyClientFailure(pc, mi, e))
+        .onSuccess(res -> {
+          mi.setUrl(a.url);
+          proxyResponse(it, pc, mi, a.request, res, a.sample);
+        });
+  }
+
+  private void attempt(ProxyContext pc, ModuleInstance mi, Attempts a, String url,
+                       boolean hedge) {
+    a.tried.add(url);
+    a.pending++;
+    requestInstance(pc, mi, url, a.cancelled)
+        .onFailure(e -> {
+          a.pending--;
+          if (!a.isDone() && a.policy.getAttempts() != null
+              && a.retries < a.policy.getAttempts()) {
+            String next = otherInstance(mi, a.tried, true);
+            if (next != null) {
+              if (retryBudget.withdraw()) {
+                a.retries++;
+                MetricsHelper.recordProxyRetry(RETRY, "sent");
+                pc.debug("Retry {} at {}: {}", url, next, e.getMessage());
+                attempt(pc, mi, a, next, hedge);
+                return;
+              }
+              MetricsHelper.recordProxyRetry(RETRY, "budget");
+            }
           }
-          storeResponseInfo(pc, mi, res);
-          res.pause();
-          proxyR(newIt, pc, res, null, new LinkedList<>());
-        } else {
-          relayToResponse(ctx.response(), res, pc);
-          makeTraceHeader(mi, res.statusCode(), pc);
-          proxyResponseImmediate(pc, res, null, new LinkedList<>());
-        }
-      });
+          attemptFailed(a, e);
+        })
+        .onSuccess(clientRequest -> {
+          if (a.isDone()) {
+            a.pending--;
+            a.cancel(clientRequest);
+            return;
+          }
+          a.sent.add(clientRequest);
+          copyHeaders(clientRequest, pc.getCtx(), mi);
+          clientRequest.end();
+          log(pc, clientRequest);
+          final long start = System.nanoTime();
+          clientRequest.onComplete(res -> {
+            a.pending--;
+            if (res.failed()) {
+              if (!a.cancelled.contains(clientRequest)) {
+                attemptFailed(a, res.cause());
+              }
+              return;
+            }
+            latencyTracker.add(latencyKey(mi), (System.nanoTime() - start) / 1000000L);
+            if (a.isDone()) {
+              a.cancel(clientRequest);
+              return;
+            }
+            a.request = clientRequest;
+            a.url = url;
+            vertx.cancelTimer(a.timer);
+            for (HttpClientRequest r : a.sent) {
+              if (r != clientRequest) {
+                a.cancel(r);
+              }
+            }
+            if (hedge) {
+              MetricsHelper.recordProxyRetry(HEDGE, "won");
+            }
+            a.winner.complete(res.result());
+          });
+          scheduleHedge(pc, mi, a);
+        });
+  }
+
+  private void attemptFailed(Attempts a, Throwable e) {
+    if (a.pending == 0) {
+      vertx.cancelTimer(a.timer);
+      a.winner.tryFail(e);
+    }
+  }
+
+  /**
+   * Send a request to another instance if there is no response before the
+   * hedge delay. At most one hedged request is sent.
+   */
+  private void scheduleHedge(ProxyContext pc, ModuleInstance mi, Attempts a) {
+    if (a.hedged || !a.policy.isHedged()) {
+      return;
+    }
+    a.hedged = true;
+    long delay = -1;
+    if (a.policy.getHedgePercentile() != null) {
+      delay = latencyTracker.percentile(latencyKey(mi), a.policy.getHedgePercentile());
+    }
+    if (a.policy.getHedgeDelay() != null) {
+      delay = Math.max(delay, a.policy.getHedgeDelay());
+    }
+    if (delay < 0) {
+      return; // too few response times yet
+    }
+    final long ms = Math.max(1, delay);
+    a.timer = vertx.setTimer(ms, id -> {
+      if (a.isDone() || a.pending == 0 || pc.isExpired()) {
+        return;
+      }
+      String url = otherInstance(mi, a.tried, false);
+      if (url == null) {
+        return;
+      }
+      if (!retryBudget.withdraw()) {
+        MetricsHelper.recordProxyRetry(HEDGE, "budget");
+        return;
+      }
+      MetricsHelper.recordProxyRetry(HEDGE, "sent");
+      pc.debug("Hedge {} at {} after {} ms", a.tried, url, ms);
+      attempt(pc, mi, a, url, true);
     });
   }
 
+  private static String latencyKey(ModuleInstance mi) {
+    return mi.getModuleDescriptor().getId() + " " + mi.getRoutingEntry().getStaticPath();
+  }
+
+  /**
+   * Pick instance of module that has not been tried yet.
+   * @param any whether to pick among all instances if all have been tried
+   * @return URL; null if there is none
+   */
+  private String otherInstance(ModuleInstance mi, Set<String> tried, boolean any) {
+    List<DeploymentDescriptor> running =
+        discoveryManager.getSnapshot(mi.getModuleDescriptor().getId());
+    List<DeploymentDescriptor> other = new ArrayList<>(running.size());
+    for (DeploymentDescriptor dd : running) {
+      if (!tried.contains(dd.getUrl())) {
+        other.add(dd);
+      }
+    }
+    DeploymentDescriptor dd = pickAvailable(other.isEmpty() && any ? running : other);
+    return dd == null ? null : dd.getUrl();
+  }
+
+  private static long cacheTtlMs(ModuleInstance mi) {
+    return mi.getRoutingEntry().getCache().getTtl() * 1000L;
+  }
+
+  /**
+   * Look up the response of a handler with cache policy. Fresh responses
+   * are served from the cache. Expired ones with a validator are kept in the
+   * proxy context for revalidation. Requests with other methods than GET
+   * remove the cached responses of the module for the tenant.
+   * @return true if the response was served from the cache
+   */
+  private boolean responseFromCache(Iterator<ModuleInstance> it, ProxyContext pc,
+                                    ReadStream<Buffer> stream, BodyBuffer bcontent,
+                                    List<HttpClientRequest> clientRequestList,
+                                    ModuleInstance mi) {
+    CacheDescriptor policy = mi.getRoutingEntry().getCache();
+    if (!mi.isHandler() || !responseCache.isEnabled()) {
+      return false;
+    }
+    HttpServerRequest req = pc.getCtx().request();
+    String moduleId = mi.getModuleDescriptor().getId();
+    if (req.method() != HttpMethod.GET) {
+      if (req.method() != HttpMethod.HEAD && req.method() != HttpMethod.OPTIONS) {
+        responseCache.invalidate(pc.getTenant(), moduleId);
+      }
+      return false;
+    }
+    // post filters and request logs must see the response of the module
+    if (policy == null || it.hasNext() || !clientRequestList.isEmpty()
+        || (mi.getRoutingEntry().getProxyType() != ProxyType.REQUEST_RESPONSE
+        && mi.getRoutingEntry().getProxyType() != ProxyType.REQUEST_RESPONSE_1_0)) {
+      return false;
+    }
+    String cacheControl = req.getHeader("Cache-Control");
+    if (cacheControl != null && cacheControl.contains("no-store")) {
+      return false;
+    }
+    String key = ResponseCache.key(pc.getTenant(), moduleId, req.uri(), req.headers(),
+        policy.getVary());
+    pc.setCacheKey(key);
+    if (cacheControl != null && cacheControl.contains("no-cache")) {
+      return false;
+    }
+    ResponseCache.Entry entry = responseCache.get(key);
+    if (entry == null) {
+      return false;
+    }
+    if (!entry.isFresh()) {
+      // If-None-Match of client would take precedence over If-Modified-Since of ours
+      if (entry.getEtag() != null || req.getHeader("If-None-Match") == null) {
+        pc.setCacheEntry(entry);
+      }
+      return false;
+    }
+    if (bcontent == null) {
+      stream.resume();
+    }
+    pc.closeTimer();
+    pc.logResponse(moduleId, "cache", entry.getStatus());
+    proxyCached(pc, entry);
+    return true;
+  }
+
+  /**
+   * Return streams that get a copy of the response of a handler: the
+   * response cache and the requests coalesced with this one.
+   * @return streams; empty if none
+   */
+  private List<WriteStream<Buffer>> responseCopies(ProxyContext pc, ModuleInstance mi,
+                                                   HttpClientResponse res) {
+    if (!mi.isHandler() || (pc.getCacheKey() == null && pc.getFlight() == null)) {
+      return Collections.emptyList();
+    }
+    sanitizeAuthHeaders(res.headers());
+    List<WriteStream<Buffer>> copies = new ArrayList<>(2);
+    if (pc.getCacheKey() != null) {
+      WriteStream<Buffer> writer = responseCache.writer(pc.getCacheKey(), res.statusCode(),
+          res.headers(), cacheTtlMs(mi), mi.getRoutingEntry().getCache().getVary());
+      if (writer != null) {
+        copies.add(writer);
+      }
+    }
+    if (pc.getFlight() != null) {
+      copies.add(pc.getFlight().writer(res.statusCode(), res.headers()));
+    }
+    return copies;
+  }
+
+  /**
+   * Send cached response; 304 if the client has it already. Headers added
+   * by Okapi for this request, such as those for CORS, are kept.
+   */
+  private void proxyCached(ProxyContext pc, ResponseCache.Entry entry) {
+    RoutingContext ctx = pc.getCtx();
+    HttpServerResponse response = ctx.response();
+    entry.copyHeaders(response.headers());
+    response.putHeader("Age", Long.toString(entry.getAge()));
+    if (pc.getSpan() != null) {
+      pc.getSpan().tag("okapi.cache", "hit");
+    }
+    if (entry.notModified(ctx.request().headers())) {
+      response.setStatusCode(304).end();
+    } else {
+      response.setStatusCode(entry.getStatus());
+      endResponse(pc, entry.getBody());
+    }
+    MetricsHelper.recordHttpServerProcessingTime(pc.getSample(), pc.getTenant(),
+        response.getStatusCode(), ctx.request().method().name(),
+        pc.getHandlerModuleInstance());
+  }
+
+  /**
+   * Return key for auth filter decision cache.
+   * @return key; null if the decision may not be cached
+   */
+  private String authCacheKey(ProxyContext pc, ModuleInstance mi, Iterator<ModuleInstance> it) {
+    if (!authCache.isEnabled() || !it.hasNext()
+        || !XOkapiHeaders.FILTER_AUTH.equals(mi.getRoutingEntry().getPhase())) {
+      return null;
+    }
+    MultiMap headers = mi.getHopHeaders();
+    String token = headers.get(XOkapiHeaders.TOKEN);
+    if (token == null) {
+      return null;
+    }
+    return AuthCache.key(pc.getTenant(), mi.getModuleDescriptor().getId(), token,
+        pc.getCtx().request().getHeader(XOkapiHeaders.ADDITIONAL_TOKEN),
+        headers.get(XOkapiHeaders.PERMISSIONS_REQUIRED),
+        headers.get(XOkapiHeaders.PERMISSIONS_DESIRED),
+        headers.get(XOkapiHeaders.MODULE_PERMISSIONS),
+        headers.get(XOkapiHeaders.EXTRA_PERMISSIONS));
+  }
+
   private void proxyHeaders(Iterator<ModuleInstance> it, ProxyContext pc,
-                            ReadStream<Buffer> stream, Buffer bcontent,
+                            ReadStream<Buffer> stream, BodyBuffer bcontent,
                             List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
     RoutingContext ctx = pc.getCtx();
-    Future<HttpClientRequest> fut = httpClient.request(
-        new RequestOptions().setMethod(ctx.request().method()).setAbsoluteURI(makeUrl(mi, ctx)));
+    final String authKey = authCacheKey(pc, mi, it);
+    if (authKey != null) {
+      AuthCache.Entry entry = authCache.get(authKey);
+      if (entry != null) {
+        pc.debug("proxyHeaders: auth decision from cache");
+        MultiMap headers = entry.getHeaders();
+        relayToRequest(headers, pc, mi);
+        pc.setAuthRes(entry.getStatus());
+        pc.getAuthHeaders().setAll(headers);
+        pc.setAuthResBody(Buffer.buffer());
+        makeTraceHeader(mi, entry.getStatus(), pc);
+        proxyR(it, pc, stream, bcontent, clientRequestList);
+        return;
+      }
+    }
+    Future<HttpClientRequest> fut = requestInstance(pc, mi);
     fut.onFailure(res -> proxyClientFailure(pc, mi, res));
     fut.onSuccess(clientRequest -> {
       final Timer.Sample sample = MetricsHelper.getTimerSample();
@@ -896,7 +1795,10 @@ public class ProxyService {
             ctx.request().method().name(), mi);
         Iterator<ModuleInstance> newIt = getNewIterator(it, mi, res.statusCode());
         if (newIt.hasNext()) {
-          relayToRequest(res, pc, mi);
+          if (authKey != null && res.statusCode() >= 200 && res.statusCode() <= 299) {
+            authCache.put(authKey, res.statusCode(), res.headers());
+          }
+          relayToRequest(res.headers(), pc, mi);
           storeResponseInfo(pc, mi, res);
           makeTraceHeader(mi, res.statusCode(), pc);
           res.endHandler(x
@@ -918,34 +1820,39 @@ public class ProxyService {
   }
 
   private void proxyRedirect(Iterator<ModuleInstance> it,
-                             ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                             ProxyContext pc, ReadStream<Buffer> stream,
+                             BodyBuffer bcontent,
                              List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    pc.trace("ProxyNull " + mi.getModuleDescriptor().getId());
+    pc.trace("ProxyNull {}", mi.getModuleDescriptor().getId());
     pc.closeTimer();
     // if no more entries in it, proxyR will return 404
     proxyR(it, pc, stream, bcontent, clientRequestList);
   }
 
   private void proxyInternal(Iterator<ModuleInstance> it,
-                             ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                             ProxyContext pc, ReadStream<Buffer> stream,
+                             BodyBuffer bcontent,
                              List<HttpClientRequest> clientRequestList, ModuleInstance mi) {
 
-    proxyStreamToBuffer(stream, bcontent, res
+    proxyStreamToBuffer(pc, stream, bcontent, res
         -> proxyInternalBuffer(it, pc, res, clientRequestList, mi)
     );
   }
 
   private void proxyInternalBuffer(
       Iterator<ModuleInstance> it,
-      ProxyContext pc, Buffer bcontent, List<HttpClientRequest> clientRequestList,
+      ProxyContext pc, BodyBuffer bcontent, List<HttpClientRequest> clientRequestList,
       ModuleInstance mi) {
-    String req = bcontent.toString();
-    pc.debug("proxyInternalBuffer " + req);
     RoutingContext ctx = pc.getCtx();
 
     clientsEnd(bcontent, clientRequestList);
-    internalModule.internalService(req, pc).onComplete(res -> {
+    // internal requests are parsed as a whole
+    bcontent.toBuffer().compose(buf -> {
+      String req = buf.toString();
+      pc.debug("proxyInternalBuffer {}", req);
+      return internalService(req, pc);
+    }).onComplete(res -> {
       if (res.failed()) {
         pc.responseError(OkapiError.getType(res.cause()), res.cause());
         return;
@@ -961,7 +1868,7 @@ public class ProxyService {
       pc.setHandlerRes(statusCode);
       makeTraceHeader(mi, statusCode, pc);
       if (it.hasNext()) { // carry on with the pipeline
-        proxyR(it, pc, null, respBuf, new LinkedList<>());
+        proxyR(it, pc, null, BodyBuffer.of(respBuf), new LinkedList<>());
       } else { // produce a result
         pc.closeTimer();
         ctx.response().end(respBuf);
@@ -969,8 +1876,35 @@ public class ProxyService {
     });
   }
 
+  /**
+   * Set context on which requests to the internal module are served.
+   * @param context context of MainVerticle; null to serve them on the
+   *     context of the request
+   */
+  public void setInternalContext(Context context) {
+    this.internalContext = context;
+  }
+
+  /**
+   * Serve request of the internal module on the context of MainVerticle, as
+   * the managers that it uses are not safe for use by several event loops.
+   * The result is handled on the context of the request again.
+   */
+  private Future<String> internalService(String req, ProxyContext pc) {
+    final Context context = vertx.getOrCreateContext();
+    if (internalContext == null || internalContext == context) {
+      return internalModule.internalService(req, pc);
+    }
+    Promise<String> promise = Promise.promise();
+    internalContext.runOnContext(x -> Future.succeededFuture()
+        .compose(y -> internalModule.internalService(req, pc))
+        .onComplete(res -> context.runOnContext(y -> promise.handle(res))));
+    return promise.future();
+  }
+
   private void proxyR(Iterator<ModuleInstance> it,
-                      ProxyContext pc, ReadStream<Buffer> stream, Buffer bcontent,
+                      ProxyContext pc, ReadStream<Buffer> stream,
+                      BodyBuffer bcontent,
                       List<HttpClientRequest> clientRequestList) {
 
     RoutingContext ctx = pc.getCtx();
@@ -981,29 +1915,31 @@ public class ProxyService {
     } else {
       ModuleInstance mi = it.next();
       pc.startTimer();
-
-      // Pass the right token
-      ctx.request().headers().remove(XOkapiHeaders.TOKEN);
-      String token = mi.getAuthToken();
-      if (token != null && !token.isEmpty()) {
-        ctx.request().headers().add(XOkapiHeaders.TOKEN, token);
+      if (responseFromCache(it, pc, stream, bcontent, clientRequestList, mi)) {
+        return;
       }
 
-      // Pass headers for filters
-      passFilterHeaders(ctx, pc, mi);
+      // Pass the right token and headers for filters
+      hopHeaders(pc, mi);
+      ResponseCache.Entry stale = pc.getCacheEntry();
+      if (stale != null) {
+        if (stale.getEtag() != null) {
+          mi.getHopHeaders().set("If-None-Match", stale.getEtag());
+        } else {
+          mi.getHopHeaders().set("If-Modified-Since", stale.getLastModified());
+        }
+      }
 
       // Do proxy work
       ProxyType proxyType = mi.getRoutingEntry().getProxyType();
       if (proxyType != ProxyType.REDIRECT) {
-        pc.debug("Invoking module " + mi.getModuleDescriptor().getId()
-            + " type " + proxyType
-            + " level " + mi.getRoutingEntry().getPhaseLevel()
-            + " path " + mi.getPath()
-            + " url " + mi.getUrl());
-      }
-      final String pathPattern = mi.getRoutingEntry().getPathPattern();
-      if (pathPattern != null) {
-        ctx.request().headers().set(XOkapiHeaders.MATCH_PATH_PATTERN, pathPattern);
+        if (pc.isDebugEnabled()) {
+          pc.debug("Invoking module " + mi.getModuleDescriptor().getId()
+              + " type " + proxyType
+              + " level " + mi.getRoutingEntry().getPhaseLevel()
+              + " path " + mi.getPath()
+              + " url " + mi.getUrl());
+        }
       }
       switch (proxyType) {
         case REQUEST_ONLY:
@@ -1036,23 +1972,21 @@ public class ProxyService {
     }
   }
 
-  private void passFilterHeaders(RoutingContext ctx, ProxyContext pc, ModuleInstance mi) {
-    // Pass the X-Okapi-Filter header for filters (only)
-    // And all kind of things for the auth filter
-    MultiMap headers = ctx.request().headers();
-    headers.remove(XOkapiHeaders.FILTER);
-
+  /**
+   * Compute the headers of the request to a module instance that vary per
+   * request. The fixed ones, such as X-Okapi-Filter, are in its header plan.
+   */
+  private void hopHeaders(ProxyContext pc, ModuleInstance mi) {
+    MultiMap headers = mi.getHopHeaders();
+    headers.clear();
+    String token = mi.getAuthToken();
+    if (token != null && !token.isEmpty()) {
+      headers.add(XOkapiHeaders.TOKEN, token);
+    }
     final String phase = mi.getRoutingEntry().getPhase();
     if (phase != null) {
-      String pth = mi.getRoutingEntry().getPathPattern();
-      if (pth == null) {
-        pth = mi.getRoutingEntry().getPath();
-      }
-      String filt = mi.getRoutingEntry().getPhase() + " " + pth;
-      pc.debug("Adding " + XOkapiHeaders.FILTER + ": " + filt);
+      pc.debug("Adding {}: {}", XOkapiHeaders.FILTER, mi.getHeaderPlan().getFilter());
       // The auth filter needs all kinds of special headers
-      headers.add(XOkapiHeaders.FILTER, filt);
-
       boolean badAuth = pc.getAuthRes() != 0 && (pc.getAuthRes() < 200 || pc.getAuthRes() >= 300);
       switch (phase) {
         case XOkapiHeaders.FILTER_AUTH:
@@ -1061,7 +1995,7 @@ public class ProxyService {
         case XOkapiHeaders.FILTER_PRE:
           // pass request headers and failed auth result
           if (badAuth) {
-            headers.add(XOkapiHeaders.AUTH_RESULT, "" + pc.getAuthRes());
+            headers.set(XOkapiHeaders.AUTH_RESULT, "" + pc.getAuthRes());
           }
           break;
         case XOkapiHeaders.FILTER_POST:
@@ -1082,11 +2016,109 @@ public class ProxyService {
           break;
       }
     }
+    startHopSpan(pc, mi);
+  }
+
+  private LoadBalancer getLoadBalancer(String name) {
+    return loadBalancers.computeIfAbsent(name, LoadBalancer::create);
+  }
+
+  /**
+   * Pick instance among those that do not have an open circuit. An instance
+   * with a half-open circuit is picked for one probe request at a time.
+   * @return instance; null if all circuits are open
+   */
+  private DeploymentDescriptor pickAvailable(List<DeploymentDescriptor> instances) {
+    final CircuitBreaker circuitBreaker = discoveryManager.getCircuitBreaker();
+    List<DeploymentDescriptor> available = circuitBreaker.available(instances);
+    while (true) {
+      DeploymentDescriptor dd = pickInstance(available);
+      if (dd == null || circuitBreaker.tryAcquire(dd.getUrl())) {
+        return dd;
+      }
+      // another request took the probe in the meantime
+      available = new ArrayList<>(available);
+      available.remove(dd);
+    }
+  }
+
+  private CircuitBreaker.OpenException circuitOpen(String srvcId,
+                                                   List<DeploymentDescriptor> instances) {
+    MetricsHelper.recordCircuitRejection(srvcId);
+    return new CircuitBreaker.OpenException(messages.getMessage("10111", srvcId),
+        discoveryManager.getCircuitBreaker().getRetryAfterMs(instances));
+  }
+
+  private DeploymentDescriptor pickInstance(List<DeploymentDescriptor> instances) {
+    if (instances.isEmpty()) {
+      return null;
+    }
+    String name = loadBalancing;
+    for (DeploymentDescriptor dd : instances) {
+      if (dd.getLoadBalancing() != null) {
+        name = dd.getLoadBalancing();
+        break;
+      }
+    }
+    return getLoadBalancer(name).pick(instances.get(0).getSrvcId(), instances, instanceTracker);
   }
 
-  private static DeploymentDescriptor pickInstance(List<DeploymentDescriptor> instances) {
-    int sz = instances.size();
-    return sz > 0 ? instances.get(random.nextInt(sz)) : null;
+  /**
+   * Make request to module instance. The request counts as outstanding until
+   * its response (headers) arrive, for load balancing. Connection failures
+   * and timeouts are reported to the circuit breaker; any response shows
+   * that the instance is reachable. Failures and 5xx responses count as slow
+   * responses for load balancing.
+   */
+  private Future<HttpClientRequest> requestInstance(ProxyContext pc, ModuleInstance mi) {
+    return requestInstance(pc, mi, mi.getUrl(), Collections.emptySet());
+  }
+
+  /**
+   * Make request to an instance of module.
+   * @param url URL of instance
+   * @param cancelled requests that are reset by Okapi; their failure is not
+   *     reported to the circuit breaker; neither is the failure of requests
+   *     reset because the deadline passed
+   */
+  private Future<HttpClientRequest> requestInstance(ProxyContext pc, ModuleInstance mi,
+                                                    String url,
+                                                    Set<HttpClientRequest> cancelled) {
+    final RoutingContext ctx = pc.getCtx();
+    final CircuitBreaker circuitBreaker = discoveryManager.getCircuitBreaker();
+    return httpClients.request(mi.getModuleDescriptor(), url,
+        new RequestOptions().setMethod(ctx.request().method())
+            .setAbsoluteURI(url + getPath(mi, ctx)))
+        .onFailure(e -> {
+          if (!pc.isExpired()) {
+            circuitBreaker.failure(url);
+          }
+        })
+        .onSuccess(clientRequest -> {
+          pc.addClientRequest(clientRequest);
+          long firstByte = firstByteTimeout(mi);
+          if (firstByte > 0) {
+            clientRequest.setTimeout(firstByte);
+          }
+          final long start = instanceTracker.begin(url);
+          clientRequest.onComplete(res -> {
+            if (res.failed() && (pc.isExpired() || cancelled.contains(clientRequest))) {
+              instanceTracker.cancel(url);
+              return;
+            }
+            if (res.failed()) {
+              instanceTracker.fail(url, start);
+              circuitBreaker.failure(url);
+              return;
+            }
+            if (res.result().statusCode() >= 500) {
+              instanceTracker.fail(url, start);
+            } else {
+              instanceTracker.end(url, start);
+            }
+            circuitBreaker.success(url);
+          });
+        });
   }
 
   /**
@@ -1190,8 +2222,12 @@ public class ProxyService {
 
     return discoveryManager.get(inst.getModuleDescriptor().getId()).compose(gres -> {
       DeploymentDescriptor instance = null;
-      if (gres != null) {
-        instance = pickInstance(gres);
+      if (gres != null && !gres.isEmpty()) {
+        // prefer instances with closed circuit, but system calls are never rejected
+        instance = pickAvailable(gres);
+        if (instance == null) {
+          instance = pickInstance(gres);
+        }
       }
       if (instance == null) {
         return Future.failedFuture(new OkapiError(ErrorType.USER, messages.getMessage("11100",
@@ -1200,8 +2236,23 @@ public class ProxyService {
       String baseurl = instance.getUrl();
       Map<String, String> headers = sysReqHeaders(headersIn, tenantId, authToken, inst, modPerms);
       headers.put(XOkapiHeaders.URL_TO, baseurl);
+      final Span span = tracer.startClient(headersIn.get(TraceContext.TRACEPARENT),
+          "system " + inst.getModuleDescriptor().getId());
+      if (span != null) {
+        span.setRemoteService(inst.getModuleDescriptor().getId())
+            .tag("okapi.tenant", tenantId)
+            .tag("okapi.module", inst.getModuleDescriptor().getId())
+            .tag("http.method", inst.getMethod().name())
+            .tag("http.url", baseurl + inst.getPath());
+        headers.put(TraceContext.TRACEPARENT, span.traceparent());
+        String tracestate = headersIn.get(TraceContext.TRACESTATE);
+        if (tracestate != null) {
+          headers.put(TraceContext.TRACESTATE, tracestate);
+        }
+      }
       logger.debug("syscall begin {} {}{}", inst.getMethod(), baseurl, inst.getPath());
-      OkapiClient cli = new OkapiClient(this.httpClient, baseurl, vertx, headers);
+      OkapiClient cli = new OkapiClient(httpClients.get(inst.getModuleDescriptor()), baseurl,
+          vertx, headers);
       String reqId = inst.getPath().replaceFirst("^[/_]*([^/]+).*", "$1");
       cli.newReqId(reqId); // "tenant" or "tenantpermissions"
       cli.enableInfoLog();
@@ -1209,9 +2260,26 @@ public class ProxyService {
         cli.setClosedRetry(40000);
       }
       final Timer.Sample sample = MetricsHelper.getTimerSample();
+      final long start = instanceTracker.begin(baseurl);
       Promise<OkapiClient> promise = Promise.promise();
       cli.request(inst.getMethod(), inst.getPath(), request, cres -> {
+        // errors of a tenant's init do not eject the instance for all tenants
+        if (cli.getStatusCode() == 0) {
+          instanceTracker.fail(baseurl, start);
+          discoveryManager.getCircuitBreaker().failure(baseurl);
+        } else {
+          if (cli.getStatusCode() >= 500) {
+            instanceTracker.cancel(baseurl);
+          } else {
+            instanceTracker.end(baseurl, start);
+          }
+          discoveryManager.getCircuitBreaker().success(baseurl);
+        }
         logger.debug("syscall return {} {}{}", inst.getMethod(), baseurl, inst.getPath());
+        if (span != null) {
+          span.tag("http.status_code", cli.getStatusCode());
+          tracer.finish(span.tag("error", cres.failed() ? cres.cause().getMessage() : null));
+        }
         if (cres.failed()) {
           String msg = messages.getMessage("11101", inst.getMethod(),
               inst.getModuleDescriptor().getId(), inst.getPath(), cres.cause().getMessage());
@@ -1291,7 +2359,7 @@ public class ProxyService {
       ctx.data().put(REDIRECTQUERY, qry);
     }
     ctx.request().headers().add(XOkapiHeaders.TENANT, tid);
-    pc.debug("redirectProxy: '" + tid + "' '" + newPath + "'");
+    pc.debug("redirectProxy: '{}' '{}'", tid, newPath);
     ctx.reroute(newPath);
   }
 
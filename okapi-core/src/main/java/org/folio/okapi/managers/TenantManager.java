@@ -55,6 +55,7 @@ public class TenantManager {
   private String mapName = "tenants";
   private LockedTypedMap2<InstallJob> jobs = new LockedTypedMap2<>(InstallJob.class);
   private static final String EVENT_NAME = "timer";
+  static final String EVENT_MODULES_UPDATE = "tenantModulesUpdate";
   private Set<String> timers = new HashSet<>();
   private Messages messages = Messages.getInstance();
   private Vertx vertx;
@@ -176,10 +177,16 @@ public class TenantManager {
       if (Boolean.FALSE.equals(x)) {
         return Future.failedFuture(new OkapiError(ErrorType.NOT_FOUND, id));
       }
-      return tenants.removeNotFound(id).mapEmpty();
+      return tenants.removeNotFound(id).onSuccess(y -> publishModulesUpdate(id)).mapEmpty();
     });
   }
 
+  private void publishModulesUpdate(String tenantId) {
+    if (vertx != null) {
+      vertx.eventBus().publish(EVENT_MODULES_UPDATE, tenantId);
+    }
+  }
+
   /**
    * Actually update the enabled modules. Assumes dependencies etc have been
    * checked.
@@ -212,7 +219,7 @@ public class TenantManager {
       if (Boolean.FALSE.equals(ures)) {
         return Future.failedFuture(new OkapiError(ErrorType.NOT_FOUND, id));
       }
-      return tenants.put(id, t);
+      return tenants.put(id, t).onSuccess(x -> publishModulesUpdate(id));
     });
   }
 
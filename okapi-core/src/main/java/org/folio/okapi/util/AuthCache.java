@@ -0,0 +1,211 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of decisions of the auth filter.
+ *
+ * <p>The auth filter gets the token and the permissions that the request
+ * needs in headers, and answers with a status and headers such as
+ * X-Okapi-Module-Tokens. For the same tenant, token and permissions the
+ * answer is the same until the token expires or the permissions of the user
+ * change, so successful answers are kept for a short time. The time is the
+ * configured time-to-live, or less if the auth module says so with
+ * Cache-Control or Expires; answers with Cache-Control no-store or no-cache
+ * are not kept.
+ *
+ * <p>The least recently used entries are removed when the cache is full.
+ */
+public class AuthCache {
+
+  private static final String CACHE_NAME = "auth";
+
+  /**
+   * Cached decision.
+   */
+  public static final class Entry {
+    private final int status;
+    private final MultiMap headers;
+    private final long expires;
+
+    Entry(int status, MultiMap headers, long expires) {
+      this.status = status;
+      this.headers = headers;
+      this.expires = expires;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Return response headers of auth filter.
+     * @return new copy that the caller may modify
+     */
+    public MultiMap getHeaders() {
+      return MultiMap.caseInsensitiveMultiMap().setAll(headers);
+    }
+  }
+
+  private final long ttlMs;
+  private final Map<String, Entry> entries;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Create cache.
+   * @param ttlMs maximum time in milliseconds that a decision is kept; 0 disables
+   * @param maxSize maximum number of decisions
+   */
+  public AuthCache(long ttlMs, int maxSize) {
+    this.ttlMs = ttlMs;
+    this.entries = new LinkedHashMap<String, AuthCache.Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, AuthCache.Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return ttlMs > 0;
+  }
+
+  /**
+   * Make cache key.
+   * @param tenant tenant ID
+   * @param parts request properties that the decision depends on; null allowed
+   * @return key
+   */
+  public static String key(String tenant, String... parts) {
+    StringBuilder b = new StringBuilder(tenant);
+    for (String part : parts) {
+      b.append('\n');
+      if (part != null) {
+        b.append(part);
+      }
+    }
+    return b.toString();
+  }
+
+  /**
+   * Get decision.
+   * @param key from {@link #key(String, String...)}
+   * @return decision; null if not in cache or expired
+   */
+  public Entry get(String key) {
+    return get(key, System.currentTimeMillis());
+  }
+
+  synchronized Entry get(String key, long now) {
+    Entry e = entries.get(key);
+    if (e != null && e.expires <= now) {
+      entries.remove(key);
+      e = null;
+    }
+    if (e == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    MetricsHelper.recordCacheLookup(CACHE_NAME, e != null);
+    return e;
+  }
+
+  /**
+   * Put decision unless the response headers forbid it.
+   * @param key from {@link #key(String, String...)}
+   * @param status status of auth filter response
+   * @param headers headers of auth filter response; a copy is kept
+   */
+  public void put(String key, int status, MultiMap headers) {
+    put(key, status, headers, System.currentTimeMillis());
+  }
+
+  synchronized void put(String key, int status, MultiMap headers, long now) {
+    long ms = maxAge(headers, now, ttlMs);
+    if (ms <= 0) {
+      return;
+    }
+    entries.put(key, new Entry(status,
+        MultiMap.caseInsensitiveMultiMap().setAll(headers), now + ms));
+  }
+
+  /**
+   * Return how long a response may be cached.
+   * @param headers response headers
+   * @param now current time in milliseconds
+   * @param ttlMs configured maximum
+   * @return milliseconds; 0 if not to be cached
+   */
+  static long maxAge(MultiMap headers, long now, long ttlMs) {
+    long ms = ttlMs;
+    String cacheControl = headers.get("Cache-Control");
+    if (cacheControl != null) {
+      for (String directive : cacheControl.split(",")) {
+        String d = directive.trim().toLowerCase();
+        if (d.equals("no-store") || d.equals("no-cache")) {
+          return 0;
+        }
+        if (d.startsWith("max-age=")) {
+          try {
+            return Math.min(ms, Long.parseLong(d.substring(8)) * 1000);
+          } catch (NumberFormatException e) {
+            return 0;
+          }
+        }
+      }
+    }
+    String expires = headers.get("Expires");
+    if (expires != null) {
+      try {
+        long t = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME)
+            .toInstant().toEpochMilli();
+        ms = Math.min(ms, t - now);
+      } catch (DateTimeParseException e) {
+        return 0;
+      }
+    }
+    return Math.max(0, ms);
+  }
+
+  /**
+   * Remove all decisions for tenant.
+   * @param tenant tenant ID
+   */
+  public synchronized void invalidate(String tenant) {
+    String prefix = tenant + "\n";
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all decisions.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+}
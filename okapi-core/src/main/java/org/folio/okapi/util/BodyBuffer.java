@@ -0,0 +1,277 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Request body that the proxy must keep because it is sent more than once
+ * or must be sent with a known length.
+ *
+ * <p>Bodies up to a configured size are kept in memory. Larger bodies are
+ * spilled to a temporary file while they are read, with back-pressure on the
+ * incoming stream, so that heap use per request is bounded. Bodies larger
+ * than a configured maximum are refused, so that disk use is bounded too.
+ * The content can be written any number of times until {@link #close()} is
+ * called.
+ */
+public class BodyBuffer {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  /**
+   * Failure for bodies larger than the maximum size.
+   */
+  public static class TooLargeException extends RuntimeException {
+    private final long maxSize;
+
+    public TooLargeException(long maxSize) {
+      super("Request body larger than " + maxSize + " bytes");
+      this.maxSize = maxSize;
+    }
+
+    public long getMaxSize() {
+      return maxSize;
+    }
+  }
+
+  private final Vertx vertx;
+  private Buffer buffer = Buffer.buffer();
+  private String path;
+  private AsyncFile file;
+  private boolean spilling;
+  private boolean ended;
+  private boolean closed;
+  private boolean failed;
+  private long length;
+
+  private BodyBuffer(Vertx vertx) {
+    this.vertx = vertx;
+  }
+
+  /**
+   * Make body from buffer in memory.
+   * @param buffer content
+   * @return body
+   */
+  public static BodyBuffer of(Buffer buffer) {
+    BodyBuffer b = new BodyBuffer(null);
+    b.buffer = buffer;
+    b.length = buffer.length();
+    return b;
+  }
+
+  /**
+   * Read stream into body. The stream is resumed by this call.
+   * @param vertx Vert.x handle
+   * @param stream paused stream
+   * @param memoryLimit number of bytes kept in memory before spilling to file
+   * @param maxSize maximum number of bytes; 0 for no limit
+   * @return future with body when the stream has ended; failed with
+   *     {@link TooLargeException} if the stream has more than maxSize bytes,
+   *     in which case the rest of the stream is discarded
+   */
+  public static Future<BodyBuffer> fill(Vertx vertx, ReadStream<Buffer> stream,
+                                        int memoryLimit, long maxSize) {
+    BodyBuffer b = new BodyBuffer(vertx);
+    Promise<BodyBuffer> promise = Promise.promise();
+    stream.handler(chunk -> b.write(stream, chunk, memoryLimit, maxSize, promise));
+    stream.exceptionHandler(e -> b.fail(promise, e));
+    stream.endHandler(x -> {
+      b.ended = true;
+      b.finish(promise);
+    });
+    stream.resume();
+    return promise.future();
+  }
+
+  private void write(ReadStream<Buffer> stream, Buffer chunk, int memoryLimit, long maxSize,
+                     Promise<BodyBuffer> promise) {
+    if (failed) {
+      return;
+    }
+    length += chunk.length();
+    if (maxSize > 0 && length > maxSize) {
+      fail(promise, new TooLargeException(maxSize));
+      return;
+    }
+    if (file != null) {
+      file.write(chunk);
+      if (file.writeQueueFull()) {
+        stream.pause();
+        file.drainHandler(x -> stream.resume());
+      }
+      return;
+    }
+    buffer.appendBuffer(chunk);
+    if (spilling || buffer.length() <= memoryLimit) {
+      return;
+    }
+    spilling = true;
+    stream.pause();
+    vertx.fileSystem().createTempFile("okapi-body-", ".tmp")
+        .compose(p -> {
+          path = p;
+          return vertx.fileSystem().open(p, new OpenOptions().setWrite(true));
+        })
+        .onFailure(e -> {
+          logger.warn("Could not create buffer file: {}", e.getMessage());
+          fail(promise, e);
+        })
+        .onSuccess(f -> {
+          if (failed) {
+            f.close();
+            return;
+          }
+          logger.debug("Spilling request body to {}", path);
+          file = f;
+          file.exceptionHandler(e -> fail(promise, e));
+          file.write(buffer);
+          buffer = null;
+          if (ended) {
+            finish(promise);
+          } else {
+            stream.resume();
+          }
+        });
+  }
+
+  private void fail(Promise<BodyBuffer> promise, Throwable e) {
+    failed = true;
+    buffer = null;
+    close();
+    promise.tryFail(e);
+  }
+
+  private void finish(Promise<BodyBuffer> promise) {
+    if (failed) {
+      return;
+    }
+    if (file != null) {
+      file.close().onComplete(x -> {
+        file = null;
+        if (x.failed()) {
+          close();
+          promise.tryFail(x.cause());
+        } else {
+          promise.tryComplete(this);
+        }
+      });
+    } else if (!spilling) {
+      promise.tryComplete(this);
+    }
+    // else: finish is called again when the file is open
+  }
+
+  /**
+   * Return number of bytes.
+   * @return length of content
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Whether content is in a temporary file.
+   * @return true if spilled; false if in memory
+   */
+  public boolean isSpilled() {
+    return path != null;
+  }
+
+  /**
+   * Write content to stream and end it.
+   * @param ws write stream
+   * @return future result
+   */
+  public Future<Void> end(WriteStream<Buffer> ws) {
+    if (closed) {
+      return Future.failedFuture("Request body no longer available");
+    }
+    if (path == null) {
+      return ws.end(buffer);
+    }
+    return vertx.fileSystem().open(path, new OpenOptions().setRead(true).setWrite(false)
+        .setCreate(false))
+        .compose(f -> {
+          Promise<Void> promise = Promise.promise();
+          f.pipeTo(ws, res -> {
+            f.close();
+            promise.handle(res);
+          });
+          return promise.future();
+        });
+  }
+
+  /**
+   * Write content to request, with Content-Length unless chunked, and end it.
+   * @param req client request
+   * @return future result
+   */
+  public Future<Void> end(HttpClientRequest req) {
+    if (!req.isChunked()) {
+      req.putHeader("Content-Length", Long.toString(length));
+    }
+    return end((WriteStream<Buffer>) req);
+  }
+
+  /**
+   * Write content to response, with Content-Length unless chunked, and end it.
+   * @param res server response
+   * @return future result
+   */
+  public Future<Void> end(HttpServerResponse res) {
+    if (!res.isChunked()) {
+      res.putHeader("Content-Length", Long.toString(length));
+    }
+    return end((WriteStream<Buffer>) res);
+  }
+
+  /**
+   * Return content as buffer in memory.
+   * @return future with content
+   */
+  public Future<Buffer> toBuffer() {
+    if (closed) {
+      return Future.failedFuture("Request body no longer available");
+    }
+    if (path == null) {
+      return Future.succeededFuture(buffer);
+    }
+    return vertx.fileSystem().readFile(path);
+  }
+
+  /**
+   * Remove temporary file, if any. Streams already writing the content
+   * may complete.
+   */
+  public void close() {
+    if (file != null) {
+      file.close();
+      file = null;
+    }
+    if (path == null || closed) {
+      return;
+    }
+    closed = true;
+    vertx.fileSystem().delete(path).onFailure(e ->
+        logger.warn("Could not delete buffer file {}: {}", path, e.getMessage()));
+  }
+
+  @Override
+  public String toString() {
+    if (path == null) {
+      return buffer.toString();
+    }
+    return "(" + length + " bytes in " + path + ")";
+  }
+}
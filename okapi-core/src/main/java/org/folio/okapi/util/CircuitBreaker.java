@@ -0,0 +1,281 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.common.Config;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Passive outlier detection for module instances (URLs).
+ *
+ * <p>The proxy reports the outcome of each request to an instance. After a
+ * number of consecutive failures (connection errors or timeouts) the
+ * circuit of the instance opens and the instance is not picked until the
+ * open period is over. Then the circuit is half-open: a single probe request
+ * is let through; its success closes the circuit, its failure opens it again
+ * for twice as long as the previous time, up to a maximum. If the outcome of
+ * the probe is not reported within the first open period, another probe is
+ * let through.
+ */
+public class CircuitBreaker {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  public static final String CLOSED = "closed";
+  public static final String OPEN = "open";
+  public static final String HALF_OPEN = "half-open";
+
+  /**
+   * Failure for requests that are not made because all instances of a
+   * module have an open circuit.
+   */
+  public static class OpenException extends RuntimeException {
+    private final long retryAfterMs;
+
+    public OpenException(String message, long retryAfterMs) {
+      super(message);
+      this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+      return retryAfterMs;
+    }
+  }
+
+  static final class Circuit {
+    int failures; // consecutive
+    int openings; // consecutive
+    long openUntil; // 0 when closed
+    long probeUntil; // probe in progress while half-open
+  }
+
+  private final int failureThreshold;
+  private final long openMs;
+  private final long maxOpenMs;
+  private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+  /**
+   * Create circuit breaker from configuration.
+   * @param config with circuitBreakerFailures (0 disables),
+   *     circuitBreakerOpenMs and circuitBreakerMaxOpenMs
+   */
+  public CircuitBreaker(JsonObject config) {
+    this(Integer.parseInt(Config.getSysConf("circuitBreakerFailures", "5", config)),
+        Long.parseLong(Config.getSysConf("circuitBreakerOpenMs", "10000", config)),
+        Long.parseLong(Config.getSysConf("circuitBreakerMaxOpenMs", "300000", config)));
+  }
+
+  CircuitBreaker(int failureThreshold, long openMs, long maxOpenMs) {
+    this.failureThreshold = failureThreshold;
+    this.openMs = openMs;
+    this.maxOpenMs = Math.max(openMs, maxOpenMs);
+  }
+
+  private Circuit circuit(String url) {
+    return circuits.computeIfAbsent(url, x -> new Circuit());
+  }
+
+  /**
+   * Report successful request to instance.
+   * @param url instance URL
+   */
+  public void success(String url) {
+    success(url, System.currentTimeMillis());
+  }
+
+  void success(String url, long now) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return;
+    }
+    synchronized (c) {
+      c.failures = 0;
+      if (c.openUntil != 0 && now >= c.openUntil) {
+        c.openUntil = 0;
+        c.openings = 0;
+        c.probeUntil = 0;
+        logger.info("circuit closed for {}", url);
+        MetricsHelper.recordCircuitStateChange(url, CLOSED);
+      }
+    }
+  }
+
+  /**
+   * Report failed request to instance: connection failure or timeout.
+   * @param url instance URL
+   */
+  public void failure(String url) {
+    failure(url, System.currentTimeMillis());
+  }
+
+  void failure(String url, long now) {
+    if (failureThreshold <= 0) {
+      return;
+    }
+    Circuit c = circuit(url);
+    synchronized (c) {
+      c.failures++;
+      boolean halfOpen = c.openUntil != 0 && now >= c.openUntil;
+      if (halfOpen || (c.openUntil == 0 && c.failures >= failureThreshold)) {
+        long ms = Math.min(maxOpenMs, openMs << Math.min(c.openings, 20));
+        c.openings++;
+        c.openUntil = now + ms;
+        c.probeUntil = 0;
+        logger.warn("circuit open for {} for {} ms after {} failures", url, ms, c.failures);
+        MetricsHelper.recordCircuitStateChange(url, OPEN);
+      }
+    }
+  }
+
+  /**
+   * Claim instance for a request. Always succeeds for a closed circuit.
+   * A half-open circuit admits one probe request at a time.
+   * @param url instance URL
+   * @return true if the request may be made; false if the circuit is open
+   *     or a probe is in progress
+   */
+  public boolean tryAcquire(String url) {
+    return tryAcquire(url, System.currentTimeMillis());
+  }
+
+  boolean tryAcquire(String url, long now) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return true;
+    }
+    synchronized (c) {
+      if (!isAvailable(c, now)) {
+        return false;
+      }
+      if (c.openUntil != 0) {
+        c.probeUntil = now + openMs;
+      }
+      return true;
+    }
+  }
+
+  private static boolean isAvailable(Circuit c, long now) {
+    return c.openUntil == 0 || (now >= c.openUntil && now >= c.probeUntil);
+  }
+
+  private boolean isAvailable(String url, long now) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return true;
+    }
+    synchronized (c) {
+      return isAvailable(c, now);
+    }
+  }
+
+  /**
+   * Forget state of instance, such as when it is no longer deployed; a new
+   * instance may get the same URL.
+   * @param url instance URL
+   */
+  public void remove(String url) {
+    circuits.remove(url);
+  }
+
+  /**
+   * Return state of circuit for instance.
+   * @param url instance URL
+   * @return {@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}
+   */
+  public String getState(String url) {
+    return getState(url, System.currentTimeMillis());
+  }
+
+  String getState(String url, long now) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return CLOSED;
+    }
+    synchronized (c) {
+      if (c.openUntil == 0) {
+        return CLOSED;
+      }
+      return now < c.openUntil ? OPEN : HALF_OPEN;
+    }
+  }
+
+  /**
+   * Return number of consecutive failures for instance.
+   * @param url instance URL
+   * @return number of failures
+   */
+  public int getFailures(String url) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return 0;
+    }
+    synchronized (c) {
+      return c.failures;
+    }
+  }
+
+  /**
+   * Return time until an open circuit becomes half-open.
+   * @param url instance URL
+   * @return milliseconds; 0 if not open
+   */
+  public long getRetryAfterMs(String url) {
+    return getRetryAfterMs(url, System.currentTimeMillis());
+  }
+
+  long getRetryAfterMs(String url, long now) {
+    Circuit c = circuits.get(url);
+    if (c == null) {
+      return 0;
+    }
+    synchronized (c) {
+      return Math.max(0, c.openUntil - now);
+    }
+  }
+
+  /**
+   * Return time until the first of the instances becomes half-open.
+   * @param instances running instances
+   * @return milliseconds
+   */
+  public long getRetryAfterMs(List<DeploymentDescriptor> instances) {
+    long now = System.currentTimeMillis();
+    long ms = Long.MAX_VALUE;
+    for (DeploymentDescriptor dd : instances) {
+      ms = Math.min(ms, getRetryAfterMs(dd.getUrl(), now));
+    }
+    return ms == Long.MAX_VALUE ? 0 : ms;
+  }
+
+  /**
+   * Return the instances that do not have an open circuit, and no probe in
+   * progress for a half-open circuit.
+   * @param instances running instances
+   * @return available instances; same list if all are available
+   */
+  public List<DeploymentDescriptor> available(List<DeploymentDescriptor> instances) {
+    return available(instances, System.currentTimeMillis());
+  }
+
+  List<DeploymentDescriptor> available(List<DeploymentDescriptor> instances, long now) {
+    if (circuits.isEmpty()) {
+      return instances;
+    }
+    List<DeploymentDescriptor> l = null;
+    for (int i = 0; i < instances.size(); i++) {
+      DeploymentDescriptor dd = instances.get(i);
+      boolean open = !isAvailable(dd.getUrl(), now);
+      if (open && l == null) {
+        l = new ArrayList<>(instances.subList(0, i));
+      } else if (!open && l != null) {
+        l.add(dd);
+      }
+    }
+    return l == null ? instances : l;
+  }
+}
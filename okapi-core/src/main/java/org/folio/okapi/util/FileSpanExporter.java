@@ -0,0 +1,45 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import java.util.List;
+
+/**
+ * Appends spans to a file, one span in Zipkin v2 JSON format per line.
+ * For use without a collector; the lines can be loaded into a collector
+ * later.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+  private final Vertx vertx;
+  private final String path;
+  private final String serviceName;
+  private Future<AsyncFile> file;
+
+  /**
+   * Create exporter. The file is opened when spans are first exported.
+   * @param vertx Vert.x handle
+   * @param path file name
+   * @param serviceName local service name of spans
+   */
+  public FileSpanExporter(Vertx vertx, String path, String serviceName) {
+    this.vertx = vertx;
+    this.path = path;
+    this.serviceName = serviceName;
+  }
+
+  @Override
+  public synchronized Future<Void> export(List<Span> spans) {
+    if (file == null || file.failed()) {
+      file = vertx.fileSystem().open(path, new OpenOptions().setAppend(true).setCreate(true));
+    }
+    Buffer buffer = Buffer.buffer();
+    for (Span span : spans) {
+      buffer.appendString(span.toJson(serviceName).encode()).appendString("\n");
+    }
+    return file.compose(f -> f.write(buffer));
+  }
+}
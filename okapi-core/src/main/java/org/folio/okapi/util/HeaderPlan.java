@@ -0,0 +1,119 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.common.XOkapiHeaders;
+
+/**
+ * How the headers of the incoming request are transformed for one step of
+ * a proxy pipeline.
+ *
+ * <p>The plan depends only on the routing entry of the step, so it is made
+ * once when the pipeline is resolved. It lists the incoming headers that are
+ * not passed on and the fixed headers that are added: X-Okapi-Filter for
+ * filters and X-Okapi-Match-Path-Pattern. Headers that vary per request,
+ * such as the token and the permissions for the auth filter, are given as
+ * hop headers when the plan is applied; they replace incoming headers of the
+ * same name. The incoming request headers are not modified.
+ */
+public class HeaderPlan {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  static final int DUMP_LIMIT = 2000; // all headers dumped if larger
+
+  private final Set<String> strip = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+  private final String filter;
+  private final String matchPathPattern;
+
+  /**
+   * Make plan for routing entry.
+   * @param re routing entry of pipeline step
+   */
+  public HeaderPlan(RoutingEntry re) {
+    final String phase = re.getPhase();
+    strip.add("Content-Length");
+    strip.add(XOkapiHeaders.TOKEN);
+    strip.add(XOkapiHeaders.FILTER);
+    if (XOkapiHeaders.FILTER_AUTH.equals(phase)) {
+      // auth headers are computed by Okapi; never pass those of the client
+      strip.add(XOkapiHeaders.MODULE_TOKENS);
+      strip.add(XOkapiHeaders.MODULE_PERMISSIONS);
+      strip.add(XOkapiHeaders.PERMISSIONS_REQUIRED);
+      strip.add(XOkapiHeaders.PERMISSIONS_DESIRED);
+      strip.add(XOkapiHeaders.EXTRA_PERMISSIONS);
+    } else {
+      strip.add(XOkapiHeaders.ADDITIONAL_TOKEN);
+    }
+    if (phase != null) {
+      String pth = re.getPathPattern();
+      if (pth == null) {
+        pth = re.getPath();
+      }
+      filter = phase + " " + pth;
+    } else {
+      filter = null;
+    }
+    matchPathPattern = re.getPathPattern();
+    if (matchPathPattern != null) {
+      strip.add(XOkapiHeaders.MATCH_PATH_PATTERN);
+    }
+  }
+
+  /**
+   * Return X-Okapi-Filter value.
+   * @return phase and path; null for handlers
+   */
+  public String getFilter() {
+    return filter;
+  }
+
+  /**
+   * Whether the header is not passed on from the incoming request.
+   * @param name header name, case insensitive
+   * @return true if removed
+   */
+  public boolean strips(String name) {
+    return strip.contains(name);
+  }
+
+  /**
+   * Write headers for the step in one pass over the incoming headers.
+   * @param in incoming request headers; not modified
+   * @param hop headers for this step that replace incoming headers
+   * @param out client request headers
+   */
+  public void apply(MultiMap in, MultiMap hop, MultiMap out) {
+    int sz = 0;
+    for (Map.Entry<String, String> e : in) {
+      String name = e.getKey();
+      String value = e.getValue();
+      sz += name.length() + 4 + value.length(); // 4 for colon blank cr lf
+      if (strip.contains(name) || hop.contains(name)) {
+        continue;
+      }
+      if (out.contains(name)) {
+        logger.warn("dup HTTP header {}: {}", name, value);
+      }
+      out.add(name, value);
+    }
+    if (filter != null) {
+      out.add(XOkapiHeaders.FILTER, filter);
+    }
+    if (matchPathPattern != null) {
+      out.add(XOkapiHeaders.MATCH_PATH_PATTERN, matchPathPattern);
+    }
+    out.addAll(hop);
+    if (sz > DUMP_LIMIT && logger.isDebugEnabled()) {
+      logger.debug("Request headers size={}", sz);
+      for (Map.Entry<String, String> e : in) {
+        logger.debug("{}: {}", e.getKey(), e.getValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package org.folio.okapi.util;
+
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.HttpClientDescriptor;
+import org.folio.okapi.bean.LaunchDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * HTTP clients that the proxy uses for modules.
+ *
+ * <p>Connection pool settings are taken from the {@code httpClient} object
+ * of the Okapi configuration. A module can override any of them with the
+ * {@code httpClient} property of its LaunchDescriptor; such a module gets a
+ * client of its own, which is closed when the module is removed. All other
+ * modules share the default client. Vert.x keeps a pool per host and port,
+ * so each instance of a module has its own pool with the configured limits.
+ */
+public class HttpClientPools {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  static final String DEFAULT_POOL = "default";
+
+  private final Vertx vertx;
+  private final HttpClientDescriptor defaults;
+  private final HttpClient defaultClient;
+  private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+  private final Map<HttpClient, String> poolNames = new ConcurrentHashMap<>();
+  private final Map<HttpClient, Integer> warmUps = new ConcurrentHashMap<>();
+  private final Set<String> warmedUp = ConcurrentHashMap.newKeySet();
+  private final Map<String, AtomicInteger> connections = new ConcurrentHashMap<>();
+
+  /**
+   * Create clients.
+   * @param vertx Vert.x handle
+   * @param config Okapi configuration with optional httpClient object
+   */
+  public HttpClientPools(Vertx vertx, JsonObject config) {
+    this.vertx = vertx;
+    HttpClientDescriptor base = new HttpClientDescriptor();
+    base.setMaxPoolSize(1000);
+    JsonObject conf = config.getJsonObject("httpClient");
+    if (conf != null) {
+      base = base.merge(Json.decodeValue(conf.encode(), HttpClientDescriptor.class));
+    }
+    defaults = base;
+    defaultClient = createClient(DEFAULT_POOL, defaults);
+  }
+
+  /**
+   * Convert settings to Vert.x client options.
+   * @param d settings
+   * @return options; Vert.x defaults for properties not set
+   */
+  static HttpClientOptions options(HttpClientDescriptor d) {
+    HttpClientOptions opt = new HttpClientOptions();
+    if (d.getMaxPoolSize() != null) {
+      opt.setMaxPoolSize(d.getMaxPoolSize());
+    }
+    if (d.getKeepAlive() != null) {
+      opt.setKeepAlive(d.getKeepAlive());
+    }
+    if (d.getKeepAliveTimeout() != null) {
+      opt.setKeepAliveTimeout(d.getKeepAliveTimeout());
+      opt.setHttp2KeepAliveTimeout(d.getKeepAliveTimeout());
+    }
+    if (d.getIdleTimeout() != null) {
+      opt.setIdleTimeout(d.getIdleTimeout());
+    }
+    if (d.getConnectTimeout() != null) {
+      opt.setConnectTimeout(d.getConnectTimeout());
+    }
+    if (d.getPipelining() != null) {
+      opt.setPipelining(d.getPipelining());
+    }
+    if (d.getPipeliningLimit() != null) {
+      opt.setPipeliningLimit(d.getPipeliningLimit());
+    }
+    if (d.getMaxWaitQueueSize() != null) {
+      opt.setMaxWaitQueueSize(d.getMaxWaitQueueSize());
+    }
+    if (Boolean.TRUE.equals(d.getHttp2())) {
+      opt.setProtocolVersion(HttpVersion.HTTP_2);
+    }
+    if (d.getHttp2ClearTextUpgrade() != null) {
+      opt.setHttp2ClearTextUpgrade(d.getHttp2ClearTextUpgrade());
+    }
+    if (d.getHttp2MaxPoolSize() != null) {
+      opt.setHttp2MaxPoolSize(d.getHttp2MaxPoolSize());
+    }
+    if (d.getHttp2MultiplexingLimit() != null) {
+      opt.setHttp2MultiplexingLimit(d.getHttp2MultiplexingLimit());
+    }
+    if (d.getTcpNoDelay() != null) {
+      opt.setTcpNoDelay(d.getTcpNoDelay());
+    }
+    if (d.getTcpFastOpen() != null) {
+      opt.setTcpFastOpen(d.getTcpFastOpen());
+    }
+    if (d.getReceiveBufferSize() != null) {
+      opt.setReceiveBufferSize(d.getReceiveBufferSize());
+    }
+    if (d.getSendBufferSize() != null) {
+      opt.setSendBufferSize(d.getSendBufferSize());
+    }
+    return opt;
+  }
+
+  private HttpClient createClient(String pool, HttpClientDescriptor d) {
+    HttpClientOptions opt = options(d);
+    logger.info("HTTP client pool {}: {}", pool, Json.encode(d));
+    HttpClient client = vertx.createHttpClient(opt);
+    AtomicInteger open = connections.computeIfAbsent(pool, x -> new AtomicInteger());
+    MetricsHelper.registerHttpClientPoolConnections(pool, open);
+    client.connectionHandler(conn -> {
+      open.incrementAndGet();
+      conn.closeHandler(x -> open.decrementAndGet());
+    });
+    poolNames.put(client, pool);
+    if (d.getWarmUp() != null && d.getWarmUp() > 0) {
+      warmUps.put(client, d.getWarmUp());
+    }
+    return client;
+  }
+
+  /**
+   * Return the client shared by modules without settings of their own.
+   * @return HTTP client
+   */
+  public HttpClient getDefault() {
+    return defaultClient;
+  }
+
+  /**
+   * Return client for module.
+   * @param md module descriptor
+   * @return HTTP client
+   */
+  public HttpClient get(ModuleDescriptor md) {
+    LaunchDescriptor ld = md == null ? null : md.getLaunchDescriptor();
+    if (ld == null || ld.getHttpClient() == null) {
+      return defaultClient;
+    }
+    return clients.computeIfAbsent(md.getId(),
+        id -> createClient(id, defaults.merge(ld.getHttpClient())));
+  }
+
+  /**
+   * Close the client of a module that has been removed, if it has one of its
+   * own, and remove its meters.
+   * @param moduleId module ID
+   */
+  public void close(String moduleId) {
+    HttpClient client = clients.remove(moduleId);
+    if (client == null) {
+      return;
+    }
+    logger.info("Closing HTTP client pool {}", moduleId);
+    poolNames.remove(client);
+    warmUps.remove(client);
+    warmedUp.removeIf(key -> key.startsWith(moduleId + " "));
+    connections.remove(moduleId);
+    MetricsHelper.removeHttpClientPool(moduleId);
+    client.close();
+  }
+
+  /**
+   * Return number of open connections for pool.
+   * @param pool module ID or {@link #DEFAULT_POOL}
+   * @return number of connections
+   */
+  int getConnections(String pool) {
+    AtomicInteger open = connections.get(pool);
+    return open == null ? 0 : open.get();
+  }
+
+  /**
+   * Make request to module instance, recording the time spent waiting for a
+   * connection. The first request to an instance opens warmUp connections
+   * in addition.
+   * @param md module descriptor
+   * @param url instance URL
+   * @param options request options with absolute URI
+   * @return client request
+   */
+  public Future<HttpClientRequest> request(ModuleDescriptor md, String url,
+                                           RequestOptions options) {
+    HttpClient client = get(md);
+    String pool = poolNames.get(client);
+    Integer warmUp = warmUps.get(client);
+    if (warmUp != null && url != null && warmedUp.add(pool + " " + url)) {
+      warmUp(client, url, warmUp);
+    }
+    final Timer.Sample sample = MetricsHelper.getTimerSample();
+    return client.request(options)
+        .onSuccess(x -> MetricsHelper.recordHttpClientPoolWait(sample, pool));
+  }
+
+  /**
+   * Open connections by sending concurrent requests to the instance URL,
+   * like a health check does.
+   */
+  private static void warmUp(HttpClient client, String url, int count) {
+    logger.info("Opening {} connections to {}", count, url);
+    for (int i = 0; i < count; i++) {
+      client.request(new RequestOptions().setMethod(HttpMethod.GET).setAbsoluteURI(url))
+          .compose(HttpClientRequest::send)
+          .compose(HttpClientResponse::body)
+          .onFailure(e -> logger.warn("Warm-up of {} failed: {}", url, e.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.folio.okapi.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Book keeping of outstanding requests and response times per module
+ * instance (URL). Used by the load balancers. The entry of an instance is
+ * removed when the instance is gone; requests to it that end after that
+ * are not counted.
+ */
+public class InstanceTracker {
+
+  // weight of a new sample in the moving average of response time
+  private static final double EWMA_ALPHA = 0.2;
+  // least sample for a failed request, so that failing fast does not attract requests
+  private static final double FAILURE_PENALTY_NANOS = 1e9;
+  // most sample for a failed request, so that the instance may recover
+  private static final double MAX_FAILURE_PENALTY_NANOS = 60e9;
+
+  static final class Stats {
+    final AtomicInteger outstanding = new AtomicInteger();
+    volatile double latencyNanos = -1.0;
+
+    synchronized void addLatency(long nanos) {
+      if (latencyNanos < 0.0) {
+        latencyNanos = nanos;
+      } else {
+        latencyNanos += EWMA_ALPHA * (nanos - latencyNanos);
+      }
+    }
+  }
+
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+  /**
+   * Register start of a request to an instance.
+   * @param url instance URL
+   * @return start time in nanoseconds to be passed to {@link #end(String, long)}
+   */
+  public long begin(String url) {
+    stats.computeIfAbsent(url, x -> new Stats()).outstanding.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * Register end of a request to an instance with a response below 500.
+   * @param url instance URL
+   * @param startNanos value returned by {@link #begin(String)}
+   */
+  public void end(String url, long startNanos) {
+    Stats s = stats.get(url);
+    if (s == null) {
+      return;
+    }
+    s.outstanding.decrementAndGet();
+    s.addLatency(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Register end of a request to an instance that failed or got a 5xx
+   * response. The response time is counted as at least twice the average,
+   * and at least a second, as failing instances are not to be preferred.
+   * @param url instance URL
+   * @param startNanos value returned by {@link #begin(String)}
+   */
+  public void fail(String url, long startNanos) {
+    Stats s = stats.get(url);
+    if (s == null) {
+      return;
+    }
+    s.outstanding.decrementAndGet();
+    double penalty = Math.min(MAX_FAILURE_PENALTY_NANOS,
+        Math.max(FAILURE_PENALTY_NANOS, 2.0 * s.latencyNanos));
+    s.addLatency(Math.max(System.nanoTime() - startNanos, (long) penalty));
+  }
+
+  /**
+   * Register end of a request to an instance that was reset by Okapi; the
+   * response time is not counted.
+   * @param url instance URL
+   */
+  public void cancel(String url) {
+    Stats s = stats.get(url);
+    if (s != null) {
+      s.outstanding.decrementAndGet();
+    }
+  }
+
+  /**
+   * Forget an instance that is gone. A later instance on the same URL starts
+   * without outstanding requests and response times.
+   * @param url instance URL
+   */
+  public void remove(String url) {
+    stats.remove(url);
+  }
+
+  /**
+   * Return number of requests in progress for an instance.
+   * @param url instance URL
+   * @return number of outstanding requests
+   */
+  public int getOutstanding(String url) {
+    Stats s = stats.get(url);
+    return s == null ? 0 : s.outstanding.get();
+  }
+
+  /**
+   * Return moving average of response time for an instance.
+   * @param url instance URL
+   * @return average in nanoseconds; negative if no response yet
+   */
+  public double getLatency(String url) {
+    Stats s = stats.get(url);
+    return s == null ? -1.0 : s.latencyNanos;
+  }
+}
@@ -0,0 +1,71 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent response times per key, such as a handler of a module, from which
+ * percentiles are computed. Each key keeps a window of the latest samples.
+ * Methods may be called from any thread.
+ */
+public class LatencyTracker {
+
+  static final int WINDOW = 128;
+  static final int MIN_SAMPLES = 10;
+
+  static final class Window {
+    final long[] samples = new long[WINDOW];
+    int count;
+    int next;
+
+    synchronized void add(long millis) {
+      samples[next] = millis;
+      next = (next + 1) % WINDOW;
+      if (count < WINDOW) {
+        count++;
+      }
+    }
+
+    synchronized long percentile(double p) {
+      if (count < MIN_SAMPLES) {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      int i = (int) Math.ceil(p / 100.0 * count) - 1;
+      return sorted[Math.max(0, Math.min(count - 1, i))];
+    }
+  }
+
+  private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+  /**
+   * Add response time.
+   * @param key what was timed
+   * @param millis response time in milliseconds
+   */
+  public void add(String key, long millis) {
+    windows.computeIfAbsent(key, x -> new Window()).add(millis);
+  }
+
+  /**
+   * Forget response times of keys with a prefix, such as the handlers of a
+   * module that is removed.
+   * @param prefix start of keys
+   */
+  public void removePrefix(String prefix) {
+    windows.keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  /**
+   * Return percentile of recent response times.
+   * @param key what was timed
+   * @param p percentile; between 0 and 100
+   * @return response time in milliseconds; -1 if there are too few samples
+   */
+  public long percentile(String key, double p) {
+    Window w = windows.get(key);
+    return w == null ? -1 : w.percentile(p);
+  }
+}
@@ -0,0 +1,34 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Pick the instance with fewest requests in progress. Ties are broken at
+ * random so that idle instances share the load.
+ */
+// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
+@java.lang.SuppressWarnings({"squid:S2245"})
+public class LeastOutstandingLoadBalancer implements LoadBalancer {
+
+  @Override
+  public DeploymentDescriptor pick(String srvcId, List<DeploymentDescriptor> instances,
+                                   InstanceTracker tracker) {
+    DeploymentDescriptor best = null;
+    int bestOutstanding = Integer.MAX_VALUE;
+    int ties = 0;
+    for (DeploymentDescriptor dd : instances) {
+      int outstanding = tracker.getOutstanding(dd.getUrl());
+      if (outstanding < bestOutstanding) {
+        best = dd;
+        bestOutstanding = outstanding;
+        ties = 1;
+      } else if (outstanding == bestOutstanding
+          && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+        best = dd;
+      }
+    }
+    return best;
+  }
+}
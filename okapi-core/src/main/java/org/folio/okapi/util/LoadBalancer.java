@@ -0,0 +1,47 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Strategy for picking one of the running instances of a module.
+ */
+public interface LoadBalancer {
+
+  String RANDOM = "random";
+  String ROUND_ROBIN = "round-robin";
+  String LEAST_OUTSTANDING = "least-outstanding";
+  String POWER_OF_TWO = "p2c-ewma";
+
+  /**
+   * Pick instance.
+   * @param srvcId service ID (module ID)
+   * @param instances running instances of the service; not empty
+   * @param tracker outstanding requests and response times of instances
+   * @return the instance to use
+   */
+  DeploymentDescriptor pick(String srvcId, List<DeploymentDescriptor> instances,
+                            InstanceTracker tracker);
+
+  /**
+   * Create load balancer from name.
+   * @param name one of {@link #RANDOM}, {@link #ROUND_ROBIN},
+   *     {@link #LEAST_OUTSTANDING}, {@link #POWER_OF_TWO}
+   * @return load balancer
+   * @throws IllegalArgumentException for unknown name
+   */
+  static LoadBalancer create(String name) {
+    switch (name) {
+      case RANDOM:
+        return new RandomLoadBalancer();
+      case ROUND_ROBIN:
+        return new RoundRobinLoadBalancer();
+      case LEAST_OUTSTANDING:
+        return new LeastOutstandingLoadBalancer();
+      case POWER_OF_TWO:
+        return new PowerOfTwoLoadBalancer();
+      default:
+        throw new IllegalArgumentException("Unknown load balancing: " + name);
+    }
+  }
+}
@@ -1,26 +1,48 @@
 package org.folio.okapi.util;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.Timer.Sample;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Handler;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.PrometheusScrapingHandler;
 import io.vertx.micrometer.VertxInfluxDbOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
 import io.vertx.micrometer.backends.BackendRegistries;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.ModuleInstance;
 import org.folio.okapi.common.OkapiLogger;
 
 /**
  * Metrics handling.
+ *
+ * <p>Meters recorded per request are registered once and kept in maps keyed
+ * by their tags, so recording is a map lookup and an update of the meter.
+ * Tenant and URL tags come from requests; the number of distinct values of
+ * those is limited, see {@link TagValues}.
+ *
+ * <p>Metrics are either pushed to InfluxDB or scraped by Prometheus. With
+ * Prometheus, the HTTP timers also have histogram buckets and percentiles.
  */
 public class MetricsHelper {
 
@@ -37,6 +59,19 @@ public class MetricsHelper {
   private static final String METRICS_HTTP_CLIENT_ERRORS = METRICS_HTTP_CLIENT
       + ".errors";
 
+  private static final String METRICS_HTTP_CLIENT_POOL = METRICS_HTTP_CLIENT + ".pool";
+  private static final String METRICS_HTTP_CLIENT_POOL_WAIT = METRICS_HTTP_CLIENT_POOL + ".wait";
+  private static final String METRICS_HTTP_CLIENT_POOL_CONNECTIONS = METRICS_HTTP_CLIENT_POOL
+      + ".connections";
+  private static final String METRICS_PROXY_PHASE_TIME = METRICS_PREFIX + ".proxy.phaseTime";
+  private static final String METRICS_CACHE = METRICS_PREFIX + ".cache";
+  private static final String METRICS_CIRCUIT = METRICS_PREFIX + ".circuit";
+  private static final String METRICS_CIRCUIT_STATE = METRICS_CIRCUIT + ".state";
+  private static final String METRICS_CIRCUIT_REJECTED = METRICS_CIRCUIT + ".rejected";
+  private static final String METRICS_TENANT_REJECTED = METRICS_PREFIX + ".tenant.rejected";
+  private static final String METRICS_REQUEST_LOG_OVERFLOW = METRICS_PREFIX
+      + ".proxy.requestLog.overflow";
+  private static final String METRICS_PROXY_RETRY = METRICS_PREFIX + ".proxy.retry";
   private static final String TAG_HOST = "host";
   private static final String TAG_TENANT = "tenant";
   private static final String TAG_CODE = "code";
@@ -44,13 +79,110 @@ public class MetricsHelper {
   private static final String TAG_MODULE = "module";
   private static final String TAG_URL = "url";
   private static final String TAG_PHASE = "phase";
+  private static final String TAG_CACHE = "cache";
+  private static final String TAG_RESULT = "result";
+  private static final String TAG_STATE = "state";
+  private static final String TAG_POOL = "pool";
+  private static final String TAG_REASON = "reason";
+  private static final String TAG_POLICY = "policy";
+  private static final String TAG_TYPE = "type";
   private static final String TAG_EMPTY = "null";
+  static final String TAG_OTHER = "other";
+  static final int TAG_VALUES_MAX = 1000;
 
   static final String HOST_UNKNOWN = "unknown";
 
   private static boolean enabled = false;
+  private static boolean prometheus = false;
   private static MeterRegistry registry;
 
+  private static final TagValues tenants = new TagValues(TAG_VALUES_MAX);
+  private static final TagValues urls = new TagValues(TAG_VALUES_MAX);
+  private static final Map<HttpKey, Timer> httpTimers = new ConcurrentHashMap<>();
+  private static final Map<HttpKey, Counter> httpClientErrors = new ConcurrentHashMap<>();
+  private static final Map<String, Counter> cacheHits = new ConcurrentHashMap<>();
+  private static final Map<String, Counter> cacheMisses = new ConcurrentHashMap<>();
+  private static final Map<String, Timer> poolWaits = new ConcurrentHashMap<>();
+  private static final Map<String, Counter> requestLogOverflows = new ConcurrentHashMap<>();
+  private static final Map<String, Map<String, Timer>> phaseTimers = new ConcurrentHashMap<>();
+
+  /**
+   * Limits the number of distinct values of a tag.
+   *
+   * <p>Values are passed as they are until the limit is reached; after that
+   * new values are replaced by {@value #TAG_OTHER}. Safe for use by several
+   * threads; the limit may be exceeded slightly by concurrent first uses.
+   */
+  static class TagValues {
+    private final Set<String> values = ConcurrentHashMap.newKeySet();
+    private final int max;
+
+    TagValues(int max) {
+      this.max = max;
+    }
+
+    String get(String value) {
+      if (value == null) {
+        return TAG_EMPTY;
+      }
+      if (values.contains(value)) {
+        return value;
+      }
+      if (values.size() >= max) {
+        return TAG_OTHER;
+      }
+      values.add(value);
+      return value;
+    }
+
+    int size() {
+      return values.size();
+    }
+  }
+
+  /**
+   * Tag values of HTTP meters. Null for tags that the meter does not have.
+   */
+  private static final class HttpKey {
+    final boolean server;
+    final String tenant;
+    final int code;
+    final String method;
+    final String module;
+    final String url;
+    final String phase;
+    final int hash;
+
+    HttpKey(boolean server, String tenant, int code, String method, String module,
+        String url, String phase) {
+      this.server = server;
+      this.tenant = tenant;
+      this.code = code;
+      this.method = method;
+      this.module = module;
+      this.url = url;
+      this.phase = phase;
+      this.hash = Objects.hash(server, tenant, code, method, module, url, phase);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof HttpKey)) {
+        return false;
+      }
+      HttpKey k = (HttpKey) o;
+      return hash == k.hash && server == k.server && code == k.code
+          && Objects.equals(tenant, k.tenant) && Objects.equals(method, k.method)
+          && Objects.equals(module, k.module) && Objects.equals(url, k.url)
+          && Objects.equals(phase, k.phase);
+    }
+  }
+
   private MetricsHelper() {
   }
 
@@ -79,9 +211,56 @@ public class MetricsHelper {
     vertxOptions.setMetricsOptions(new MicrometerMetricsOptions()
         .setEnabled(true)
         .setInfluxDbOptions(influxDbOptions));
+    reset(false);
+  }
+
+  /**
+   * Config metrics options - use Prometheus micrometer options.
+   *
+   * <p>Metrics are scraped from /_/metrics on the Okapi port, see
+   * {@link #scrapingHandler()}, and optionally from an embedded server.
+   *
+   * @param vertxOptions - {@link VertxOptions}
+   * @param port         - port of embedded server with endpoint /metrics;
+   *                       null for no embedded server
+   */
+  public static void configPrometheus(VertxOptions vertxOptions, Integer port) {
+    VertxPrometheusOptions prometheusOptions = new VertxPrometheusOptions()
+        .setEnabled(true);
+    if (port != null) {
+      prometheusOptions.setStartEmbeddedServer(true)
+          .setEmbeddedServerOptions(new HttpServerOptions().setPort(port));
+    }
+    logger.info("Prometheus config: {}", () -> prometheusOptions.toJson().encodePrettily());
+    vertxOptions.setMetricsOptions(new MicrometerMetricsOptions()
+        .setEnabled(true)
+        .setPrometheusOptions(prometheusOptions));
+    reset(true);
+  }
+
+  // meters of an earlier registry are not kept
+  private static void reset(boolean prometheus) {
+    MetricsHelper.prometheus = prometheus;
+    registry = null;
+    httpTimers.clear();
+    httpClientErrors.clear();
+    cacheHits.clear();
+    cacheMisses.clear();
+    poolWaits.clear();
+    requestLogOverflows.clear();
+    phaseTimers.clear();
     enabled = true;
   }
 
+  /**
+   * Return handler that serves metrics in the Prometheus text format.
+   *
+   * @return handler or null if Prometheus is not enabled
+   */
+  public static Handler<RoutingContext> scrapingHandler() {
+    return enabled && prometheus ? PrometheusScrapingHandler.create() : null;
+  }
+
   /**
    * Return a {@link Sample} to help start timing a {@link Timer}.
    *
@@ -136,10 +315,234 @@ public class MetricsHelper {
     if (!enabled) {
       return null;
     }
-    Counter counter = Counter.builder(METRICS_HTTP_CLIENT_ERRORS)
-        .tag(TAG_TENANT, tenant)
-        .tag(TAG_METHOD, httpMethod)
-        .tag(TAG_URL, urlPath)
+    HttpKey key = new HttpKey(false, tenants.get(tenant), 0, httpMethod,
+        null, urls.get(urlPath), null);
+    Counter counter = httpClientErrors.get(key);
+    if (counter == null) {
+      counter = httpClientErrors.computeIfAbsent(key, k -> Counter
+          .builder(METRICS_HTTP_CLIENT_ERRORS)
+          .tag(TAG_TENANT, k.tenant)
+          .tag(TAG_METHOD, k.method == null ? TAG_EMPTY : k.method)
+          .tag(TAG_URL, k.url)
+          .register(getRegistry()));
+    }
+    counter.increment();
+    return counter;
+  }
+
+  /**
+   * Record time spent in a phase of a proxied request if metrics is enabled.
+   *
+   * @param phase  - phase, see {@link PhaseTimings}
+   * @param module - module ID
+   * @param nanos  - time in nanoseconds
+   *
+   * @return {@link Timer} or null if metrics is not enabled
+   */
+  public static Timer recordPhaseTime(String phase, String module, long nanos) {
+    if (!enabled) {
+      return null;
+    }
+    Map<String, Timer> timers = phaseTimers.get(phase);
+    if (timers == null) {
+      timers = phaseTimers.computeIfAbsent(phase, k -> new ConcurrentHashMap<>());
+    }
+    Timer timer = timers.get(module);
+    if (timer == null) {
+      timer = timers.computeIfAbsent(module, k -> histogram(Timer
+          .builder(METRICS_PROXY_PHASE_TIME)
+          .tag(TAG_PHASE, phase)
+          .tag(TAG_MODULE, k))
+          .register(getRegistry()));
+    }
+    timer.record(nanos, TimeUnit.NANOSECONDS);
+    return timer;
+  }
+
+  /**
+   * Record cache lookup if metrics is enabled.
+   *
+   * @param cache - name of cache
+   * @param hit   - whether the lookup was a hit or a miss
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordCacheLookup(String cache, boolean hit) {
+    if (!enabled) {
+      return null;
+    }
+    Map<String, Counter> counters = hit ? cacheHits : cacheMisses;
+    Counter counter = counters.get(cache);
+    if (counter == null) {
+      counter = counters.computeIfAbsent(cache, k -> Counter.builder(METRICS_CACHE)
+          .tag(TAG_CACHE, k)
+          .tag(TAG_RESULT, hit ? "hit" : "miss")
+          .register(getRegistry()));
+    }
+    counter.increment();
+    return counter;
+  }
+
+  /**
+   * Record time spent waiting for a connection from an HTTP client pool if metrics
+   * is enabled.
+   *
+   * @param sample - {@link Sample} started when the request was made
+   * @param pool   - name of pool
+   *
+   * @return {@link Timer} or null if metrics is not enabled
+   */
+  public static Timer recordHttpClientPoolWait(Sample sample, String pool) {
+    if (!enabled) {
+      return null;
+    }
+    Timer timer = poolWaits.get(pool);
+    if (timer == null) {
+      timer = poolWaits.computeIfAbsent(pool, k -> Timer.builder(METRICS_HTTP_CLIENT_POOL_WAIT)
+          .tag(TAG_POOL, k)
+          .register(getRegistry()));
+    }
+    sample.stop(timer);
+    return timer;
+  }
+
+  /**
+   * Register gauge for open connections of an HTTP client pool if metrics is enabled.
+   *
+   * @param pool        - name of pool
+   * @param connections - number of open connections, maintained by caller
+   *
+   * @return {@link Gauge} or null if metrics is not enabled
+   */
+  public static Gauge registerHttpClientPoolConnections(String pool, AtomicInteger connections) {
+    if (!enabled) {
+      return null;
+    }
+    return Gauge.builder(METRICS_HTTP_CLIENT_POOL_CONNECTIONS, connections, AtomicInteger::get)
+        .tag(TAG_POOL, pool)
+        .register(getRegistry());
+  }
+
+  /**
+   * Remove meters of an HTTP client pool that has been closed if metrics is enabled.
+   *
+   * @param pool - name of pool
+   */
+  public static void removeHttpClientPool(String pool) {
+    if (!enabled) {
+      return;
+    }
+    poolWaits.remove(pool);
+    MeterRegistry r = getRegistry();
+    for (String name : new String[] {METRICS_HTTP_CLIENT_POOL_WAIT,
+        METRICS_HTTP_CLIENT_POOL_CONNECTIONS}) {
+      for (Meter meter : r.find(name).tag(TAG_POOL, pool).meters()) {
+        r.remove(meter);
+      }
+    }
+  }
+
+  /**
+   * Record circuit breaker state change of module instance if metrics is enabled.
+   *
+   * @param url   - URL of module instance
+   * @param state - new state of circuit
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordCircuitStateChange(String url, String state) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = Counter.builder(METRICS_CIRCUIT_STATE)
+        .tag(TAG_URL, url == null ? TAG_EMPTY : url)
+        .tag(TAG_STATE, state)
+        .register(getRegistry());
+    counter.increment();
+    return counter;
+  }
+
+  /**
+   * Record request rejected because all instances of module have an open circuit,
+   * if metrics is enabled.
+   *
+   * @param module - module ID
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordCircuitRejection(String module) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = Counter.builder(METRICS_CIRCUIT_REJECTED)
+        .tag(TAG_MODULE, module == null ? TAG_EMPTY : module)
+        .register(getRegistry());
+    counter.increment();
+    return counter;
+  }
+
+  /**
+   * Record request rejected because the tenant exceeds its limits, if metrics
+   * is enabled.
+   *
+   * @param tenant - tenant ID
+   * @param reason - limit that is exceeded
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordTenantRejection(String tenant, String reason) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = Counter.builder(METRICS_TENANT_REJECTED)
+        .tag(TAG_TENANT, tenants.get(tenant))
+        .tag(TAG_REASON, reason)
+        .register(getRegistry());
+    counter.increment();
+    return counter;
+  }
+
+  /**
+   * Record bytes of a request-log copy that were dropped or spilled to file
+   * because the log module did not keep up, if metrics is enabled.
+   *
+   * @param policy - overflow policy: drop or spill
+   * @param bytes  - number of bytes
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordRequestLogOverflow(String policy, long bytes) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = requestLogOverflows.get(policy);
+    if (counter == null) {
+      counter = requestLogOverflows.computeIfAbsent(policy, k -> Counter
+          .builder(METRICS_REQUEST_LOG_OVERFLOW)
+          .baseUnit("bytes")
+          .tag(TAG_POLICY, k)
+          .register(getRegistry()));
+    }
+    counter.increment(bytes);
+    return counter;
+  }
+
+  /**
+   * Record retry or hedged request to a module, if metrics is enabled.
+   *
+   * @param type   - retry or hedge
+   * @param result - sent; won for a hedged request whose response was used;
+   *                 budget if not sent because the retry budget is exhausted
+   *
+   * @return {@link Counter} or null if metrics is not enabled
+   */
+  public static Counter recordProxyRetry(String type, String result) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = Counter.builder(METRICS_PROXY_RETRY)
+        .tag(TAG_TYPE, type)
+        .tag(TAG_RESULT, result)
         .register(getRegistry());
     counter.increment();
     return counter;
@@ -150,44 +553,67 @@ public class MetricsHelper {
     if (!enabled) {
       return null;
     }
-    String name = server ? METRICS_HTTP_SERVER_PROCESSING_TIME : METRICS_HTTP_CLIENT_RESPONSE_TIME;
-    Timer timer = Timer.builder(name)
-        .tags(createHttpTags(tenant, httpStatusCode, httpMethod, moduleInstance, !server))
-        .register(getRegistry());
+    HttpKey key = createHttpKey(tenant, httpStatusCode, httpMethod, moduleInstance, server);
+    Timer timer = httpTimers.get(key);
+    if (timer == null) {
+      timer = httpTimers.computeIfAbsent(key, k -> histogram(Timer.builder(k.server
+          ? METRICS_HTTP_SERVER_PROCESSING_TIME : METRICS_HTTP_CLIENT_RESPONSE_TIME)
+          .tags(createHttpTags(k)))
+          .register(getRegistry()));
+    }
     sample.stop(timer);
     return timer;
   }
 
-  private static List<Tag> createHttpTags(String tenant, int httpStatusCode, String httpMethod,
-      ModuleInstance moduleInstance, boolean createPhaseTag) {
-    List<Tag> tags = new ArrayList<>();
-    tags.add(Tag.of(TAG_TENANT, tenant == null ? TAG_EMPTY : tenant));
-    tags.add(Tag.of(TAG_CODE, "" + httpStatusCode));
-    tags.add(Tag.of(TAG_METHOD, httpMethod == null ? TAG_EMPTY : httpMethod));
+  // buckets are cheap to scrape but would be many series to push
+  private static Timer.Builder histogram(Timer.Builder builder) {
+    if (prometheus) {
+      builder.publishPercentileHistogram()
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .minimumExpectedValue(Duration.ofMillis(1))
+          .maximumExpectedValue(Duration.ofSeconds(60));
+    }
+    return builder;
+  }
+
+  private static HttpKey createHttpKey(String tenant, int httpStatusCode, String httpMethod,
+      ModuleInstance moduleInstance, boolean server) {
+    boolean createPhaseTag = !server;
+    String module = TAG_EMPTY;
+    String url = TAG_EMPTY;
+    String phase = createPhaseTag ? TAG_EMPTY : null;
     if (moduleInstance != null) {
-      tags.add(Tag.of(TAG_MODULE, moduleInstance.getModuleDescriptor().getId()));
+      module = moduleInstance.getModuleDescriptor().getId();
       // legacy case where module instance has no routing entry
       if (moduleInstance.getRoutingEntry() != null) {
-        tags.add(Tag.of(TAG_URL, moduleInstance.getRoutingEntry().getStaticPath()));
+        url = urls.get(moduleInstance.getRoutingEntry().getStaticPath());
         if (createPhaseTag) {
-          tags.add(Tag.of(TAG_PHASE, moduleInstance.isHandler() ? "handler"
-              : moduleInstance.getRoutingEntry().getPhase()));
+          phase = moduleInstance.isHandler() ? "handler"
+              : moduleInstance.getRoutingEntry().getPhase();
         }
       } else {
-        tags.add(Tag.of(TAG_URL, moduleInstance.getPath()));
-        tags.add(Tag.of(TAG_PHASE, moduleInstance.isHandler() ? "handler" : TAG_EMPTY));
-      }
-    } else {
-      tags.add(Tag.of(TAG_MODULE, TAG_EMPTY));
-      tags.add(Tag.of(TAG_URL, TAG_EMPTY));
-      if (createPhaseTag) {
-        tags.add(Tag.of(TAG_PHASE, TAG_EMPTY));
+        url = urls.get(moduleInstance.getPath());
+        phase = moduleInstance.isHandler() ? "handler" : TAG_EMPTY;
       }
     }
+    return new HttpKey(server, tenants.get(tenant), httpStatusCode,
+        httpMethod == null ? TAG_EMPTY : httpMethod, module, url, phase);
+  }
+
+  private static List<Tag> createHttpTags(HttpKey k) {
+    List<Tag> tags = new ArrayList<>();
+    tags.add(Tag.of(TAG_TENANT, k.tenant));
+    tags.add(Tag.of(TAG_CODE, Integer.toString(k.code)));
+    tags.add(Tag.of(TAG_METHOD, k.method));
+    tags.add(Tag.of(TAG_MODULE, k.module));
+    tags.add(Tag.of(TAG_URL, k.url));
+    if (k.phase != null) {
+      tags.add(Tag.of(TAG_PHASE, k.phase));
+    }
     return tags;
   }
 
-  private static MeterRegistry getRegistry() {
+  static MeterRegistry getRegistry() {
     if (registry == null) {
       registry = Optional.ofNullable(BackendRegistries.getDefaultNow())
           .orElse(new SimpleMeterRegistry());
@@ -209,6 +635,10 @@ public class MetricsHelper {
     return enabled;
   }
 
+  public static boolean isPrometheusEnabled() {
+    return enabled && prometheus;
+  }
+
   public static void setEnabled(boolean enabled) {
     MetricsHelper.enabled = enabled;
   }
@@ -0,0 +1,99 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.PhaseTimingDescriptor;
+
+/**
+ * Time spent by proxied requests per phase and module.
+ *
+ * <p>The phases are those of the routing entries (auth, pre, post and
+ * {@value #HANDLER}) measured from when Okapi starts a request to a module
+ * until the response headers are received. Two more phases cover the time
+ * of Okapi itself: {@value #OKAPI} is the rest of the time until the last
+ * response headers are received (token parsing, routing, discovery, header
+ * work) and {@value #TRANSFER} is the time from then until the response body
+ * is written. Each recording also goes to the metrics, see
+ * {@link MetricsHelper#recordPhaseTime}. Methods may be called from any
+ * thread.
+ */
+public class PhaseTimings {
+
+  public static final String HANDLER = "handler";
+  public static final String OKAPI = "okapi";
+  public static final String TRANSFER = "transfer";
+
+  private static class Stat {
+    final LongAdder count = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAccumulator max = new LongAccumulator(Long::max, 0);
+  }
+
+  private final Map<String, Map<String, Stat>> stats = new ConcurrentHashMap<>();
+
+  /**
+   * Return phase of module instance.
+   * @param mi module instance
+   * @return phase of routing entry; {@value #HANDLER} for handlers
+   */
+  public static String phase(ModuleInstance mi) {
+    String phase = mi.getRoutingEntry().getPhase();
+    if (mi.isHandler() || phase == null) {
+      return HANDLER;
+    }
+    return phase;
+  }
+
+  /**
+   * Record time spent.
+   * @param phase phase
+   * @param module module ID
+   * @param nanos time in nanoseconds
+   */
+  public void record(String phase, String module, long nanos) {
+    Map<String, Stat> modules = stats.get(phase);
+    if (modules == null) {
+      modules = stats.computeIfAbsent(phase, k -> new ConcurrentHashMap<>());
+    }
+    Stat stat = modules.get(module);
+    if (stat == null) {
+      stat = modules.computeIfAbsent(module, k -> new Stat());
+    }
+    stat.count.increment();
+    stat.nanos.add(nanos);
+    stat.max.accumulate(nanos);
+    MetricsHelper.recordPhaseTime(phase, module, nanos);
+  }
+
+  /**
+   * Return time spent per phase and module.
+   * @return list sorted by phase and module
+   */
+  public List<PhaseTimingDescriptor> list() {
+    List<PhaseTimingDescriptor> list = new ArrayList<>();
+    for (Map.Entry<String, Map<String, Stat>> p : stats.entrySet()) {
+      for (Map.Entry<String, Stat> m : p.getValue().entrySet()) {
+        Stat stat = m.getValue();
+        long count = stat.count.sum();
+        long totalUs = stat.nanos.sum() / 1000;
+        PhaseTimingDescriptor d = new PhaseTimingDescriptor();
+        d.setPhase(p.getKey());
+        d.setModule(m.getKey());
+        d.setCount(count);
+        d.setTotalUs(totalUs);
+        d.setMeanUs(count == 0 ? 0 : totalUs / count);
+        d.setMaxUs(stat.max.get() / 1000);
+        list.add(d);
+      }
+    }
+    list.sort(Comparator.comparing(PhaseTimingDescriptor::getPhase)
+        .thenComparing(PhaseTimingDescriptor::getModule));
+    return list;
+  }
+}
@@ -0,0 +1,213 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+
+/**
+ * Cache of resolved proxy pipelines per tenant.
+ *
+ * <p>A pipeline template is the sorted list of routing entries that a request
+ * goes through, with redirects resolved. It depends only on the tenant, the
+ * HTTP method and the routing entries that matched the request, so the
+ * template is computed once and the per-request module instances are made
+ * from it. The key is made from the matches of a {@link RoutingIndex}; since
+ * a new index is built whenever the enabled modules change, the entries for a
+ * tenant must be invalidated at the same time.
+ *
+ * <p>The number of entries per tenant is bounded by the number of distinct
+ * combinations of matching routing entries, which is small in practice.
+ */
+public class PipelineCache {
+
+  /**
+   * One step of a pipeline template.
+   */
+  public static final class Step {
+    private final ModuleDescriptor moduleDescriptor;
+    private final RoutingEntry routingEntry;
+    private final boolean handler;
+    private final List<RoutingEntry> redirects;
+    private final HeaderPlan headerPlan;
+
+    /**
+     * Create step.
+     * @param md module descriptor
+     * @param re routing entry
+     * @param handler whether handler (true) or filter (false)
+     * @param redirects redirecting entries that lead to this step; empty for
+     *     steps that match the request directly
+     */
+    public Step(ModuleDescriptor md, RoutingEntry re, boolean handler,
+                List<RoutingEntry> redirects) {
+      this.moduleDescriptor = md;
+      this.routingEntry = re;
+      this.handler = handler;
+      this.redirects = redirects;
+      this.headerPlan = new HeaderPlan(re);
+    }
+
+    public ModuleDescriptor getModuleDescriptor() {
+      return moduleDescriptor;
+    }
+
+    public RoutingEntry getRoutingEntry() {
+      return routingEntry;
+    }
+
+    public boolean isHandler() {
+      return handler;
+    }
+
+    public HeaderPlan getHeaderPlan() {
+      return headerPlan;
+    }
+
+    /**
+     * Whether the step was found by a redirect rather than by the request.
+     * @return true if redirected
+     */
+    public boolean isRedirected() {
+      return !redirects.isEmpty();
+    }
+
+    /**
+     * Return URI for this step.
+     * @param uri request URI
+     * @return request URI with redirects applied
+     */
+    public String getUri(String uri) {
+      for (RoutingEntry re : redirects) {
+        uri = re.getRedirectUri(uri);
+      }
+      return uri;
+    }
+
+    /**
+     * Return step for an entry found by a redirect of this step.
+     * @param md module descriptor of redirect target
+     * @param re routing entry of redirect target
+     * @param handler whether target is handler
+     * @return new step
+     */
+    public Step redirect(ModuleDescriptor md, RoutingEntry re, boolean handler) {
+      List<RoutingEntry> l = new ArrayList<>(redirects.size() + 1);
+      l.addAll(redirects);
+      l.add(routingEntry);
+      return new Step(md, re, handler, l);
+    }
+  }
+
+  /**
+   * Resolved pipeline.
+   */
+  public static final class Template {
+    private final List<Step> steps;
+    private final Step handler;
+
+    /**
+     * Create template.
+     * @param steps steps in the order of invocation
+     * @param handler the handler step for the request (not redirected)
+     */
+    public Template(List<Step> steps, Step handler) {
+      this.steps = Collections.unmodifiableList(steps);
+      this.handler = handler;
+    }
+
+    public List<Step> getSteps() {
+      return steps;
+    }
+
+    public Step getHandler() {
+      return handler;
+    }
+  }
+
+  private static final String CACHE_NAME = "pipeline";
+
+  private final Map<String, Map<List<Object>, Template>> tenants = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Make cache key.
+   * @param method HTTP method
+   * @param matches routing index matches for request
+   * @return key
+   */
+  public static List<Object> key(String method, List<RoutingIndex.Match> matches) {
+    List<Object> key = new ArrayList<>(matches.size() + 1);
+    key.add(method);
+    key.addAll(matches); // identity equality
+    return key;
+  }
+
+  /**
+   * Get pipeline template.
+   * @param tenant tenant ID
+   * @param key from {@link #key(String, List)}
+   * @return template; null if not in cache
+   */
+  public Template get(String tenant, List<Object> key) {
+    Map<List<Object>, Template> templates = tenants.get(tenant);
+    Template template = templates == null ? null : templates.get(key);
+    if (template == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    MetricsHelper.recordCacheLookup(CACHE_NAME, template != null);
+    return template;
+  }
+
+  /**
+   * Put pipeline template.
+   * @param tenant tenant ID
+   * @param key from {@link #key(String, List)}
+   * @param template pipeline template
+   */
+  public void put(String tenant, List<Object> key, Template template) {
+    tenants.computeIfAbsent(tenant, x -> new ConcurrentHashMap<>()).put(key, template);
+  }
+
+  /**
+   * Remove all templates for tenant.
+   * @param tenant tenant ID
+   */
+  public void invalidate(String tenant) {
+    tenants.remove(tenant);
+  }
+
+  /**
+   * Remove all templates.
+   */
+  public void invalidateAll() {
+    tenants.clear();
+  }
+
+  /**
+   * Return number of templates in cache.
+   * @return number of templates
+   */
+  public int size() {
+    int n = 0;
+    for (Map<List<Object>, Template> templates : tenants.values()) {
+      n += templates.size();
+    }
+    return n;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+}
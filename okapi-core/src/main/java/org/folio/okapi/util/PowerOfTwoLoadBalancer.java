@@ -0,0 +1,42 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Power of two choices: pick two instances at random and use the one with
+ * the lower cost, which is the moving average of response time weighted by
+ * the number of requests in progress. Instances without a response yet have
+ * no cost, so that they are tried.
+ */
+// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
+@java.lang.SuppressWarnings({"squid:S2245"})
+public class PowerOfTwoLoadBalancer implements LoadBalancer {
+
+  @Override
+  public DeploymentDescriptor pick(String srvcId, List<DeploymentDescriptor> instances,
+                                   InstanceTracker tracker) {
+    int sz = instances.size();
+    if (sz == 1) {
+      return instances.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(sz);
+    int j = random.nextInt(sz - 1);
+    if (j >= i) {
+      j++;
+    }
+    DeploymentDescriptor a = instances.get(i);
+    DeploymentDescriptor b = instances.get(j);
+    return cost(b, tracker) < cost(a, tracker) ? b : a;
+  }
+
+  static double cost(DeploymentDescriptor dd, InstanceTracker tracker) {
+    double latency = tracker.getLatency(dd.getUrl());
+    if (latency < 0.0) {
+      return 0.0;
+    }
+    return latency * (tracker.getOutstanding(dd.getUrl()) + 1);
+  }
+}
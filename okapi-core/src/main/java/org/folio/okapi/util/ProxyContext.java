@@ -3,10 +3,12 @@ package org.folio.okapi.util;
 import io.micrometer.core.instrument.Timer;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.ext.web.RoutingContext;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.ModuleInstance;
 import org.folio.okapi.common.ErrorType;
@@ -24,12 +26,16 @@ import org.folio.okapi.common.XOkapiHeaders;
 @SuppressWarnings({"squid:S1192"})
 public class ProxyContext {
 
-  private final Logger logger = OkapiLogger.get();
+  private static final Logger logger = OkapiLogger.get();
   private List<ModuleInstance> modList;
   private final String reqId;
   private String tenant;
   private final RoutingContext ctx;
   private long nanoTimeStart; // = 0 for no start time
+  private final long nanoTimeRequest = System.nanoTime();
+  private long nanoTimeHops; // sum of time spent in modules
+  private long nanoTimeLastHop; // = 0 for no hop done
+  private StringBuilder hopTimings; // for END log line; null if not logging
   private Long timerId;
   private final int waitMs;
 
@@ -46,6 +52,15 @@ public class ProxyContext {
 
   private Timer.Sample sample;
   private ModuleInstance handlerModuleInstance;
+  private Span span; // null if request is not traced
+  private Span hopSpan; // span of current module request; null if none
+  private String cacheKey; // response cache key; null if handler response is not cached
+  private ResponseCache.Entry cacheEntry; // expired response being revalidated
+  private SingleFlight.Flight flight; // coalesced requests led by this one; null if none
+  private String contentEncoding; // compression of response to client; null if none
+  private long deadline; // milliseconds since the epoch; 0 for none
+  private boolean expired; // deadline passed and request given up
+  private final List<HttpClientRequest> clientRequests = new LinkedList<>();
 
   public ModuleInstance getHandlerModuleInstance() {
     return handlerModuleInstance;
@@ -70,22 +85,16 @@ public class ProxyContext {
     if (path == null) { // defensive coding, should always be there
       path = "";
     }
-    path = path.replaceFirst("^(/_)?(/[^/?]+).*$", "$2");
-    // when rerouting, the query appears as part of the getPath, so we kill it
-    // here with the '?'.
-    Random r = new Random();
-    StringBuilder newid = new StringBuilder();
-    newid.append(String.format("%06d", r.nextInt(1000000)));
-    newid.append(path);
+    String newid = newRequestId(path);
     String curid = ctx.request().getHeader(XOkapiHeaders.REQUEST_ID);
     if (curid == null || curid.isEmpty()) {
-      reqId = newid.toString();
+      reqId = newid;
       ctx.request().headers().add(XOkapiHeaders.REQUEST_ID, reqId);
-      this.debug("Assigned new reqId " + newid);
+      debug("Assigned new reqId {}", newid);
     } else {
-      reqId = curid + ";" + newid.toString();
+      reqId = curid + ";" + newid;
       ctx.request().headers().set(XOkapiHeaders.REQUEST_ID, reqId);
-      this.debug("Appended a reqId " + newid);
+      debug("Appended a reqId {}", newid);
     }
     nanoTimeStart = 0;
     timerId = null;
@@ -93,6 +102,53 @@ public class ProxyContext {
     this.sample = MetricsHelper.getTimerSample();
   }
 
+  /**
+   * Make request ID: six random digits followed by the first path segment.
+   * @param path request path
+   * @return request ID
+   */
+  static String newRequestId(String path) {
+    int n = ThreadLocalRandom.current().nextInt(1000000);
+    String prefix = pathPrefix(path);
+    char[] id = new char[6 + prefix.length()];
+    for (int i = 5; i >= 0; i--) {
+      id[i] = (char) ('0' + n % 10);
+      n /= 10;
+    }
+    prefix.getChars(0, prefix.length(), id, 6);
+    return new String(id);
+  }
+
+  /**
+   * Return first segment of path, skipping a leading /_ of Okapi's own
+   * services. The query, which appears in the path when rerouting, is
+   * removed. Same as replacing {@code ^(/_)?(/[^/?]+).*$} with {@code $2}.
+   * @param path request path
+   * @return segment with leading slash; path as is if it has no segment
+   */
+  static String pathPrefix(String path) {
+    int start = 0;
+    if (path.startsWith("/_/") && isSegmentChar(path, 3)) {
+      start = 2;
+    }
+    if (!path.startsWith("/", start) || !isSegmentChar(path, start + 1)) {
+      return path;
+    }
+    int end = start + 2;
+    while (isSegmentChar(path, end)) {
+      end++;
+    }
+    return path.substring(start, end);
+  }
+
+  private static boolean isSegmentChar(String path, int i) {
+    if (i >= path.length()) {
+      return false;
+    }
+    char c = path.charAt(i);
+    return c != '/' && c != '?';
+  }
+
   /**
    * Start timer.
    */
@@ -129,6 +185,51 @@ public class ProxyContext {
     }
   }
 
+  /**
+   * Record time spent in module since startTimer. To be called when the
+   * response headers of the module are received.
+   * @param mi module instance
+   * @param timings where time is recorded
+   */
+  public void hopDone(ModuleInstance mi, PhaseTimings timings) {
+    if (nanoTimeStart == 0) {
+      return;
+    }
+    long now = System.nanoTime();
+    long nanos = now - nanoTimeStart;
+    nanoTimeHops += nanos;
+    nanoTimeLastHop = now;
+    String phase = PhaseTimings.phase(mi);
+    String module = mi.getModuleDescriptor().getId();
+    timings.record(phase, module, nanos);
+    if (logger.isInfoEnabled()) {
+      if (hopTimings == null) {
+        hopTimings = new StringBuilder();
+      }
+      hopTimings.append(' ').append(phase).append(':').append(module)
+          .append(' ').append(nanos / 1000).append("us");
+    }
+  }
+
+  /**
+   * Record time spent by Okapi itself and log the time spent per phase.
+   * To be called when the response has been written.
+   * @param timings where time is recorded
+   */
+  public void requestDone(PhaseTimings timings) {
+    long now = System.nanoTime();
+    long lastHop = nanoTimeLastHop == 0 ? now : nanoTimeLastHop;
+    long okapi = lastHop - nanoTimeRequest - nanoTimeHops;
+    long transfer = now - lastHop;
+    timings.record(PhaseTimings.OKAPI, PhaseTimings.OKAPI, okapi);
+    timings.record(PhaseTimings.TRANSFER, PhaseTimings.OKAPI, transfer);
+    if (logger.isInfoEnabled()) {
+      logger.info("{} END {} {}us okapi {}us transfer {}us{}", reqId,
+          ctx.response().getStatusCode(), (now - nanoTimeRequest) / 1000,
+          okapi / 1000, transfer / 1000, hopTimings == null ? "" : hopTimings);
+    }
+  }
+
   /**
    * Pass the response headers from an OkapiClient into the response of this
    * request. Only selected X-Something headers: X-Okapi-Trace
@@ -210,13 +311,13 @@ public class ProxyContext {
    * @param tenant tenant
    */
   public final void logRequest(RoutingContext ctx, String tenant) {
-    StringBuilder mods = new StringBuilder();
-    if (modList != null && !modList.isEmpty()) {
-      for (ModuleInstance mi : modList) {
-        mods.append(" ").append(mi.getModuleDescriptor().getId());
-      }
-    }
     if (logger.isInfoEnabled()) {
+      StringBuilder mods = new StringBuilder();
+      if (modList != null && !modList.isEmpty()) {
+        for (ModuleInstance mi : modList) {
+          mods.append(" ").append(mi.getModuleDescriptor().getId());
+        }
+      }
       logger.info("{} REQ {} {} {} {} {}", reqId,
           ctx.request().remoteAddress(), tenant, ctx.request().method(),
           ctx.request().path(), mods);
@@ -277,18 +378,145 @@ public class ProxyContext {
     logger.warn(msg, e);
   }
 
+  public boolean isDebugEnabled() {
+    return logger.isDebugEnabled();
+  }
+
   public void debug(String msg) {
     logger.debug(msg);
   }
 
+  /**
+   * Log debug message; the message is only formatted if debug is enabled.
+   * @param format message with {} placeholder
+   * @param p0 parameter
+   */
+  public void debug(String format, Object p0) {
+    logger.debug(format, p0);
+  }
+
+  /**
+   * Log debug message; the message is only formatted if debug is enabled.
+   * @param format message with {} placeholders
+   * @param p0 first parameter
+   * @param p1 second parameter
+   */
+  public void debug(String format, Object p0, Object p1) {
+    logger.debug(format, p0, p1);
+  }
+
+  /**
+   * Log debug message; the message is only formatted if debug is enabled.
+   * @param format message with {} placeholders
+   * @param p0 first parameter
+   * @param p1 second parameter
+   * @param p2 third parameter
+   */
+  public void debug(String format, Object p0, Object p1, Object p2) {
+    logger.debug(format, p0, p1, p2);
+  }
+
   public void trace(String msg) {
     logger.trace(msg);
   }
 
+  /**
+   * Log trace message; the message is only formatted if trace is enabled.
+   * @param format message with {} placeholder
+   * @param p0 parameter
+   */
+  public void trace(String format, Object p0) {
+    logger.trace(format, p0);
+  }
+
   public Timer.Sample getSample() {
     return sample;
   }
 
+  public Span getSpan() {
+    return span;
+  }
+
+  public void setSpan(Span span) {
+    this.span = span;
+  }
+
+  public Span getHopSpan() {
+    return hopSpan;
+  }
+
+  public void setHopSpan(Span hopSpan) {
+    this.hopSpan = hopSpan;
+  }
+
+  public String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  public void setContentEncoding(String contentEncoding) {
+    this.contentEncoding = contentEncoding;
+  }
+
+  public String getCacheKey() {
+    return cacheKey;
+  }
+
+  public void setCacheKey(String cacheKey) {
+    this.cacheKey = cacheKey;
+  }
+
+  public ResponseCache.Entry getCacheEntry() {
+    return cacheEntry;
+  }
+
+  public void setCacheEntry(ResponseCache.Entry cacheEntry) {
+    this.cacheEntry = cacheEntry;
+  }
+
+  public long getDeadline() {
+    return deadline;
+  }
+
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  public boolean isExpired() {
+    return expired;
+  }
+
+  /**
+   * Give up request because the deadline has passed: outstanding requests
+   * to modules are reset.
+   */
+  public void expire() {
+    expired = true;
+    for (HttpClientRequest r : clientRequests) {
+      r.reset();
+    }
+    clientRequests.clear();
+  }
+
+  /**
+   * Register request to module, so that it is reset if the request expires.
+   * @param r request to module
+   */
+  public void addClientRequest(HttpClientRequest r) {
+    if (expired) {
+      r.reset();
+    } else {
+      clientRequests.add(r);
+    }
+  }
+
+  public SingleFlight.Flight getFlight() {
+    return flight;
+  }
+
+  public void setFlight(SingleFlight.Flight flight) {
+    this.flight = flight;
+  }
+
   public void setUserId(String userId) {
     this.userId = userId;
   }
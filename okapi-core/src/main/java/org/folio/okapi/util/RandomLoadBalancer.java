@@ -0,0 +1,19 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Pick instance uniformly at random.
+ */
+// S2245: Using pseudorandom number generators (PRNGs) is security-sensitive
+@java.lang.SuppressWarnings({"squid:S2245"})
+public class RandomLoadBalancer implements LoadBalancer {
+
+  @Override
+  public DeploymentDescriptor pick(String srvcId, List<DeploymentDescriptor> instances,
+                                   InstanceTracker tracker) {
+    return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+  }
+}
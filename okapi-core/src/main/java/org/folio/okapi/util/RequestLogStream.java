@@ -0,0 +1,318 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.streams.WriteStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Copy of a stream for a request-log module that never pushes back on the
+ * stream it is copied from.
+ *
+ * <p>Content that the request can not take yet is queued in memory, up to a
+ * configured number of bytes. When the queue would grow beyond that, the
+ * copy either is dropped, and the request to the log module is reset, or
+ * the rest of the content is spilled to a temporary file that is sent when
+ * the queue has been written and the source has ended. Either way the
+ * source is read at the pace of its primary consumer only. A spilled copy
+ * is dropped as well when the file would grow beyond a configured size, or
+ * when the disk does not keep up. Must be used from the context of the
+ * request.
+ */
+public class RequestLogStream implements WriteStream<Buffer> {
+
+  public static final String DROP = "drop";
+  public static final String SPILL = "spill";
+
+  private static final Logger logger = OkapiLogger.get();
+
+  private final Vertx vertx;
+  private final WriteStream<Buffer> target;
+  private final long maxQueued;
+  private final long maxSpilled;
+  private final boolean spill;
+  private final Deque<Buffer> queue = new ArrayDeque<>();
+  private long queued;
+  private boolean dropped;
+  private boolean spilling;
+  private List<Buffer> pending; // spilled while the file is opened
+  private long pendingBytes;
+  private long spilled;
+  private String path;
+  private AsyncFile file;
+  private boolean ended;
+  private boolean finished;
+  private boolean done;
+
+  /**
+   * Create copy for request-log module.
+   * @param vertx Vert.x handle
+   * @param target request to log module; other streams are ended rather than
+   *     reset when the copy is dropped
+   * @param maxQueued number of bytes queued in memory at most; also the most
+   *     bytes waiting to be written to the open spill file
+   * @param maxSpilled number of bytes spilled to file at most
+   * @param policy {@link #DROP} or {@link #SPILL}
+   */
+  public RequestLogStream(Vertx vertx, WriteStream<Buffer> target, long maxQueued,
+                          long maxSpilled, String policy) {
+    this.vertx = vertx;
+    this.target = target;
+    this.maxQueued = maxQueued;
+    this.maxSpilled = maxSpilled;
+    this.spill = SPILL.equals(policy);
+  }
+
+  /**
+   * Check overflow policy.
+   * @param policy policy from configuration
+   * @return true if known
+   */
+  public static boolean isPolicy(String policy) {
+    return DROP.equals(policy) || SPILL.equals(policy);
+  }
+
+  @Override
+  public Future<Void> write(Buffer data) {
+    if (dropped) {
+      MetricsHelper.recordRequestLogOverflow(DROP, data.length());
+    } else if (spilling) {
+      spillMore(data);
+    } else if (queue.isEmpty() && !target.writeQueueFull()) {
+      target.write(data);
+    } else if (queued + data.length() > maxQueued) {
+      overflow(data);
+    } else {
+      queue.add(data);
+      queued += data.length();
+      target.drainHandler(x -> drain());
+    }
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+    Future<Void> f = write(data);
+    if (handler != null) {
+      handler.handle(f);
+    }
+  }
+
+  private void drain() {
+    while (!queue.isEmpty() && !target.writeQueueFull()) {
+      Buffer data = queue.poll();
+      queued -= data.length();
+      target.write(data);
+    }
+    if (queue.isEmpty()) {
+      target.drainHandler(null);
+      finish();
+    }
+  }
+
+  private void overflow(Buffer data) {
+    if (!spill || data.length() > maxSpilled) {
+      drop(data.length());
+      return;
+    }
+    spilling = true;
+    pending = new ArrayList<>();
+    pending.add(data);
+    pendingBytes = data.length();
+    spilled = data.length();
+    MetricsHelper.recordRequestLogOverflow(SPILL, data.length());
+    vertx.fileSystem().createTempFile("okapi-log-", ".tmp")
+        .compose(p -> {
+          path = p;
+          return vertx.fileSystem().open(p, new OpenOptions().setWrite(true));
+        })
+        .onFailure(e -> {
+          if (dropped) {
+            deleteFile();
+            return;
+          }
+          logger.warn("Could not create request log file: {}", e.getMessage());
+          drop(0);
+        })
+        .onSuccess(f -> {
+          if (dropped) {
+            f.close();
+            deleteFile();
+            return;
+          }
+          logger.debug("Spilling request log to {}", path);
+          file = f;
+          file.setWriteQueueMaxSize((int) Math.min(Integer.MAX_VALUE, maxQueued));
+          for (Buffer b : pending) {
+            file.write(b);
+          }
+          pending = null;
+          pendingBytes = 0;
+          finish();
+        });
+  }
+
+  private void spillMore(Buffer data) {
+    spilled += data.length();
+    if (spilled > maxSpilled) {
+      drop(data.length());
+      return;
+    }
+    if (file == null) {
+      pending.add(data);
+      pendingBytes += data.length();
+    } else if (file.writeQueueFull()) {
+      drop(data.length()); // disk does not keep up
+      return;
+    } else {
+      file.write(data);
+    }
+    MetricsHelper.recordRequestLogOverflow(SPILL, data.length());
+  }
+
+  private void drop(long bytes) {
+    dropped = true;
+    MetricsHelper.recordRequestLogOverflow(DROP, bytes + queued + pendingBytes);
+    queue.clear();
+    queued = 0;
+    pending = null;
+    pendingBytes = 0;
+    target.drainHandler(null);
+    abort();
+  }
+
+  private void abort() {
+    done = true;
+    if (file != null) {
+      file.close();
+      file = null;
+    }
+    deleteFile();
+    if (target instanceof HttpClientRequest) {
+      ((HttpClientRequest) target).reset();
+    } else {
+      target.end();
+    }
+  }
+
+  /**
+   * End the request to the log module when everything is written: the
+   * source has ended, the queue is empty and the spill file, if any, is
+   * open.
+   */
+  private void finish() {
+    if (!ended || finished || dropped || !queue.isEmpty() || (spilling && file == null)) {
+      return;
+    }
+    finished = true;
+    if (!spilling) {
+      done = true;
+      target.end();
+      return;
+    }
+    AsyncFile f0 = file;
+    file = null;
+    f0.close()
+        .compose(x -> vertx.fileSystem().open(path, new OpenOptions().setRead(true)
+            .setWrite(false).setCreate(false)))
+        .onFailure(e -> {
+          if (done) {
+            return;
+          }
+          logger.warn("Could not read request log file: {}", e.getMessage());
+          abort();
+        })
+        .onSuccess(f -> {
+          if (done) {
+            f.close();
+            return;
+          }
+          f.pipeTo(target, res -> {
+            done = true;
+            f.close();
+            deleteFile();
+          });
+        });
+  }
+
+  /**
+   * Give up the copy unless it is complete: the request to the log module
+   * is reset and the spill file removed. Used when the request of which
+   * this is a copy ends without the log module having taken it all.
+   */
+  public void close() {
+    if (!done) {
+      drop(0);
+    }
+  }
+
+  /**
+   * Whether the copy is complete or has been given up.
+   * @return true if nothing more happens with the copy
+   */
+  public boolean isDone() {
+    return done;
+  }
+
+  private void deleteFile() {
+    if (path != null) {
+      vertx.fileSystem().delete(path);
+    }
+  }
+
+  @Override
+  public void end(Handler<AsyncResult<Void>> handler) {
+    ended = true;
+    finish();
+    if (handler != null) {
+      handler.handle(Future.succeededFuture());
+    }
+  }
+
+  @Override
+  public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+    return this;
+  }
+
+  @Override
+  public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+    return this;
+  }
+
+  @Override
+  public boolean writeQueueFull() {
+    return false;
+  }
+
+  @Override
+  public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+    return this;
+  }
+
+  /**
+   * Whether the copy has been dropped.
+   * @return true if dropped
+   */
+  public boolean isDropped() {
+    return dropped;
+  }
+
+  /**
+   * Return number of bytes queued in memory.
+   * @return number of bytes
+   */
+  public long getQueued() {
+    return queued;
+  }
+}
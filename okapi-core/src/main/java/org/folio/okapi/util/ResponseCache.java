@@ -0,0 +1,550 @@
+package org.folio.okapi.util;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.folio.okapi.common.XOkapiHeaders;
+
+/**
+ * Bounded cache of GET responses of handlers that have a cache policy.
+ *
+ * <p>A response is kept for the time-to-live of the policy, or less if the
+ * module says so with Cache-Control (s-maxage or max-age) or Expires.
+ * Responses with Cache-Control no-store or private, with Set-Cookie, or
+ * that vary by headers not listed in the policy are not kept. Responses with
+ * Cache-Control no-cache are kept only if they have an ETag or Last-Modified
+ * header; they are revalidated with the module every time. Expired
+ * responses with such a validator are not removed at once, so that the
+ * caller can revalidate them with If-None-Match or If-Modified-Since.
+ *
+ * <p>The cache is bounded by the total size of the responses; the least
+ * recently used are removed first. Bodies may be kept outside of the Java
+ * heap. Methods may be called from any thread.
+ */
+public class ResponseCache {
+
+  private static final String CACHE_NAME = "response";
+  private static final String[] NOT_STORED_HEADERS = {
+      "Age", "Connection", "Content-Length", "Keep-Alive", "Transfer-Encoding", XOkapiHeaders.TRACE
+  };
+  private static final String[] REVALIDATED_HEADERS = {
+      "Cache-Control", "Expires", "ETag", "Last-Modified", "Date"
+  };
+
+  /**
+   * Cached response.
+   */
+  public static final class Entry {
+    private final int status;
+    private final MultiMap headers;
+    private final Buffer heapBody;
+    private final ByteBuffer directBody;
+    private final int size;
+    private final long created;
+    private final long expires;
+
+    Entry(int status, MultiMap headers, Buffer body, boolean offHeap, long created, long expires) {
+      this.status = status;
+      this.headers = headers;
+      if (offHeap) {
+        directBody = ByteBuffer.allocateDirect(body.length());
+        directBody.put(body.getByteBuf().nioBuffer()).flip();
+        heapBody = null;
+      } else {
+        directBody = null;
+        heapBody = body.copy(); // without spare capacity
+      }
+      int sz = body.length();
+      for (Map.Entry<String, String> e : headers) {
+        sz += e.getKey().length() + e.getValue().length();
+      }
+      this.size = sz;
+      this.created = created;
+      this.expires = expires;
+    }
+
+    private Entry(Entry old, MultiMap headers, long created, long expires) {
+      this.status = old.status;
+      this.headers = headers;
+      this.heapBody = old.heapBody;
+      this.directBody = old.directBody;
+      this.size = old.size;
+      this.created = created;
+      this.expires = expires;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Add response headers.
+     * @param out where headers are added
+     */
+    public void copyHeaders(MultiMap out) {
+      out.addAll(headers);
+    }
+
+    /**
+     * Return response body.
+     * @return buffer that shares the memory of the cache; must not be modified
+     */
+    public Buffer getBody() {
+      if (directBody != null) {
+        return Buffer.buffer(Unpooled.wrappedBuffer(directBody.asReadOnlyBuffer()));
+      }
+      return heapBody;
+    }
+
+    public String getEtag() {
+      return headers.get("ETag");
+    }
+
+    public String getLastModified() {
+      return headers.get("Last-Modified");
+    }
+
+    int getSize() {
+      return size;
+    }
+
+    boolean hasValidator() {
+      return getEtag() != null || getLastModified() != null;
+    }
+
+    public boolean isFresh() {
+      return isFresh(System.currentTimeMillis());
+    }
+
+    boolean isFresh(long now) {
+      return expires > now;
+    }
+
+    /**
+     * Return age for the Age header.
+     * @return seconds since the response was stored or revalidated
+     */
+    public long getAge() {
+      return Math.max(0, (System.currentTimeMillis() - created) / 1000);
+    }
+
+    /**
+     * Whether the conditional headers of a request match this response.
+     * @param requestHeaders headers with If-None-Match or If-Modified-Since
+     * @return true if the client has the response already
+     */
+    public boolean notModified(MultiMap requestHeaders) {
+      String ifNoneMatch = requestHeaders.get("If-None-Match");
+      if (ifNoneMatch != null) {
+        String etag = getEtag();
+        if (etag == null) {
+          return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+          String t = tag.trim();
+          if (t.equals("*") || opaqueTag(t).equals(opaqueTag(etag))) {
+            return true;
+          }
+        }
+        return false;
+      }
+      String ifModifiedSince = requestHeaders.get("If-Modified-Since");
+      String lastModified = getLastModified();
+      if (ifModifiedSince == null || lastModified == null) {
+        return false;
+      }
+      long since = parseDate(ifModifiedSince);
+      long modified = parseDate(lastModified);
+      return since != -1 && modified != -1 && modified <= since;
+    }
+  }
+
+  /**
+   * Collects the body of a response while it is sent to the client, and
+   * stores the response when the body is complete.
+   */
+  private final class Writer implements WriteStream<Buffer> {
+    private final String key;
+    private final int status;
+    private final MultiMap headers;
+    private final long ms;
+    private Buffer body = Buffer.buffer();
+
+    Writer(String key, int status, MultiMap headers, long ms) {
+      this.key = key;
+      this.status = status;
+      this.headers = headers;
+      this.ms = ms;
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      if (body != null) {
+        if (body.length() + data.length() > maxEntrySize) {
+          body = null;
+        } else {
+          body.appendBuffer(data);
+        }
+      }
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      Future<Void> f = write(data);
+      if (handler != null) {
+        handler.handle(f);
+      }
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      if (body != null) {
+        long now = System.currentTimeMillis();
+        put(key, new Entry(status, headers, body, offHeap, now, now + ms));
+      }
+      if (handler != null) {
+        handler.handle(Future.succeededFuture());
+      }
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return false;
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      return this;
+    }
+  }
+
+  private final long maxSize;
+  private final int maxEntrySize;
+  private final boolean offHeap;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<String> modules = new HashSet<>(); // tenant and module with entries
+  private long size;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Create cache.
+   * @param maxSize maximum total size of responses in bytes; 0 disables
+   * @param maxEntrySize maximum size of one response body in bytes
+   * @param offHeap whether bodies are kept in direct memory
+   */
+  public ResponseCache(long maxSize, int maxEntrySize, boolean offHeap) {
+    this.maxSize = maxSize;
+    this.maxEntrySize = maxEntrySize;
+    this.offHeap = offHeap;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Make cache key.
+   * @param tenant tenant ID
+   * @param module module ID
+   * @param uri request URI with query
+   * @param headers request headers
+   * @param vary names of request headers that select the response; null for none
+   * @return key
+   */
+  public static String key(String tenant, String module, String uri, MultiMap headers,
+                           String[] vary) {
+    StringBuilder b = new StringBuilder(tenant).append('\n').append(module)
+        .append('\n').append(uri);
+    if (vary != null) {
+      for (String name : vary) {
+        b.append('\n');
+        String value = headers.get(name);
+        if (value != null) {
+          b.append(value);
+        }
+      }
+    }
+    return b.toString();
+  }
+
+  private static String modulePrefix(String key) {
+    return key.substring(0, key.indexOf('\n', key.indexOf('\n') + 1) + 1);
+  }
+
+  /**
+   * Get response.
+   * @param key from {@link #key(String, String, String, MultiMap, String[])}
+   * @return response, which may be expired if it can be revalidated; null if none
+   */
+  public Entry get(String key) {
+    return get(key, System.currentTimeMillis());
+  }
+
+  synchronized Entry get(String key, long now) {
+    Entry e = entries.get(key);
+    if (e != null && !e.isFresh(now) && !e.hasValidator()) {
+      remove(key);
+      e = null;
+    }
+    boolean hit = e != null && e.isFresh(now);
+    if (hit) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    MetricsHelper.recordCacheLookup(CACHE_NAME, hit);
+    return e;
+  }
+
+  /**
+   * Return stream that stores a response when its body has been written.
+   * @param key from {@link #key(String, String, String, MultiMap, String[])}
+   * @param status response status
+   * @param headers response headers of module; a copy without hop-by-hop headers is kept
+   * @param ttlMs maximum time in milliseconds that the response is kept
+   * @param vary request headers that the key depends on; null for none
+   * @return stream; null if the response may not be cached
+   */
+  public WriteStream<Buffer> writer(String key, int status, MultiMap headers, long ttlMs,
+                                    String[] vary) {
+    if (!isEnabled() || status != 200 || headers.contains("Set-Cookie")
+        || !varies(headers.get("Vary"), vary)) {
+      return null;
+    }
+    long ms = maxAge(headers, System.currentTimeMillis(), ttlMs);
+    if (ms < 0 || ms == 0 && headers.get("ETag") == null
+        && headers.get("Last-Modified") == null) {
+      return null;
+    }
+    MultiMap copy = MultiMap.caseInsensitiveMultiMap().setAll(headers);
+    for (String name : NOT_STORED_HEADERS) {
+      copy.remove(name);
+    }
+    return new Writer(key, status, copy, ms);
+  }
+
+  /**
+   * Whether the response headers named in the Vary header of a response are
+   * all part of the key.
+   * @param responseVary Vary header of response; null if none
+   * @param vary request headers that the key depends on; null for none
+   * @return true if the response may be cached
+   */
+  static boolean varies(String responseVary, String[] vary) {
+    if (responseVary == null) {
+      return true;
+    }
+    for (String name : responseVary.split(",")) {
+      String n = name.trim();
+      if (n.isEmpty()) {
+        continue;
+      }
+      boolean found = false;
+      if (vary != null) {
+        for (String v : vary) {
+          if (v.equalsIgnoreCase(n)) {
+            found = true;
+            break;
+          }
+        }
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Update a response after the module said that it has not been modified.
+   * @param key from {@link #key(String, String, String, MultiMap, String[])}
+   * @param entry expired response
+   * @param headers headers of the 304 response of the module
+   * @param ttlMs maximum time in milliseconds that the response is kept
+   * @return the updated response
+   */
+  public Entry refresh(String key, Entry entry, MultiMap headers, long ttlMs) {
+    MultiMap merged = MultiMap.caseInsensitiveMultiMap().setAll(entry.headers);
+    for (String name : REVALIDATED_HEADERS) {
+      String value = headers.get(name);
+      if (value != null) {
+        merged.set(name, value);
+      }
+    }
+    long now = System.currentTimeMillis();
+    long ms = maxAge(merged, now, ttlMs);
+    Entry e = new Entry(entry, merged, now, now + Math.max(0, ms));
+    if (ms < 0) {
+      synchronized (this) {
+        remove(key);
+      }
+    } else {
+      put(key, e);
+    }
+    return e;
+  }
+
+  synchronized void put(String key, Entry e) {
+    if (e.getSize() > maxSize) {
+      return;
+    }
+    remove(key);
+    entries.put(key, e);
+    modules.add(modulePrefix(key));
+    size += e.getSize();
+    Iterator<Entry> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().getSize();
+      it.remove();
+    }
+  }
+
+  private void remove(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) {
+      size -= old.getSize();
+    }
+  }
+
+  /**
+   * Return how long a response may be cached.
+   * @param headers response headers
+   * @param now current time in milliseconds
+   * @param ttlMs configured maximum
+   * @return milliseconds; 0 if it must be revalidated; -1 if not to be cached
+   */
+  static long maxAge(MultiMap headers, long now, long ttlMs) {
+    long ms = ttlMs;
+    String cacheControl = headers.get("Cache-Control");
+    if (cacheControl != null) {
+      long maxAge = -1;
+      for (String directive : cacheControl.split(",")) {
+        String d = directive.trim().toLowerCase();
+        if (d.equals("no-store") || d.equals("private")) {
+          return -1;
+        }
+        if (d.equals("no-cache")) {
+          ms = 0;
+        } else if (d.startsWith("s-maxage=")) {
+          maxAge = parseSeconds(d.substring(9));
+        } else if (d.startsWith("max-age=") && maxAge == -1) {
+          maxAge = parseSeconds(d.substring(8));
+        }
+      }
+      if (maxAge != -1) {
+        return Math.min(ms, maxAge);
+      }
+    }
+    String expires = headers.get("Expires");
+    if (expires != null) {
+      long t = parseDate(expires);
+      ms = Math.min(ms, t - now);
+    }
+    return Math.max(0, ms);
+  }
+
+  private static long parseSeconds(String s) {
+    try {
+      return Math.max(0, Long.parseLong(s) * 1000);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static long parseDate(String s) {
+    try {
+      return ZonedDateTime.parse(s, DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  private static String opaqueTag(String tag) {
+    return tag.startsWith("W/") ? tag.substring(2) : tag;
+  }
+
+  /**
+   * Remove all responses for tenant.
+   * @param tenant tenant ID
+   */
+  public synchronized void invalidate(String tenant) {
+    removeByPrefix(tenant + "\n");
+    modules.removeIf(p -> p.startsWith(tenant + "\n"));
+  }
+
+  /**
+   * Remove all responses of a module for tenant; used when the module
+   * handles a request that may modify data.
+   * @param tenant tenant ID
+   * @param module module ID
+   */
+  public synchronized void invalidate(String tenant, String module) {
+    String prefix = tenant + "\n" + module + "\n";
+    if (modules.remove(prefix)) {
+      removeByPrefix(prefix);
+    }
+  }
+
+  private void removeByPrefix(String prefix) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Entry> e = it.next();
+      if (e.getKey().startsWith(prefix)) {
+        size -= e.getValue().getSize();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all responses.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    modules.clear();
+    size = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return size;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+}
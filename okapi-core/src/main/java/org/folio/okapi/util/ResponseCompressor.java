@@ -0,0 +1,278 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compression of responses to clients that accept it.
+ *
+ * <p>The encoding is negotiated from the Accept-Encoding header of the
+ * request: gzip is preferred over deflate. Only responses with a textual
+ * content type, such as JSON, that are not encoded already and are not known
+ * to be smaller than a minimum size are compressed. The body is compressed
+ * as it is streamed; Deflaters are pooled, as they hold native memory.
+ * Methods may be called from any thread; a stream must be used from the
+ * context of its request.
+ */
+public class ResponseCompressor {
+
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  static final int POOL_SIZE = 64;
+  private static final int OUT_SIZE = 8192;
+  private static final byte[] GZIP_HEADER = {
+      0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+  private static final String[] TYPES = {
+      "text/", "application/json", "application/javascript", "application/xml",
+      "application/x-www-form-urlencoded", "+json", "+xml"
+  };
+
+  private final int level;
+  private final long minSize;
+  // gzip has its own header and trailer around raw deflate data
+  private final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+  private final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  /**
+   * Create compressor.
+   * @param level compression level; 1 (fastest) to 9 (best)
+   * @param minSize responses with a Content-Length below this are not compressed
+   */
+  public ResponseCompressor(int level, long minSize) {
+    if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Compression level out of range: " + level);
+    }
+    this.level = level;
+    this.minSize = minSize;
+  }
+
+  /**
+   * Pick encoding for response.
+   * @param acceptEncoding Accept-Encoding header of request; null if none
+   * @param status response status
+   * @param headers response headers, including Content-Length if known
+   * @return {@link #GZIP} or {@link #DEFLATE}; null if the response is sent as it is
+   */
+  public String encoding(String acceptEncoding, int status, MultiMap headers) {
+    if (status < 200 || status == 204 || status == 206 || status == 304
+        || headers.contains("Content-Encoding") || !isCompressible(headers.get("Content-Type"))) {
+      return null;
+    }
+    String length = headers.get("Content-Length");
+    if (length != null) {
+      try {
+        if (Long.parseLong(length) < minSize) {
+          return null;
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return negotiate(acceptEncoding);
+  }
+
+  static boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    String type = contentType.toLowerCase(Locale.ROOT);
+    int i = type.indexOf(';');
+    if (i != -1) {
+      type = type.substring(0, i);
+    }
+    type = type.trim();
+    for (String t : TYPES) {
+      if (t.startsWith("+") ? type.endsWith(t) : type.startsWith(t)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Pick the encoding the client prefers, gzip if equal.
+   * @param acceptEncoding Accept-Encoding header; null if none
+   * @return {@link #GZIP} or {@link #DEFLATE}; null if neither is accepted
+   */
+  static String negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    double gzip = -1.0;
+    double deflate = -1.0;
+    double any = -1.0;
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      String coding = params[0].trim().toLowerCase(Locale.ROOT);
+      double q = 1.0;
+      for (int i = 1; i < params.length; i++) {
+        String p = params[i].trim();
+        if (p.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(p.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0.0;
+          }
+        }
+      }
+      if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+        gzip = q;
+      } else if (DEFLATE.equals(coding)) {
+        deflate = q;
+      } else if ("*".equals(coding)) {
+        any = q;
+      }
+    }
+    if (gzip < 0.0) {
+      gzip = any;
+    }
+    if (deflate < 0.0) {
+      deflate = any;
+    }
+    if (gzip > 0.0 && gzip >= deflate) {
+      return GZIP;
+    }
+    return deflate > 0.0 ? DEFLATE : null;
+  }
+
+  /**
+   * Make stream that compresses the response body.
+   * @param encoding {@link #GZIP} or {@link #DEFLATE}
+   * @param target response
+   * @return stream that writes compressed body to target
+   */
+  public Stream stream(String encoding, WriteStream<Buffer> target) {
+    return new Stream(GZIP.equals(encoding), target);
+  }
+
+  private Deflater borrow(boolean raw) {
+    Deflater deflater = (raw ? rawDeflaters : zlibDeflaters).poll();
+    return deflater != null ? deflater : new Deflater(level, raw);
+  }
+
+  private void giveBack(Deflater deflater, boolean raw) {
+    deflater.reset();
+    if (!(raw ? rawDeflaters : zlibDeflaters).offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  int pooled() {
+    return rawDeflaters.size() + zlibDeflaters.size();
+  }
+
+  /**
+   * Stream that compresses what is written to it.
+   */
+  public final class Stream implements WriteStream<Buffer> {
+    private final boolean gzip;
+    private final WriteStream<Buffer> target;
+    private final CRC32 crc;
+    private final byte[] out = new byte[OUT_SIZE];
+    private Deflater deflater;
+    private boolean started;
+
+    private Stream(boolean gzip, WriteStream<Buffer> target) {
+      this.gzip = gzip;
+      this.target = target;
+      this.crc = gzip ? new CRC32() : null;
+      this.deflater = borrow(gzip);
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      if (deflater == null) {
+        return Future.failedFuture("Stream is ended");
+      }
+      byte[] bytes = data.getBytes();
+      if (gzip) {
+        crc.update(bytes);
+      }
+      deflater.setInput(bytes);
+      Buffer buf = deflate();
+      return buf.length() == 0 ? Future.succeededFuture() : target.write(buf);
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      Future<Void> f = write(data);
+      if (handler != null) {
+        f.onComplete(handler);
+      }
+    }
+
+    private Buffer deflate() {
+      Buffer buf = Buffer.buffer();
+      if (gzip && !started) {
+        buf.appendBytes(GZIP_HEADER);
+      }
+      started = true;
+      int n;
+      while ((n = deflater.deflate(out)) > 0) {
+        buf.appendBytes(out, 0, n);
+      }
+      return buf;
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      if (deflater == null) {
+        target.end(handler);
+        return;
+      }
+      deflater.finish();
+      Buffer buf = deflate();
+      if (gzip) {
+        buf.appendIntLE((int) crc.getValue());
+        buf.appendIntLE((int) deflater.getBytesRead());
+      }
+      release();
+      target.end(buf, handler);
+    }
+
+    /**
+     * Return Deflater to the pool. Called when the stream is ended, and
+     * should be called if the response is closed before that.
+     */
+    public void release() {
+      if (deflater != null) {
+        giveBack(deflater, gzip);
+        deflater = null;
+      }
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      target.exceptionHandler(handler);
+      return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      target.setWriteQueueMaxSize(maxSize);
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return target.writeQueueFull();
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      target.drainHandler(handler);
+      return this;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package org.folio.okapi.util;
+
+/**
+ * Limits retries and hedged requests relative to the number of requests, so
+ * that they can not multiply the load on modules that are in trouble.
+ *
+ * <p>Each request that may be retried deposits ratio tokens, and each retry
+ * takes one token. The budget holds up to burst tokens and starts full.
+ * Methods may be called from any thread.
+ */
+public class RetryBudget {
+
+  private final double ratio;
+  private final double burst;
+  private double tokens;
+
+  /**
+   * Create budget.
+   * @param ratio tokens per request; 0.1 allows one retry per ten requests
+   * @param burst maximum number of tokens; 0 disables retries
+   */
+  public RetryBudget(double ratio, int burst) {
+    this.ratio = ratio;
+    this.burst = burst;
+    this.tokens = burst;
+  }
+
+  /**
+   * Register a request that may be retried.
+   */
+  public synchronized void deposit() {
+    tokens = Math.min(burst, tokens + ratio);
+  }
+
+  /**
+   * Take a token for a retry.
+   * @return true if the retry may be made
+   */
+  public synchronized boolean withdraw() {
+    if (tokens < 1.0) {
+      return false;
+    }
+    tokens -= 1.0;
+    return true;
+  }
+}
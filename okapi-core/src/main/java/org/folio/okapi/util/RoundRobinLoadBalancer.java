@@ -0,0 +1,22 @@
+package org.folio.okapi.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Pick instances in turn.
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+  private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+  @Override
+  public DeploymentDescriptor pick(String srvcId, List<DeploymentDescriptor> instances,
+                                   InstanceTracker tracker) {
+    int n = counters.computeIfAbsent(srvcId, x -> new AtomicInteger()).getAndIncrement();
+    return instances.get(Math.floorMod(n, instances.size()));
+  }
+}
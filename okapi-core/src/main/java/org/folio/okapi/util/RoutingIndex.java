@@ -0,0 +1,269 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+
+/**
+ * Compiled routing table for the modules enabled for one tenant.
+ *
+ * <p>Routing entries are placed in a segment trie per HTTP method. Each
+ * entry is stored at the node reached by the leading path segments that are
+ * either literal or a whole {@code {name}} construct; the first segment with
+ * a glob or a partial {@code {name}} stops the descent. A lookup walks the
+ * request path segment by segment and collects the entries found on the way,
+ * so the cost is proportional to path depth rather than to the number of
+ * enabled modules. Every collected entry is verified with
+ * {@link RoutingEntry#match(String, String)}, so the result is exactly what a
+ * linear scan of the modules would give.
+ *
+ * <p>The index is immutable once built and may be shared between threads.
+ */
+public class RoutingIndex {
+
+  private static final String ANY_METHOD = "*";
+
+  /**
+   * A routing entry of an enabled module that matched a request.
+   */
+  public static final class Match {
+    private final ModuleDescriptor moduleDescriptor;
+    private final RoutingEntry routingEntry;
+    private final boolean handler;
+    private final int moduleNo;
+    private final int entryNo;
+
+    Match(ModuleDescriptor md, RoutingEntry re, boolean handler, int moduleNo, int entryNo) {
+      this.moduleDescriptor = md;
+      this.routingEntry = re;
+      this.handler = handler;
+      this.moduleNo = moduleNo;
+      this.entryNo = entryNo;
+    }
+
+    public ModuleDescriptor getModuleDescriptor() {
+      return moduleDescriptor;
+    }
+
+    public RoutingEntry getRoutingEntry() {
+      return routingEntry;
+    }
+
+    /**
+     * Whether this is a proxy (handler) entry rather than a filter.
+     * @return true for handler; false for filter
+     */
+    public boolean isHandler() {
+      return handler;
+    }
+  }
+
+  /**
+   * Order of a per-module scan with handlers before filters.
+   */
+  public static final Comparator<Match> HANDLERS_FIRST = Comparator
+      .comparingInt((Match m) -> m.moduleNo)
+      .thenComparing(m -> !m.handler)
+      .thenComparingInt(m -> m.entryNo);
+
+  /**
+   * Order of a per-module scan with filters before handlers.
+   */
+  public static final Comparator<Match> FILTERS_FIRST = Comparator
+      .comparingInt((Match m) -> m.moduleNo)
+      .thenComparing(m -> m.handler)
+      .thenComparingInt(m -> m.entryNo);
+
+  private static final class Node {
+    final Map<String, Node> literal = new HashMap<>();
+    Node named; // {name} - any non-empty segment
+    final List<Match> matches = new ArrayList<>(2);
+
+    Node child(String segment) {
+      if (isNamed(segment)) {
+        if (named == null) {
+          named = new Node();
+        }
+        return named;
+      }
+      return literal.computeIfAbsent(segment, x -> new Node());
+    }
+  }
+
+  private static final class Trie {
+    final Map<String, Node> roots = new HashMap<>();
+    final List<Match> all = new ArrayList<>();
+
+    void add(Match m) {
+      String[] methods = m.getRoutingEntry().getMethods();
+      if (methods == null) {
+        return; // never matches
+      }
+      Set<String> buckets = new HashSet<>(Arrays.asList(methods));
+      if (buckets.contains(ANY_METHOD)) {
+        buckets = Collections.singleton(ANY_METHOD);
+      }
+      for (String method : buckets) {
+        RoutingIndex.add(roots.computeIfAbsent(method, x -> new Node()), m);
+      }
+      all.add(m);
+    }
+
+    void collect(String uri, String method, List<Match> candidates) {
+      if (uri == null || method == null || !uri.startsWith("/")) {
+        candidates.addAll(all);
+        return;
+      }
+      int end = RoutingEntry.cutUri(uri);
+      RoutingIndex.collect(roots.get(method), uri, 1, end, candidates);
+      RoutingIndex.collect(roots.get(ANY_METHOD), uri, 1, end, candidates);
+    }
+  }
+
+  private final List<ModuleDescriptor> modules;
+  private final Trie handlers = new Trie();
+  private final Trie filters = new Trie();
+  private final Trie multi = new Trie();
+
+  /**
+   * Compile routing entries for modules.
+   * @param modules enabled modules; the order is significant for the result
+   *     order of {@link #lookup(String, String, String, Comparator)}
+   */
+  public RoutingIndex(List<ModuleDescriptor> modules) {
+    this.modules = new ArrayList<>(modules);
+    int moduleNo = 0;
+    for (ModuleDescriptor md : this.modules) {
+      int entryNo = 0;
+      for (RoutingEntry re : md.getProxyRoutingEntries()) {
+        handlers.add(new Match(md, re, true, moduleNo, entryNo++));
+      }
+      entryNo = 0;
+      for (RoutingEntry re : md.getMultiRoutingEntries()) {
+        multi.add(new Match(md, re, true, moduleNo, entryNo++));
+      }
+      entryNo = 0;
+      for (RoutingEntry re : md.getFilterRoutingEntries()) {
+        filters.add(new Match(md, re, false, moduleNo, entryNo++));
+      }
+      moduleNo++;
+    }
+  }
+
+  /**
+   * Check whether this index was built from the given modules.
+   *
+   * <p>Module descriptors are immutable, and the module manager hands out the
+   * same instances as long as a module is not updated, so an identity
+   * comparison is sufficient and cheap.
+   * @param other list of enabled modules
+   * @return true if index is for the same list of modules
+   */
+  public boolean isFor(List<ModuleDescriptor> other) {
+    if (other.size() != modules.size()) {
+      return false;
+    }
+    int i = 0;
+    for (ModuleDescriptor md : other) {
+      if (md != modules.get(i++)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return number of routing entries in index.
+   * @return number of entries
+   */
+  public int size() {
+    return handlers.all.size() + filters.all.size() + multi.all.size();
+  }
+
+  private static void add(Node node, Match m) {
+    RoutingEntry re = m.getRoutingEntry();
+    String pattern = re.getPathPattern();
+    boolean prefix = false;
+    if (pattern == null) {
+      pattern = re.getPath();
+      prefix = true;
+    }
+    if (pattern != null && pattern.startsWith("/")) {
+      String[] segments = pattern.substring(1).split("/", -1);
+      // a prefix path does not fix its last segment
+      int n = prefix ? segments.length - 1 : segments.length;
+      for (int i = 0; i < n; i++) {
+        String segment = segments[i];
+        if (!isNamed(segment) && (segment.indexOf('{') != -1 || segment.indexOf('*') != -1)) {
+          break;
+        }
+        node = node.child(segment);
+      }
+    }
+    node.matches.add(m);
+  }
+
+  private static boolean isNamed(String segment) {
+    return segment.startsWith("{") && segment.indexOf('}') == segment.length() - 1;
+  }
+
+  /**
+   * Find routing entries matching request.
+   *
+   * <p>Returns all matching filters and all matching handlers of the modules.
+   * If moduleId is given, handlers are taken from interfaces of type multiple
+   * of that module only; otherwise from the proxy interfaces of all modules.
+   * @param uri request URI (query and fragment are ignored)
+   * @param method HTTP method
+   * @param moduleId module for multiple interface; null for regular proxying
+   * @param order result order: {@link #HANDLERS_FIRST} or {@link #FILTERS_FIRST}
+   * @return matching entries
+   */
+  public List<Match> lookup(String uri, String method, String moduleId, Comparator<Match> order) {
+    List<Match> candidates = new ArrayList<>();
+    if (moduleId == null) {
+      handlers.collect(uri, method, candidates);
+    } else {
+      multi.collect(uri, method, candidates);
+    }
+    filters.collect(uri, method, candidates);
+    List<Match> result = new ArrayList<>(candidates.size());
+    for (Match m : candidates) {
+      if ((moduleId == null || !m.isHandler() || moduleId.equals(m.moduleDescriptor.getId()))
+          && m.getRoutingEntry().match(uri, method)) {
+        result.add(m);
+      }
+    }
+    result.sort(order);
+    return result;
+  }
+
+  private static void collect(Node node, String uri, int start, int end, List<Match> candidates) {
+    while (node != null) {
+      candidates.addAll(node.matches);
+      if (start > end) {
+        return;
+      }
+      int next = uri.indexOf('/', start);
+      if (next == -1 || next > end) {
+        next = end;
+      }
+      if (node.named != null && next > start) {
+        collect(node.named, uri, next + 1, end, candidates);
+      }
+      if (node.literal.isEmpty()) {
+        return;
+      }
+      node = node.literal.get(uri.substring(start, next));
+      start = next + 1;
+    }
+  }
+}
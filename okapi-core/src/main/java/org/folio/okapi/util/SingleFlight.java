@@ -0,0 +1,268 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.folio.okapi.common.XOkapiHeaders;
+
+/**
+ * Collapses identical requests that are in flight at the same time into one.
+ *
+ * <p>The first request for a key leads: it is proxied as usual, and its
+ * response is collected while it is sent to its client. Requests for the
+ * same key that arrive before the response is complete follow: they get a
+ * copy of the response of the leader. A flight takes at most
+ * {@code maxWaiters} followers; the next request leads a new flight. If the
+ * response of the leader can not be shared, because it is too large or the
+ * request fails, followers are told so and must make the request
+ * themselves. Methods may be called from any thread; followers are called
+ * back on their own context.
+ */
+public class SingleFlight {
+
+  /**
+   * Request headers that the response may depend on in addition to tenant and
+   * URI: identity of the user, and content negotiation.
+   */
+  static final String[] KEY_HEADERS = {
+      XOkapiHeaders.TOKEN, XOkapiHeaders.ADDITIONAL_TOKEN, XOkapiHeaders.USER_ID,
+      "Accept", "Accept-Encoding", "Accept-Language"
+  };
+
+  private static final String[] NOT_SHARED_HEADERS = {
+      "Connection", "Content-Length", "Keep-Alive", "Transfer-Encoding", XOkapiHeaders.TRACE
+  };
+
+  /**
+   * Response of the leader.
+   */
+  public static final class Response {
+    private final int status;
+    private final MultiMap headers;
+    private final Buffer body;
+
+    Response(int status, MultiMap headers, Buffer body) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * Add response headers.
+     * @param out where headers are added
+     */
+    public void copyHeaders(MultiMap out) {
+      out.addAll(headers);
+    }
+
+    /**
+     * Return response body.
+     * @return buffer shared by all followers; must not be modified
+     */
+    public Buffer getBody() {
+      return body;
+    }
+  }
+
+  /**
+   * Request in flight, as seen by its leader.
+   */
+  public final class Flight {
+    private final String key;
+    private final List<Handler<AsyncResult<Response>>> waiters = new ArrayList<>();
+    private boolean done;
+
+    private Flight(String key) {
+      this.key = key;
+    }
+
+    /**
+     * Return stream that collects the response of the leader and passes it
+     * to the followers when it is complete.
+     * @param status response status
+     * @param headers response headers of module; a copy without hop-by-hop headers is kept
+     * @return stream
+     */
+    public WriteStream<Buffer> writer(int status, MultiMap headers) {
+      MultiMap copy = MultiMap.caseInsensitiveMultiMap().setAll(headers);
+      for (String name : NOT_SHARED_HEADERS) {
+        copy.remove(name);
+      }
+      return new Collector(this, status, copy);
+    }
+
+    /**
+     * Tell followers that the response can not be shared. Does nothing if
+     * the complete response has been passed to them already.
+     */
+    public void abandon() {
+      complete(Future.failedFuture("abandoned"));
+    }
+
+    private void complete(AsyncResult<Response> result) {
+      List<Handler<AsyncResult<Response>>> list;
+      synchronized (SingleFlight.this) {
+        if (done) {
+          return;
+        }
+        done = true;
+        flights.remove(key, this);
+        list = new ArrayList<>(waiters);
+      }
+      for (Handler<AsyncResult<Response>> waiter : list) {
+        waiter.handle(result);
+      }
+    }
+
+    int getWaiters() {
+      synchronized (SingleFlight.this) {
+        return waiters.size();
+      }
+    }
+  }
+
+  private final class Collector implements WriteStream<Buffer> {
+    private final Flight flight;
+    private final int status;
+    private final MultiMap headers;
+    private Buffer body = Buffer.buffer();
+
+    Collector(Flight flight, int status, MultiMap headers) {
+      this.flight = flight;
+      this.status = status;
+      this.headers = headers;
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      if (body != null) {
+        if (body.length() + data.length() > maxBodySize) {
+          body = null;
+          flight.complete(Future.failedFuture("response too large"));
+        } else {
+          body.appendBuffer(data);
+        }
+      }
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      Future<Void> f = write(data);
+      if (handler != null) {
+        handler.handle(f);
+      }
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      if (body != null) {
+        flight.complete(Future.succeededFuture(new Response(status, headers, body)));
+      }
+      if (handler != null) {
+        handler.handle(Future.succeededFuture());
+      }
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return false;
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      return this;
+    }
+  }
+
+  private final int maxWaiters;
+  private final int maxBodySize;
+  private final Map<String, Flight> flights = new HashMap<>();
+
+  /**
+   * Create single flight group.
+   * @param maxWaiters maximum number of followers per flight; 0 disables
+   * @param maxBodySize maximum size of a response body that is shared
+   */
+  public SingleFlight(int maxWaiters, int maxBodySize) {
+    this.maxWaiters = maxWaiters;
+    this.maxBodySize = maxBodySize;
+  }
+
+  public boolean isEnabled() {
+    return maxWaiters > 0;
+  }
+
+  /**
+   * Make key for request.
+   * @param tenant tenant ID
+   * @param uri request URI with query
+   * @param headers request headers
+   * @return key
+   */
+  public static String key(String tenant, String uri, MultiMap headers) {
+    StringBuilder b = new StringBuilder(tenant).append('\n').append(uri);
+    for (String name : KEY_HEADERS) {
+      b.append('\n');
+      String value = headers.get(name);
+      if (value != null) {
+        b.append(value);
+      }
+    }
+    return b.toString();
+  }
+
+  /**
+   * Join the flight for a key, or lead a new one.
+   * @param key from {@link #key(String, String, MultiMap)}
+   * @param follower called with the response of the leader if the caller
+   *     follows; failed if the caller must make the request itself
+   * @return flight if the caller leads; null if it follows
+   */
+  public Flight join(String key, Handler<AsyncResult<Response>> follower) {
+    Context context = Vertx.currentContext();
+    Handler<AsyncResult<Response>> waiter = context == null ? follower
+        : res -> context.runOnContext(x -> follower.handle(res));
+    synchronized (this) {
+      Flight flight = flights.get(key);
+      if (flight != null && flight.waiters.size() < maxWaiters) {
+        flight.waiters.add(waiter);
+        return null;
+      }
+      flight = new Flight(key);
+      flights.put(key, flight); // a full flight goes on without new followers
+      return flight;
+    }
+  }
+
+  /**
+   * Return number of flights that can be joined.
+   * @return number of flights
+   */
+  public synchronized int size() {
+    return flights.size();
+  }
+}
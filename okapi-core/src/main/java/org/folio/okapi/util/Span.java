@@ -0,0 +1,127 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A timed operation of a trace: a request served by Okapi, a request to a
+ * module of a proxy pipeline, or a system interface call.
+ *
+ * <p>Spans are created by {@link Tracer} for sampled traces only. Encoded in
+ * the Zipkin v2 JSON format for export. A span is used by one request at a
+ * time and is not safe for use by several threads.
+ */
+public class Span {
+
+  public static final String SERVER = "SERVER";
+  public static final String CLIENT = "CLIENT";
+
+  private final String traceId;
+  private final String id;
+  private final String parentId;
+  private final String name;
+  private final String kind;
+  private final long timestampMicros;
+  private final long nanoTimeStart;
+  private long durationMicros = -1; // -1 while not ended
+  private String remoteService;
+  private final JsonObject tags = new JsonObject();
+
+  Span(String traceId, String parentId, String name, String kind) {
+    this.traceId = traceId;
+    this.id = TraceContext.newSpanId();
+    this.parentId = parentId;
+    this.name = name;
+    this.kind = kind;
+    this.timestampMicros = System.currentTimeMillis() * 1000;
+    this.nanoTimeStart = System.nanoTime();
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getParentId() {
+    return parentId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Return traceparent header for requests made as part of this span.
+   * @return header value
+   */
+  public String traceparent() {
+    return TraceContext.traceparent(traceId, id, true);
+  }
+
+  /**
+   * Add tag.
+   * @param key tag name
+   * @param value tag value; tag is not added if null
+   * @return this span
+   */
+  public Span tag(String key, Object value) {
+    if (value != null) {
+      tags.put(key, value.toString());
+    }
+    return this;
+  }
+
+  public String getTag(String key) {
+    return tags.getString(key);
+  }
+
+  /**
+   * Set service that the span is a request to.
+   * @param remoteService name of remote service, such as module ID
+   * @return this span
+   */
+  public Span setRemoteService(String remoteService) {
+    this.remoteService = remoteService;
+    return this;
+  }
+
+  /**
+   * End span.
+   * @return true if ended now; false if it was ended already
+   */
+  boolean end() {
+    if (durationMicros >= 0) {
+      return false;
+    }
+    durationMicros = Math.max(1, (System.nanoTime() - nanoTimeStart) / 1000);
+    return true;
+  }
+
+  /**
+   * Encode span in Zipkin v2 format.
+   * @param serviceName name of local service
+   * @return JSON object
+   */
+  public JsonObject toJson(String serviceName) {
+    JsonObject jo = new JsonObject()
+        .put("traceId", traceId)
+        .put("id", id);
+    if (parentId != null) {
+      jo.put("parentId", parentId);
+    }
+    jo.put("name", name)
+        .put("kind", kind)
+        .put("timestamp", timestampMicros)
+        .put("duration", durationMicros)
+        .put("localEndpoint", new JsonObject().put("serviceName", serviceName));
+    if (remoteService != null) {
+      jo.put("remoteEndpoint", new JsonObject().put("serviceName", remoteService));
+    }
+    if (!tags.isEmpty()) {
+      jo.put("tags", tags);
+    }
+    return jo;
+  }
+}
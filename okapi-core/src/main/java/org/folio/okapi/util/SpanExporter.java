@@ -0,0 +1,17 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import java.util.List;
+
+/**
+ * Sends ended spans somewhere, see {@link Tracer}.
+ */
+public interface SpanExporter {
+
+  /**
+   * Export spans.
+   * @param spans batch of ended spans; not modified
+   * @return future; failure is logged by the caller
+   */
+  Future<Void> export(List<Span> spans);
+}
@@ -0,0 +1,125 @@
+package org.folio.okapi.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.folio.okapi.bean.RateLimitDescriptor;
+
+/**
+ * Admission control for the requests of tenants on this node.
+ *
+ * <p>Each tenant with limits has a token bucket that holds up to burst
+ * tokens and is refilled with rate tokens per second; a request takes one
+ * token. The number of admitted requests that are not released yet is
+ * bounded by maxInFlight. Limits are read from the descriptor on every
+ * request, so changes take effect at once. Methods may be called from any
+ * thread.
+ */
+public class TenantLimiter {
+
+  public static final String RATE = "rate";
+  public static final String IN_FLIGHT = "inflight";
+
+  /**
+   * Why a request is not admitted, and when the client may try again.
+   */
+  public static final class Rejection {
+    private final String reason;
+    private final long retryAfterMs;
+
+    Rejection(String reason, long retryAfterMs) {
+      this.reason = reason;
+      this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Return which limit is exceeded.
+     * @return {@link #RATE} or {@link #IN_FLIGHT}
+     */
+    public String getReason() {
+      return reason;
+    }
+
+    public long getRetryAfterMs() {
+      return retryAfterMs;
+    }
+  }
+
+  static final class Bucket {
+    double tokens;
+    long refilled;
+    int inFlight;
+  }
+
+  private final Map<String, Bucket> buckets = new HashMap<>();
+
+  /**
+   * Admit request of tenant. An admitted request must be released with
+   * {@link #release(String)} when it is done.
+   * @param tenant tenant ID
+   * @param limits limits of tenant; null for none
+   * @return null if admitted; rejection otherwise
+   */
+  public Rejection acquire(String tenant, RateLimitDescriptor limits) {
+    return acquire(tenant, limits, System.currentTimeMillis());
+  }
+
+  synchronized Rejection acquire(String tenant, RateLimitDescriptor limits, long now) {
+    if (limits == null) {
+      return null;
+    }
+    Bucket b = buckets.get(tenant);
+    Double rate = limits.getRate();
+    double burst = burst(limits);
+    if (b == null) {
+      b = new Bucket();
+      b.tokens = burst;
+      b.refilled = now;
+      buckets.put(tenant, b);
+    }
+    Integer maxInFlight = limits.getMaxInFlight();
+    if (maxInFlight != null && b.inFlight >= maxInFlight) {
+      return new Rejection(IN_FLIGHT, 1000);
+    }
+    if (rate != null) {
+      b.tokens = Math.min(burst, b.tokens + (now - b.refilled) * rate / 1000.0);
+      b.refilled = now;
+      if (b.tokens < 1.0) {
+        return new Rejection(RATE, (long) Math.ceil((1.0 - b.tokens) * 1000.0 / rate));
+      }
+      b.tokens -= 1.0;
+    }
+    b.inFlight++;
+    return null;
+  }
+
+  private static double burst(RateLimitDescriptor limits) {
+    if (limits.getBurst() != null) {
+      return limits.getBurst();
+    }
+    if (limits.getRate() != null) {
+      return Math.max(1.0, Math.ceil(limits.getRate()));
+    }
+    return 0.0;
+  }
+
+  /**
+   * Release request admitted by {@link #acquire(String, RateLimitDescriptor)}.
+   * @param tenant tenant ID
+   */
+  public synchronized void release(String tenant) {
+    Bucket b = buckets.get(tenant);
+    if (b != null && b.inFlight > 0) {
+      b.inFlight--;
+    }
+  }
+
+  /**
+   * Return number of admitted requests of tenant that are not released.
+   * @param tenant tenant ID
+   * @return number of requests
+   */
+  public synchronized int getInFlight(String tenant) {
+    Bucket b = buckets.get(tenant);
+    return b == null ? 0 : b.inFlight;
+  }
+}
@@ -0,0 +1,125 @@
+package org.folio.okapi.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W3C trace context: the parsed traceparent header.
+ *
+ * <p>Format is {@code version-traceid-parentid-flags} with lower case hex
+ * fields of 2, 32, 16 and 2 digits; see https://www.w3.org/TR/trace-context/.
+ * Headers of unknown future versions are accepted if they start with the
+ * fields of version 00. Objects are immutable.
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT = "traceparent";
+  public static final String TRACESTATE = "tracestate";
+
+  private static final int LENGTH = 55;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final String traceId;
+  private final String spanId;
+  private final boolean sampled;
+
+  TraceContext(String traceId, String spanId, boolean sampled) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.sampled = sampled;
+  }
+
+  /**
+   * Parse traceparent header.
+   * @param header header value; null allowed
+   * @return context; null if header is missing or invalid
+   */
+  public static TraceContext parse(String header) {
+    if (header == null || header.length() < LENGTH) {
+      return null;
+    }
+    if (header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-'
+        || !isHex(header, 0, 2) || !isHex(header, 3, 35) || !isHex(header, 36, 52)
+        || !isHex(header, 53, 55)) {
+      return null;
+    }
+    String version = header.substring(0, 2);
+    if ("ff".equals(version)
+        || (header.length() > LENGTH && ("00".equals(version) || header.charAt(LENGTH) != '-'))) {
+      return null;
+    }
+    String traceId = header.substring(3, 35);
+    String spanId = header.substring(36, 52);
+    if (isZero(traceId) || isZero(spanId)) {
+      return null;
+    }
+    boolean sampled = (Character.digit(header.charAt(54), 16) & 1) != 0;
+    return new TraceContext(traceId, spanId, sampled);
+  }
+
+  private static boolean isHex(String s, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = s.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isZero(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) != '0') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return traceparent header value.
+   * @param traceId trace ID
+   * @param spanId span ID
+   * @param sampled whether trace is sampled
+   * @return header value of version 00
+   */
+  public static String traceparent(String traceId, String spanId, boolean sampled) {
+    return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+  }
+
+  static String newTraceId() {
+    return newId(32);
+  }
+
+  static String newSpanId() {
+    return newId(16);
+  }
+
+  private static String newId(int digits) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    char[] id = new char[digits];
+    long bits;
+    do {
+      bits = 0;
+      for (int i = 0; i < digits; i++) {
+        if (i % 16 == 0) {
+          bits = random.nextLong();
+        }
+        id[i] = HEX[(int) (bits & 15)];
+        bits >>>= 4;
+      }
+    } while (isZero(new String(id)));
+    return new String(id);
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  public boolean isSampled() {
+    return sampled;
+  }
+}
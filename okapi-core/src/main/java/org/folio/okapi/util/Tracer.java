@@ -0,0 +1,201 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.Config;
+import org.folio.okapi.common.OkapiLogger;
+
+/**
+ * Creates spans of sampled traces and exports them in batches.
+ *
+ * <p>Tracing is enabled by configuring {@code traceExport}: an http or https
+ * URL of a Zipkin v2 collector endpoint, or {@code file:} followed by a file
+ * name. A request is traced if the incoming traceparent header says that
+ * the trace is sampled; requests without a valid traceparent start a new
+ * trace with probability {@code traceSampleRate}. Nothing is recorded for
+ * other requests; their traceparent and tracestate headers are passed on
+ * unchanged.
+ *
+ * <p>Ended spans are queued and exported when {@code traceBatchSize} spans
+ * are queued or every {@code traceFlushMs} milliseconds. Spans are dropped
+ * when {@code traceQueueSize} spans are queued already, so that a slow
+ * collector does not make Okapi run out of memory. Methods may be called
+ * from any thread.
+ */
+public class Tracer {
+
+  private static final Logger logger = OkapiLogger.get();
+
+  static final String SERVICE_NAME = "okapi";
+
+  private final SpanExporter exporter;
+  private final double sampleRate;
+  private final int batchSize;
+  private final int queueSize;
+  private final Queue<Span> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  /**
+   * Create tracer from configuration.
+   * @param vertx Vert.x handle
+   * @param config configuration
+   * @throws IllegalArgumentException for bad configuration
+   */
+  public Tracer(Vertx vertx, JsonObject config) {
+    this(vertx, config, createExporter(vertx, Config.getSysConf("traceExport", null, config)));
+  }
+
+  Tracer(Vertx vertx, JsonObject config, SpanExporter exporter) {
+    this.exporter = exporter;
+    this.sampleRate = Double.parseDouble(Config.getSysConf("traceSampleRate", "0.01", config));
+    this.batchSize = Integer.parseInt(Config.getSysConf("traceBatchSize", "512", config));
+    this.queueSize = Integer.parseInt(Config.getSysConf("traceQueueSize", "8192", config));
+    long flushMs = Long.parseLong(Config.getSysConf("traceFlushMs", "1000", config));
+    if (exporter != null) {
+      logger.info("Tracing with sample rate {}", sampleRate);
+      vertx.setPeriodic(flushMs, id -> flush(false));
+    }
+  }
+
+  static SpanExporter createExporter(Vertx vertx, String export) {
+    if (export == null || export.isEmpty()) {
+      return null;
+    }
+    if (export.startsWith("http://") || export.startsWith("https://")) {
+      return new ZipkinSpanExporter(vertx, export, SERVICE_NAME);
+    }
+    if (export.startsWith("file:")) {
+      return new FileSpanExporter(vertx, export.substring(5), SERVICE_NAME);
+    }
+    throw new IllegalArgumentException("Unknown traceExport: " + export);
+  }
+
+  public boolean isEnabled() {
+    return exporter != null;
+  }
+
+  /**
+   * Start span for a request served by Okapi.
+   * @param headers request headers with traceparent, if any
+   * @param name span name
+   * @return span; null if the request is not traced
+   */
+  public Span startServer(MultiMap headers, String name) {
+    if (exporter == null) {
+      return null;
+    }
+    return start(headers.get(TraceContext.TRACEPARENT), name, Span.SERVER);
+  }
+
+  /**
+   * Start span for a request made by Okapi outside of a traced request.
+   * @param traceparent traceparent header of the request that caused this
+   *     one; null if none
+   * @param name span name
+   * @return span; null if the request is not traced
+   */
+  public Span startClient(String traceparent, String name) {
+    if (exporter == null) {
+      return null;
+    }
+    return start(traceparent, name, Span.CLIENT);
+  }
+
+  /**
+   * Start span for a request made by Okapi as part of a traced request.
+   * @param parent span of request served by Okapi; null if not traced
+   * @param name span name
+   * @return span; null if parent is null
+   */
+  public Span startChild(Span parent, String name) {
+    if (parent == null) {
+      return null;
+    }
+    return new Span(parent.getTraceId(), parent.getId(), name, Span.CLIENT);
+  }
+
+  private Span start(String traceparent, String name, String kind) {
+    TraceContext parent = TraceContext.parse(traceparent);
+    if (parent != null) {
+      if (!parent.isSampled()) {
+        return null;
+      }
+      return new Span(parent.getTraceId(), parent.getSpanId(), name, kind);
+    }
+    if (sampleRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return null;
+    }
+    return new Span(TraceContext.newTraceId(), null, name, kind);
+  }
+
+  /**
+   * End span and queue it for export.
+   * @param span span; null and spans that are ended already are ignored
+   */
+  public void finish(Span span) {
+    if (span == null || !span.end()) {
+      return;
+    }
+    if (queued.incrementAndGet() > queueSize) {
+      queued.decrementAndGet();
+      if (dropped.getAndIncrement() == 0) {
+        logger.warn("Trace queue full; dropping spans");
+      }
+      return;
+    }
+    queue.add(span);
+    if (queued.get() >= batchSize) {
+      flush(true);
+    }
+  }
+
+  /**
+   * Export queued spans.
+   * @param fullOnly only export full batches
+   */
+  void flush(boolean fullOnly) {
+    while (queued.get() >= (fullOnly ? batchSize : 1)) {
+      List<Span> batch = new ArrayList<>(Math.min(batchSize, queued.get()));
+      Span span;
+      while (batch.size() < batchSize && (span = queue.poll()) != null) {
+        queued.decrementAndGet();
+        batch.add(span);
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      exporter.export(batch).onFailure(e -> {
+        if (failed.getAndAdd(batch.size()) == 0) {
+          logger.warn("Trace export failed: {}", e.getMessage());
+        }
+      });
+    }
+  }
+
+  /**
+   * Return number of spans dropped because the queue was full.
+   * @return number of spans
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Return number of spans that could not be exported.
+   * @return number of spans
+   */
+  public long getFailed() {
+    return failed.get();
+  }
+}
@@ -0,0 +1,54 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonArray;
+import java.util.List;
+
+/**
+ * Posts spans in Zipkin v2 JSON format to a collector, such as Zipkin
+ * ({@code http://host:9411/api/v2/spans}), Jaeger or the OpenTelemetry
+ * collector with a Zipkin receiver.
+ */
+public class ZipkinSpanExporter implements SpanExporter {
+
+  private final HttpClient client;
+  private final String url;
+  private final String serviceName;
+
+  /**
+   * Create exporter.
+   * @param vertx Vert.x handle
+   * @param url URL of collector endpoint
+   * @param serviceName local service name of spans
+   */
+  public ZipkinSpanExporter(Vertx vertx, String url, String serviceName) {
+    this.client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(2));
+    this.url = url;
+    this.serviceName = serviceName;
+  }
+
+  @Override
+  public Future<Void> export(List<Span> spans) {
+    JsonArray ja = new JsonArray();
+    for (Span span : spans) {
+      ja.add(span.toJson(serviceName));
+    }
+    return client.request(new RequestOptions()
+        .setMethod(HttpMethod.POST)
+        .setAbsoluteURI(url)
+        .setTimeout(10000)
+        .putHeader("Content-Type", "application/json"))
+        .compose(req -> req.send(ja.toBuffer()))
+        .compose(res -> {
+          if (res.statusCode() >= 300) {
+            return Future.failedFuture(url + " returned " + res.statusCode());
+          }
+          return Future.succeededFuture();
+        });
+  }
+}
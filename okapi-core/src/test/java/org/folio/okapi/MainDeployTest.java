@@ -6,6 +6,12 @@ import guru.nidi.ramltester.restassured3.RestAssuredClient;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -320,6 +326,96 @@ public class MainDeployTest {
     });
   }
 
+  @Test
+  public void testServerOptions() {
+    HttpServerOptions so = ProxyVerticle.serverOptions(new JsonObject());
+    Assert.assertFalse(so.isSsl());
+    Assert.assertTrue(so.isHandle100ContinueAutomatically());
+    Assert.assertEquals(100, so.getInitialSettings().getMaxConcurrentStreams());
+    Assert.assertTrue(so.isTcpNoDelay());
+    Assert.assertFalse(so.isTcpFastOpen());
+    Assert.assertFalse(so.isReusePort());
+
+    so = ProxyVerticle.serverOptions(new JsonObject()
+        .put("http2MaxConcurrentStreams", 500)
+        .put("http2InitialWindowSize", 1048576)
+        .put("http2ConnectionWindowSize", 4194304)
+        .put("tcpNoDelay", false)
+        .put("tcpFastOpen", true)
+        .put("reusePort", true)
+        .put("receiveBufferSize", 65536)
+        .put("sendBufferSize", 131072));
+    Assert.assertEquals(500, so.getInitialSettings().getMaxConcurrentStreams());
+    Assert.assertEquals(1048576, so.getInitialSettings().getInitialWindowSize());
+    Assert.assertEquals(4194304, so.getHttp2ConnectionWindowSize());
+    Assert.assertFalse(so.isTcpNoDelay());
+    Assert.assertTrue(so.isTcpFastOpen());
+    Assert.assertTrue(so.isReusePort());
+    Assert.assertEquals(65536, so.getReceiveBufferSize());
+    Assert.assertEquals(131072, so.getSendBufferSize());
+
+    Assert.assertThrows(IllegalArgumentException.class,
+        () -> ProxyVerticle.serverOptions(new JsonObject().put("sendBufferSize", 0)));
+
+    JsonObject conf = new JsonObject().put("tlsCertFile", "cert.pem");
+    IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+        () -> ProxyVerticle.serverOptions(conf));
+    Assert.assertEquals("tlsCertFile and tlsKeyFile must both be given", e.getMessage());
+  }
+
+  @Test
+  public void testNioTransport(TestContext context) {
+    async = context.async();
+
+    System.setProperty("preferNativeTransport", "false");
+    String[] args = {"dev"};
+    MainDeploy d = new MainDeploy();
+    d.init(args, res -> {
+      System.clearProperty("preferNativeTransport");
+      vertx = res.succeeded() ? res.result() : null;
+      Assert.assertTrue("main1 " + res.cause(), res.succeeded());
+      Assert.assertFalse(vertx.isNativeTransportEnabled());
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testTls(TestContext context) {
+    async = context.async();
+
+    // self-signed certificate for localhost, see server.README
+    System.setProperty("tlsCertFile", "src/test/resources/server.crt");
+    System.setProperty("tlsKeyFile", "src/test/resources/server.key");
+    String[] args = {"dev"};
+    MainDeploy d = new MainDeploy();
+    d.init(args, res -> {
+      System.clearProperty("tlsCertFile");
+      System.clearProperty("tlsKeyFile");
+      vertx = res.succeeded() ? res.result() : null;
+      Assert.assertTrue("main1 " + res.cause(), res.succeeded());
+
+      // HTTP/2 negotiated with ALPN, and HTTP/1.1 for clients that do not offer it
+      HttpClientOptions options = new HttpClientOptions().setSsl(true).setTrustAll(true)
+          .setVerifyHost(false).setUseAlpn(true);
+      HttpClient h2 = vertx.createHttpClient(new HttpClientOptions(options)
+          .setProtocolVersion(HttpVersion.HTTP_2));
+      HttpClient h1 = vertx.createHttpClient(options);
+      h2.request(HttpMethod.GET, port, "localhost", "/_/version")
+          .compose(req -> req.send())
+          .compose(r -> {
+            context.assertEquals(200, r.statusCode());
+            context.assertEquals(HttpVersion.HTTP_2, r.version());
+            return h1.request(HttpMethod.GET, port, "localhost", "/_/version");
+          })
+          .compose(req -> req.send())
+          .onComplete(context.asyncAssertSuccess(r -> {
+            context.assertEquals(200, r.statusCode());
+            context.assertEquals(HttpVersion.HTTP_1_1, r.version());
+            async.complete();
+          }));
+    });
+  }
+
   @Test
   public void testEnableMetrics(TestContext context) {
     async = context.async();
@@ -339,4 +435,47 @@ public class MainDeployTest {
     });
   }
 
+  @Test
+  public void testEnablePrometheus(TestContext context) {
+    async = context.async();
+
+    String[] args = { "-enable-metrics" };
+    System.setProperty("metricsBackend", "prometheus");
+
+    MainDeploy d = new MainDeploy();
+    d.init(args, res -> {
+      System.clearProperty("metricsBackend");
+      vertx = res.succeeded() ? res.result() : null;
+      Assert.assertTrue("main1 " + res.cause(), res.succeeded());
+      context.assertTrue(MetricsHelper.isPrometheusEnabled());
+
+      // no module provides /foo; error response recorded by the proxy
+      RestAssured.given().get("/foo").then().statusCode(404);
+
+      String body = RestAssured.given().get("/_/metrics").then().statusCode(200)
+          .extract().body().asString();
+      context.assertTrue(body.contains(
+          "org_folio_okapi_http_server_processingTime_seconds_bucket"), body);
+      MetricsHelper.setEnabled(false);
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testBadMetricsBackend(TestContext context) {
+    async = context.async();
+
+    String[] args = { "-enable-metrics" };
+    System.setProperty("metricsBackend", "graphite");
+
+    MainDeploy d = new MainDeploy();
+    d.init(args, res -> {
+      System.clearProperty("metricsBackend");
+      vertx = res.succeeded() ? res.result() : null;
+      Assert.assertTrue(res.failed());
+      Assert.assertEquals("Invalid metricsBackend: graphite", res.cause().getMessage());
+      async.complete();
+    });
+  }
+
 }
@@ -167,6 +167,7 @@ public class ModuleTest {
     conf.put("postgres_db_init", "1");
     conf.put("mongo_db_init", "1");
     conf.put("mode", "dev");
+    conf.put("traceExport", "file:target/ModuleTest-spans.json");
     DeploymentOptions opt = new DeploymentOptions().setConfig(conf);
     vertx.deployVerticle(MainVerticle.class.getName(), opt, context.asyncAssertSuccess());
   }
@@ -443,6 +444,33 @@ public class ModuleTest {
     Assert.assertTrue(traces.get(0).contains("GET auth-f-module-1"));
     Assert.assertTrue(traces.get(1).contains("GET sample-f-module-1"));
 
+    // Sampled trace: module gets the trace ID with the span ID of its hop
+    final String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+    final String traceparent = "00-" + traceId + "-00f067aa0ba902b7-01";
+    String body = given()
+      .header("X-Okapi-Tenant", okapiTenant)
+      .header("X-Okapi-Token", okapiToken)
+      .header("traceparent", traceparent)
+      .header("tracestate", "vendor=1")
+      .header("X-all-headers", "B")
+      .get("/testb")
+      .then().statusCode(200)
+      .extract().body().asString();
+    Assert.assertThat(body, containsString(" traceparent:00-" + traceId + "-"));
+    Assert.assertThat(body, not(containsString(traceparent)));
+    Assert.assertThat(body, containsString(" tracestate:vendor=1"));
+
+    // Trace not sampled: passed on as is
+    body = given()
+      .header("X-Okapi-Tenant", okapiTenant)
+      .header("X-Okapi-Token", okapiToken)
+      .header("traceparent", traceparent.replace("-01", "-00"))
+      .header("X-all-headers", "B")
+      .get("/testb")
+      .then().statusCode(200)
+      .extract().body().asString();
+    Assert.assertThat(body, containsString(" traceparent:" + traceparent.replace("-01", "-00")));
+
     // Test Auth filter returns error.
     // Caller should see Auth filter error.
     c = api.createRestAssured3();
@@ -123,6 +123,7 @@ public class MultiTenantTest {
     RestAssured.port = port;
     JsonObject conf = new JsonObject();
     conf.put("port", Integer.toString(port));
+    conf.put("proxyInstances", "2"); // requests served by two event loops
 
     MainDeploy d = new MainDeploy(conf);
     String[] args = {"dev"};
@@ -7,6 +7,8 @@ import guru.nidi.ramltester.RamlDefinition;
 import guru.nidi.ramltester.RamlLoaders;
 import guru.nidi.ramltester.restassured3.RestAssuredClient;
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.response.Response;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
@@ -15,12 +17,14 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.Pump;
@@ -29,11 +33,19 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.OkapiLogger;
 import org.junit.Assert;
@@ -68,6 +80,10 @@ public class ProxyTest {
   private int timerDelaySum = 0;
   private int timerTenantInitStatus = 200;
   private int timerTenantPermissionsStatus = 200;
+  private int timerCacheCalls = 0;
+  private int timerCoalesceCalls = 0;
+  private int timerHedgeCalls = 0;
+  private int timerAuthCalls = 0;
   private HttpServer listenTimer;
   private JsonObject timerPermissions = new JsonObject();
   private JsonArray edgePermissionsAtInit = null;
@@ -210,7 +226,12 @@ public class ProxyTest {
     for (Entry<String, String> ent : ctx.request().headers().entries()) {
       logger.info(ent.getKey() + ":" + ent.getValue());
     }
-    if (HttpMethod.DELETE.equals(ctx.request().method())) {
+    String filter = ctx.request().getHeader(XOkapiHeaders.FILTER);
+    if (filter != null && filter.startsWith(XOkapiHeaders.FILTER_AUTH)) {
+      // auth filter that accepts everything
+      timerAuthCalls++;
+      ctx.request().endHandler(x -> ctx.response().end());
+    } else if (HttpMethod.DELETE.equals(ctx.request().method())) {
       ctx.request().endHandler(x -> HttpResponse.responseText(ctx, 204).end());
     } else if (HttpMethod.POST.equals(ctx.request().method())) {
       if (p.startsWith("/echo")) {
@@ -259,6 +280,51 @@ public class ProxyTest {
           ctx.response().end(ex.getMessage());
         }
       });
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/cachecall")) {
+      timerCacheCalls++;
+      String etag = "\"" + ctx.request().uri() + "\"";
+      String cacheControl = ctx.request().getParam("cc");
+      if (cacheControl != null) {
+        ctx.response().putHeader("Cache-Control", cacheControl);
+      }
+      ctx.response().putHeader("ETag", etag);
+      if (etag.equals(ctx.request().getHeader("If-None-Match"))) {
+        ctx.response().setStatusCode(304).end();
+        return;
+      }
+      ctx.response().end("cachecall " + timerCacheCalls);
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/slowcall")) {
+      String deadline = ctx.request().getHeader(XOkapiHeaders.DEADLINE);
+      long ms = Long.parseLong(ctx.request().getParam("ms"));
+      String status = ctx.request().getParam("status");
+      if (status != null) {
+        ctx.response().setStatusCode(Integer.parseInt(status));
+      }
+      vertx.setTimer(ms + 1, x -> ctx.response().end(deadline == null ? "none" : deadline));
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/hedgecall")) {
+      // first of each pair of calls is slow, so that it is hedged
+      boolean slow = timerHedgeCalls++ % 2 == 0;
+      vertx.setTimer(slow ? 1000 : 1, x -> ctx.response().end(slow ? "slow" : "fast"));
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/compresscall")) {
+      JsonArray ar = new JsonArray();
+      for (int i = Integer.parseInt(ctx.request().getParam("n")); i > 0; i--) {
+        ar.add(new JsonObject().put("id", i));
+      }
+      ctx.response().putHeader("Content-Type", "application/json")
+          .putHeader("ETag", "\"v1\"").end(ar.encode());
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/h2call")) {
+      // headers as seen by the module; response has headers of HTTP/1.1 connections
+      JsonObject headers = new JsonObject();
+      for (Entry<String, String> ent : ctx.request().headers().entries()) {
+        headers.put(ent.getKey().toLowerCase(), ent.getValue());
+      }
+      ctx.response().putHeader("Connection", "keep-alive")
+          .putHeader("Keep-Alive", "timeout=5")
+          .putHeader("Content-Type", "application/json")
+          .end(headers.encode());
+    } else if (HttpMethod.GET.equals(ctx.request().method()) && p.startsWith("/coalescecall")) {
+      int n = ++timerCoalesceCalls;
+      vertx.setTimer(200, x -> ctx.response().end("coalescecall " + n));
     } else {
       ctx.response().setStatusCode(404);
       ctx.response().end("Unsupported method");
@@ -317,32 +383,50 @@ public class ProxyTest {
     return promise.future();
   }
 
-  Future<Void> startOkapi() {
+  Future<Void> startOkapi(JsonObject conf) {
     DeploymentOptions opt = new DeploymentOptions()
         .setConfig(new JsonObject()
             .put("loglevel", "info")
             .put("port", Integer.toString(port))
-            .put("httpCache", true));
+            .put("httpCache", true)
+            .mergeIn(conf));
     Promise<Void> promise = Promise.promise();
     vertx.deployVerticle(MainVerticle.class.getName(), opt, x -> promise.handle(x.mapEmpty()));
     return promise.future();
   }
 
-  @Before
-  public void setUp(TestContext context) {
+  Future<Void> start(JsonObject conf) {
     vertx = Vertx.vertx();
     httpClient = vertx.createHttpClient();
 
     timerTenantInitStatus = 200;
     RestAssured.port = port;
 
-    Future<Void> future = Future.succeededFuture()
-        .compose(x -> startOkapi())
+    return Future.succeededFuture()
+        .compose(x -> startOkapi(conf))
         .compose(x -> startEdgeServer())
         .compose(x -> startTimerServer())
         .compose(x -> startPreServer())
         .compose(x -> startPostServer());
-    future.onComplete(context.asyncAssertSuccess());
+  }
+
+  @Before
+  public void setUp(TestContext context) {
+    start(new JsonObject()).onComplete(context.asyncAssertSuccess());
+  }
+
+  /**
+   * Start afresh with Okapi configuration in addition to the default one,
+   * for a test of a feature that is disabled by default.
+   * @param conf Okapi configuration
+   */
+  private void restart(TestContext context, JsonObject conf) {
+    Async async = context.async();
+    httpClient.close();
+    vertx.close()
+        .compose(x -> start(conf))
+        .onComplete(context.asyncAssertSuccess(x -> async.complete()));
+    async.await();
   }
 
   @After
@@ -1533,6 +1617,22 @@ public class ProxyTest {
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
+    // circuit breaker state
+    c = api.createRestAssured3();
+    c.given().get("/_/discovery/circuits")
+      .then().statusCode(200)
+      .body("[0].state", is("closed"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    // time spent per phase
+    c = api.createRestAssured3();
+    c.given().get("/_/proxy/timings")
+      .then().statusCode(200)
+      .body("phase", hasItems("auth", "handler", "okapi", "transfer"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
     // health for sample2
     c = api.createRestAssured3();
     c.given().get("/_/discovery/health/sample-module2-1")
@@ -2163,6 +2263,22 @@ public class ProxyTest {
 
   @Test
   public void testRequestOnly(TestContext context) {
+    requestOnly(context, false);
+  }
+
+  @Test
+  public void testRequestOnlySpilled(TestContext context) {
+    restart(context, new JsonObject()
+        .put("proxyBufferSize", 10) // spill request bodies to file
+        .put("proxyMaxBodySize", 1000000L));
+    requestOnly(context, true);
+  }
+
+  /**
+   * Proxy through request-only and request-log filters.
+   * @param limited whether proxyMaxBodySize is 1000000
+   */
+  private void requestOnly(TestContext context, boolean limited) {
     final String okapiTenant = "roskilde";
     RestAssuredClient c;
     Response r;
@@ -2343,6 +2459,15 @@ public class ProxyTest {
       .then().statusCode(500)
       .body(equalTo("Okapi"));
 
+    if (limited) {
+      // body that must be kept is limited
+      given().header("X-Okapi-Tenant", okapiTenant)
+        .header("Content-Type", "text/plain")
+        .body(new byte[1000001]).post("/testb")
+        .then().statusCode(413)
+        .body(equalTo("Request body larger than 1000000 bytes"));
+    }
+
     final String nodeDoc1 = "{" + LS
       + "  \"instId\" : \"localhost-" + Integer.toString(portPre) + "\"," + LS
       + "  \"srvcId\" : \"request-pre-1.0.0\"," + LS
@@ -3179,6 +3304,18 @@ public class ProxyTest {
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
+    // failing tenant init does not open the circuit of the instance
+    timerTenantInitStatus = 500;
+    for (int i = 0; i < 6; i++) {
+      given().header("Content-Type", "application/json")
+        .body("[ {\"id\" : \"timer-module-1.0.1\", \"action\" : \"enable\"} ]")
+        .post("/_/proxy/tenants/" + okapiTenant + "/install")
+        .then().statusCode(400)
+        .body(containsString("/_/tenant failed with 500: timer response"));
+    }
+    given().get("/_/discovery/circuits").then().statusCode(200)
+      .body("state", everyItem(is("closed")));
+
     timerTenantInitStatus = 400;
     c = api.createRestAssured3();
     c.given()
@@ -3739,6 +3876,481 @@ public class ProxyTest {
     given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
   }
 
+  @Test
+  public void testResponseCache() {
+    String tenant = "test-response-cache-tenant";
+    String moduleId = "test-response-cache-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+    timerCacheCalls = 0;
+
+    // first response is from module, next from cache
+    Response r = given().header("X-Okapi-Tenant", tenant).get("/cachecall")
+        .then().statusCode(200).header("Age", nullValue())
+        .body(equalTo("cachecall 1")).extract().response();
+    String etag = r.header("ETag");
+    Assert.assertNotNull(etag);
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall")
+        .then().statusCode(200).header("Age", notNullValue()).header("ETag", etag)
+        .body(equalTo("cachecall 1"));
+    Assert.assertEquals(1, timerCacheCalls);
+
+    // client has it already
+    given().header("X-Okapi-Tenant", tenant).header("If-None-Match", etag).get("/cachecall")
+        .then().statusCode(304);
+    Assert.assertEquals(1, timerCacheCalls);
+
+    // other query is another response
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall?a=1")
+        .then().statusCode(200).body(equalTo("cachecall 2"));
+
+    // client wants a fresh response; that is stored too
+    given().header("X-Okapi-Tenant", tenant).header("Cache-Control", "no-cache").get("/cachecall")
+        .then().statusCode(200).body(equalTo("cachecall 3"));
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall")
+        .then().statusCode(200).body(equalTo("cachecall 3"));
+    Assert.assertEquals(3, timerCacheCalls);
+
+    // other methods for module remove its responses
+    given().header("X-Okapi-Tenant", tenant).header("Content-Type", "application/json")
+        .body("{}").post("/regularcall").then().statusCode(200);
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall")
+        .then().statusCode(200).body(equalTo("cachecall 4"));
+
+    // no-cache from module: revalidated every time
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall?cc=no-cache")
+        .then().statusCode(200).header("Age", nullValue()).body(equalTo("cachecall 5"));
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall?cc=no-cache")
+        .then().statusCode(200).header("Age", notNullValue()).body(equalTo("cachecall 5"));
+    Assert.assertEquals(6, timerCacheCalls);
+
+    // no-store from module: not kept
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall?cc=no-store")
+        .then().statusCode(200).body(equalTo("cachecall 7"));
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall?cc=no-store")
+        .then().statusCode(200).body(equalTo("cachecall 8"));
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  /**
+   * Make identical GET requests at the same time.
+   * @return response bodies
+   */
+  private List<String> getConcurrently(TestContext context, String tenant, String uri,
+                                       int requests) {
+    List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+    Async async = context.async(requests);
+    for (int i = 0; i < requests; i++) {
+      httpClient.request(HttpMethod.GET, port, "localhost", uri,
+          context.asyncAssertSuccess(request -> {
+            request.onComplete(context.asyncAssertSuccess(res -> {
+              context.assertEquals(200, res.statusCode());
+              res.bodyHandler(body -> {
+                bodies.add(body.toString());
+                async.countDown();
+              });
+            }));
+            request.putHeader("X-Okapi-Tenant", tenant);
+            request.end();
+          }));
+    }
+    async.await(10000);
+    return bodies;
+  }
+
+  @Test
+  public void testCoalesce(TestContext context) {
+    restart(context, new JsonObject().put("coalesceMaxWaiters", 10));
+    String tenant = "test-coalesce-tenant";
+    String moduleId = "test-coalesce-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+    timerCoalesceCalls = 0;
+
+    // identical requests while the first one is in flight share its response
+    List<String> bodies = getConcurrently(context, tenant, "/coalescecall", 4);
+    context.assertEquals(Collections.nCopies(4, "coalescecall 1"), bodies);
+    context.assertEquals(1, timerCoalesceCalls);
+
+    // later request is proxied again
+    given().header("X-Okapi-Tenant", tenant).get("/coalescecall")
+        .then().statusCode(200).body(equalTo("coalescecall 2"));
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testAuthCache(TestContext context) {
+    restart(context, new JsonObject().put("authCacheTtl", 60000));
+    String tenant = "test-auth-cache-tenant";
+    String moduleId = "test-auth-cache-module-1.0.0";
+    String authModuleId = "test-auth-cache-auth-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+
+    // auth filter served by the timer server
+    String mdJson = new JsonObject()
+        .put("id", authModuleId)
+        .put("filters", new JsonArray()
+            .add(new JsonObject()
+                .put("methods", new JsonArray().add("*"))
+                .put("path", "/")
+                .put("phase", "auth")
+                .put("type", "headers")
+                .put("permissionsRequired", new JsonArray())))
+        .encode();
+    given().header("Content-Type", "application/json")
+        .body(mdJson).post("/_/proxy/modules").then().statusCode(201);
+    given().header("Content-Type", "application/json")
+        .body(new JsonObject()
+            .put("instId", "localhost-auth-" + portTimer)
+            .put("srvcId", authModuleId)
+            .put("url", "http://localhost:" + portTimer).encode())
+        .post("/_/discovery/modules").then().statusCode(201);
+    given().header("Content-Type", "application/json")
+        .body(new JsonArray().add(new JsonObject().put("id", authModuleId)
+            .put("action", "enable")).encode())
+        .post("/_/proxy/tenants/" + tenant + "/install").then().statusCode(200);
+
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String token1 = "a." + encoder.encodeToString(new JsonObject().put("sub", "peter")
+        .put("tenant", tenant).encode().getBytes()) + ".c";
+    String token2 = "a." + encoder.encodeToString(new JsonObject().put("sub", "paul")
+        .put("tenant", tenant).encode().getBytes()) + ".c";
+    timerAuthCalls = 0;
+
+    // decision for a token is asked once
+    for (int i = 0; i < 3; i++) {
+      given().header("X-Okapi-Tenant", tenant).header(XOkapiHeaders.TOKEN, token1)
+          .get("/slowcall/firstbyte?ms=0").then().statusCode(200);
+    }
+    Assert.assertEquals(1, timerAuthCalls);
+    given().header("X-Okapi-Tenant", tenant).header(XOkapiHeaders.TOKEN, token2)
+        .get("/slowcall/firstbyte?ms=0").then().statusCode(200);
+    Assert.assertEquals(2, timerAuthCalls);
+
+    // modules of tenant change: decisions are dropped
+    given().header("Content-Type", "application/json")
+        .body(new JsonArray().add(new JsonObject().put("id", authModuleId)
+            .put("action", "disable")).encode())
+        .post("/_/proxy/tenants/" + tenant + "/install").then().statusCode(200);
+    given().header("Content-Type", "application/json")
+        .body(new JsonArray().add(new JsonObject().put("id", authModuleId)
+            .put("action", "enable")).encode())
+        .post("/_/proxy/tenants/" + tenant + "/install").then().statusCode(200);
+    given().header("X-Okapi-Tenant", tenant).header(XOkapiHeaders.TOKEN, token1)
+        .get("/slowcall/firstbyte?ms=0").then().statusCode(200);
+    Assert.assertEquals(3, timerAuthCalls);
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + authModuleId).then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testCoalesceMaxBodySize(TestContext context) {
+    restart(context, new JsonObject()
+        .put("coalesceMaxWaiters", 10)
+        .put("coalesceMaxBodySize", 5));
+    String tenant = "test-coalesce-tenant";
+    String moduleId = "test-coalesce-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+    timerCoalesceCalls = 0;
+
+    // response too large to share: waiting requests are proxied themselves
+    List<String> bodies = getConcurrently(context, tenant, "/coalescecall", 4);
+    Collections.sort(bodies);
+    context.assertEquals(Arrays.asList("coalescecall 1", "coalescecall 2", "coalescecall 3",
+        "coalescecall 4"), bodies);
+    context.assertEquals(4, timerCoalesceCalls);
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testRetryAndHedge() {
+    String tenant = "test-retry-tenant";
+    String moduleId = "test-retry-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+
+    // hedged request goes to the other instance
+    timerHedgeCalls = 0;
+    given().header("Content-Type", "application/json")
+        .body(new JsonObject().put("instId", "fast").put("srvcId", moduleId)
+            .put("url", "http://127.0.0.1:" + portTimer)
+            .put("loadBalancing", "round-robin").encode())
+        .post("/_/discovery/modules").then().statusCode(201);
+    for (int i = 0; i < 4; i++) {
+      long start = System.currentTimeMillis();
+      given().header("X-Okapi-Tenant", tenant).get("/hedgecall")
+          .then().statusCode(200).body(equalTo("fast"));
+      Assert.assertTrue(System.currentTimeMillis() - start < 900);
+    }
+    Assert.assertEquals(8, timerHedgeCalls);
+
+    // request to instance that can not be connected to is retried
+    given().delete("/_/discovery/modules/" + moduleId + "/localhost-" + portTimer)
+        .then().statusCode(204);
+    given().header("Content-Type", "application/json")
+        .body(new JsonObject().put("instId", "dead").put("srvcId", moduleId)
+            .put("url", "http://localhost:9239").encode())
+        .post("/_/discovery/modules").then().statusCode(201);
+    for (int i = 0; i < 4; i++) {
+      given().header("X-Okapi-Tenant", tenant).get("/hedgecall")
+          .then().statusCode(200);
+    }
+    given().delete("/_/discovery/modules/" + moduleId + "/dead").then().statusCode(204);
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testResponseCompression(TestContext context) throws IOException {
+    restart(context, new JsonObject().put("responseCompression", true));
+    String tenant = "test-compress-tenant";
+    String moduleId = "test-compress-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+    RestAssuredConfig raw = RestAssured.config()
+        .decoderConfig(DecoderConfig.decoderConfig().noContentDecoders());
+
+    Response r = given().config(raw).header("X-Okapi-Tenant", tenant)
+        .header("Accept-Encoding", "deflate;q=0.5, gzip")
+        .get("/compresscall?n=1000").then().statusCode(200)
+        .header("Content-Encoding", "gzip")
+        .header("Vary", "Accept-Encoding")
+        .header("ETag", "W/\"v1\"")
+        .extract().response();
+    byte[] body = r.asByteArray();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      JsonArray ar = new JsonArray(Buffer.buffer(in.readAllBytes()));
+      Assert.assertEquals(1000, ar.size());
+      Assert.assertTrue(body.length < ar.encode().length() / 4);
+    }
+
+    // served from cache, compressed as well
+    r = given().config(raw).header("X-Okapi-Tenant", tenant)
+        .header("Accept-Encoding", "deflate")
+        .get("/compresscall?n=1000").then().statusCode(200)
+        .header("Age", notNullValue())
+        .header("Content-Encoding", "deflate")
+        .extract().response();
+    try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(r.asByteArray()))) {
+      Assert.assertEquals(1000, new JsonArray(Buffer.buffer(in.readAllBytes())).size());
+    }
+
+    // below minimum size, and not accepted by client
+    given().config(raw).header("X-Okapi-Tenant", tenant)
+        .header("Accept-Encoding", "gzip")
+        .get("/compresscall?n=1").then().statusCode(200)
+        .header("Content-Encoding", nullValue())
+        .header("ETag", "\"v1\"")
+        .body(equalTo("[{\"id\":1}]"));
+    r = given().config(raw).header("X-Okapi-Tenant", tenant)
+        .header("Accept-Encoding", "identity")
+        .get("/compresscall?n=1000").then().statusCode(200)
+        .header("Content-Encoding", nullValue())
+        .extract().response();
+    Assert.assertEquals(1000, new JsonArray(r.asString()).size());
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testHttp2(TestContext context) {
+    String tenant = "test-http2-tenant";
+    String moduleId = "test-http2-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+
+    // h2c with prior knowledge and by upgrade from HTTP/1.1; modules get HTTP/1.1
+    for (boolean upgrade : new boolean[] {false, true}) {
+      HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+          .setProtocolVersion(HttpVersion.HTTP_2).setHttp2ClearTextUpgrade(upgrade));
+      Async async = context.async();
+      client.request(HttpMethod.GET, port, "localhost", "/h2call")
+          .compose(req -> req.putHeader(XOkapiHeaders.TENANT, tenant).send())
+          .compose(res -> {
+            context.assertEquals(HttpVersion.HTTP_2, res.version());
+            context.assertEquals(200, res.statusCode());
+            context.assertNull(res.getHeader("Connection"));
+            context.assertNull(res.getHeader("Keep-Alive"));
+            return res.body();
+          })
+          .compose(body -> {
+            JsonObject headers = new JsonObject(body);
+            for (String name : headers.fieldNames()) {
+              context.assertFalse(name.startsWith(":"), name);
+            }
+            context.assertEquals(tenant, headers.getString("x-okapi-tenant"));
+            context.assertNull(headers.getString("upgrade"));
+            context.assertNull(headers.getString("http2-settings"));
+            context.assertNotNull(headers.getString("host"));
+            return client.request(HttpMethod.POST, port, "localhost", "/regularcall");
+          })
+          .compose(req -> req.putHeader(XOkapiHeaders.TENANT, tenant)
+              .send(Buffer.buffer("{\"id\":\"test\"}")))
+          .onComplete(context.asyncAssertSuccess(res -> {
+            context.assertEquals(HttpVersion.HTTP_2, res.version());
+            context.assertEquals(200, res.statusCode());
+            client.close();
+            async.complete();
+          }));
+      async.await(10000);
+    }
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testTenantLimits(TestContext context) {
+    String tenant = "test-tenant-limits-tenant";
+    String moduleId = "test-tenant-limits-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+
+    JsonObject td = new JsonObject().put("id", tenant)
+        .put("limits", new JsonObject().put("rate", 0.01).put("burst", 2));
+    RestAssuredClient c = api.createRestAssured3();
+    c.given().header("Content-Type", "application/json").body(td.encode())
+        .put("/_/proxy/tenants/" + tenant).then().statusCode(200)
+        .body(equalTo(td.encodePrettily()));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall").then().statusCode(200);
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall").then().statusCode(200);
+    given().header("X-Okapi-Tenant", tenant).get("/cachecall").then().statusCode(429)
+        .header("Retry-After", "100")
+        .body(equalTo("Rate limit of tenant " + tenant + " exceeded"));
+
+    // at most one request at a time
+    td.put("limits", new JsonObject().put("maxInFlight", 1));
+    given().header("Content-Type", "application/json").body(td.encode())
+        .put("/_/proxy/tenants/" + tenant).then().statusCode(200);
+    List<Integer> statuses = Collections.synchronizedList(new ArrayList<>());
+    Async async = context.async(2);
+    for (int i = 0; i < 2; i++) {
+      httpClient.request(HttpMethod.GET, port, "localhost", "/coalescecall?limits=" + i,
+          context.asyncAssertSuccess(request -> {
+            request.onComplete(context.asyncAssertSuccess(res -> {
+              statuses.add(res.statusCode());
+              res.endHandler(x -> async.countDown());
+            }));
+            request.putHeader("X-Okapi-Tenant", tenant);
+            request.end();
+          }));
+    }
+    async.await(10000);
+    context.assertTrue(statuses.contains(200), statuses.toString());
+    context.assertTrue(statuses.contains(429), statuses.toString());
+    given().header("X-Okapi-Tenant", tenant).get("/coalescecall").then().statusCode(200);
+
+    td.put("limits", new JsonObject().put("maxInFlight", 0));
+    given().header("Content-Type", "application/json").body(td.encode())
+        .put("/_/proxy/tenants/" + tenant).then().statusCode(400)
+        .body(equalTo("Bad limits for tenant " + tenant + ": maxInFlight must be positive"));
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
+  @Test
+  public void testTimeouts() {
+    String tenant = "test-timeouts-tenant";
+    String moduleId = "test-timeouts-module-1.0.0";
+    setupBasicTenant(tenant);
+    setupBasicModule(tenant, moduleId, "1.1", false);
+
+    // deadline is passed to module
+    long before = System.currentTimeMillis();
+    String deadline = given().header("X-Okapi-Tenant", tenant).get("/slowcall/total?ms=0")
+        .then().statusCode(200).extract().body().asString();
+    Assert.assertTrue(deadline, Long.parseLong(deadline) >= before + 300);
+    Assert.assertTrue(deadline, Long.parseLong(deadline) <= System.currentTimeMillis() + 300);
+    given().header("X-Okapi-Tenant", tenant).get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(200).body(equalTo("none"));
+
+    // module that does not respond in time
+    given().header("X-Okapi-Tenant", tenant).get("/slowcall/firstbyte?ms=1000")
+        .then().statusCode(504)
+        .body(equalTo("No response from module " + moduleId + " within 200 ms"));
+    given().header("X-Okapi-Tenant", tenant).get("/slowcall/total?ms=1000")
+        .then().statusCode(504)
+        .body(equalTo("Request not done within deadline of 300 ms"));
+
+    // deadline of caller is earlier
+    long callerDeadline = System.currentTimeMillis() + 100000;
+    given().header("X-Okapi-Tenant", tenant)
+        .header(XOkapiHeaders.DEADLINE, Long.toString(callerDeadline))
+        .get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(200).body(equalTo(Long.toString(callerDeadline)));
+    given().header("X-Okapi-Tenant", tenant)
+        .header(XOkapiHeaders.DEADLINE, Long.toString(System.currentTimeMillis() + 100))
+        .get("/slowcall/total?ms=1000")
+        .then().statusCode(504);
+    given().header("X-Okapi-Tenant", tenant).header(XOkapiHeaders.DEADLINE, "soon")
+        .get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(200).body(equalTo("none"));
+    given().header("X-Okapi-Tenant", tenant).header(XOkapiHeaders.DEADLINE, "1")
+        .get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(504).body(equalTo("Deadline 1 of caller has passed"));
+
+    // requests given up at the deadline are not failures of the instance
+    for (int i = 0; i < 6; i++) {
+      given().header("X-Okapi-Tenant", tenant)
+          .header(XOkapiHeaders.DEADLINE, Long.toString(System.currentTimeMillis() + 200))
+          .get("/slowcall/total?ms=1000")
+          .then().statusCode(504);
+    }
+    given().get("/_/discovery/circuits").then().statusCode(200)
+        .body("state", everyItem(is("closed")))
+        .body("failures", everyItem(is(0)));
+    given().header("X-Okapi-Tenant", tenant).get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(200);
+
+    // nor are error responses of the module
+    for (int i = 0; i < 6; i++) {
+      given().header("X-Okapi-Tenant", tenant).get("/slowcall/firstbyte?ms=0&status=500")
+          .then().statusCode(500);
+    }
+    given().get("/_/discovery/circuits").then().statusCode(200)
+        .body("state", everyItem(is("closed")))
+        .body("failures", everyItem(is(0)));
+    given().header("X-Okapi-Tenant", tenant).get("/slowcall/firstbyte?ms=0")
+        .then().statusCode(200);
+
+    given().delete("/_/proxy/tenants/" + tenant + "/modules").then().statusCode(204);
+    given().delete("/_/discovery/modules").then().statusCode(204);
+    given().delete("/_/proxy/modules/" + moduleId).then().statusCode(204);
+    given().delete("/_/proxy/tenants/" + tenant).then().statusCode(204);
+  }
+
   @Test
   public void testTenantPermissionsVersion() {
     String tenant = "test-tenant-permissions-tenant";
@@ -4002,7 +4614,40 @@ public class ProxyTest {
               .put("methods", new JsonArray().add("POST"))
               .put("pathPattern", "/regularcall")
               .put("permissionsRequired", new JsonArray())
-              .put("modulePermissions", new JsonArray().add("regularcall.test.post")))))
+              .put("modulePermissions", new JsonArray().add("regularcall.test.post")))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/cachecall")
+              .put("permissionsRequired", new JsonArray())
+              .put("cache", new JsonObject().put("ttl", 60)))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/compresscall")
+              .put("permissionsRequired", new JsonArray())
+              .put("cache", new JsonObject().put("ttl", 60)))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/h2call")
+              .put("permissionsRequired", new JsonArray()))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/coalescecall")
+              .put("permissionsRequired", new JsonArray()))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/slowcall/firstbyte")
+              .put("permissionsRequired", new JsonArray())
+              .put("timeout", new JsonObject().put("firstByte", 200)))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/slowcall/total")
+              .put("permissionsRequired", new JsonArray())
+              .put("timeout", new JsonObject().put("total", 300)))
+            .add(new JsonObject()
+              .put("methods", new JsonArray().add("GET"))
+              .put("pathPattern", "/hedgecall")
+              .put("permissionsRequired", new JsonArray())
+              .put("retry", new JsonObject().put("attempts", 1).put("hedgeDelay", 100)))))
         .add(new JsonObject()
             .put("id", "CORS-TEST")
             .put("version", "1.0")
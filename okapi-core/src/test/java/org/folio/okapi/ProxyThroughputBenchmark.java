@@ -0,0 +1,146 @@
+package org.folio.okapi;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Proxy throughput for a number of proxy event loops ({@code proxyInstances}),
+ * with the native (epoll) or the NIO transport of Netty.
+ *
+ * <p>Okapi proxies GET requests to a module served by an in-process HTTP
+ * server with eight instances, so that the module is not the bottleneck.
+ * Many client threads keep requests in flight. Throughput should grow with
+ * the number of proxy instances up to the number of cores available. Where
+ * native transport is not available, Vert.x falls back to NIO silently; the
+ * setup fails then rather than report NIO figures as native ones.
+ *
+ * <p>Not run as part of the unit tests. Run the main method with the test
+ * class path after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class ProxyThroughputBenchmark {
+
+  private static final int PORT = 9230;
+  private static final int MODULE_PORT = 9231;
+  private static final String OKAPI = "http://localhost:" + PORT;
+  private static final String TENANT = "bench";
+
+  @Param({"1", "2", "4", "8"})
+  int proxyInstances;
+
+  @Param({"false", "true"})
+  boolean nativeTransport;
+
+  Vertx vertx;
+  HttpClient client;
+  HttpRequest request;
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx(new VertxOptions().setPreferNativeTransport(nativeTransport));
+    if (vertx.isNativeTransportEnabled() != nativeTransport) {
+      throw new IllegalStateException("Native transport not available");
+    }
+    vertx.deployVerticle(() -> new io.vertx.core.AbstractVerticle() {
+      @Override
+      public void start(io.vertx.core.Promise<Void> promise) {
+        vertx.createHttpServer()
+            .requestHandler(req -> req.response().end("OK"))
+            .listen(MODULE_PORT)
+            .<Void>mapEmpty()
+            .onComplete(promise);
+      }
+    }, new DeploymentOptions().setInstances(8))
+        .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    JsonObject conf = new JsonObject()
+        .put("port", Integer.toString(PORT))
+        .put("proxyInstances", Integer.toString(proxyInstances))
+        .put("loglevel", "warn");
+    vertx.deployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(conf))
+        .toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    post("/_/proxy/modules", new JsonObject()
+        .put("id", "bench-module-1.0.0")
+        .put("provides", new JsonArray().add(new JsonObject()
+            .put("id", "bench")
+            .put("version", "1.0")
+            .put("handlers", new JsonArray().add(new JsonObject()
+                .put("methods", new JsonArray().add("GET"))
+                .put("pathPattern", "/bench")
+                .put("permissionsRequired", new JsonArray()))))));
+    post("/_/discovery/modules", new JsonObject()
+        .put("srvcId", "bench-module-1.0.0")
+        .put("instId", "bench-1")
+        .put("url", "http://localhost:" + MODULE_PORT));
+    post("/_/proxy/tenants", new JsonObject().put("id", TENANT));
+    post("/_/proxy/tenants/" + TENANT + "/modules", new JsonObject()
+        .put("id", "bench-module-1.0.0"));
+    request = HttpRequest.newBuilder(URI.create(OKAPI + "/bench"))
+        .header("X-Okapi-Tenant", TENANT)
+        .GET().build();
+  }
+
+  private void post(String path, JsonObject body) throws IOException, InterruptedException {
+    HttpResponse<String> res = client.send(HttpRequest.newBuilder(URI.create(OKAPI + path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body.encode())).build(),
+        HttpResponse.BodyHandlers.ofString());
+    if (res.statusCode() != 201) {
+      throw new IllegalStateException(path + ": " + res.statusCode() + " " + res.body());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public int proxyGet() throws IOException, InterruptedException {
+    HttpResponse<String> res = client.send(request, HttpResponse.BodyHandlers.ofString());
+    if (res.statusCode() != 200) {
+      throw new IllegalStateException("status " + res.statusCode() + " " + res.body());
+    }
+    return res.body().length();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ProxyThroughputBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
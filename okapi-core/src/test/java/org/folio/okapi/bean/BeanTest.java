@@ -37,6 +37,23 @@ public class BeanTest {
     assertEquals(0, fail);
   }
 
+  @Test
+  public void testDeploymentDescriptorLoadBalancing() {
+    final String doc = "{" + LS
+      + "  \"srvcId\" : \"sample-module-1\"," + LS
+      + "  \"url\" : \"http://localhost:9131\"," + LS
+      + "  \"loadBalancing\" : \"round-robin\"" + LS
+      + "}";
+    final DeploymentDescriptor dd = Json.decodeValue(doc, DeploymentDescriptor.class);
+    assertEquals("round-robin", dd.getLoadBalancing());
+    assertEquals(doc, Json.encodePrettily(dd));
+
+    String bad = doc.replace("round-robin", "fastest");
+    DecodeException e = assertThrows(DecodeException.class,
+        () -> Json.decodeValue(bad, DeploymentDescriptor.class));
+    assertTrue(e.getMessage(), e.getMessage().contains("Unknown load balancing: fastest"));
+  }
+
   @Test
   public void testDeploymentDescriptor2() {
     int fail = 0;
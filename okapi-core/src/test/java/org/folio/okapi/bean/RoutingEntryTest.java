@@ -35,6 +35,39 @@ class RoutingEntryTest {
     assertTrue(t.match("/a", "POST"));
   }
 
+  @Test
+  void testTimeout() {
+    TimeoutDescriptor t = new TimeoutDescriptor();
+    assertTrue(t.isValid());
+    t.setFirstByte(100);
+    t.setTotal(1000);
+    assertTrue(t.isValid());
+    t.setTotal(0);
+    assertFalse(t.isValid());
+    t.setTotal(null);
+    t.setFirstByte(-1);
+    assertFalse(t.isValid());
+  }
+
+  @Test
+  void testRetry() {
+    RetryDescriptor r = new RetryDescriptor();
+    assertTrue(r.isValid());
+    assertFalse(r.isHedged());
+    r.setAttempts(2);
+    r.setHedgePercentile(95.0);
+    assertTrue(r.isValid());
+    assertTrue(r.isHedged());
+    r.setHedgePercentile(100.0);
+    assertFalse(r.isValid());
+    r.setHedgePercentile(null);
+    r.setHedgeDelay(0);
+    assertFalse(r.isValid());
+    r.setHedgeDelay(10);
+    r.setAttempts(-1);
+    assertFalse(r.isValid());
+  }
+
   @Test
   void testPath() {
     RoutingEntry t = new RoutingEntry();
@@ -1,10 +1,16 @@
 package org.folio.okapi.managers;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.folio.okapi.bean.CircuitDescriptor;
 import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.util.CircuitBreaker;
 import org.folio.okapi.util.TestBase;
 import org.junit.Assert;
 import org.junit.Test;
@@ -71,4 +77,85 @@ public class DiscoveryManagerTest extends TestBase {
     async.await();
   }
 
+  @Test
+  public void snapshot(TestContext context) {
+    DiscoveryManager discoveryManager = new DiscoveryManager(null);
+    DeploymentDescriptor dd1 = new DeploymentDescriptor();
+    dd1.setSrvcId("mod-a-1.0.0");
+    dd1.setInstId("i1");
+    dd1.setUrl("http://localhost:9231");
+    DeploymentDescriptor dd2 = new DeploymentDescriptor();
+    dd2.setSrvcId("mod-a-1.0.0");
+    dd2.setInstId("i2");
+    dd2.setUrl("http://localhost:9232");
+    Vertx vertx = Vertx.vertx();
+    List<String> removed = new ArrayList<>();
+    Async async = context.async(2);
+    vertx.eventBus().localConsumer(DiscoveryManager.EVENT_INSTANCE_REMOVED, res -> {
+      removed.add((String) res.body());
+      if (removed.size() == 2) {
+        context.assertEquals(Arrays.asList("http://localhost:9231", "http://localhost:9232"),
+            removed);
+      }
+      async.countDown();
+    });
+
+    discoveryManager.init(vertx)
+        .compose(x -> {
+          context.assertTrue(discoveryManager.getSnapshot("mod-a-1.0.0").isEmpty());
+          return discoveryManager.add(dd1);
+        })
+        .compose(x -> {
+          context.assertEquals(1, discoveryManager.getSnapshot("mod-a-1.0.0").size());
+          context.assertEquals("http://localhost:9231",
+              discoveryManager.getSnapshot("mod-a-1.0.0").get(0).getUrl());
+          return discoveryManager.add(dd2);
+        })
+        .compose(x -> {
+          context.assertEquals(2, discoveryManager.getSnapshot("mod-a-1.0.0").size());
+          context.assertTrue(removed.isEmpty());
+          return discoveryManager.remove("mod-a-1.0.0", "i1");
+        })
+        .compose(x -> {
+          context.assertEquals(1, discoveryManager.getSnapshot("mod-a-1.0.0").size());
+          context.assertEquals("i2",
+              discoveryManager.getSnapshot("mod-a-1.0.0").get(0).getInstId());
+          return discoveryManager.remove("mod-a-1.0.0", "i2");
+        })
+        .onComplete(context.asyncAssertSuccess(x ->
+            context.assertTrue(discoveryManager.getSnapshot("mod-a-1.0.0").isEmpty())));
+  }
+
+  @Test
+  public void circuits(TestContext context) {
+    DiscoveryManager discoveryManager = new DiscoveryManager(null);
+    discoveryManager.setCircuitBreaker(new CircuitBreaker(
+        new JsonObject().put("circuitBreakerFailures", "1")));
+    DeploymentDescriptor dd1 = new DeploymentDescriptor();
+    dd1.setSrvcId("mod-a-1.0.0");
+    dd1.setInstId("i1");
+    dd1.setUrl("http://localhost:9231");
+
+    discoveryManager.init(Vertx.vertx())
+        .compose(x -> discoveryManager.add(dd1))
+        .compose(x -> {
+          discoveryManager.getCircuitBreaker().failure("http://localhost:9231");
+          return discoveryManager.circuits();
+        })
+        .onComplete(context.asyncAssertSuccess(list -> {
+          context.assertEquals(1, list.size());
+          CircuitDescriptor cd = list.get(0);
+          context.assertEquals("i1", cd.getInstId());
+          context.assertEquals(CircuitBreaker.OPEN, cd.getState());
+          context.assertEquals(1, cd.getFailures());
+          context.assertTrue(cd.getRetryAfter() > 0);
+        }))
+        .compose(x -> discoveryManager.remove("mod-a-1.0.0", "i1"))
+        .onComplete(context.asyncAssertSuccess(x -> {
+          // a new instance on the same port does not inherit the open circuit
+          CircuitBreaker cb = discoveryManager.getCircuitBreaker();
+          context.assertEquals(CircuitBreaker.CLOSED, cb.getState("http://localhost:9231"));
+          context.assertEquals(0, cb.getFailures("http://localhost:9231"));
+        }));
+  }
 }
@@ -0,0 +1,92 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthCacheTest {
+
+  private static MultiMap headers(String... kv) {
+    MultiMap m = MultiMap.caseInsensitiveMultiMap();
+    for (int i = 0; i < kv.length; i += 2) {
+      m.add(kv[i], kv[i + 1]);
+    }
+    return m;
+  }
+
+  @Test
+  void testKey() {
+    assertEquals("t1\na\n\nb", AuthCache.key("t1", "a", null, "b"));
+    assertNotEquals(AuthCache.key("t1", "a", null), AuthCache.key("t1", null, "a"));
+  }
+
+  @Test
+  void testGetPut() {
+    AuthCache cache = new AuthCache(1000, 10);
+    assertTrue(cache.isEnabled());
+    assertFalse(new AuthCache(0, 10).isEnabled());
+    String key = AuthCache.key("t1", "tok");
+    assertNull(cache.get(key, 0));
+    cache.put(key, 202, headers("X-Okapi-Module-Tokens", "{}"), 0);
+    AuthCache.Entry e = cache.get(key, 999);
+    assertNotNull(e);
+    assertEquals(202, e.getStatus());
+    assertEquals("{}", e.getHeaders().get("x-okapi-module-tokens"));
+    // caller may modify headers without affecting cache
+    e.getHeaders().clear();
+    assertEquals("{}", cache.get(key, 999).getHeaders().get("X-Okapi-Module-Tokens"));
+    assertNull(cache.get(key, 1000));
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  void testMaxAge() {
+    assertEquals(1000, AuthCache.maxAge(headers(), 0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Cache-Control", "no-store"), 0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Cache-Control", "private, no-cache"), 0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Cache-Control", "max-age=x"), 0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Cache-Control", "Max-Age=0, max-age=1"), 0, 1000));
+    assertEquals(1000, AuthCache.maxAge(headers("Cache-Control", "max-age=5"), 0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Cache-Control", "max-age=0"), 0, 1000));
+    assertEquals(300, AuthCache.maxAge(headers("Expires", "Thu, 01 Jan 1970 00:00:00 GMT"),
+        -300, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Expires", "Thu, 01 Jan 1970 00:00:00 GMT"),
+        0, 1000));
+    assertEquals(0, AuthCache.maxAge(headers("Expires", "0"), 0, 1000));
+  }
+
+  @Test
+  void testNotCached() {
+    AuthCache cache = new AuthCache(1000, 10);
+    cache.put("k", 200, headers("Cache-Control", "no-store"), 0);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testEviction() {
+    AuthCache cache = new AuthCache(1000, 2);
+    cache.put("t\na", 200, headers(), 0);
+    cache.put("t\nb", 200, headers(), 0);
+    assertNotNull(cache.get("t\na", 0)); // b is now least recently used
+    cache.put("t\nc", 200, headers(), 0);
+    assertEquals(2, cache.size());
+    assertNull(cache.get("t\nb", 0));
+    assertNotNull(cache.get("t\na", 0));
+  }
+
+  @Test
+  void testInvalidate() {
+    AuthCache cache = new AuthCache(1000, 10);
+    cache.put(AuthCache.key("t1", "a"), 200, headers(), 0);
+    cache.put(AuthCache.key("t10", "a"), 200, headers(), 0);
+    cache.put(AuthCache.key("t2", "a"), 200, headers(), 0);
+    cache.invalidate("t1");
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(AuthCache.key("t10", "a"), 0));
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+}
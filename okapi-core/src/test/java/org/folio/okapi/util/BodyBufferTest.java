@@ -0,0 +1,133 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class BodyBufferTest {
+
+  private Vertx vertx;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+    fs = vertx.fileSystem();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  private static Buffer content(int length) {
+    Buffer b = Buffer.buffer(length);
+    for (int i = 0; i < length; i++) {
+      b.appendByte((byte) ('a' + i % 26));
+    }
+    return b;
+  }
+
+  /**
+   * Return paused stream with content.
+   */
+  private Future<AsyncFile> stream(Buffer content) {
+    return fs.createTempFile("body-test-", ".in")
+        .compose(p -> fs.writeFile(p, content)
+            .compose(x -> fs.open(p, new OpenOptions().setRead(true)))
+            .map(f -> {
+              f.pause();
+              fs.delete(p);
+              return f;
+            }));
+  }
+
+  /**
+   * Write body to a new file and return its content.
+   */
+  private Future<Buffer> replay(BodyBuffer body) {
+    return fs.createTempFile("body-test-", ".out")
+        .compose(p -> fs.open(p, new OpenOptions().setWrite(true))
+            .compose(body::end)
+            .compose(x -> fs.readFile(p))
+            .onComplete(x -> fs.delete(p)));
+  }
+
+  @Test
+  public void testMemory(TestContext context) {
+    Buffer content = content(1000);
+    stream(content)
+        .compose(f -> BodyBuffer.fill(vertx, f, 1000, 0))
+        .compose(body -> {
+          context.assertFalse(body.isSpilled());
+          context.assertEquals(1000L, body.length());
+          context.assertEquals(content.toString(), body.toString());
+          return replay(body).compose(res -> {
+            context.assertEquals(content, res);
+            return body.toBuffer();
+          });
+        })
+        .onComplete(context.asyncAssertSuccess(res -> context.assertEquals(content, res)));
+  }
+
+  @Test
+  public void testTooLarge(TestContext context) {
+    Buffer content = content(1000000);
+    stream(content)
+        .compose(f -> BodyBuffer.fill(vertx, f, 1000, 999999))
+        .onComplete(context.asyncAssertFailure(cause -> {
+          context.assertTrue(cause instanceof BodyBuffer.TooLargeException);
+          context.assertEquals(999999L, ((BodyBuffer.TooLargeException) cause).getMaxSize());
+          context.assertEquals("Request body larger than 999999 bytes", cause.getMessage());
+        }));
+  }
+
+  @Test
+  public void testOf(TestContext context) {
+    Buffer content = content(10);
+    BodyBuffer body = BodyBuffer.of(content);
+    context.assertEquals(10L, body.length());
+    context.assertFalse(body.isSpilled());
+    body.close(); // no-op for memory
+    replay(body).onComplete(context.asyncAssertSuccess(res -> context.assertEquals(content, res)));
+  }
+
+  @Test
+  public void testSpill(TestContext context) {
+    Buffer content = content(1000000);
+    stream(content)
+        .compose(f -> BodyBuffer.fill(vertx, f, 1000, 0))
+        .compose(body -> {
+          context.assertTrue(body.isSpilled());
+          context.assertEquals(1000000L, body.length());
+          context.assertTrue(body.toString().startsWith("(1000000 bytes in "));
+          // can be replayed more than once
+          return replay(body)
+              .compose(res -> {
+                context.assertEquals(content, res);
+                return replay(body);
+              })
+              .compose(res -> {
+                context.assertEquals(content, res);
+                return body.toBuffer();
+              })
+              .compose(res -> {
+                context.assertEquals(content, res);
+                body.close();
+                return body.toBuffer();
+              });
+        })
+        .onComplete(context.asyncAssertFailure(cause ->
+            context.assertEquals("Request body no longer available", cause.getMessage())));
+  }
+}
@@ -0,0 +1,147 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.JsonObject;
+import java.util.Arrays;
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+  private static final String URL1 = "http://localhost:9131";
+  private static final String URL2 = "http://localhost:9132";
+
+  private static DeploymentDescriptor dd(String instId, String url) {
+    DeploymentDescriptor dd = new DeploymentDescriptor();
+    dd.setSrvcId("mod-a-1.0.0");
+    dd.setInstId(instId);
+    dd.setUrl(url);
+    return dd;
+  }
+
+  @Test
+  void testOpenHalfOpenClose() {
+    CircuitBreaker cb = new CircuitBreaker(3, 1000, 3000);
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1, 0));
+    cb.success(URL1, 0);
+    cb.failure(URL1, 0);
+    cb.failure(URL1, 0);
+    assertEquals(2, cb.getFailures(URL1));
+    cb.success(URL1, 0);
+    assertEquals(0, cb.getFailures(URL1));
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1, 0));
+
+    cb.failure(URL1, 0);
+    cb.failure(URL1, 0);
+    cb.failure(URL1, 0);
+    assertEquals(CircuitBreaker.OPEN, cb.getState(URL1, 999));
+    assertEquals(1, cb.getRetryAfterMs(URL1, 999));
+    // failure of request in progress while open does not extend the period
+    cb.failure(URL1, 500);
+    assertEquals(CircuitBreaker.HALF_OPEN, cb.getState(URL1, 1000));
+
+    // half-open failure: open twice as long
+    cb.failure(URL1, 1000);
+    assertEquals(CircuitBreaker.OPEN, cb.getState(URL1, 2999));
+    assertEquals(CircuitBreaker.HALF_OPEN, cb.getState(URL1, 3000));
+    // bounded by max
+    cb.failure(URL1, 3000);
+    assertEquals(3000, cb.getRetryAfterMs(URL1, 3000));
+    cb.failure(URL1, 6000);
+    assertEquals(3000, cb.getRetryAfterMs(URL1, 6000));
+
+    // success while open does not close
+    cb.success(URL1, 7000);
+    assertEquals(CircuitBreaker.OPEN, cb.getState(URL1, 7000));
+    cb.success(URL1, 9000);
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1, 9000));
+    assertEquals(0, cb.getRetryAfterMs(URL1, 9000));
+
+    // back-off starts over after close
+    cb.failure(URL1, 9000);
+    cb.failure(URL1, 9000);
+    cb.failure(URL1, 9000);
+    assertEquals(1000, cb.getRetryAfterMs(URL1, 9000));
+  }
+
+  @Test
+  void testAvailable() {
+    CircuitBreaker cb = new CircuitBreaker(1, 1000, 1000);
+    List<DeploymentDescriptor> instances = Arrays.asList(dd("1", URL1), dd("2", URL2));
+    assertSame(instances, cb.available(instances, 0));
+    cb.failure(URL2, 0);
+    assertSame(instances, cb.available(instances, 1000));
+    List<DeploymentDescriptor> l = cb.available(instances, 0);
+    assertEquals(1, l.size());
+    assertEquals("1", l.get(0).getInstId());
+    cb.failure(URL1, 500);
+    assertTrue(cb.available(instances, 600).isEmpty());
+    l = cb.available(instances, 1200);
+    assertEquals(1, l.size());
+    assertEquals("2", l.get(0).getInstId());
+    assertEquals(0, cb.getRetryAfterMs(instances));
+  }
+
+  @Test
+  void testProbe() {
+    CircuitBreaker cb = new CircuitBreaker(1, 1000, 4000);
+    List<DeploymentDescriptor> instances = Arrays.asList(dd("1", URL1));
+    assertTrue(cb.tryAcquire(URL1, 0));
+    cb.failure(URL1, 0);
+    assertFalse(cb.tryAcquire(URL1, 999));
+    assertTrue(cb.available(instances, 999).isEmpty());
+
+    // half-open: one probe at a time
+    assertEquals(1, cb.available(instances, 1000).size());
+    assertTrue(cb.tryAcquire(URL1, 1000));
+    assertTrue(cb.available(instances, 1000).isEmpty());
+    assertFalse(cb.tryAcquire(URL1, 1500));
+    assertEquals(CircuitBreaker.HALF_OPEN, cb.getState(URL1, 1500));
+    // probe that is not reported is given up after the first open period
+    assertTrue(cb.tryAcquire(URL1, 2000));
+
+    // probe fails: open again
+    cb.failure(URL1, 2100);
+    assertFalse(cb.tryAcquire(URL1, 4099));
+    assertTrue(cb.tryAcquire(URL1, 4100));
+    assertFalse(cb.tryAcquire(URL1, 4100));
+
+    // probe succeeds: closed and every request is let through
+    cb.success(URL1, 4200);
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1, 4200));
+    assertTrue(cb.tryAcquire(URL1, 4200));
+    assertTrue(cb.tryAcquire(URL1, 4200));
+    assertSame(instances, cb.available(instances, 4200));
+  }
+
+  @Test
+  void testRemove() {
+    CircuitBreaker cb = new CircuitBreaker(1, 1000, 1000);
+    cb.failure(URL1, 0);
+    assertEquals(CircuitBreaker.OPEN, cb.getState(URL1, 0));
+    cb.remove(URL1);
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1, 0));
+    assertEquals(0, cb.getFailures(URL1));
+    assertTrue(cb.tryAcquire(URL1, 0));
+    cb.remove(URL2);
+  }
+
+  @Test
+  void testConfig() {
+    CircuitBreaker cb = new CircuitBreaker(new JsonObject().put("circuitBreakerFailures", "0"));
+    for (int i = 0; i < 10; i++) {
+      cb.failure(URL1);
+    }
+    assertEquals(CircuitBreaker.CLOSED, cb.getState(URL1));
+    assertEquals(0, cb.getFailures(URL1));
+
+    cb = new CircuitBreaker(new JsonObject().put("circuitBreakerFailures", "2"));
+    cb.failure(URL1);
+    cb.failure(URL1);
+    assertEquals(CircuitBreaker.OPEN, cb.getState(URL1));
+    long ms = cb.getRetryAfterMs(URL1);
+    assertTrue(ms > 0 && ms <= 10000, Long.toString(ms));
+  }
+}
@@ -0,0 +1,84 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.common.XOkapiHeaders;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeaderPlanTest {
+
+  private static RoutingEntry entry(String phase, String pathPattern) {
+    RoutingEntry re = new RoutingEntry();
+    re.setMethods(new String[] {"*"});
+    re.setPathPattern(pathPattern);
+    re.setPhase(phase);
+    return re;
+  }
+
+  private static MultiMap incoming() {
+    return MultiMap.caseInsensitiveMultiMap()
+        .add("Content-Length", "10")
+        .add("content-type", "text/plain")
+        .add(XOkapiHeaders.TOKEN, "client-token")
+        .add(XOkapiHeaders.ADDITIONAL_TOKEN, "extra")
+        .add(XOkapiHeaders.FILTER, "bogus")
+        .add(XOkapiHeaders.PERMISSIONS_REQUIRED, "bogus")
+        .add(XOkapiHeaders.MATCH_PATH_PATTERN, "/bogus")
+        .add("X-Other", "1")
+        .add("X-Other", "2");
+  }
+
+  @Test
+  void testHandler() {
+    HeaderPlan plan = new HeaderPlan(entry(null, "/a/{id}"));
+    assertNull(plan.getFilter());
+    MultiMap in = incoming();
+    MultiMap hop = MultiMap.caseInsensitiveMultiMap().add(XOkapiHeaders.TOKEN, "mod-token");
+    MultiMap out = MultiMap.caseInsensitiveMultiMap();
+    plan.apply(in, hop, out);
+    assertNull(out.get("Content-Length"));
+    assertNull(out.get(XOkapiHeaders.ADDITIONAL_TOKEN));
+    assertNull(out.get(XOkapiHeaders.FILTER));
+    assertEquals("mod-token", out.get(XOkapiHeaders.TOKEN));
+    assertEquals("/a/{id}", out.get(XOkapiHeaders.MATCH_PATH_PATTERN));
+    assertEquals("text/plain", out.get("Content-Type"));
+    assertEquals(2, out.getAll("x-other").size());
+    // auth headers of the client are passed on to handlers, as before
+    assertEquals("bogus", out.get(XOkapiHeaders.PERMISSIONS_REQUIRED));
+    assertEquals(8, in.names().size()); // not modified
+    assertEquals("client-token", in.get(XOkapiHeaders.TOKEN));
+    assertTrue(plan.strips("content-length"));
+    assertFalse(plan.strips("X-Other"));
+  }
+
+  @Test
+  void testAuthFilter() {
+    HeaderPlan plan = new HeaderPlan(entry(XOkapiHeaders.FILTER_AUTH, "/*"));
+    assertEquals("auth /*", plan.getFilter());
+    MultiMap hop = MultiMap.caseInsensitiveMultiMap()
+        .add(XOkapiHeaders.PERMISSIONS_DESIRED, "a,b");
+    MultiMap out = MultiMap.caseInsensitiveMultiMap();
+    plan.apply(incoming(), hop, out);
+    assertEquals("extra", out.get(XOkapiHeaders.ADDITIONAL_TOKEN));
+    assertEquals("auth /*", out.get(XOkapiHeaders.FILTER));
+    assertEquals(1, out.getAll(XOkapiHeaders.FILTER).size());
+    assertNull(out.get(XOkapiHeaders.TOKEN));
+    assertNull(out.get(XOkapiHeaders.PERMISSIONS_REQUIRED));
+    assertEquals("a,b", out.get(XOkapiHeaders.PERMISSIONS_DESIRED));
+  }
+
+  @Test
+  void testPathWithoutPattern() {
+    RoutingEntry re = new RoutingEntry();
+    re.setPath("/p");
+    re.setPhase(XOkapiHeaders.FILTER_PRE);
+    HeaderPlan plan = new HeaderPlan(re);
+    assertEquals("pre /p", plan.getFilter());
+    MultiMap out = MultiMap.caseInsensitiveMultiMap();
+    plan.apply(incoming(), MultiMap.caseInsensitiveMultiMap(), out);
+    // no pattern of its own: the incoming one is passed
+    assertEquals("/bogus", out.get(XOkapiHeaders.MATCH_PATH_PATTERN));
+  }
+}
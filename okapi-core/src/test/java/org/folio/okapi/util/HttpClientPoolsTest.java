@@ -0,0 +1,172 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.folio.okapi.bean.HttpClientDescriptor;
+import org.folio.okapi.bean.LaunchDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class HttpClientPoolsTest {
+
+  private static final int PORT = 9230;
+  private static final String URL = "http://localhost:" + PORT;
+
+  private Vertx vertx;
+  private HttpServer server;
+  private final AtomicInteger serverConnections = new AtomicInteger();
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+    server = vertx.createHttpServer()
+        .connectionHandler(conn -> serverConnections.incrementAndGet())
+        .requestHandler(req -> vertx.setTimer(100, x -> req.response().end("OK")));
+    server.listen(PORT, context.asyncAssertSuccess());
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  private static ModuleDescriptor module(String id, HttpClientDescriptor d) {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId(id);
+    if (d != null) {
+      LaunchDescriptor ld = new LaunchDescriptor();
+      ld.setHttpClient(d);
+      md.setLaunchDescriptor(ld);
+    }
+    return md;
+  }
+
+  @Test
+  public void testOptions() {
+    HttpClientOptions opt = HttpClientPools.options(new HttpClientDescriptor());
+    Assert.assertEquals(HttpClientOptions.DEFAULT_MAX_POOL_SIZE, opt.getMaxPoolSize());
+    Assert.assertEquals(HttpVersion.HTTP_1_1, opt.getProtocolVersion());
+
+    HttpClientDescriptor d = new HttpClientDescriptor();
+    d.setMaxPoolSize(10);
+    d.setKeepAlive(false);
+    d.setKeepAliveTimeout(5);
+    d.setIdleTimeout(30);
+    d.setConnectTimeout(2000);
+    d.setPipelining(true);
+    d.setPipeliningLimit(4);
+    d.setMaxWaitQueueSize(100);
+    d.setHttp2(true);
+    d.setHttp2ClearTextUpgrade(false);
+    d.setHttp2MaxPoolSize(2);
+    d.setHttp2MultiplexingLimit(50);
+    d.setTcpNoDelay(false);
+    d.setTcpFastOpen(true);
+    d.setReceiveBufferSize(65536);
+    d.setSendBufferSize(131072);
+    opt = HttpClientPools.options(d);
+    Assert.assertEquals(10, opt.getMaxPoolSize());
+    Assert.assertFalse(opt.isKeepAlive());
+    Assert.assertEquals(5, opt.getKeepAliveTimeout());
+    Assert.assertEquals(5, opt.getHttp2KeepAliveTimeout());
+    Assert.assertEquals(30, opt.getIdleTimeout());
+    Assert.assertEquals(2000, opt.getConnectTimeout());
+    Assert.assertTrue(opt.isPipelining());
+    Assert.assertEquals(4, opt.getPipeliningLimit());
+    Assert.assertEquals(100, opt.getMaxWaitQueueSize());
+    Assert.assertEquals(HttpVersion.HTTP_2, opt.getProtocolVersion());
+    Assert.assertFalse(opt.isHttp2ClearTextUpgrade());
+    Assert.assertEquals(2, opt.getHttp2MaxPoolSize());
+    Assert.assertEquals(50, opt.getHttp2MultiplexingLimit());
+    Assert.assertFalse(opt.isTcpNoDelay());
+    Assert.assertTrue(opt.isTcpFastOpen());
+    Assert.assertEquals(65536, opt.getReceiveBufferSize());
+    Assert.assertEquals(131072, opt.getSendBufferSize());
+  }
+
+  @Test
+  public void testMerge() {
+    HttpClientDescriptor a = new HttpClientDescriptor();
+    a.setMaxPoolSize(10);
+    a.setKeepAlive(true);
+    HttpClientDescriptor b = new HttpClientDescriptor();
+    b.setMaxPoolSize(20);
+    b.setWarmUp(2);
+    HttpClientDescriptor c = a.merge(b);
+    Assert.assertEquals(Integer.valueOf(20), c.getMaxPoolSize());
+    Assert.assertEquals(Boolean.TRUE, c.getKeepAlive());
+    Assert.assertEquals(Integer.valueOf(2), c.getWarmUp());
+    Assert.assertNull(c.getHttp2());
+    c = a.merge(null);
+    Assert.assertEquals(Integer.valueOf(10), c.getMaxPoolSize());
+    Assert.assertNotSame(a, c);
+  }
+
+  @Test
+  public void testGet() {
+    HttpClientPools pools = new HttpClientPools(vertx, new JsonObject()
+        .put("httpClient", new JsonObject().put("maxPoolSize", 5)));
+    Assert.assertSame(pools.getDefault(), pools.get(null));
+    Assert.assertSame(pools.getDefault(), pools.get(module("mod-a-1.0.0", null)));
+    ModuleDescriptor md = module("mod-b-1.0.0", new HttpClientDescriptor());
+    Assert.assertNotSame(pools.getDefault(), pools.get(md));
+    Assert.assertSame(pools.get(md), pools.get(md));
+
+    // client of removed module is closed; a new one is made if used again
+    HttpClient client = pools.get(md);
+    pools.close("mod-a-1.0.0");
+    pools.close(md.getId());
+    Assert.assertNotSame(client, pools.get(md));
+  }
+
+  @Test
+  public void testBadConfig() {
+    JsonObject conf = new JsonObject().put("httpClient", new JsonObject().put("foo", 1));
+    Assert.assertThrows(DecodeException.class, () -> new HttpClientPools(vertx, conf));
+  }
+
+  @Test
+  public void testWarmUp(TestContext context) {
+    HttpClientDescriptor d = new HttpClientDescriptor();
+    d.setWarmUp(3);
+    ModuleDescriptor md = module("mod-c-1.0.0", d);
+    HttpClientPools pools = new HttpClientPools(vertx, new JsonObject());
+
+    Async async = context.async();
+    pools.request(md, URL, new RequestOptions().setMethod(HttpMethod.GET)
+        .setAbsoluteURI(URL + "/x"))
+        .compose(HttpClientRequest::send)
+        .onComplete(context.asyncAssertSuccess(res -> {
+          context.assertEquals(200, res.statusCode());
+          context.assertEquals(4, serverConnections.get());
+          context.assertEquals(4, pools.getConnections("mod-c-1.0.0"));
+          context.assertEquals(0, pools.getConnections(HttpClientPools.DEFAULT_POOL));
+          async.complete();
+        }));
+    async.await();
+
+    // no warm-up the second time
+    pools.request(md, URL, new RequestOptions().setMethod(HttpMethod.GET)
+        .setAbsoluteURI(URL + "/x"))
+        .compose(HttpClientRequest::send)
+        .onComplete(context.asyncAssertSuccess(res ->
+            context.assertEquals(4, serverConnections.get())));
+  }
+}
@@ -0,0 +1,57 @@
+package org.folio.okapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyTrackerTest {
+
+  @Test
+  void testTooFewSamples() {
+    LatencyTracker tracker = new LatencyTracker();
+    assertEquals(-1, tracker.percentile("a", 50.0));
+    for (int i = 1; i < LatencyTracker.MIN_SAMPLES; i++) {
+      tracker.add("a", i);
+    }
+    assertEquals(-1, tracker.percentile("a", 50.0));
+    tracker.add("a", LatencyTracker.MIN_SAMPLES);
+    assertEquals(5, tracker.percentile("a", 50.0));
+    assertEquals(-1, tracker.percentile("b", 50.0));
+  }
+
+  @Test
+  void testPercentile() {
+    LatencyTracker tracker = new LatencyTracker();
+    for (int i = 100; i >= 1; i--) {
+      tracker.add("a", i);
+    }
+    assertEquals(1, tracker.percentile("a", 0.1));
+    assertEquals(50, tracker.percentile("a", 50.0));
+    assertEquals(95, tracker.percentile("a", 95.0));
+    assertEquals(100, tracker.percentile("a", 99.9));
+  }
+
+  @Test
+  void testWindow() {
+    LatencyTracker tracker = new LatencyTracker();
+    for (int i = 0; i < LatencyTracker.WINDOW; i++) {
+      tracker.add("a", 1000);
+    }
+    for (int i = 0; i < LatencyTracker.WINDOW; i++) {
+      tracker.add("a", 10);
+    }
+    assertEquals(10, tracker.percentile("a", 99.0));
+  }
+
+  @Test
+  void testRemovePrefix() {
+    LatencyTracker tracker = new LatencyTracker();
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+      tracker.add("mod-a-1.0.0 /a", 10);
+      tracker.add("mod-a-1.0.1 /a", 10);
+    }
+    tracker.removePrefix("mod-a-1.0.0 ");
+    assertEquals(-1, tracker.percentile("mod-a-1.0.0 /a", 50.0));
+    assertEquals(10, tracker.percentile("mod-a-1.0.1 /a", 50.0));
+  }
+}
@@ -0,0 +1,132 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+  private static List<DeploymentDescriptor> instances(int n) {
+    List<DeploymentDescriptor> l = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      l.add(new DeploymentDescriptor("i" + i, "mod-a-1.0.0", "http://localhost:" + (9131 + i),
+          null, null));
+    }
+    return l;
+  }
+
+  @Test
+  void testCreate() {
+    assertTrue(LoadBalancer.create("random") instanceof RandomLoadBalancer);
+    assertTrue(LoadBalancer.create("round-robin") instanceof RoundRobinLoadBalancer);
+    assertTrue(LoadBalancer.create("least-outstanding") instanceof LeastOutstandingLoadBalancer);
+    assertTrue(LoadBalancer.create("p2c-ewma") instanceof PowerOfTwoLoadBalancer);
+    Exception e = assertThrows(IllegalArgumentException.class, () -> LoadBalancer.create("x"));
+    assertEquals("Unknown load balancing: x", e.getMessage());
+  }
+
+  @Test
+  void testRandom() {
+    List<DeploymentDescriptor> l = instances(3);
+    LoadBalancer lb = new RandomLoadBalancer();
+    Set<DeploymentDescriptor> picked = new HashSet<>();
+    for (int i = 0; i < 200; i++) {
+      picked.add(lb.pick("mod-a-1.0.0", l, new InstanceTracker()));
+    }
+    assertEquals(3, picked.size());
+  }
+
+  @Test
+  void testRoundRobin() {
+    List<DeploymentDescriptor> l = instances(3);
+    LoadBalancer lb = new RoundRobinLoadBalancer();
+    InstanceTracker tracker = new InstanceTracker();
+    assertSame(l.get(0), lb.pick("mod-a-1.0.0", l, tracker));
+    assertSame(l.get(0), lb.pick("mod-b-1.0.0", l, tracker));
+    assertSame(l.get(1), lb.pick("mod-a-1.0.0", l, tracker));
+    assertSame(l.get(2), lb.pick("mod-a-1.0.0", l, tracker));
+    assertSame(l.get(0), lb.pick("mod-a-1.0.0", l, tracker));
+    assertSame(l.get(1), lb.pick("mod-b-1.0.0", l, tracker));
+  }
+
+  @Test
+  void testLeastOutstanding() {
+    List<DeploymentDescriptor> l = instances(3);
+    LoadBalancer lb = new LeastOutstandingLoadBalancer();
+    InstanceTracker tracker = new InstanceTracker();
+    tracker.begin(l.get(0).getUrl());
+    long start = tracker.begin(l.get(1).getUrl());
+    tracker.begin(l.get(1).getUrl());
+    assertEquals(2, tracker.getOutstanding(l.get(1).getUrl()));
+    assertSame(l.get(2), lb.pick("mod-a-1.0.0", l, tracker));
+    tracker.begin(l.get(2).getUrl());
+    tracker.begin(l.get(2).getUrl());
+    assertSame(l.get(0), lb.pick("mod-a-1.0.0", l, tracker));
+    tracker.end(l.get(1).getUrl(), start);
+    tracker.end(l.get(1).getUrl(), start);
+    assertEquals(0, tracker.getOutstanding(l.get(1).getUrl()));
+    assertSame(l.get(1), lb.pick("mod-a-1.0.0", l, tracker));
+  }
+
+  @Test
+  void testPowerOfTwo() {
+    List<DeploymentDescriptor> l = instances(2);
+    LoadBalancer lb = new PowerOfTwoLoadBalancer();
+    InstanceTracker tracker = new InstanceTracker();
+    assertSame(l.get(0), lb.pick("mod-a-1.0.0", l.subList(0, 1), tracker));
+
+    // slow instance 0
+    tracker.end(l.get(0).getUrl(), tracker.begin(l.get(0).getUrl()) - 1000000000L);
+    tracker.end(l.get(1).getUrl(), tracker.begin(l.get(1).getUrl()));
+    assertTrue(tracker.getLatency(l.get(0).getUrl()) > tracker.getLatency(l.get(1).getUrl()));
+    for (int i = 0; i < 20; i++) {
+      assertSame(l.get(1), lb.pick("mod-a-1.0.0", l, tracker));
+    }
+    // instance without responses is preferred
+    List<DeploymentDescriptor> l3 = instances(3);
+    int picked = 0;
+    for (int i = 0; i < 60; i++) {
+      if (lb.pick("mod-a-1.0.0", l3, tracker) == l3.get(2)) {
+        picked++;
+      }
+    }
+    assertTrue(picked > 0);
+    assertTrue(PowerOfTwoLoadBalancer.cost(l3.get(2), tracker) == 0.0);
+
+    // instance failing fast is not preferred; cancelled request is not counted
+    tracker.fail(l3.get(2).getUrl(), tracker.begin(l3.get(2).getUrl()));
+    assertEquals(0, tracker.getOutstanding(l3.get(2).getUrl()));
+    assertTrue(tracker.getLatency(l3.get(2).getUrl()) >= 1e9);
+    tracker.begin(l3.get(1).getUrl());
+    tracker.cancel(l3.get(1).getUrl());
+    assertEquals(0, tracker.getOutstanding(l3.get(1).getUrl()));
+    double latency = tracker.getLatency(l3.get(1).getUrl());
+    for (int i = 0; i < 20; i++) {
+      assertNotSame(l3.get(2), lb.pick("mod-a-1.0.0", l3.subList(1, 3), tracker));
+    }
+    // penalty grows with failures, but is bounded
+    for (int i = 0; i < 100; i++) {
+      tracker.fail(l3.get(2).getUrl(), tracker.begin(l3.get(2).getUrl()));
+    }
+    assertTrue(tracker.getLatency(l3.get(2).getUrl()) > 2e9);
+    assertTrue(tracker.getLatency(l3.get(2).getUrl()) <= 60e9);
+    assertEquals(latency, tracker.getLatency(l3.get(1).getUrl()));
+
+    // instance on the same URL after removal starts afresh
+    String url = l3.get(2).getUrl();
+    long start = tracker.begin(url);
+    tracker.remove(url);
+    assertEquals(0, tracker.getOutstanding(url));
+    assertTrue(tracker.getLatency(url) < 0.0);
+    tracker.fail(url, start);
+    tracker.cancel(url);
+    assertEquals(0, tracker.getOutstanding(url));
+    assertTrue(tracker.getLatency(url) < 0.0);
+    assertTrue(PowerOfTwoLoadBalancer.cost(l3.get(2), tracker) == 0.0);
+  }
+}
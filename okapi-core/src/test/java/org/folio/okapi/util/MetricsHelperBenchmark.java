@@ -0,0 +1,97 @@
+package org.folio.okapi.util;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.http.HttpMethod;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.ModuleInstance;
+import org.folio.okapi.bean.RoutingEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare recording of the HTTP client response time, as done for every
+ * hop of a proxied request, with a meter registered per recording (as
+ * before) and with the meter handles cached by {@link MetricsHelper}.
+ * Four threads record, to include contention on the registry. The main
+ * method runs with the GC profiler, so that {@code gc.alloc.rate.norm}
+ * shows bytes allocated per operation.
+ *
+ * <p>Not run as part of the unit tests. Run the main method with the test
+ * class path after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class MetricsHelperBenchmark {
+
+  ModuleInstance mi;
+
+  @Setup
+  public void setup() {
+    MetricsHelper.setEnabled(true);
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId("mod-users-17.1.0");
+    RoutingEntry re = new RoutingEntry();
+    re.setPathPattern("/users/{id}");
+    mi = new ModuleInstance(md, re, "/users/123", HttpMethod.GET, true);
+  }
+
+  @TearDown
+  public void tearDown() {
+    MetricsHelper.setEnabled(false);
+  }
+
+  @Benchmark
+  public Timer registerPerRecording() {
+    Timer.Sample sample = MetricsHelper.getTimerSample();
+    List<Tag> tags = new ArrayList<>();
+    tags.add(Tag.of("tenant", "testlib"));
+    tags.add(Tag.of("code", "" + 200));
+    tags.add(Tag.of("method", "GET"));
+    tags.add(Tag.of("module", mi.getModuleDescriptor().getId()));
+    tags.add(Tag.of("url", mi.getRoutingEntry().getStaticPath()));
+    tags.add(Tag.of("phase", "handler"));
+    Timer timer = Timer.builder("org.folio.okapi.http.client.responseTime")
+        .tags(tags)
+        .register(MetricsHelper.getRegistry());
+    sample.stop(timer);
+    return timer;
+  }
+
+  @Benchmark
+  public Timer cachedHandle() {
+    return MetricsHelper.recordHttpClientResponse(MetricsHelper.getTimerSample(),
+        "testlib", 200, "GET", mi);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(MetricsHelperBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(opt).run();
+  }
+}
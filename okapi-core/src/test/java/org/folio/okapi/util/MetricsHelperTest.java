@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.ModuleInstance;
 import org.folio.okapi.bean.RoutingEntry;
@@ -16,6 +18,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Timer;
 import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpMethod;
@@ -42,6 +45,16 @@ class MetricsHelperTest {
     assertNull(MetricsHelper.recordHttpClientResponse(null, "a", 0, "b", null));
     assertNull(MetricsHelper.recordHttpServerProcessingTime(null, "a", 0, "b", null));
     assertNull(MetricsHelper.recordHttpClientError("a", "b", "c"));
+    assertNull(MetricsHelper.recordCacheLookup("a", true));
+    assertNull(MetricsHelper.recordPhaseTime("a", "b", 1));
+    assertNull(MetricsHelper.recordCircuitStateChange("a", "open"));
+    assertNull(MetricsHelper.recordCircuitRejection("a"));
+    assertNull(MetricsHelper.recordTenantRejection("a", "rate"));
+    assertNull(MetricsHelper.recordRequestLogOverflow("drop", 1));
+    assertNull(MetricsHelper.recordProxyRetry("retry", "sent"));
+    assertNull(MetricsHelper.recordHttpClientPoolWait(null, "a"));
+    assertNull(MetricsHelper.registerHttpClientPoolConnections("a", new AtomicInteger()));
+    MetricsHelper.removeHttpClientPool("a");
   }
 
   @Test
@@ -59,6 +72,33 @@ class MetricsHelperTest {
     verifyConfig(vopt, "a", "b", "c", "d");
   }
 
+  @Test
+  void testConfigPrometheus() {
+    VertxOptions vopt = new VertxOptions();
+    MetricsHelper.configPrometheus(vopt, null);
+    JsonObject jo = vopt.getMetricsOptions().toJson().getJsonObject("prometheusOptions");
+    assertTrue(jo.getBoolean("enabled"));
+    assertFalse(jo.getBoolean("startEmbeddedServer"));
+    assertTrue(MetricsHelper.isPrometheusEnabled());
+    assertNotNull(MetricsHelper.scrapingHandler());
+
+    Timer timer = MetricsHelper.recordHttpServerProcessingTime(
+        MetricsHelper.getTimerSample(), "prometheus", 200, "GET", createModuleInstance(true));
+    assertEquals(3, timer.takeSnapshot().percentileValues().length);
+
+    MetricsHelper.configPrometheus(vopt, 9239);
+    jo = vopt.getMetricsOptions().toJson().getJsonObject("prometheusOptions");
+    assertTrue(jo.getBoolean("startEmbeddedServer"));
+    assertEquals(9239, jo.getJsonObject("embeddedServerOptions").getInteger("port"));
+
+    MetricsHelper.config(vopt, null, null, null, null);
+    assertFalse(MetricsHelper.isPrometheusEnabled());
+    assertNull(MetricsHelper.scrapingHandler());
+    timer = MetricsHelper.recordHttpServerProcessingTime(
+        MetricsHelper.getTimerSample(), "influx", 200, "GET", createModuleInstance(true));
+    assertEquals(0, timer.takeSnapshot().percentileValues().length);
+  }
+
   @Test
   void testRecordHttpServerProcessingTime() {
     Timer.Sample sample = MetricsHelper.getTimerSample();
@@ -108,6 +148,106 @@ class MetricsHelperTest {
     assertEquals(2, counter.count());
   }
 
+  @Test
+  void testMeterHandlesCached() {
+    ModuleInstance mi = createModuleInstance(false);
+    Timer timer = MetricsHelper.recordHttpClientResponse(
+        MetricsHelper.getTimerSample(), "cached", 201, "POST", mi);
+    assertSame(timer, MetricsHelper.recordHttpClientResponse(
+        MetricsHelper.getTimerSample(), "cached", 201, "POST", createModuleInstance(false)));
+    assertEquals(2, timer.count());
+    assertNotSame(timer, MetricsHelper.recordHttpServerProcessingTime(
+        MetricsHelper.getTimerSample(), "cached", 201, "POST", mi));
+    assertNotSame(timer, MetricsHelper.recordHttpClientResponse(
+        MetricsHelper.getTimerSample(), "cached", 204, "POST", mi));
+    assertSame(MetricsHelper.recordHttpClientError("cached", "GET", "/b"),
+        MetricsHelper.recordHttpClientError("cached", "GET", "/b"));
+  }
+
+  @Test
+  void testTagValues() {
+    MetricsHelper.TagValues values = new MetricsHelper.TagValues(2);
+    assertEquals("null", values.get(null));
+    assertEquals("a", values.get("a"));
+    assertEquals("b", values.get("b"));
+    assertEquals(MetricsHelper.TAG_OTHER, values.get("c"));
+    assertEquals("a", values.get("a"));
+    assertEquals(2, values.size());
+  }
+
+  @Test
+  void testRecordPhaseTime() {
+    Timer timer = MetricsHelper.recordPhaseTime("auth", "mod-auth-1.0.0", 2000000);
+    assertEquals(1, timer.count());
+    assertSame(timer, MetricsHelper.recordPhaseTime("auth", "mod-auth-1.0.0", 1000000));
+    assertEquals(2, timer.count());
+    assertEquals(3, timer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+    assertNotSame(timer, MetricsHelper.recordPhaseTime("handler", "mod-auth-1.0.0", 1));
+  }
+
+  @Test
+  void testRecordCacheLookup() {
+    Counter hit = MetricsHelper.recordCacheLookup("c", true);
+    assertEquals(1, hit.count());
+    Counter miss = MetricsHelper.recordCacheLookup("c", false);
+    assertEquals(1, miss.count());
+    MetricsHelper.recordCacheLookup("c", true);
+    assertEquals(2, hit.count());
+  }
+
+  @Test
+  void testHttpClientPool() {
+    Timer timer = MetricsHelper.recordHttpClientPoolWait(MetricsHelper.getTimerSample(), "p");
+    assertEquals(1, timer.count());
+    AtomicInteger connections = new AtomicInteger(3);
+    Gauge gauge = MetricsHelper.registerHttpClientPoolConnections("p", connections);
+    assertEquals(3, gauge.value(), 0);
+    connections.decrementAndGet();
+    assertEquals(2, gauge.value(), 0);
+    MetricsHelper.removeHttpClientPool("p");
+    assertNotSame(timer, MetricsHelper.recordHttpClientPoolWait(MetricsHelper.getTimerSample(),
+        "p"));
+  }
+
+  @Test
+  void testRecordCircuit() {
+    Counter open = MetricsHelper.recordCircuitStateChange("http://localhost:9131", "open");
+    assertEquals(1, open.count());
+    Counter closed = MetricsHelper.recordCircuitStateChange("http://localhost:9131", "closed");
+    assertEquals(1, closed.count());
+    assertEquals(1, MetricsHelper.recordCircuitStateChange(null, "open").count());
+    Counter rejected = MetricsHelper.recordCircuitRejection("mod-a-1.0.0");
+    MetricsHelper.recordCircuitRejection("mod-a-1.0.0");
+    assertEquals(2, rejected.count());
+    assertEquals(1, MetricsHelper.recordCircuitRejection(null).count());
+  }
+
+  @Test
+  void testRecordRequestLogOverflow() {
+    Counter spilled = MetricsHelper.recordRequestLogOverflow("spill", 100);
+    assertSame(spilled, MetricsHelper.recordRequestLogOverflow("spill", 50));
+    assertEquals(150, spilled.count());
+    assertEquals(7, MetricsHelper.recordRequestLogOverflow("drop", 7).count());
+  }
+
+  @Test
+  void testRecordProxyRetry() {
+    Counter sent = MetricsHelper.recordProxyRetry("hedge", "sent");
+    MetricsHelper.recordProxyRetry("hedge", "sent");
+    assertEquals(2, sent.count());
+    assertEquals(1, MetricsHelper.recordProxyRetry("hedge", "won").count());
+    assertEquals(1, MetricsHelper.recordProxyRetry("retry", "budget").count());
+  }
+
+  @Test
+  void testRecordTenantRejection() {
+    Counter rate = MetricsHelper.recordTenantRejection("t1", "rate");
+    MetricsHelper.recordTenantRejection("t1", "rate");
+    assertEquals(2, rate.count());
+    assertEquals(1, MetricsHelper.recordTenantRejection("t1", "inflight").count());
+    assertEquals(1, MetricsHelper.recordTenantRejection(null, "rate").count());
+  }
+
   @Test
   void testGetHost() {
     assertNotEquals(MetricsHelper.HOST_UNKNOWN, MetricsHelper.getHost());
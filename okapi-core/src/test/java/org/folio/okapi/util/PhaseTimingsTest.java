@@ -0,0 +1,45 @@
+package org.folio.okapi.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.folio.okapi.bean.PhaseTimingDescriptor;
+import org.junit.jupiter.api.Test;
+
+class PhaseTimingsTest {
+
+  @Test
+  void testEmpty() {
+    assertTrue(new PhaseTimings().list().isEmpty());
+  }
+
+  @Test
+  void testRecord() {
+    PhaseTimings timings = new PhaseTimings();
+    timings.record(PhaseTimings.HANDLER, "mod-b-1.0.0", 3000000);
+    timings.record(PhaseTimings.HANDLER, "mod-b-1.0.0", 1000000);
+    timings.record(PhaseTimings.HANDLER, "mod-a-1.0.0", 2000);
+    timings.record("auth", "mod-auth-1.0.0", 500000);
+    timings.record(PhaseTimings.OKAPI, PhaseTimings.OKAPI, 100000);
+
+    List<PhaseTimingDescriptor> list = timings.list();
+    assertEquals(4, list.size());
+    assertEquals("auth", list.get(0).getPhase());
+    assertEquals("mod-auth-1.0.0", list.get(0).getModule());
+    assertEquals(500, list.get(0).getMaxUs());
+
+    assertEquals(PhaseTimings.HANDLER, list.get(1).getPhase());
+    assertEquals("mod-a-1.0.0", list.get(1).getModule());
+    assertEquals(1, list.get(1).getCount());
+    assertEquals(2, list.get(1).getMeanUs());
+
+    PhaseTimingDescriptor b = list.get(2);
+    assertEquals("mod-b-1.0.0", b.getModule());
+    assertEquals(2, b.getCount());
+    assertEquals(4000, b.getTotalUs());
+    assertEquals(2000, b.getMeanUs());
+    assertEquals(3000, b.getMaxUs());
+
+    assertEquals(PhaseTimings.OKAPI, list.get(3).getPhase());
+  }
+}
@@ -0,0 +1,76 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.Json;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineCacheTest {
+
+  @Test
+  void testGetPut() {
+    List<ModuleDescriptor> modules = new LinkedList<>();
+    modules.add(Json.decodeValue(RoutingIndexTest.MOD_A, ModuleDescriptor.class));
+    modules.add(Json.decodeValue(RoutingIndexTest.MOD_B, ModuleDescriptor.class));
+    RoutingIndex index = new RoutingIndex(modules);
+    List<RoutingIndex.Match> matches = index.lookup("/a/1", "GET", null,
+        RoutingIndex.HANDLERS_FIRST);
+
+    PipelineCache cache = new PipelineCache();
+    List<Object> key = PipelineCache.key("GET", matches);
+    assertNull(cache.get("t1", key));
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    PipelineCache.Template template = new PipelineCache.Template(new LinkedList<>(), null);
+    cache.put("t1", key, template);
+    assertEquals(1, cache.size());
+    assertSame(template, cache.get("t1", PipelineCache.key("GET", index.lookup("/a/2", "GET",
+        null, RoutingIndex.HANDLERS_FIRST))));
+    assertEquals(1, cache.getHits());
+    assertNull(cache.get("t2", key));
+    assertNull(cache.get("t1", PipelineCache.key("POST", matches)));
+    // same entries but from another index
+    RoutingIndex other = new RoutingIndex(modules);
+    assertNull(cache.get("t1", PipelineCache.key("GET", other.lookup("/a/1", "GET", null,
+        RoutingIndex.HANDLERS_FIRST))));
+    assertEquals(4, cache.getMisses());
+
+    cache.put("t2", key, template);
+    assertEquals(2, cache.size());
+    cache.invalidate("t1");
+    assertNull(cache.get("t1", key));
+    assertSame(template, cache.get("t2", key));
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testStep() {
+    RoutingEntry r1 = new RoutingEntry();
+    r1.setPathPattern("/a*");
+    r1.setRedirectPath("/b");
+    RoutingEntry r2 = new RoutingEntry();
+    r2.setPathPattern("/b*");
+    r2.setRedirectPath("/c");
+    RoutingEntry r3 = new RoutingEntry();
+    r3.setPathPattern("/c");
+
+    PipelineCache.Step s1 = new PipelineCache.Step(null, r1, false, Collections.emptyList());
+    assertFalse(s1.isRedirected());
+    assertEquals("/a1", s1.getUri("/a1"));
+    PipelineCache.Step s2 = s1.redirect(null, r2, false);
+    assertTrue(s2.isRedirected());
+    assertFalse(s2.isHandler());
+    assertSame(r2, s2.getRoutingEntry());
+    assertEquals(r1.getRedirectUri("/a1"), s2.getUri("/a1"));
+    PipelineCache.Step s3 = s2.redirect(null, r3, true);
+    assertTrue(s3.isHandler());
+    assertEquals(r2.getRedirectUri(r1.getRedirectUri("/a1")), s3.getUri("/a1"));
+  }
+}
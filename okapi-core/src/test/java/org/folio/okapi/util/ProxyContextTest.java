@@ -0,0 +1,33 @@
+package org.folio.okapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyContextTest {
+
+  private static final String[] PATHS = {
+      "", "/", "//", "/a", "/a/b", "/abc?x=1", "/abc/def?x=/y", "/_", "/_/", "/_//x",
+      "/_/proxy/modules", "/_/proxy?x", "/_?x", "/__x/y", "/?x", "abc", "/_/_/x",
+      "/_/p", "/x_/y", "_/x"
+  };
+
+  @Test
+  void testPathPrefix() {
+    for (String path : PATHS) {
+      assertEquals(path.replaceFirst("^(/_)?(/[^/?]+).*$", "$2"),
+          ProxyContext.pathPrefix(path), path);
+    }
+    assertEquals("/proxy", ProxyContext.pathPrefix("/_/proxy/tenants"));
+    assertEquals("/users", ProxyContext.pathPrefix("/users/123?q=x"));
+  }
+
+  @Test
+  void testNewRequestId() {
+    for (int i = 0; i < 100; i++) {
+      String id = ProxyContext.newRequestId("/users/123");
+      assertTrue(id.matches("[0-9]{6}/users"), id);
+    }
+    assertTrue(ProxyContext.newRequestId("").matches("[0-9]{6}"));
+  }
+}
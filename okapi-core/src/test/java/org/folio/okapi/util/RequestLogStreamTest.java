@@ -0,0 +1,222 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class RequestLogStreamTest {
+
+  private Vertx vertx;
+
+  /**
+   * Log module that takes content only when told so.
+   */
+  static class SlowStream implements WriteStream<Buffer> {
+    final Buffer received = Buffer.buffer();
+    boolean full;
+    boolean ended;
+    Handler<Void> drainHandler;
+    Handler<Void> endHandler;
+
+    void drain() {
+      full = false;
+      if (drainHandler != null) {
+        drainHandler.handle(null);
+      }
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      received.appendBuffer(data);
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      write(data);
+      if (handler != null) {
+        handler.handle(Future.succeededFuture());
+      }
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      ended = true;
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+      if (handler != null) {
+        handler.handle(Future.succeededFuture());
+      }
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return full;
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      drainHandler = handler;
+      return this;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testPolicy() {
+    Assert.assertTrue(RequestLogStream.isPolicy("drop"));
+    Assert.assertTrue(RequestLogStream.isPolicy("spill"));
+    Assert.assertFalse(RequestLogStream.isPolicy("block"));
+  }
+
+  @Test
+  public void testFast() {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 4, 100, RequestLogStream.DROP);
+    s.write(Buffer.buffer("hello "));
+    s.write(Buffer.buffer("world"));
+    Assert.assertFalse(s.writeQueueFull());
+    s.end();
+    Assert.assertEquals("hello world", target.received.toString());
+    Assert.assertTrue(target.ended);
+    Assert.assertTrue(s.isDone());
+    s.close(); // no-op when done
+    Assert.assertFalse(s.isDropped());
+  }
+
+  @Test
+  public void testQueued() {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 10, 100, RequestLogStream.DROP);
+    s.write(Buffer.buffer("ab"));
+    target.full = true;
+    s.write(Buffer.buffer("cde"));
+    s.write(Buffer.buffer("fgh"));
+    Assert.assertFalse(s.writeQueueFull());
+    Assert.assertEquals(6, s.getQueued());
+    s.end();
+    Assert.assertFalse(target.ended);
+    target.drain();
+    Assert.assertEquals("abcdefgh", target.received.toString());
+    Assert.assertEquals(0, s.getQueued());
+    Assert.assertTrue(target.ended);
+  }
+
+  @Test
+  public void testDrop() {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 4, 100, RequestLogStream.DROP);
+    s.write(Buffer.buffer("ab"));
+    target.full = true;
+    s.write(Buffer.buffer("cde"));
+    Assert.assertFalse(s.isDropped());
+    s.write(Buffer.buffer("fg"));
+    Assert.assertTrue(s.isDropped());
+    Assert.assertTrue(target.ended); // not an HTTP request, so it can only be ended
+    Assert.assertEquals(0, s.getQueued());
+    s.write(Buffer.buffer("hi"));
+    s.end();
+    target.drain();
+    Assert.assertEquals("ab", target.received.toString());
+  }
+
+  @Test
+  public void testSpill(TestContext context) {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 4, 100, RequestLogStream.SPILL);
+    Async async = context.async();
+    target.endHandler = x -> {
+      context.assertEquals("abcdefghijkl", target.received.toString());
+      async.complete();
+    };
+    vertx.runOnContext(x -> {
+      s.write(Buffer.buffer("ab"));
+      target.full = true;
+      s.write(Buffer.buffer("cde"));
+      s.write(Buffer.buffer("fg"));
+      s.write(Buffer.buffer("hijkl"));
+      context.assertFalse(s.isDropped());
+      s.end();
+      context.assertFalse(target.ended);
+      vertx.setTimer(50, y -> target.drain());
+    });
+  }
+
+  @Test
+  public void testSpillLimit(TestContext context) {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 4, 6, RequestLogStream.SPILL);
+    Async async = context.async();
+    vertx.runOnContext(x -> {
+      s.write(Buffer.buffer("ab"));
+      target.full = true;
+      s.write(Buffer.buffer("cde"));
+      s.write(Buffer.buffer("fg"));
+      s.write(Buffer.buffer("hijk"));
+      context.assertFalse(s.isDropped());
+      s.write(Buffer.buffer("l"));
+      context.assertTrue(s.isDropped());
+      context.assertTrue(s.isDone());
+      context.assertTrue(target.ended);
+      context.assertEquals("ab", target.received.toString());
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testClose(TestContext context) {
+    SlowStream target = new SlowStream();
+    RequestLogStream s = new RequestLogStream(vertx, target, 4, 100, RequestLogStream.SPILL);
+    Async async = context.async();
+    vertx.runOnContext(x -> {
+      s.write(Buffer.buffer("ab"));
+      target.full = true;
+      s.write(Buffer.buffer("cde"));
+      s.write(Buffer.buffer("fg"));
+      s.end();
+      context.assertFalse(s.isDone());
+      // log module never takes the rest
+      vertx.setTimer(50, y -> {
+        s.close();
+        context.assertTrue(s.isDropped());
+        context.assertTrue(s.isDone());
+        context.assertTrue(target.ended);
+        target.drain();
+        context.assertEquals("ab", target.received.toString());
+        async.complete();
+      });
+    });
+  }
+}
@@ -0,0 +1,221 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+  private static MultiMap headers(String... kv) {
+    MultiMap m = MultiMap.caseInsensitiveMultiMap();
+    for (int i = 0; i < kv.length; i += 2) {
+      m.add(kv[i], kv[i + 1]);
+    }
+    return m;
+  }
+
+  private static boolean store(ResponseCache cache, String key, String body, MultiMap headers) {
+    WriteStream<Buffer> w = cache.writer(key, 200, headers, 60000, new String[] {"X-Okapi-User-Id"});
+    if (w == null) {
+      return false;
+    }
+    for (int i = 0; i < body.length(); i += 3) {
+      w.write(Buffer.buffer(body.substring(i, Math.min(body.length(), i + 3))));
+    }
+    w.end();
+    return true;
+  }
+
+  @Test
+  void testKey() {
+    MultiMap h = headers("X-Okapi-User-Id", "u1", "X-Okapi-Permissions", "[]");
+    assertEquals("t1\nm1\n/a?b=1", ResponseCache.key("t1", "m1", "/a?b=1", h, null));
+    assertEquals("t1\nm1\n/a\nu1\n\n[]", ResponseCache.key("t1", "m1", "/a", h,
+        new String[] {"X-Okapi-User-Id", "X-Other", "x-okapi-permissions"}));
+  }
+
+  @Test
+  void testWriteGet() {
+    ResponseCache cache = new ResponseCache(1000, 100, false);
+    assertTrue(cache.isEnabled());
+    assertFalse(new ResponseCache(0, 100, false).isEnabled());
+    String key = ResponseCache.key("t1", "m1", "/a", headers(), null);
+    assertNull(cache.get(key));
+    assertTrue(store(cache, key, "hello world",
+        headers("Content-Type", "text/plain", "X-Okapi-Trace", "GET m1")));
+    ResponseCache.Entry e = cache.get(key);
+    assertNotNull(e);
+    assertTrue(e.isFresh());
+    assertEquals(200, e.getStatus());
+    assertEquals("hello world", e.getBody().toString());
+    MultiMap out = MultiMap.caseInsensitiveMultiMap();
+    e.copyHeaders(out);
+    assertEquals("text/plain", out.get("content-type"));
+    assertNull(out.get("X-Okapi-Trace"));
+    assertEquals(0, e.getAge());
+    assertEquals(1, cache.size());
+    assertEquals(11 + "Content-Type".length() + "text/plain".length(), cache.getBytes());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    // expired without validator is removed
+    assertNull(cache.get(key, System.currentTimeMillis() + 60000));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  void testOffHeap() {
+    ResponseCache cache = new ResponseCache(1000, 100, true);
+    assertTrue(store(cache, "t1\nm1\n/a", "hello world", headers()));
+    assertEquals("hello world", cache.get("t1\nm1\n/a").getBody().toString());
+    assertEquals("hello world", cache.get("t1\nm1\n/a").getBody().toString());
+    assertTrue(store(cache, "t1\nm1\n/b", "", headers()));
+    assertEquals(0, cache.get("t1\nm1\n/b").getBody().length());
+  }
+
+  @Test
+  void testNotStored() {
+    ResponseCache cache = new ResponseCache(1000, 5, false);
+    assertNull(cache.writer("k", 201, headers(), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Set-Cookie", "a=b"), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Cache-Control", "no-store"), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Cache-Control", "private"), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Cache-Control", "no-cache"), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Vary", "*"), 1000, null));
+    assertNull(cache.writer("k", 200, headers("Vary", "Accept"), 1000, null));
+    assertFalse(store(cache, "t1\nm1\n/a", "x", headers("Vary", "Accept")));
+    assertTrue(store(cache, "t1\nm1\n/a", "x", headers("Vary", "x-okapi-user-id")));
+    assertTrue(store(cache, "t1\nm1\n/b", "123456", headers()));
+    assertNull(cache.get("t1\nm1\n/b")); // too large
+    assertNotNull(cache.get("t1\nm1\n/a"));
+    assertNull(new ResponseCache(0, 5, false).writer("k", 200, headers(), 1000, null));
+  }
+
+  @Test
+  void testVaries() {
+    assertTrue(ResponseCache.varies(null, null));
+    assertTrue(ResponseCache.varies("", null));
+    assertFalse(ResponseCache.varies("Accept", null));
+    assertTrue(ResponseCache.varies("accept, X-A", new String[] {"X-A", "Accept"}));
+    assertFalse(ResponseCache.varies("Accept, X-B", new String[] {"X-A", "Accept"}));
+  }
+
+  @Test
+  void testMaxAge() {
+    assertEquals(1000, ResponseCache.maxAge(headers(), 0, 1000));
+    assertEquals(-1, ResponseCache.maxAge(headers("Cache-Control", "no-store"), 0, 1000));
+    assertEquals(-1, ResponseCache.maxAge(headers("Cache-Control", "public, private"), 0, 1000));
+    assertEquals(0, ResponseCache.maxAge(headers("Cache-Control", "no-cache"), 0, 1000));
+    assertEquals(0, ResponseCache.maxAge(headers("Cache-Control", "max-age=x"), 0, 1000));
+    assertEquals(0, ResponseCache.maxAge(headers("Cache-Control", "no-cache, max-age=5"), 0,
+        10000));
+    assertEquals(500, ResponseCache.maxAge(headers("Cache-Control", "max-age=10"), 0, 500));
+    assertEquals(2000, ResponseCache.maxAge(headers("Cache-Control", "max-age=2"), 0, 5000));
+    assertEquals(3000, ResponseCache.maxAge(headers("Cache-Control", "s-maxage=3, max-age=2"),
+        0, 5000));
+    assertEquals(3000, ResponseCache.maxAge(headers("Cache-Control", "max-age=2, s-maxage=3"),
+        0, 5000));
+    assertEquals(0, ResponseCache.maxAge(headers("Expires", "0"), 0, 1000));
+    assertEquals(1000, ResponseCache.maxAge(headers("Expires", "Thu, 01 Jan 1970 00:00:01 GMT"),
+        0, 5000));
+    assertEquals(0, ResponseCache.maxAge(headers("Expires", "Thu, 01 Jan 1970 00:00:01 GMT"),
+        2000, 5000));
+  }
+
+  @Test
+  void testRevalidate() {
+    ResponseCache cache = new ResponseCache(1000, 100, false);
+    String key = "t1\nm1\n/a";
+    assertTrue(store(cache, key, "abc", headers("Cache-Control", "no-cache", "ETag", "\"1\"")));
+    ResponseCache.Entry e = cache.get(key);
+    assertNotNull(e);
+    assertFalse(e.isFresh());
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals("\"1\"", e.getEtag());
+
+    ResponseCache.Entry r = cache.refresh(key, e,
+        headers("Cache-Control", "max-age=10", "ETag", "\"2\"", "X-Other", "x"), 60000);
+    assertTrue(r.isFresh());
+    assertEquals("abc", r.getBody().toString());
+    assertEquals("\"2\"", r.getEtag());
+    MultiMap out = MultiMap.caseInsensitiveMultiMap();
+    r.copyHeaders(out);
+    assertNull(out.get("X-Other"));
+    assertTrue(cache.get(key).isFresh());
+    assertEquals(1, cache.size());
+
+    r = cache.refresh(key, r, headers("Cache-Control", "no-store"), 60000);
+    assertEquals("abc", r.getBody().toString());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  void testNotModified() {
+    ResponseCache cache = new ResponseCache(1000, 100, false);
+    assertTrue(store(cache, "t1\nm1\n/a", "abc", headers("ETag", "\"1\"",
+        "Last-Modified", "Thu, 01 Jan 1970 00:00:10 GMT")));
+    ResponseCache.Entry e = cache.get("t1\nm1\n/a");
+    assertFalse(e.notModified(headers()));
+    assertTrue(e.notModified(headers("If-None-Match", "\"1\"")));
+    assertTrue(e.notModified(headers("If-None-Match", "\"0\", W/\"1\"")));
+    assertTrue(e.notModified(headers("If-None-Match", "*")));
+    assertFalse(e.notModified(headers("If-None-Match", "\"2\"")));
+    assertFalse(e.notModified(headers("If-None-Match", "\"2\"",
+        "If-Modified-Since", "Thu, 01 Jan 1970 00:00:10 GMT")));
+    assertTrue(e.notModified(headers("If-Modified-Since", "Thu, 01 Jan 1970 00:00:10 GMT")));
+    assertFalse(e.notModified(headers("If-Modified-Since", "Thu, 01 Jan 1970 00:00:09 GMT")));
+    assertFalse(e.notModified(headers("If-Modified-Since", "yesterday")));
+
+    assertTrue(store(cache, "t1\nm1\n/b", "abc", headers()));
+    e = cache.get("t1\nm1\n/b");
+    assertFalse(e.notModified(headers("If-None-Match", "*")));
+    assertFalse(e.notModified(headers("If-Modified-Since", "Thu, 01 Jan 1970 00:00:10 GMT")));
+  }
+
+  @Test
+  void testEviction() {
+    ResponseCache cache = new ResponseCache(30, 100, false);
+    assertTrue(store(cache, "t1\nm1\n/a", "0123456789", headers()));
+    assertTrue(store(cache, "t1\nm1\n/b", "0123456789", headers()));
+    assertTrue(store(cache, "t1\nm1\n/c", "0123456789", headers()));
+    assertEquals(3, cache.size());
+    assertNotNull(cache.get("t1\nm1\n/a")); // b is now least recently used
+    assertTrue(store(cache, "t1\nm1\n/d", "0123456789", headers()));
+    assertEquals(3, cache.size());
+    assertEquals(30, cache.getBytes());
+    assertNull(cache.get("t1\nm1\n/b"));
+    assertNotNull(cache.get("t1\nm1\n/a"));
+    // replacing an entry does not count twice
+    assertTrue(store(cache, "t1\nm1\n/a", "01234", headers()));
+    assertEquals(25, cache.getBytes());
+    // larger than the whole cache
+    assertTrue(store(cache, "t1\nm1\n/e", "0123456789012345678901234567890", headers()));
+    assertNull(cache.get("t1\nm1\n/e"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  void testInvalidate() {
+    ResponseCache cache = new ResponseCache(1000, 100, false);
+    assertTrue(store(cache, "t1\nm1\n/a", "a", headers()));
+    assertTrue(store(cache, "t1\nm2\n/a", "a", headers()));
+    assertTrue(store(cache, "t2\nm1\n/a", "a", headers()));
+    assertTrue(store(cache, "t10\nm1\n/a", "a", headers()));
+    cache.invalidate("t1", "m1");
+    assertEquals(3, cache.size());
+    assertNull(cache.get("t1\nm1\n/a"));
+    cache.invalidate("t1", "m1");
+    assertEquals(3, cache.size());
+    cache.invalidate("t1");
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("t10\nm1\n/a"));
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+}
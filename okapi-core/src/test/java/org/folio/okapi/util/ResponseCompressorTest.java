@@ -0,0 +1,145 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCompressorTest {
+
+  private static String body(int n) {
+    StringBuilder b = new StringBuilder("[");
+    for (int i = 0; i < n; i++) {
+      b.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append("}");
+    }
+    return b.append("]").toString();
+  }
+
+  private static String inflate(InputStream in) throws IOException {
+    try (InputStream s = in) {
+      return new String(s.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static Buffer compress(ResponseCompressor compressor, String encoding, String body) {
+    RequestLogStreamTest.SlowStream target = new RequestLogStreamTest.SlowStream();
+    ResponseCompressor.Stream stream = compressor.stream(encoding, target);
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    // several writes, as when streamed from a module
+    for (int i = 0; i < bytes.length; i += 1000) {
+      stream.write(Buffer.buffer().appendBytes(bytes, i, Math.min(1000, bytes.length - i)));
+    }
+    stream.end();
+    assertTrue(target.ended);
+    return target.received;
+  }
+
+  @Test
+  void testLevel() {
+    assertThrows(IllegalArgumentException.class, () -> new ResponseCompressor(0, 0));
+    assertThrows(IllegalArgumentException.class, () -> new ResponseCompressor(10, 0));
+  }
+
+  @Test
+  void testNegotiate() {
+    assertNull(ResponseCompressor.negotiate(null));
+    assertNull(ResponseCompressor.negotiate(""));
+    assertNull(ResponseCompressor.negotiate("br, identity"));
+    assertEquals("gzip", ResponseCompressor.negotiate("gzip"));
+    assertEquals("gzip", ResponseCompressor.negotiate("x-gzip"));
+    assertEquals("gzip", ResponseCompressor.negotiate("deflate, gzip"));
+    assertEquals("gzip", ResponseCompressor.negotiate("*"));
+    assertEquals("deflate", ResponseCompressor.negotiate("deflate"));
+    assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0.5, deflate"));
+    assertEquals("deflate", ResponseCompressor.negotiate("GZIP;q=0, *"));
+    assertEquals("gzip", ResponseCompressor.negotiate("deflate;q=0.2, *;q=0.3"));
+    assertNull(ResponseCompressor.negotiate("gzip;q=0, deflate;q=0"));
+    assertNull(ResponseCompressor.negotiate("gzip;q=x"));
+  }
+
+  @Test
+  void testIsCompressible() {
+    assertTrue(ResponseCompressor.isCompressible("application/json"));
+    assertTrue(ResponseCompressor.isCompressible("Application/JSON; charset=UTF-8"));
+    assertTrue(ResponseCompressor.isCompressible("text/plain"));
+    assertTrue(ResponseCompressor.isCompressible("application/vnd.api+json"));
+    assertTrue(ResponseCompressor.isCompressible("application/atom+xml"));
+    assertFalse(ResponseCompressor.isCompressible(null));
+    assertFalse(ResponseCompressor.isCompressible("application/octet-stream"));
+    assertFalse(ResponseCompressor.isCompressible("image/png"));
+    assertFalse(ResponseCompressor.isCompressible("application/zip"));
+  }
+
+  @Test
+  void testEncoding() {
+    ResponseCompressor compressor = new ResponseCompressor(6, 100);
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    assertNull(compressor.encoding("gzip", 200, headers));
+    headers.set("Content-Type", "application/json");
+    assertEquals("gzip", compressor.encoding("gzip", 200, headers));
+    assertNull(compressor.encoding(null, 200, headers));
+    assertNull(compressor.encoding("gzip", 204, headers));
+    assertNull(compressor.encoding("gzip", 206, headers));
+    assertNull(compressor.encoding("gzip", 304, headers));
+    assertEquals("deflate", compressor.encoding("deflate", 404, headers));
+    headers.set("Content-Length", "99");
+    assertNull(compressor.encoding("gzip", 200, headers));
+    headers.set("Content-Length", "100");
+    assertEquals("gzip", compressor.encoding("gzip", 200, headers));
+    headers.set("Content-Length", "x");
+    assertNull(compressor.encoding("gzip", 200, headers));
+    headers.remove("Content-Length");
+    headers.set("Content-Encoding", "br");
+    assertNull(compressor.encoding("gzip", 200, headers));
+  }
+
+  @Test
+  void testGzip() throws IOException {
+    ResponseCompressor compressor = new ResponseCompressor(6, 0);
+    String body = body(2000);
+    Buffer buf = compress(compressor, "gzip", body);
+    assertTrue(buf.length() < body.length() / 4);
+    assertEquals(body, inflate(new GZIPInputStream(new ByteArrayInputStream(buf.getBytes()))));
+
+    buf = compress(compressor, "gzip", "");
+    assertEquals("", inflate(new GZIPInputStream(new ByteArrayInputStream(buf.getBytes()))));
+  }
+
+  @Test
+  void testDeflate() throws IOException {
+    ResponseCompressor compressor = new ResponseCompressor(1, 0);
+    String body = body(2000);
+    Buffer buf = compress(compressor, "deflate", body);
+    assertTrue(buf.length() < body.length() / 4);
+    assertEquals(body, inflate(new InflaterInputStream(new ByteArrayInputStream(buf.getBytes()))));
+  }
+
+  @Test
+  void testPool() throws IOException {
+    ResponseCompressor compressor = new ResponseCompressor(6, 0);
+    assertEquals(0, compressor.pooled());
+    compress(compressor, "gzip", body(10));
+    assertEquals(1, compressor.pooled());
+    // reused Deflater starts afresh
+    String body = body(100);
+    Buffer buf = compress(compressor, "gzip", body);
+    assertEquals(1, compressor.pooled());
+    assertEquals(body, inflate(new GZIPInputStream(new ByteArrayInputStream(buf.getBytes()))));
+
+    // released when the response is closed before the end; release is idempotent
+    RequestLogStreamTest.SlowStream target = new RequestLogStreamTest.SlowStream();
+    ResponseCompressor.Stream stream = compressor.stream("deflate", target);
+    stream.write(Buffer.buffer(body));
+    stream.release();
+    stream.release();
+    assertEquals(2, compressor.pooled());
+    assertTrue(stream.write(Buffer.buffer("x")).failed());
+  }
+}
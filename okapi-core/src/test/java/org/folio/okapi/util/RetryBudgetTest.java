@@ -0,0 +1,42 @@
+package org.folio.okapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+  @Test
+  void testBurst() {
+    RetryBudget budget = new RetryBudget(0.1, 2);
+    assertTrue(budget.withdraw());
+    assertTrue(budget.withdraw());
+    assertFalse(budget.withdraw());
+  }
+
+  @Test
+  void testRatio() {
+    RetryBudget budget = new RetryBudget(0.25, 1);
+    assertTrue(budget.withdraw());
+    for (int i = 0; i < 3; i++) {
+      budget.deposit();
+      assertFalse(budget.withdraw());
+    }
+    budget.deposit();
+    assertTrue(budget.withdraw());
+    // no more than burst is saved up
+    for (int i = 0; i < 100; i++) {
+      budget.deposit();
+    }
+    assertTrue(budget.withdraw());
+    assertFalse(budget.withdraw());
+  }
+
+  @Test
+  void testDisabled() {
+    RetryBudget budget = new RetryBudget(0.5, 0);
+    budget.deposit();
+    budget.deposit();
+    assertFalse(budget.withdraw());
+  }
+}
@@ -0,0 +1,109 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare linear scan of routing entries with {@link RoutingIndex}.
+ *
+ * <p>Not run as part of the unit tests. Run the main method with the test
+ * class path after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingIndexBenchmark {
+
+  @Param({"10", "100", "300"})
+  int modules;
+
+  List<ModuleDescriptor> enabledModules;
+  RoutingIndex routingIndex;
+  String uri;
+
+  @Setup
+  public void setup() {
+    enabledModules = new ArrayList<>();
+    for (int i = 0; i < modules; i++) {
+      ModuleDescriptor md = new ModuleDescriptor();
+      md.setId("mod-" + i + "-1.0.0");
+      InterfaceDescriptor intf = new InterfaceDescriptor("int" + i, "1.0");
+      RoutingEntry[] handlers = new RoutingEntry[4];
+      handlers[0] = entry("GET", "/int" + i + "/items");
+      handlers[1] = entry("GET", "/int" + i + "/items/{id}");
+      handlers[2] = entry("PUT", "/int" + i + "/items/{id}");
+      handlers[3] = entry("POST", "/int" + i + "/items/{id}/sub*");
+      intf.setHandlers(handlers);
+      md.setProvides(new InterfaceDescriptor[] {intf});
+      if (i == 0) {
+        RoutingEntry[] filters = new RoutingEntry[1];
+        filters[0] = entry("*", "/*");
+        filters[0].setPhase("auth");
+        md.setFilters(filters);
+      }
+      enabledModules.add(md);
+    }
+    routingIndex = new RoutingIndex(enabledModules);
+    uri = "/int" + (modules / 2) + "/items/8f2c1e3a-5b4d-4e6f-9a7b-0c1d2e3f4a5b?query=x";
+  }
+
+  private static RoutingEntry entry(String method, String pathPattern) {
+    RoutingEntry re = new RoutingEntry();
+    re.setMethods(new String[] {method});
+    re.setPathPattern(pathPattern);
+    return re;
+  }
+
+  @Benchmark
+  public int linearScan() {
+    int n = 0;
+    for (ModuleDescriptor md : enabledModules) {
+      for (RoutingEntry re : md.getProxyRoutingEntries()) {
+        if (re.match(uri, "GET")) {
+          n++;
+          break;
+        }
+      }
+      for (RoutingEntry re : md.getFilterRoutingEntries()) {
+        if (re.match(uri, "GET")) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  public int indexLookup() {
+    return routingIndex.lookup(uri, "GET", null, RoutingIndex.HANDLERS_FIRST).size();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(RoutingIndexBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
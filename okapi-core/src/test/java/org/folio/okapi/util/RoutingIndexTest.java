@@ -0,0 +1,168 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingIndexTest {
+
+  static final String MOD_A = "{\"id\" : \"mod-a-1.0.0\", \"provides\" : [ {"
+      + "\"id\" : \"a\", \"version\" : \"1.0\", \"handlers\" : ["
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/a\"},"
+      + " {\"methods\" : [\"GET\", \"POST\"], \"pathPattern\" : \"/a/{id}\"},"
+      + " {\"methods\" : [\"*\"], \"pathPattern\" : \"/a/{id}/sub*\"},"
+      + " {\"methods\" : [\"PUT\", \"*\"], \"pathPattern\" : \"/a/{id}/x{y}\"},"
+      + " {\"methods\" : [\"DELETE\"], \"pathPattern\" : \"/a/\"},"
+      + " {\"methods\" : [\"GET\"], \"path\" : \"/legacy/prefix\"},"
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/*\"},"
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/a/{id}\"}"
+      + "] } ] }";
+
+  static final String MOD_B = "{\"id\" : \"mod-b-1.0.0\", \"provides\" : [ {"
+      + "\"id\" : \"b\", \"version\" : \"1.0\", \"handlers\" : ["
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/b/{id}/c/{cid}\"},"
+      + " {\"methods\" : [\"POST\"], \"pathPattern\" : \"/a\"}"
+      + "] }, {"
+      + "\"id\" : \"b-multi\", \"version\" : \"1.0\", \"interfaceType\" : \"multiple\","
+      + " \"handlers\" : ["
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/a/{id}\"}"
+      + "] } ],"
+      + " \"filters\" : ["
+      + " {\"methods\" : [\"*\"], \"pathPattern\" : \"/*\", \"phase\" : \"auth\"},"
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/b*\", \"phase\" : \"pre\"}"
+      + "] }";
+
+  static final String MOD_C = "{\"id\" : \"mod-c-1.0.0\", \"provides\" : [ {"
+      + "\"id\" : \"c\", \"version\" : \"1.0\", \"handlers\" : ["
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/a/{id}\"},"
+      + " {\"methods\" : [\"GET\"], \"pathPattern\" : \"/_/c\"},"
+      + " {\"methods\" : [\"GET\"], \"path\" : \"/\"}"
+      + "] } ] }";
+
+  static final List<String> URIS = Arrays.asList(
+      "/a", "/a/", "/a?q=1", "/a#frag", "/a/1", "/a/1/", "/a/1?x=/a", "/a//",
+      "/a/1/sub", "/a/1/subject/x", "/a/1/x2", "/a/1/y", "/b", "/bb/x",
+      "/b/1/c/2", "/b/1/c/", "/b//c/2", "/legacy/prefix", "/legacy/prefixes/1",
+      "/legacy", "/_/c", "/", "", "a", "/unknown/path");
+
+  static final List<String> METHODS = Arrays.asList("GET", "POST", "PUT", "DELETE", "HEAD");
+
+  private static List<ModuleDescriptor> modules() {
+    List<ModuleDescriptor> list = new LinkedList<>();
+    list.add(Json.decodeValue(MOD_A, ModuleDescriptor.class));
+    list.add(Json.decodeValue(MOD_B, ModuleDescriptor.class));
+    list.add(Json.decodeValue(MOD_C, ModuleDescriptor.class));
+    return list;
+  }
+
+  private static String key(ModuleDescriptor md, RoutingEntry re, boolean handler) {
+    return md.getId() + " " + (handler ? "handler" : "filter") + " "
+        + re.getPathPattern() + " " + re.getPath() + " " + Arrays.toString(re.getMethods());
+  }
+
+  private static List<String> scan(List<ModuleDescriptor> modules, String uri, String method,
+                                   String moduleId, boolean handlersFirst) {
+    List<String> result = new ArrayList<>();
+    for (ModuleDescriptor md : modules) {
+      List<String> handlers = new ArrayList<>();
+      List<RoutingEntry> entries = null;
+      if (moduleId == null) {
+        entries = md.getProxyRoutingEntries();
+      } else if (moduleId.equals(md.getId())) {
+        entries = md.getMultiRoutingEntries();
+      }
+      if (entries != null) {
+        for (RoutingEntry re : entries) {
+          if (re.match(uri, method)) {
+            handlers.add(key(md, re, true));
+          }
+        }
+      }
+      List<String> filters = new ArrayList<>();
+      for (RoutingEntry re : md.getFilterRoutingEntries()) {
+        if (re.match(uri, method)) {
+          filters.add(key(md, re, false));
+        }
+      }
+      if (handlersFirst) {
+        result.addAll(handlers);
+        result.addAll(filters);
+      } else {
+        result.addAll(filters);
+        result.addAll(handlers);
+      }
+    }
+    return result;
+  }
+
+  private static List<String> lookup(RoutingIndex index, String uri, String method,
+                                     String moduleId, boolean handlersFirst) {
+    List<String> result = new ArrayList<>();
+    for (RoutingIndex.Match m : index.lookup(uri, method, moduleId,
+        handlersFirst ? RoutingIndex.HANDLERS_FIRST : RoutingIndex.FILTERS_FIRST)) {
+      result.add(key(m.getModuleDescriptor(), m.getRoutingEntry(), m.isHandler()));
+    }
+    return result;
+  }
+
+  @Test
+  void testSameAsLinearScan() {
+    List<ModuleDescriptor> modules = modules();
+    RoutingIndex index = new RoutingIndex(modules);
+    assertEquals(16, index.size());
+    for (String uri : URIS) {
+      for (String method : METHODS) {
+        for (String moduleId : Arrays.asList(null, "mod-b-1.0.0", "mod-a-1.0.0")) {
+          for (boolean handlersFirst : Arrays.asList(true, false)) {
+            assertEquals(scan(modules, uri, method, moduleId, handlersFirst),
+                lookup(index, uri, method, moduleId, handlersFirst),
+                method + " " + uri + " " + moduleId + " " + handlersFirst);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void testLookup() {
+    RoutingIndex index = new RoutingIndex(modules());
+    List<RoutingIndex.Match> l = index.lookup("/a/1?q=2", "GET", null,
+        RoutingIndex.HANDLERS_FIRST);
+    assertEquals(6, l.size());
+    assertEquals("mod-a-1.0.0", l.get(0).getModuleDescriptor().getId());
+    assertEquals("/a/{id}", l.get(0).getRoutingEntry().getPathPattern());
+    assertTrue(l.get(0).isHandler());
+    assertEquals("/*", l.get(1).getRoutingEntry().getPathPattern());
+    assertEquals("mod-b-1.0.0", l.get(3).getModuleDescriptor().getId());
+    assertFalse(l.get(3).isHandler());
+    assertEquals("mod-c-1.0.0", l.get(4).getModuleDescriptor().getId());
+
+    l = index.lookup("/a/1", "GET", "mod-b-1.0.0", RoutingIndex.HANDLERS_FIRST);
+    assertEquals(2, l.size());
+    assertTrue(l.get(0).isHandler());
+    assertFalse(l.get(1).isHandler());
+
+    assertEquals(1, index.lookup("/nothing", "POST", null, RoutingIndex.HANDLERS_FIRST).size());
+    assertEquals(0, new RoutingIndex(new LinkedList<>())
+        .lookup("/a", "GET", null, RoutingIndex.HANDLERS_FIRST).size());
+  }
+
+  @Test
+  void testIsFor() {
+    List<ModuleDescriptor> modules = modules();
+    RoutingIndex index = new RoutingIndex(modules);
+    assertTrue(index.isFor(modules));
+    assertTrue(index.isFor(new ArrayList<>(modules)));
+    List<ModuleDescriptor> other = modules();
+    assertFalse(index.isFor(other));
+    modules.remove(2);
+    assertFalse(index.isFor(modules));
+  }
+}
@@ -0,0 +1,101 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+  private static Handler<AsyncResult<SingleFlight.Response>> collect(
+      List<AsyncResult<SingleFlight.Response>> results) {
+    return results::add;
+  }
+
+  @Test
+  void testKey() {
+    MultiMap h = MultiMap.caseInsensitiveMultiMap()
+        .add("x-okapi-token", "tok").add("Accept", "text/plain").add("X-Other", "x");
+    assertEquals("t1\n/a?b=1\ntok\n\n\ntext/plain\n\n", SingleFlight.key("t1", "/a?b=1", h));
+    assertNotEquals(SingleFlight.key("t1", "/a", h), SingleFlight.key("t2", "/a", h));
+  }
+
+  @Test
+  void testShared() {
+    SingleFlight sf = new SingleFlight(2, 100);
+    assertTrue(sf.isEnabled());
+    assertFalse(new SingleFlight(0, 100).isEnabled());
+    List<AsyncResult<SingleFlight.Response>> results = new ArrayList<>();
+    SingleFlight.Flight leader = sf.join("k", collect(results));
+    assertNotNull(leader);
+    assertNull(sf.join("k", collect(results)));
+    assertNull(sf.join("k", collect(results)));
+    assertEquals(2, leader.getWaiters());
+    // flight is full; third request leads a new one
+    SingleFlight.Flight leader2 = sf.join("k", collect(results));
+    assertNotNull(leader2);
+    assertEquals(1, sf.size());
+
+    WriteStream<Buffer> w = leader.writer(200, MultiMap.caseInsensitiveMultiMap()
+        .add("Content-Type", "text/plain").add("Content-Length", "5")
+        .add("X-Okapi-Trace", "GET m1"));
+    w.write(Buffer.buffer("hel"));
+    w.write(Buffer.buffer("lo"));
+    assertTrue(results.isEmpty());
+    w.end();
+    assertEquals(2, results.size());
+    for (AsyncResult<SingleFlight.Response> res : results) {
+      assertTrue(res.succeeded());
+      assertEquals(200, res.result().getStatus());
+      assertEquals("hello", res.result().getBody().toString());
+      MultiMap out = MultiMap.caseInsensitiveMultiMap();
+      res.result().copyHeaders(out);
+      assertEquals("text/plain", out.get("content-type"));
+      assertNull(out.get("Content-Length"));
+      assertNull(out.get("X-Okapi-Trace"));
+    }
+    leader.abandon(); // no-op once complete
+    assertEquals(2, results.size());
+    // completing the first flight does not remove its successor
+    assertEquals(1, sf.size());
+    leader2.abandon();
+    assertEquals(0, sf.size());
+  }
+
+  @Test
+  void testAbandon() {
+    SingleFlight sf = new SingleFlight(5, 100);
+    List<AsyncResult<SingleFlight.Response>> results = new ArrayList<>();
+    SingleFlight.Flight leader = sf.join("k", collect(results));
+    assertNull(sf.join("k", collect(results)));
+    assertNotNull(sf.join("other", collect(results)));
+    leader.abandon();
+    assertEquals(1, results.size());
+    assertTrue(results.get(0).failed());
+    assertEquals(1, sf.size());
+    assertNotNull(sf.join("k", collect(results)));
+  }
+
+  @Test
+  void testTooLarge() {
+    SingleFlight sf = new SingleFlight(5, 4);
+    List<AsyncResult<SingleFlight.Response>> results = new ArrayList<>();
+    SingleFlight.Flight leader = sf.join("k", collect(results));
+    assertNull(sf.join("k", collect(results)));
+    WriteStream<Buffer> w = leader.writer(200, MultiMap.caseInsensitiveMultiMap());
+    w.write(Buffer.buffer("abc"));
+    assertTrue(results.isEmpty());
+    w.write(Buffer.buffer("de"));
+    assertEquals(1, results.size());
+    assertEquals("response too large", results.get(0).cause().getMessage());
+    w.end();
+    assertEquals(1, results.size());
+    assertEquals(0, sf.size());
+  }
+}
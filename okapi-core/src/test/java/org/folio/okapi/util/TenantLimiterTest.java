@@ -0,0 +1,99 @@
+package org.folio.okapi.util;
+
+import org.folio.okapi.bean.RateLimitDescriptor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantLimiterTest {
+
+  private static RateLimitDescriptor limits(Double rate, Integer burst, Integer maxInFlight) {
+    RateLimitDescriptor limits = new RateLimitDescriptor();
+    limits.setRate(rate);
+    limits.setBurst(burst);
+    limits.setMaxInFlight(maxInFlight);
+    return limits;
+  }
+
+  @Test
+  void testNoLimits() {
+    TenantLimiter limiter = new TenantLimiter();
+    for (int i = 0; i < 10; i++) {
+      assertNull(limiter.acquire("t1", null));
+    }
+    assertEquals(0, limiter.getInFlight("t1"));
+    limiter.release("t1");
+  }
+
+  @Test
+  void testRate() {
+    TenantLimiter limiter = new TenantLimiter();
+    RateLimitDescriptor limits = limits(2.0, 3, null);
+    assertNull(limiter.acquire("t1", limits, 1000));
+    assertNull(limiter.acquire("t1", limits, 1000));
+    assertNull(limiter.acquire("t1", limits, 1000));
+    TenantLimiter.Rejection r = limiter.acquire("t1", limits, 1000);
+    assertNotNull(r);
+    assertEquals(TenantLimiter.RATE, r.getReason());
+    assertEquals(500, r.getRetryAfterMs());
+    // other tenants have their own bucket
+    assertNull(limiter.acquire("t2", limits, 1000));
+    // one token back after 500 ms
+    assertNotNull(limiter.acquire("t1", limits, 1250));
+    assertEquals(250, limiter.acquire("t1", limits, 1250).getRetryAfterMs());
+    assertNull(limiter.acquire("t1", limits, 1500));
+    assertNotNull(limiter.acquire("t1", limits, 1500));
+    // bucket holds no more than burst
+    for (int i = 0; i < 3; i++) {
+      assertNull(limiter.acquire("t1", limits, 100000));
+    }
+    assertNotNull(limiter.acquire("t1", limits, 100000));
+  }
+
+  @Test
+  void testDefaultBurst() {
+    TenantLimiter limiter = new TenantLimiter();
+    RateLimitDescriptor limits = limits(0.5, null, null);
+    assertNull(limiter.acquire("t1", limits, 0));
+    assertEquals(2000, limiter.acquire("t1", limits, 0).getRetryAfterMs());
+  }
+
+  @Test
+  void testInFlight() {
+    TenantLimiter limiter = new TenantLimiter();
+    RateLimitDescriptor limits = limits(null, null, 2);
+    assertNull(limiter.acquire("t1", limits));
+    assertNull(limiter.acquire("t1", limits));
+    assertEquals(2, limiter.getInFlight("t1"));
+    TenantLimiter.Rejection r = limiter.acquire("t1", limits);
+    assertEquals(TenantLimiter.IN_FLIGHT, r.getReason());
+    assertEquals(1000, r.getRetryAfterMs());
+    limiter.release("t1");
+    assertEquals(1, limiter.getInFlight("t1"));
+    assertNull(limiter.acquire("t1", limits));
+    limiter.release("t1");
+    limiter.release("t1");
+    limiter.release("t1");
+    assertEquals(0, limiter.getInFlight("t1"));
+  }
+
+  @Test
+  void testInFlightDoesNotTakeToken() {
+    TenantLimiter limiter = new TenantLimiter();
+    RateLimitDescriptor limits = limits(1.0, 2, 1);
+    assertNull(limiter.acquire("t1", limits, 0));
+    assertEquals(TenantLimiter.IN_FLIGHT, limiter.acquire("t1", limits, 0).getReason());
+    limiter.release("t1");
+    assertNull(limiter.acquire("t1", limits, 0));
+  }
+
+  @Test
+  void testValidate() {
+    assertNull(limits(null, null, null).validate());
+    assertNull(limits(0.5, 1, 10).validate());
+    assertEquals("rate must be positive", limits(0.0, null, null).validate());
+    assertEquals("burst must be positive and requires rate", limits(1.0, 0, null).validate());
+    assertEquals("burst must be positive and requires rate", limits(null, 5, null).validate());
+    assertEquals("maxInFlight must be positive", limits(null, null, 0).validate());
+  }
+}
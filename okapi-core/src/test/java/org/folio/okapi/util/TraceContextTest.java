@@ -0,0 +1,61 @@
+package org.folio.okapi.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TraceContextTest {
+
+  static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+  static final String SPAN_ID = "00f067aa0ba902b7";
+
+  @Test
+  void testParse() {
+    TraceContext tc = TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-01");
+    assertEquals(TRACE_ID, tc.getTraceId());
+    assertEquals(SPAN_ID, tc.getSpanId());
+    assertTrue(tc.isSampled());
+    assertFalse(TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-00").isSampled());
+    assertTrue(TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-03").isSampled());
+  }
+
+  @Test
+  void testParseFutureVersion() {
+    assertNotNull(TraceContext.parse("01-" + TRACE_ID + "-" + SPAN_ID + "-01"));
+    assertNotNull(TraceContext.parse("01-" + TRACE_ID + "-" + SPAN_ID + "-01-more"));
+    assertNull(TraceContext.parse("01-" + TRACE_ID + "-" + SPAN_ID + "-01more"));
+    assertNull(TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-01-more"));
+    assertNull(TraceContext.parse("ff-" + TRACE_ID + "-" + SPAN_ID + "-01"));
+  }
+
+  @Test
+  void testParseInvalid() {
+    assertNull(TraceContext.parse(null));
+    assertNull(TraceContext.parse(""));
+    assertNull(TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-0"));
+    assertNull(TraceContext.parse("00-" + TRACE_ID.toUpperCase() + "-" + SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-" + TRACE_ID + "_" + SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-00000000000000000000000000000000-" + SPAN_ID + "-01"));
+    assertNull(TraceContext.parse("00-" + TRACE_ID + "-0000000000000000-01"));
+    assertNull(TraceContext.parse("00-" + TRACE_ID + "-" + SPAN_ID + "-0x"));
+  }
+
+  @Test
+  void testTraceparent() {
+    assertEquals("00-" + TRACE_ID + "-" + SPAN_ID + "-01",
+        TraceContext.traceparent(TRACE_ID, SPAN_ID, true));
+    assertEquals("00-" + TRACE_ID + "-" + SPAN_ID + "-00",
+        TraceContext.traceparent(TRACE_ID, SPAN_ID, false));
+  }
+
+  @Test
+  void testNewIds() {
+    String traceId = TraceContext.newTraceId();
+    String spanId = TraceContext.newSpanId();
+    assertTrue(traceId.matches("[0-9a-f]{32}"), traceId);
+    assertTrue(spanId.matches("[0-9a-f]{16}"), spanId);
+    assertNotEquals(traceId, TraceContext.newTraceId());
+    TraceContext tc = TraceContext.parse(TraceContext.traceparent(traceId, spanId, true));
+    assertEquals(traceId, tc.getTraceId());
+  }
+}
@@ -0,0 +1,216 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class TracerTest {
+
+  private static final int PORT = 9230;
+  private static final String TRACEPARENT = "00-" + TraceContextTest.TRACE_ID + "-"
+      + TraceContextTest.SPAN_ID + "-01";
+
+  private Vertx vertx;
+  private final List<Span> exported = new ArrayList<>();
+  private int batches;
+
+  private final SpanExporter exporter = spans -> {
+    batches++;
+    exported.addAll(spans);
+    return Future.succeededFuture();
+  };
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  private static JsonObject conf(String sampleRate) {
+    return new JsonObject()
+        .put("traceSampleRate", sampleRate)
+        .put("traceBatchSize", "2")
+        .put("traceQueueSize", "3")
+        .put("traceFlushMs", "100000");
+  }
+
+  private static MultiMap headers(String traceparent) {
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    if (traceparent != null) {
+      headers.set(TraceContext.TRACEPARENT, traceparent);
+    }
+    return headers;
+  }
+
+  @Test
+  public void testDisabled() {
+    Tracer tracer = new Tracer(vertx, new JsonObject());
+    Assert.assertFalse(tracer.isEnabled());
+    Assert.assertNull(tracer.startServer(headers(TRACEPARENT), "GET"));
+    Assert.assertNull(tracer.startClient(TRACEPARENT, "system"));
+    Assert.assertNull(tracer.startChild(null, "handler"));
+    tracer.finish(null);
+  }
+
+  @Test
+  public void testBadExport() {
+    JsonObject conf = new JsonObject().put("traceExport", "ftp://localhost");
+    IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class,
+        () -> new Tracer(vertx, conf));
+    Assert.assertEquals("Unknown traceExport: ftp://localhost", e.getMessage());
+  }
+
+  @Test
+  public void testSampling() {
+    Tracer tracer = new Tracer(vertx, conf("0"), exporter);
+    Assert.assertTrue(tracer.isEnabled());
+    Assert.assertNull(tracer.startServer(headers(null), "GET"));
+    Assert.assertNull(tracer.startServer(headers(TRACEPARENT.replace("-01", "-00")), "GET"));
+    Span span = tracer.startServer(headers(TRACEPARENT), "GET");
+    Assert.assertEquals(TraceContextTest.TRACE_ID, span.getTraceId());
+    Assert.assertEquals(TraceContextTest.SPAN_ID, span.getParentId());
+
+    tracer = new Tracer(vertx, conf("1"), exporter);
+    span = tracer.startServer(headers("bad"), "GET");
+    Assert.assertNull(span.getParentId());
+    Assert.assertNotEquals(TraceContextTest.TRACE_ID, span.getTraceId());
+    span = tracer.startClient(null, "system");
+    Assert.assertNull(span.getParentId());
+
+    Span child = tracer.startChild(span, "handler");
+    Assert.assertEquals(span.getTraceId(), child.getTraceId());
+    Assert.assertEquals(span.getId(), child.getParentId());
+    Assert.assertEquals(TraceContext.traceparent(child.getTraceId(), child.getId(), true),
+        child.traceparent());
+  }
+
+  @Test
+  public void testBatches() {
+    Tracer tracer = new Tracer(vertx, conf("1"), exporter);
+    Span span = tracer.startClient(TRACEPARENT, "a");
+    tracer.finish(span);
+    tracer.finish(span); // ended already
+    Assert.assertEquals(0, batches);
+    tracer.finish(tracer.startClient(TRACEPARENT, "b"));
+    Assert.assertEquals(1, batches);
+    Assert.assertEquals(2, exported.size());
+    Assert.assertEquals("a", exported.get(0).getName());
+
+    tracer.finish(tracer.startClient(TRACEPARENT, "c"));
+    Assert.assertEquals(1, batches);
+    tracer.flush(false);
+    Assert.assertEquals(2, batches);
+    Assert.assertEquals(3, exported.size());
+    Assert.assertEquals(0, tracer.getDropped());
+  }
+
+  @Test
+  public void testQueueFull() {
+    List<Span> failedSpans = new ArrayList<>();
+    SpanExporter failing = spans -> {
+      failedSpans.addAll(spans);
+      return Future.failedFuture("down");
+    };
+    JsonObject conf = conf("1").put("traceBatchSize", "10");
+    Tracer tracer = new Tracer(vertx, conf, failing);
+    for (int i = 0; i < 5; i++) {
+      tracer.finish(tracer.startClient(null, "s" + i));
+    }
+    Assert.assertEquals(2, tracer.getDropped());
+    tracer.flush(false);
+    Assert.assertEquals(3, failedSpans.size());
+    Assert.assertEquals(3, tracer.getFailed());
+  }
+
+  @Test
+  public void testSpanJson() {
+    Tracer tracer = new Tracer(vertx, conf("1"), exporter);
+    Span span = tracer.startClient(TRACEPARENT, "handler mod-a-1.0.0")
+        .setRemoteService("mod-a-1.0.0")
+        .tag("http.status_code", 200)
+        .tag("error", null);
+    tracer.finish(span);
+    JsonObject jo = span.toJson("okapi");
+    Assert.assertEquals(TraceContextTest.TRACE_ID, jo.getString("traceId"));
+    Assert.assertEquals(span.getId(), jo.getString("id"));
+    Assert.assertEquals(TraceContextTest.SPAN_ID, jo.getString("parentId"));
+    Assert.assertEquals("CLIENT", jo.getString("kind"));
+    Assert.assertTrue(jo.getLong("duration") > 0);
+    Assert.assertTrue(jo.getLong("timestamp") > 1000000000000000L);
+    Assert.assertEquals("okapi", jo.getJsonObject("localEndpoint").getString("serviceName"));
+    Assert.assertEquals("mod-a-1.0.0",
+        jo.getJsonObject("remoteEndpoint").getString("serviceName"));
+    Assert.assertEquals(new JsonObject().put("http.status_code", "200"),
+        jo.getJsonObject("tags"));
+  }
+
+  @Test
+  public void testFileExport(TestContext context) {
+    File file = new File("target/TracerTest-spans.json");
+    file.delete();
+    JsonObject conf = conf("1").put("traceExport", "file:" + file.getPath());
+    Tracer tracer = new Tracer(vertx, conf);
+    Assert.assertTrue(tracer.isEnabled());
+    tracer.finish(tracer.startClient(null, "a"));
+    tracer.finish(tracer.startClient(null, "b"));
+    Async async = context.async();
+    vertx.setTimer(200, x -> {
+      String[] lines = vertx.fileSystem().readFileBlocking(file.getPath())
+          .toString().split("\n");
+      context.assertEquals(2, lines.length);
+      context.assertEquals("a", new JsonObject(lines[0]).getString("name"));
+      context.assertEquals("b", new JsonObject(lines[1]).getString("name"));
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testZipkinExport(TestContext context) {
+    List<JsonArray> bodies = new ArrayList<>();
+    HttpServer server = vertx.createHttpServer().requestHandler(req -> {
+      context.assertEquals("/api/v2/spans", req.path());
+      context.assertEquals("application/json", req.getHeader("Content-Type"));
+      req.bodyHandler(body -> {
+        bodies.add(new JsonArray(body));
+        req.response().setStatusCode(bodies.size() == 1 ? 202 : 500).end();
+      });
+    });
+    Async async = context.async();
+    server.listen(PORT, context.asyncAssertSuccess(s -> {
+      SpanExporter zipkin = Tracer.createExporter(vertx,
+          "http://localhost:" + PORT + "/api/v2/spans");
+      Tracer tracer = new Tracer(vertx, conf("1"), zipkin);
+      List<Span> spans = new ArrayList<>();
+      spans.add(tracer.startClient(null, "a"));
+      spans.add(tracer.startClient(null, "b"));
+      zipkin.export(spans).onComplete(context.asyncAssertSuccess(x -> {
+        context.assertEquals(2, bodies.get(0).size());
+        context.assertEquals("b", bodies.get(0).getJsonObject(1).getString("name"));
+        zipkin.export(spans).onComplete(context.asyncAssertFailure(e -> {
+          context.assertTrue(e.getMessage().endsWith("returned 500"), e.getMessage());
+          async.complete();
+        }));
+      }));
+    }));
+  }
+}